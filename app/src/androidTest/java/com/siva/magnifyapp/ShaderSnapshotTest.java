@@ -0,0 +1,264 @@
+package com.siva.magnifyapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.siva.magnifyapp.pipeline.FilterStage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders the test chart of the pipeline module's {@code ReferenceSnapshotTest} through the real
+ * shader passes, with the same settings, and writes what comes back from {@code glReadPixels} as
+ * PNGs. Those are the device goldens the reference is checked against: pull them with
+ * {@code adb pull /sdcard/Android/data/com.siva.magnifyapp/files/snapshots} and check them in
+ * under {@code pipeline/src/test/resources/device}. Keep the cases in step with that test.
+ *
+ * <p>The chart is sampled from a 2D texture, as a replayed recording is, and composited by the
+ * same program variant the renderer picks on this device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShaderSnapshotTest {
+    private static final int VIEW_WIDTH = 160;
+    private static final int VIEW_HEIGHT = 90;
+
+    private static final float[] IDENTITY = {
+            1f, 0f, 0f, 0f,
+            0f, 1f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 0f, 0f, 1f
+    };
+    // SurfaceTexture's usual transform: the buffer is stored top row first.
+    private static final float[] FLIP_Y = {
+            1f, 0f, 0f, 0f,
+            0f, -1f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 1f, 0f, 1f
+    };
+    private static final float[] QUAD_COORDS = {-1f, -1f, 1f, -1f, -1f, 1f, 1f, 1f};
+    private static final float[] TEX_COORDS = {0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f};
+
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface surface = EGL14.EGL_NO_SURFACE;
+    private FloatBuffer vertexBuffer;
+    private FloatBuffer texBuffer;
+    private boolean gles3;
+    private final QuadVertexArray quad = new QuadVertexArray();
+    private final RenderParamsBuffer paramsBuffer = new RenderParamsBuffer();
+    private SharpenPass sharpenPass;
+    private final int[] target = new int[2];
+    private int chartTexture;
+    private int chartWidth, chartHeight;
+    private File outputDir;
+
+    @Before
+    public void setUp() throws IOException {
+        makeContext();
+        vertexBuffer = floatBuffer(QUAD_COORDS);
+        texBuffer = floatBuffer(TEX_COORDS);
+        gles3 = GlUtil.supportsGles3Composite();
+        if (gles3) {
+            quad.onSurfaceCreated();
+            paramsBuffer.onSurfaceCreated();
+        }
+        sharpenPass = new SharpenPass(vertexBuffer, texBuffer);
+        sharpenPass.onSurfaceCreated();
+        sharpenPass.onSurfaceChanged(VIEW_WIDTH, VIEW_HEIGHT);
+        GlUtil.createColorTarget(VIEW_WIDTH, VIEW_HEIGHT, target);
+        uploadChart();
+
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        outputDir = appContext.getExternalFilesDir("snapshots");
+        assertNotNull("No external files dir", outputDir);
+    }
+
+    @After
+    public void tearDown() {
+        if (display == EGL14.EGL_NO_DISPLAY) return;
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        if (surface != EGL14.EGL_NO_SURFACE) EGL14.eglDestroySurface(display, surface);
+        if (context != EGL14.EGL_NO_CONTEXT) EGL14.eglDestroyContext(display, context);
+    }
+
+    @Test
+    public void normal_1x() throws IOException {
+        capture("normal_1x", RenderState.DEFAULT, IDENTITY);
+    }
+
+    @Test
+    public void amber_2x() throws IOException {
+        capture("amber_2x", RenderState.DEFAULT.withZoom(2f).withFilter(FilterStage.AMBER), IDENTITY);
+    }
+
+    @Test
+    public void grayscale_brightnessContrast() throws IOException {
+        RenderState state = RenderState.DEFAULT.withZoom(1.5f).withFilter(FilterStage.GRAYSCALE)
+                .withBrightness(0.1f).withContrast(1.4f);
+        capture("grayscale_tone", state, IDENTITY);
+    }
+
+    @Test
+    public void sharpen_3x_flipped() throws IOException {
+        capture("sharpen_3x", RenderState.DEFAULT.withZoom(3f).withSharpness(1.5f), FLIP_Y);
+    }
+
+    /** Draws the chart with {@code state} as {@code MainActivity.drawComposite} would and saves it. */
+    private void capture(String name, RenderState state, float[] matrix) throws IOException {
+        int blurTexture = 0;
+        if (state.sharpness > 0f) {
+            blurTexture = sharpenPass.render(false, chartTexture, matrix, state.zoom,
+                    chartWidth, chartHeight, VIEW_WIDTH, VIEW_HEIGHT);
+        }
+        CompositeProgram p = CompositeProgram.build(CompositeShaders.key(state.filter, state.sharpness > 0f, true), gles3);
+        assertNotNull(name + ": composite program failed to build", p);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target[0]);
+        GLES20.glViewport(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(p.program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, blurTexture);
+        GLES20.glUniform1i(p.blurSamplerHandle, 1);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, chartTexture);
+        GLES20.glUniformMatrix4fv(p.texMatrixHandle, 1, false, matrix, 0);
+        GLES20.glUniform1f(p.zoomHandle, state.zoom);
+        if (p.gles3) {
+            paramsBuffer.update(state);
+            quad.draw();
+        } else {
+            GLES20.glUniform1i(p.filterModeHandle, state.filter);
+            GLES20.glUniform1f(p.brightnessHandle, state.brightness);
+            GLES20.glUniform1f(p.contrastHandle, state.contrast);
+            GLES20.glUniform1f(p.sharpnessHandle, state.sharpness);
+            GLES20.glEnableVertexAttribArray(p.positionHandle);
+            GLES20.glVertexAttribPointer(p.positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+            GLES20.glEnableVertexAttribArray(p.texCoordHandle);
+            GLES20.glVertexAttribPointer(p.texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+            GLES20.glDisableVertexAttribArray(p.positionHandle);
+            GLES20.glDisableVertexAttribArray(p.texCoordHandle);
+        }
+
+        ByteBuffer pixels = ByteBuffer.allocateDirect(VIEW_WIDTH * VIEW_HEIGHT * 4).order(ByteOrder.nativeOrder());
+        GLES20.glReadPixels(0, 0, VIEW_WIDTH, VIEW_HEIGHT, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GLES20.glDeleteProgram(p.program);
+        assertEquals(name + ": GL error", GLES20.GL_NO_ERROR, GLES20.glGetError());
+        write(name, pixels);
+    }
+
+    /**
+     * Uploads the chart bottom row first, so texture row 0 is the last row of the PNG, the way
+     * {@code ReferenceSnapshotTest} reads it into a frame.
+     */
+    private void uploadChart() throws IOException {
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        Bitmap chart;
+        try (InputStream in = testContext.getAssets().open("snapshots/input.png")) {
+            chart = BitmapFactory.decodeStream(in);
+        }
+        assertNotNull("Undecodable snapshots/input.png", chart);
+        Matrix flip = new Matrix();
+        flip.preScale(1f, -1f);
+        Bitmap flipped = Bitmap.createBitmap(chart, 0, 0, chart.getWidth(), chart.getHeight(), flip, false);
+        chartWidth = flipped.getWidth();
+        chartHeight = flipped.getHeight();
+        int[] names = new int[1];
+        GLES20.glGenTextures(1, names, 0);
+        chartTexture = names[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, chartTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, flipped, 0);
+        chart.recycle();
+        flipped.recycle();
+    }
+
+    /** Saves pixels read back from GL, bottom row first, as a PNG with the top row first. */
+    private void write(String name, ByteBuffer pixels) throws IOException {
+        Bitmap readBack = Bitmap.createBitmap(VIEW_WIDTH, VIEW_HEIGHT, Bitmap.Config.ARGB_8888);
+        pixels.rewind();
+        readBack.copyPixelsFromBuffer(pixels);
+        Matrix flip = new Matrix();
+        flip.preScale(1f, -1f);
+        Bitmap image = Bitmap.createBitmap(readBack, 0, 0, VIEW_WIDTH, VIEW_HEIGHT, flip, false);
+        try (OutputStream out = new FileOutputStream(new File(outputDir, name + ".png"))) {
+            assertTrue(name + ": PNG encoding failed", image.compress(Bitmap.CompressFormat.PNG, 100, out));
+        }
+        readBack.recycle();
+        image.recycle();
+    }
+
+    private void makeContext() {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        assertTrue("eglInitialize failed", EGL14.eglInitialize(display, version, 0, version, 1));
+        // The renderer's choice: GLES 3.0 where available.
+        if (!makeContext(EGLExt.EGL_OPENGL_ES3_BIT_KHR, 3)) {
+            assertTrue("No GLES context", makeContext(EGL14.EGL_OPENGL_ES2_BIT, 2));
+        }
+    }
+
+    private boolean makeContext(int renderableType, int clientVersion) {
+        int[] configAttribs = {
+                EGL14.EGL_RENDERABLE_TYPE, renderableType,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttribs, 0, configs, 0, 1, numConfigs, 0)
+                || numConfigs[0] == 0) {
+            return false;
+        }
+        int[] contextAttribs = {EGL14.EGL_CONTEXT_CLIENT_VERSION, clientVersion, EGL14.EGL_NONE};
+        context = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        if (context == null || context == EGL14.EGL_NO_CONTEXT) {
+            context = EGL14.EGL_NO_CONTEXT;
+            return false;
+        }
+        int[] surfaceAttribs = {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE};
+        surface = EGL14.eglCreatePbufferSurface(display, configs[0], surfaceAttribs, 0);
+        return EGL14.eglMakeCurrent(display, surface, surface, context);
+    }
+
+    private static FloatBuffer floatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(values).position(0);
+        return buffer;
+    }
+}
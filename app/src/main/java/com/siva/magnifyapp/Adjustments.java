@@ -0,0 +1,77 @@
+package com.siva.magnifyapp;
+
+/**
+ * The user's image adjustments as one immutable value: what {@link SettingsStore} persists and a
+ * preset restores. {@code withX} methods return {@code this} when nothing changes.
+ */
+final class Adjustments {
+    static final Adjustments DEFAULT = new Adjustments(1f, 0f, 1f, 0f, 1f, 0);
+
+    final float zoom;
+    /** -1..1, added to the image. */
+    final float brightness;
+    /** 0..2, around mid grey. */
+    final float contrast;
+    /** 0..1, unsharp-mask strength. */
+    final float sharpness;
+    /** 0..1, the window's screen brightness. */
+    final float appBrightness;
+    final int filter;
+
+    Adjustments(float zoom, float brightness, float contrast, float sharpness, float appBrightness, int filter) {
+        this.zoom = zoom;
+        this.brightness = brightness;
+        this.contrast = contrast;
+        this.sharpness = sharpness;
+        this.appBrightness = appBrightness;
+        this.filter = filter;
+    }
+
+    Adjustments withZoom(float zoom) {
+        return zoom == this.zoom ? this : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    Adjustments withBrightness(float brightness) {
+        return brightness == this.brightness ? this
+                : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    Adjustments withContrast(float contrast) {
+        return contrast == this.contrast ? this
+                : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    Adjustments withSharpness(float sharpness) {
+        return sharpness == this.sharpness ? this
+                : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    Adjustments withAppBrightness(float appBrightness) {
+        return appBrightness == this.appBrightness ? this
+                : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    Adjustments withFilter(int filter) {
+        return filter == this.filter ? this
+                : new Adjustments(zoom, brightness, contrast, sharpness, appBrightness, filter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Adjustments)) return false;
+        Adjustments a = (Adjustments) o;
+        return zoom == a.zoom && brightness == a.brightness && contrast == a.contrast
+                && sharpness == a.sharpness && appBrightness == a.appBrightness && filter == a.filter;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Float.floatToIntBits(zoom);
+        h = 31 * h + Float.floatToIntBits(brightness);
+        h = 31 * h + Float.floatToIntBits(contrast);
+        h = 31 * h + Float.floatToIntBits(sharpness);
+        h = 31 * h + Float.floatToIntBits(appBrightness);
+        return 31 * h + filter;
+    }
+}
@@ -0,0 +1,123 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads a small RGBA framebuffer back to the CPU without draining the GPU. On GLES 3.0 the
+ * pixels go into a pixel pack buffer behind a fence, and {@link #poll} maps it only once the
+ * fence has signalled, a frame or more later; the render thread never waits. GLES 2.0 has no such
+ * path, so there {@link #start()} reads synchronously and {@link #poll} hands the result over.
+ */
+final class AsyncReadback {
+    private final int width, height;
+    private final int bytes;
+    private final boolean gles3;
+    private final ByteBuffer direct;
+    private int pixelBuffer;
+    private long fence;
+    private boolean pending;
+
+    /** GL thread, with the context that will read current. */
+    AsyncReadback(int width, int height) {
+        this.width = width;
+        this.height = height;
+        bytes = width * height * 4;
+        gles3 = GlUtil.isGles3();
+        direct = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        if (gles3) {
+            int[] names = new int[1];
+            GLES30.glGenBuffers(1, names, 0);
+            pixelBuffer = names[0];
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pixelBuffer);
+            GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, bytes, null, GLES30.GL_STREAM_READ);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        }
+    }
+
+    /** Whether a read has been started and not yet handed over by {@link #poll}. */
+    boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Starts reading the bound framebuffer, unless a read is still pending.
+     *
+     * @return whether a read was started
+     */
+    boolean start() {
+        if (pending) return false;
+        if (gles3) {
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pixelBuffer);
+            GLES30.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        } else {
+            direct.position(0);
+            GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, direct);
+        }
+        pending = true;
+        return true;
+    }
+
+    /**
+     * Copies the pending read into {@code out} if the GPU has finished it; never waits.
+     *
+     * @return whether {@code out} now holds the pixels of the last {@link #start()}
+     */
+    boolean poll(byte[] out) {
+        if (!pending) return false;
+        if (gles3) {
+            int status = GLES30.glClientWaitSync(fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, 0L);
+            if (status == GLES30.GL_TIMEOUT_EXPIRED) return false;
+            GLES30.glDeleteSync(fence);
+            fence = 0L;
+            if (status == GLES30.GL_WAIT_FAILED) {
+                pending = false;
+                return false;
+            }
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, pixelBuffer);
+            ByteBuffer mapped = (ByteBuffer) GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, bytes,
+                    GLES30.GL_MAP_READ_BIT);
+            if (mapped != null) mapped.get(out, 0, bytes);
+            GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+            GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+            pending = false;
+            return mapped != null;
+        }
+        direct.position(0);
+        direct.get(out, 0, bytes);
+        pending = false;
+        return true;
+    }
+
+    /**
+     * Reads the bound framebuffer into {@code out} now, waiting for the GPU. For one-off reads,
+     * such as analysing a still, where a result a frame late would be drawn with stale data.
+     * Drops any pending read.
+     */
+    void readNow(byte[] out) {
+        cancel();
+        direct.position(0);
+        GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, direct);
+        direct.position(0);
+        direct.get(out, 0, bytes);
+    }
+
+    /** Forgets a pending read, e.g. because the source it was taken from has changed. */
+    void cancel() {
+        if (fence != 0L) GLES30.glDeleteSync(fence);
+        fence = 0L;
+        pending = false;
+    }
+
+    /** GL thread. */
+    void release() {
+        cancel();
+        if (pixelBuffer != 0) GLES30.glDeleteBuffers(1, new int[]{pixelBuffer}, 0);
+        pixelBuffer = 0;
+    }
+}
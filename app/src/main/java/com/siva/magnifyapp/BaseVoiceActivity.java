@@ -2,6 +2,7 @@ package com.siva.magnifyapp;
 
 import android.app.Activity;
 import android.os.Bundle;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
@@ -12,19 +13,50 @@ import com.digilens.digios_voiceui_api.utils.VoiceUI_Listener;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
 import static com.digilens.digios_voiceui_api.utils.Constants.Voice_Command_CONFIG_TYPE_FEEDBACK_ONLY;
+import static com.digilens.digios_voiceui_api.utils.Constants.Voice_Command_CONFIG_TYPE_FEEDBACK_WITH_NUMBER_ONLY;
+import static com.digilens.digios_voiceui_api.utils.Constants.number_of_slots_with_numbers;
 
 public abstract class BaseVoiceActivity extends AppCompatActivity {
+    private static final String TAG = "BaseVoiceActivity";
+
+    /** A phrase followed by a number, e.g. "zoom five", and the range it accepts. */
+    private static final class ValueCommand {
+        final int min, max;
+        final IntConsumer action;
+
+        ValueCommand(int min, int max, IntConsumer action) {
+            this.min = min;
+            this.max = max;
+            this.action = action;
+        }
+    }
+
     private VoiceUI_Interface voiceUIInterface;
     private VoiceUI_Model     voiceUIModel;
     private Map<String, Runnable> commands = new HashMap<>();
+    private Map<String, ValueCommand> valueCommands = new HashMap<>();
+    private boolean resumed;
 
     /** Call in subclasses to map phrase → action */
     protected void registerVoiceCommand(@NonNull String phrase, @NonNull Runnable action) {
         commands.put(phrase, action);
     }
 
+    /**
+     * Maps a phrase spoken with a number, e.g. "brightness seventy", to {@code action}, which
+     * receives the number. Numbers outside {@code min..max} are taken as misheard and dropped.
+     * The recognizer has {@code number_of_slots_with_numbers} of these.
+     */
+    protected void registerVoiceCommand(@NonNull String phrase, int min, int max, @NonNull IntConsumer action) {
+        if (valueCommands.size() >= number_of_slots_with_numbers && !valueCommands.containsKey(phrase)) {
+            throw new IllegalStateException("No voice slot left for \"" + phrase + "\"");
+        }
+        valueCommands.put(phrase, new ValueCommand(min, max, action));
+    }
+
     /** Subclasses override to register their commands */
     protected abstract void setupVoiceCommands();
 
@@ -32,18 +64,26 @@ public abstract class BaseVoiceActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        // 1) Init the interface + model
+        // 1) Let subclass register commands
+        setupVoiceCommands();
+
+        // 2) Building the model loads the recognizer, which takes long enough to hold up the
+        //    first camera frame. Do it off the main thread and start listening when it is ready.
         voiceUIInterface = new VoiceUI_Interface();
+        Thread loader = new Thread(this::loadVoiceModel, "VoiceModelLoader");
+        loader.setPriority(Thread.MIN_PRIORITY);
+        loader.start();
+    }
+
+    private void loadVoiceModel() {
+        VoiceUI_Model model;
         try {
-            voiceUIModel = new VoiceUI_Model("en"); // or "es", etc.
+            model = new VoiceUI_Model("en"); // or "es", etc.
         } catch (Exception e) {
             e.printStackTrace();
             return;
         }
 
-        // 2) Let subclass register commands
-        setupVoiceCommands();
-
         // 3) Turn each into a VoiceUI_Listener and add to model
         for (Map.Entry<String, Runnable> e : commands.entrySet()) {
             String phrase = e.getKey();
@@ -67,41 +107,87 @@ public abstract class BaseVoiceActivity extends AppCompatActivity {
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
+            addListener(model, listener);
+        }
+        for (Map.Entry<String, ValueCommand> e : valueCommands.entrySet()) {
+            String phrase = e.getKey();
+            ValueCommand command = e.getValue();
 
+            VoiceUI_Listener listener = null;
             try {
-                voiceUIModel.addVoiceUI_Listener(listener);
+                listener = new VoiceUI_Listener(
+                        phrase,
+                        Voice_Command_CONFIG_TYPE_FEEDBACK_WITH_NUMBER_ONLY
+                ) {
+                    @Override
+                    public void onReceive() {
+                        // the phrase without a number does nothing
+                    }
+                    @Override
+                    public void onReceive(int value) {
+                        if (value < command.min || value > command.max) {
+                            Log.i(TAG, "Ignoring \"" + phrase + " " + value + "\": outside "
+                                    + command.min + ".." + command.max);
+                            return;
+                        }
+                        command.action.accept(value);
+                    }
+                };
             } catch (Exception ex) {
-                ex.printStackTrace();
+                throw new RuntimeException(ex);
             }
+            addListener(model, listener);
         }
 
         // 4) Register the model with the interface
         try {
-            voiceUIInterface.add_model(voiceUIModel);
+            voiceUIInterface.add_model(model);
         } catch (Exception e) {
             e.printStackTrace();
+            return;
+        }
+
+        runOnUiThread(() -> {
+            voiceUIModel = model;
+            if (resumed) startListening();
+        });
+    }
+
+    private static void addListener(VoiceUI_Model model, VoiceUI_Listener listener) {
+        try {
+            model.addVoiceUI_Listener(listener);
+        } catch (Exception ex) {
+            ex.printStackTrace();
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // 5) Start listening
-        try {
-            voiceUIInterface.start(this);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        resumed = true;
+        if (voiceUIModel != null) startListening();
     }
 
     @Override
     protected void onPause() {
+        resumed = false;
         // 6) Stop listening
+        if (voiceUIModel != null) {
+            try {
+                voiceUIInterface.stop();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        super.onPause();
+    }
+
+    private void startListening() {
+        // 5) Start listening
         try {
-            voiceUIInterface.stop();
+            voiceUIInterface.start(this);
         } catch (Exception e) {
             e.printStackTrace();
         }
-        super.onPause();
     }
 }
@@ -0,0 +1,89 @@
+package com.siva.magnifyapp;
+
+/**
+ * Decides when the camera is opened, parked and closed across activity pauses. A pause first
+ * only stops streaming and keeps the device and its capture session; if the activity comes back
+ * within the grace period streaming simply restarts, with 3A continuing from where it was
+ * instead of converging again from a cold open. Once the grace period runs out the device is
+ * closed so other apps can have it.
+ *
+ * <p>Camera thread only; the {@link Camera} operations run on it as well.
+ */
+final class CameraSessionManager {
+    /** Covers a notification shade or a system dialog, not an app switch. */
+    static final long DEFAULT_GRACE_PERIOD_MS = 5000L;
+
+    interface Camera {
+        /** Opens the device; streaming starts once the preview surface is ready. */
+        void open();
+
+        /** Stops streaming, keeping the device and session. */
+        void park();
+
+        /** Restarts streaming in a parked session. */
+        void unpark();
+
+        void close();
+    }
+
+    /** Delayed execution on the camera thread; {@code android.os.Handler} has this shape. */
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private enum State { CLOSED, ACTIVE, PARKED }
+
+    private final Camera camera;
+    private final Scheduler scheduler;
+    private final Runnable expire = this::expire;
+    private final long gracePeriodMs;
+    private State state = State.CLOSED;
+
+    /** @param gracePeriodMs how long a paused session is kept; 0 closes the camera on every pause */
+    CameraSessionManager(Camera camera, Scheduler scheduler, long gracePeriodMs) {
+        this.camera = camera;
+        this.scheduler = scheduler;
+        this.gracePeriodMs = gracePeriodMs;
+    }
+
+    void onResume() {
+        scheduler.removeCallbacks(expire);
+        if (state == State.PARKED) {
+            camera.unpark();
+        } else if (state == State.CLOSED) {
+            camera.open();
+        }
+        state = State.ACTIVE;
+    }
+
+    void onPause() {
+        if (state != State.ACTIVE) return;
+        if (gracePeriodMs <= 0) {
+            close();
+            return;
+        }
+        camera.park();
+        state = State.PARKED;
+        scheduler.postDelayed(expire, gracePeriodMs);
+    }
+
+    /** The device went away on its own (error, or another client took it). */
+    void onDeviceLost() {
+        scheduler.removeCallbacks(expire);
+        // Still resumed: try again on the next resume rather than right away.
+        state = State.CLOSED;
+    }
+
+    /** Closes at once, e.g. when the activity is destroyed. */
+    void close() {
+        scheduler.removeCallbacks(expire);
+        if (state != State.CLOSED) camera.close();
+        state = State.CLOSED;
+    }
+
+    private void expire() {
+        if (state == State.PARKED) close();
+    }
+}
@@ -0,0 +1,225 @@
+package com.siva.magnifyapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.util.Range;
+import android.util.Size;
+import android.util.SizeF;
+
+/**
+ * Persists what startup needs to know about the back camera, so a warm launch can go straight
+ * to {@code openCamera} without walking {@code getCameraIdList} and
+ * {@code getCameraCharacteristics}. Entries are tied to the build fingerprint; an OS or HAL
+ * update invalidates them.
+ *
+ * <p>Reads and writes hit disk; call from the camera thread, never the main thread.
+ */
+final class CameraStartupCache {
+    private static final String PREFS = "CameraStartupCache";
+    /** Typical wide camera, ~70 degrees across, for HALs that omit the lens description. */
+    private static final float DEFAULT_TAN_HALF_FOV = 0.7f;
+    private static final int VERSION = 4;
+    /** Highest frame rate the thermal frame-rate cap allows. */
+    static final int THROTTLED_FPS_MAX = 20;
+
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_CAMERA_ID = "cameraId";
+    private static final String KEY_SIZES = "sizes";
+    private static final String KEY_REALTIME = "realtimeTimestamps";
+    private static final String KEY_ZOOM_RATIO = "useZoomRatio";
+    private static final String KEY_MAX_ISP_ZOOM = "maxIspZoom";
+    private static final String KEY_ACTIVE_ARRAY = "activeArray";
+    private static final String KEY_SENSOR_ORIENTATION = "sensorOrientation";
+    private static final String KEY_TAN_HALF_FOV = "tanHalfFov";
+    private static final String KEY_STILL_SIZE = "stillSize";
+    private static final String KEY_IDLE_FPS = "idleFps";
+    private static final String KEY_THROTTLED_FPS = "throttledFps";
+    private static final String KEY_STREAM_WIDTH = "streamWidth";
+    private static final String KEY_STREAM_HEIGHT = "streamHeight";
+
+    /** Back camera description, either restored or freshly queried. */
+    static final class Entry {
+        String cameraId;
+        int[] widths;
+        int[] heights;
+        boolean realtimeTimestamps;
+        boolean useZoomRatio;
+        float maxIspZoom;
+        Rect activeArray;
+        int sensorOrientation;
+        /** Tangent of half the field of view across the long edge of the active array. */
+        float tanHalfFov;
+        /** Largest JPEG size, or 0 if the camera offers none. */
+        int stillWidth, stillHeight;
+        /** Slowest AE target frame rate range, for idling while a still is shown. */
+        int idleFpsMin, idleFpsMax;
+        /** Fastest range topping out at {@link #THROTTLED_FPS_MAX}, or the idle range if none does. */
+        int throttledFpsMin, throttledFpsMax;
+        /** Stream size chosen last time, or 0 if none recorded. */
+        int streamWidth, streamHeight;
+    }
+
+    private final SharedPreferences prefs;
+
+    CameraStartupCache(Context context) {
+        prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    /** Returns the cached entry, or null when missing or recorded on a different build. */
+    Entry load() {
+        if (!fingerprint().equals(prefs.getString(KEY_FINGERPRINT, null))) return null;
+        String cameraId = prefs.getString(KEY_CAMERA_ID, null);
+        String sizes = prefs.getString(KEY_SIZES, null);
+        if (cameraId == null || sizes == null || sizes.isEmpty()) return null;
+        Entry entry = new Entry();
+        entry.cameraId = cameraId;
+        String[] parts = sizes.split(",");
+        entry.widths = new int[parts.length];
+        entry.heights = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                int x = parts[i].indexOf('x');
+                entry.widths[i] = Integer.parseInt(parts[i].substring(0, x));
+                entry.heights[i] = Integer.parseInt(parts[i].substring(x + 1));
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        entry.realtimeTimestamps = prefs.getBoolean(KEY_REALTIME, false);
+        entry.useZoomRatio = prefs.getBoolean(KEY_ZOOM_RATIO, false);
+        entry.maxIspZoom = prefs.getFloat(KEY_MAX_ISP_ZOOM, 1f);
+        String active = prefs.getString(KEY_ACTIVE_ARRAY, null);
+        entry.activeArray = active != null ? Rect.unflattenFromString(active) : null;
+        entry.sensorOrientation = prefs.getInt(KEY_SENSOR_ORIENTATION, 0);
+        entry.tanHalfFov = prefs.getFloat(KEY_TAN_HALF_FOV, DEFAULT_TAN_HALF_FOV);
+        int[] still = parsePair(prefs.getString(KEY_STILL_SIZE, null), 'x');
+        int[] idleFps = parsePair(prefs.getString(KEY_IDLE_FPS, null), '-');
+        int[] throttledFps = parsePair(prefs.getString(KEY_THROTTLED_FPS, null), '-');
+        if (still == null || idleFps == null || throttledFps == null) return null;
+        entry.stillWidth = still[0];
+        entry.stillHeight = still[1];
+        entry.idleFpsMin = idleFps[0];
+        entry.idleFpsMax = idleFps[1];
+        entry.throttledFpsMin = throttledFps[0];
+        entry.throttledFpsMax = throttledFps[1];
+        entry.streamWidth = prefs.getInt(KEY_STREAM_WIDTH, 0);
+        entry.streamHeight = prefs.getInt(KEY_STREAM_HEIGHT, 0);
+        return entry;
+    }
+
+    void store(Entry entry) {
+        StringBuilder sizes = new StringBuilder();
+        for (int i = 0; i < entry.widths.length; i++) {
+            if (i > 0) sizes.append(',');
+            sizes.append(entry.widths[i]).append('x').append(entry.heights[i]);
+        }
+        prefs.edit()
+                .putString(KEY_FINGERPRINT, fingerprint())
+                .putString(KEY_CAMERA_ID, entry.cameraId)
+                .putString(KEY_SIZES, sizes.toString())
+                .putBoolean(KEY_REALTIME, entry.realtimeTimestamps)
+                .putBoolean(KEY_ZOOM_RATIO, entry.useZoomRatio)
+                .putFloat(KEY_MAX_ISP_ZOOM, entry.maxIspZoom)
+                .putString(KEY_ACTIVE_ARRAY, entry.activeArray != null ? entry.activeArray.flattenToString() : null)
+                .putInt(KEY_SENSOR_ORIENTATION, entry.sensorOrientation)
+                .putFloat(KEY_TAN_HALF_FOV, entry.tanHalfFov)
+                .putString(KEY_STILL_SIZE, entry.stillWidth + "x" + entry.stillHeight)
+                .putString(KEY_IDLE_FPS, entry.idleFpsMin + "-" + entry.idleFpsMax)
+                .putString(KEY_THROTTLED_FPS, entry.throttledFpsMin + "-" + entry.throttledFpsMax)
+                .apply();
+    }
+
+    void storeStreamSize(int width, int height) {
+        prefs.edit().putInt(KEY_STREAM_WIDTH, width).putInt(KEY_STREAM_HEIGHT, height).apply();
+    }
+
+    /** Full scan for the back camera; returns null if there is none. */
+    static Entry query(CameraManager cameraManager) throws CameraAccessException {
+        for (String id : cameraManager.getCameraIdList()) {
+            CameraCharacteristics chars = cameraManager.getCameraCharacteristics(id);
+            Integer facing = chars.get(CameraCharacteristics.LENS_FACING);
+            if (facing == null || facing != CameraCharacteristics.LENS_FACING_BACK) continue;
+
+            Entry entry = new Entry();
+            entry.cameraId = id;
+            StreamConfigurationMap map = chars.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            Size[] sizes = map.getOutputSizes(SurfaceTexture.class);
+            entry.widths = new int[sizes.length];
+            entry.heights = new int[sizes.length];
+            for (int i = 0; i < sizes.length; i++) {
+                entry.widths[i] = sizes[i].getWidth();
+                entry.heights[i] = sizes[i].getHeight();
+            }
+            Integer timestampSource = chars.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+            entry.realtimeTimestamps = timestampSource != null
+                    && timestampSource == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+            HybridZoom zoom = HybridZoom.from(chars);
+            entry.useZoomRatio = zoom.usesZoomRatio();
+            entry.maxIspZoom = zoom.maxIspZoom();
+            entry.activeArray = chars.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+            Integer orientation = chars.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            entry.sensorOrientation = orientation != null ? orientation : 0;
+            SizeF physical = chars.get(CameraCharacteristics.SENSOR_INFO_PHYSICAL_SIZE);
+            float[] focalLengths = chars.get(CameraCharacteristics.LENS_INFO_AVAILABLE_FOCAL_LENGTHS);
+            entry.tanHalfFov = physical != null && focalLengths != null && focalLengths.length > 0
+                    ? Math.max(physical.getWidth(), physical.getHeight()) / (2f * focalLengths[0])
+                    : DEFAULT_TAN_HALF_FOV;
+            Size[] stills = map.getOutputSizes(ImageFormat.JPEG);
+            if (stills != null) {
+                for (Size size : stills) {
+                    if ((long) size.getWidth() * size.getHeight()
+                            > (long) entry.stillWidth * entry.stillHeight) {
+                        entry.stillWidth = size.getWidth();
+                        entry.stillHeight = size.getHeight();
+                    }
+                }
+            }
+            entry.idleFpsMin = entry.idleFpsMax = 0;
+            entry.throttledFpsMin = entry.throttledFpsMax = 0;
+            Range<Integer>[] fpsRanges = chars.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+            if (fpsRanges != null) {
+                for (Range<Integer> range : fpsRanges) {
+                    if (entry.idleFpsMax == 0 || range.getUpper() < entry.idleFpsMax
+                            || (range.getUpper() == entry.idleFpsMax && range.getLower() < entry.idleFpsMin)) {
+                        entry.idleFpsMin = range.getLower();
+                        entry.idleFpsMax = range.getUpper();
+                    }
+                    if (range.getUpper() <= THROTTLED_FPS_MAX && (range.getUpper() > entry.throttledFpsMax
+                            || (range.getUpper() == entry.throttledFpsMax && range.getLower() > entry.throttledFpsMin))) {
+                        entry.throttledFpsMin = range.getLower();
+                        entry.throttledFpsMax = range.getUpper();
+                    }
+                }
+            }
+            if (entry.throttledFpsMax == 0) {
+                entry.throttledFpsMin = entry.idleFpsMin;
+                entry.throttledFpsMax = entry.idleFpsMax;
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    private static int[] parsePair(String value, char separator) {
+        if (value == null) return null;
+        int at = value.indexOf(separator);
+        if (at < 0) return null;
+        try {
+            return new int[]{Integer.parseInt(value.substring(0, at)), Integer.parseInt(value.substring(at + 1))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String fingerprint() {
+        return VERSION + "|" + Build.FINGERPRINT;
+    }
+}
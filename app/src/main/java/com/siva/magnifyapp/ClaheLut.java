@@ -0,0 +1,86 @@
+package com.siva.magnifyapp;
+
+import java.util.Arrays;
+
+/**
+ * Contrast-limited adaptive histogram equalization: builds one 256-entry luma mapping per tile
+ * of a small luma image. The renderer blends the four mappings around each pixel, so contrast is
+ * stretched where the page actually is dark or washed out rather than by one global curve.
+ *
+ * <p>Pure Java so the mapping can be checked in unit tests; all buffers are allocated up front.
+ */
+final class ClaheLut {
+    static final int BINS = 256;
+
+    final int tilesX, tilesY;
+    private final int[] histogram = new int[BINS];
+    private float clipLimit;
+
+    /**
+     * @param clipLimit cap on any histogram bin as a multiple of the uniform bin height; 1
+     *                  disables equalization, larger values allow stronger local contrast
+     */
+    ClaheLut(int tilesX, int tilesY, float clipLimit) {
+        if (tilesX <= 0 || tilesY <= 0) throw new IllegalArgumentException("Need at least one tile");
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        setClipLimit(clipLimit);
+    }
+
+    void setClipLimit(float clipLimit) {
+        this.clipLimit = Math.max(1f, clipLimit);
+    }
+
+    /** Size of the table {@link #compute} writes: one row of {@link #BINS} entries per tile. */
+    int lutSize() {
+        return BINS * tilesX * tilesY;
+    }
+
+    /**
+     * Computes the tile mappings of a {@code width x height} image into {@code lut}, tile rows
+     * in the same order as the image rows.
+     *
+     * @param pixels luma samples, {@code pixelStride} bytes apart; e.g. 4 for RGBA readback with
+     *               luma in the first channel
+     */
+    void compute(byte[] pixels, int width, int height, int pixelStride, byte[] lut) {
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * height / tilesY;
+            int y1 = (ty + 1) * height / tilesY;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * width / tilesX;
+                int x1 = (tx + 1) * width / tilesX;
+                Arrays.fill(histogram, 0);
+                for (int y = y0; y < y1; y++) {
+                    int row = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        histogram[pixels[(row + x) * pixelStride] & 0xFF]++;
+                    }
+                }
+                buildTile((x1 - x0) * (y1 - y0), lut, (ty * tilesX + tx) * BINS);
+            }
+        }
+    }
+
+    private void buildTile(int count, byte[] lut, int offset) {
+        if (count == 0) {
+            for (int i = 0; i < BINS; i++) lut[offset + i] = (byte) i;
+            return;
+        }
+        // Clip and hand the excess back evenly, which bounds the slope of the mapping.
+        int limit = Math.max(1, (int) (clipLimit * count / BINS));
+        int excess = 0;
+        for (int i = 0; i < BINS; i++) {
+            if (histogram[i] > limit) {
+                excess += histogram[i] - limit;
+                histogram[i] = limit;
+            }
+        }
+        int cdf = 0;
+        for (int i = 0; i < BINS; i++) {
+            // Spreads the excess, including the remainder, evenly over the whole range.
+            cdf += histogram[i] + (int) ((long) (i + 1) * excess / BINS - (long) i * excess / BINS);
+            lut[offset + i] = (byte) Math.min(255, (cdf * 255 + count / 2) / count);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Analysis stage of the local contrast filter. Every {@link #UPDATE_INTERVAL} frames the zoomed
+ * view is rendered into a small luma target and read back with {@link AsyncReadback}; once the
+ * pixels arrive, a frame or more later, {@link ClaheLut} builds the tile mappings on the CPU and
+ * the result is uploaded as a {@code BINS x tiles} lookup texture. The composite pass blends the
+ * mappings of the four nearest tiles per pixel. Until then the previous table is used; page
+ * content changes far slower than the frame rate. The table starts out as the identity.
+ */
+final class ClahePass {
+    static final int UPDATE_INTERVAL = 6;
+    /** Long edge of the analysis image; large enough for ~1000 samples per tile. */
+    static final int LUMA_LONG_EDGE = 256;
+    static final int TILES_LONG_EDGE = 8;
+    static final float CLIP_LIMIT = 3f;
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    private final int[] externalProgram = new int[5];
+    private final int[] stillProgram = new int[5];
+
+    private final int[] lumaTarget = new int[2];
+    private int lumaWidth, lumaHeight;
+    private AsyncReadback readback;
+    private byte[] pixels;
+    private ClaheLut clahe;
+    private byte[] lut;
+    private ByteBuffer lutBuffer;
+    private int lutTexture;
+    private boolean lutValid;
+    private int framesSinceUpdate;
+
+    ClahePass(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+    }
+
+    void onSurfaceCreated() {
+        buildProgram(externalProgram, true);
+        buildProgram(stillProgram, false);
+        // Context was (re)created; the target, buffers and table died with it.
+        lumaTarget[0] = lumaTarget[1] = 0;
+        lumaWidth = lumaHeight = 0;
+        readback = null;
+        lutTexture = 0;
+        lutValid = false;
+    }
+
+    void onSurfaceChanged(int viewWidth, int viewHeight) {
+        boolean landscape = viewWidth >= viewHeight;
+        int longView = Math.max(viewWidth, viewHeight);
+        int shortView = Math.max(1, Math.min(viewWidth, viewHeight));
+        int longEdge = LUMA_LONG_EDGE;
+        int shortEdge = Math.max(1, Math.round(LUMA_LONG_EDGE * shortView / (float) longView));
+        int w = landscape ? longEdge : shortEdge;
+        int h = landscape ? shortEdge : longEdge;
+        if (w == lumaWidth && h == lumaHeight) return;
+
+        GlUtil.deleteColorTarget(lumaTarget[0], lumaTarget[1]);
+        GlUtil.createColorTarget(w, h, lumaTarget);
+        lumaWidth = w;
+        lumaHeight = h;
+        if (readback != null) readback.release();
+        readback = new AsyncReadback(w, h);
+        pixels = new byte[w * h * 4];
+
+        int shortTiles = Math.max(1, Math.round(TILES_LONG_EDGE * shortView / (float) longView));
+        clahe = landscape
+                ? new ClaheLut(TILES_LONG_EDGE, shortTiles, CLIP_LIMIT)
+                : new ClaheLut(shortTiles, TILES_LONG_EDGE, CLIP_LIMIT);
+        lut = new byte[clahe.lutSize()];
+        lutBuffer = ByteBuffer.allocateDirect(lut.length);
+        if (lutTexture != 0) GLES20.glDeleteTextures(1, new int[]{lutTexture}, 0);
+        lutTexture = 0;
+        lutValid = false;
+        // Shown as is until the first tables arrive.
+        for (int i = 0; i < lut.length; i++) lut[i] = (byte) (i % ClaheLut.BINS);
+        uploadLut();
+    }
+
+    private boolean due() {
+        return !lutValid || framesSinceUpdate + 1 >= UPDATE_INTERVAL;
+    }
+
+    /**
+     * Counts a frame, takes up the tables of an earlier analysis if its pixels have arrived, and
+     * starts a new analysis of the current view when due. With {@code force} the view is analysed
+     * and the tables rebuilt right away, waiting for the GPU: for a still, which is only analysed
+     * when its view changes, so a result arriving later would never be drawn.
+     *
+     * @param external whether {@code texture} is the camera's external image or a 2D texture
+     * @return whether the view was rendered for analysis; framebuffer 0 is bound again and the
+     * caller restores its viewport
+     */
+    boolean update(boolean external, int texture, float[] texMatrix, float zoom, boolean force) {
+        if (!force && readback.poll(pixels)) buildLut();
+        if (!force && (!due() || readback.isPending())) {
+            framesSinceUpdate++;
+            return false;
+        }
+        framesSinceUpdate = 0;
+        int[] program = external ? externalProgram : stillProgram;
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, lumaTarget[0]);
+        GLES20.glViewport(0, 0, lumaWidth, lumaHeight);
+        GLES20.glUseProgram(program[0]);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(external ? GLES11Ext.GL_TEXTURE_EXTERNAL_OES : GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glUniformMatrix4fv(program[3], 1, false, texMatrix, 0);
+        GLES20.glUniform1f(program[4], zoom);
+        GLES20.glEnableVertexAttribArray(program[1]);
+        GLES20.glVertexAttribPointer(program[1], 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(program[2]);
+        GLES20.glVertexAttribPointer(program[2], 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(program[1]);
+        GLES20.glDisableVertexAttribArray(program[2]);
+
+        if (force) {
+            readback.readNow(pixels);
+            buildLut();
+        } else {
+            readback.start();
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        return true;
+    }
+
+    private void buildLut() {
+        clahe.compute(pixels, lumaWidth, lumaHeight, 4, lut);
+        uploadLut();
+        lutValid = true;
+    }
+
+    private void uploadLut() {
+        lutBuffer.position(0);
+        lutBuffer.put(lut).position(0);
+        int rows = clahe.tilesX * clahe.tilesY;
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        if (lutTexture == 0) {
+            int[] names = new int[1];
+            GLES20.glGenTextures(1, names, 0);
+            lutTexture = names[0];
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexture);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_LUMINANCE, ClaheLut.BINS, rows, 0,
+                    GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, lutBuffer);
+        } else {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, lutTexture);
+            GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, ClaheLut.BINS, rows,
+                    GLES20.GL_LUMINANCE, GLES20.GL_UNSIGNED_BYTE, lutBuffer);
+        }
+    }
+
+    /** Lookup texture, one row of {@link ClaheLut#BINS} entries per tile, bottom tile row first. */
+    int lutTexture() {
+        return lutTexture;
+    }
+
+    int tilesX() {
+        return clahe != null ? clahe.tilesX : 1;
+    }
+
+    int tilesY() {
+        return clahe != null ? clahe.tilesY : 1;
+    }
+
+    /**
+     * Forces a refresh on the next frame, e.g. after the source switched between live and still.
+     * An analysis still in flight was of the old source and is dropped.
+     */
+    void invalidate() {
+        lutValid = false;
+        if (readback != null) readback.cancel();
+    }
+
+    // program[]: name, aPosition, aTexCoord, uTexMatrix, uZoom
+    private static void buildProgram(int[] program, boolean external) {
+        int name = GlUtil.createProgram(CompositeShaders.vertexShader(), CompositeShaders.lumaFragmentShader(external));
+        program[0] = name;
+        program[1] = GLES20.glGetAttribLocation(name, "aPosition");
+        program[2] = GLES20.glGetAttribLocation(name, "aTexCoord");
+        program[3] = GLES20.glGetUniformLocation(name, "uTexMatrix");
+        program[4] = GLES20.glGetUniformLocation(name, "uZoom");
+    }
+}
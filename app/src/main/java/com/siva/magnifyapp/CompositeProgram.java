@@ -0,0 +1,52 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES20;
+
+/**
+ * A linked composite program and its attribute/uniform locations. Uniforms that a variant
+ * compiled out resolve to -1, which GLES silently ignores on upload. In GLSL ES 3.00 programs the
+ * render parameters live in the uniform block instead, so their handles are -1 as well.
+ */
+final class CompositeProgram {
+    final int key;
+    final boolean gles3;
+    final int program;
+    final int positionHandle, texCoordHandle;
+    final int texMatrixHandle, zoomHandle, filterModeHandle;
+    final int brightnessHandle, contrastHandle, sharpnessHandle, blurSamplerHandle;
+    final int lutSamplerHandle, lutTilesHandle;
+    final int meanSamplerHandle, varianceSamplerHandle, inkHandle, paperHandle;
+
+    private CompositeProgram(int key, boolean gles3, int program) {
+        this.key = key;
+        this.gles3 = gles3;
+        this.program = program;
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        filterModeHandle = GLES20.glGetUniformLocation(program, "uFilterMode");
+        brightnessHandle = GLES20.glGetUniformLocation(program, "uBrightness");
+        contrastHandle = GLES20.glGetUniformLocation(program, "uContrast");
+        sharpnessHandle = GLES20.glGetUniformLocation(program, "uSharpness");
+        blurSamplerHandle = GLES20.glGetUniformLocation(program, "sBlur");
+        lutSamplerHandle = GLES20.glGetUniformLocation(program, "sLut");
+        lutTilesHandle = GLES20.glGetUniformLocation(program, "uLutTiles");
+        meanSamplerHandle = GLES20.glGetUniformLocation(program, "sMean");
+        varianceSamplerHandle = GLES20.glGetUniformLocation(program, "sVariance");
+        inkHandle = GLES20.glGetUniformLocation(program, "uInk");
+        paperHandle = GLES20.glGetUniformLocation(program, "uPaper");
+    }
+
+    /**
+     * Compiles and links the variant for {@code key} in GLSL ES 3.00 if {@code gles3}, else 1.00;
+     * returns null if the driver rejects it.
+     */
+    static CompositeProgram build(int key, boolean gles3) {
+        int program = GlUtil.createProgram(CompositeShaders.vertexShader(gles3),
+                CompositeShaders.fragmentShader(key, gles3));
+        if (program == 0) return null;
+        if (gles3) RenderParamsBuffer.bind(program);
+        return new CompositeProgram(key, gles3, program);
+    }
+}
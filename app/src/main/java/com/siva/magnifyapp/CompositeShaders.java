@@ -0,0 +1,245 @@
+package com.siva.magnifyapp;
+
+/**
+ * Source generator for the final composite pass. Every pipeline configuration gets its own
+ * fragment shader with the filter and sharpen stages resolved by the preprocessor, so the hot
+ * path carries no per-pixel branching and no fetches for stages that are switched off.
+ *
+ * <p>{@link #KEY_DYNAMIC} selects the generic program that still branches on uniforms; it is
+ * linked synchronously and drawn while a specialized variant is being compiled.
+ * {@link #KEY_DYNAMIC_STILL} is its counterpart for a still, which is sampled as a regular
+ * 2D texture instead of an external camera image.
+ *
+ * <p>Each variant exists in GLSL ES 1.00 and 3.00. The 3.00 form reads its quad from fixed
+ * attribute locations, so one vertex array serves every program, and takes the render
+ * parameters from the {@link #PARAMS_BLOCK} uniform block laid out as in
+ * {@link RenderParamsBuffer}. The shader body is shared; the version headers map its texture,
+ * varying and output names onto each language.
+ */
+final class CompositeShaders {
+    static final int KEY_DYNAMIC = -1;
+    static final int KEY_DYNAMIC_STILL = -2;
+
+    /** Filter mode that blends per-tile equalization curves from {@link ClahePass}. */
+    static final int FILTER_LOCAL_CONTRAST = 3;
+    /** Reading modes: text binarized against {@link ReadingPass} statistics, in three polarities. */
+    static final int FILTER_READING_WHITE_ON_BLACK = 4;
+    static final int FILTER_READING_YELLOW_ON_BLACK = 5;
+    static final int FILTER_READING_BLACK_ON_WHITE = 6;
+
+    private static final int FILTER_MASK = 0xF;
+    private static final int SHARPEN_BIT = 1 << 4;
+    private static final int STILL_BIT = 1 << 5;
+    /** Exclusive upper bound of non-dynamic keys; sizes the program cache's lookup table. */
+    static final int KEY_COUNT = STILL_BIT << 1;
+
+    /** Uniform block holding the render parameters in GLSL ES 3.00 variants. */
+    static final String PARAMS_BLOCK = "RenderParams";
+    /** Attribute locations fixed by the GLSL ES 3.00 vertex shader. */
+    static final int POSITION_LOCATION = 0;
+    static final int TEX_COORD_LOCATION = 1;
+
+    private CompositeShaders() {
+    }
+
+    static int key(int filterMode, boolean sharpen, boolean still) {
+        return (filterMode & FILTER_MASK) | (sharpen ? SHARPEN_BIT : 0) | (still ? STILL_BIT : 0);
+    }
+
+    static boolean dynamic(int key) {
+        return key < 0;
+    }
+
+    static boolean still(int key) {
+        return key == KEY_DYNAMIC_STILL || (key >= 0 && (key & STILL_BIT) != 0);
+    }
+
+    static int filterMode(int key) {
+        return key & FILTER_MASK;
+    }
+
+    static boolean sharpen(int key) {
+        return (key & SHARPEN_BIT) != 0;
+    }
+
+    static String vertexShader() {
+        return vertexShader(false);
+    }
+
+    static String vertexShader(boolean gles3) {
+        return (gles3
+                ? "#version 300 es\n" +
+                        "layout(location = " + POSITION_LOCATION + ") in vec4 aPosition;\n" +
+                        "layout(location = " + TEX_COORD_LOCATION + ") in vec2 aTexCoord;\n" +
+                        "#define VARYING out\n"
+                : "#version 100\n" +
+                        "attribute vec4 aPosition;\n" +
+                        "attribute vec2 aTexCoord;\n" +
+                        "#define VARYING varying\n") +
+                "uniform mat4 uTexMatrix;\n" +
+                "uniform float uZoom;\n" +
+                "VARYING vec2 vTexCoord;\n" +
+                "VARYING vec2 vScreenCoord;\n" +
+                "void main() {\n" +
+                "    gl_Position = aPosition;\n" +
+                "    vScreenCoord = aTexCoord;\n" +
+                "    vec2 zoomedCoord = (aTexCoord - 0.5) / uZoom + 0.5;\n" +
+                "    vTexCoord = (uTexMatrix * vec4(zoomedCoord, 0.0, 1.0)).xy;\n" +
+                "}\n";
+    }
+
+    /**
+     * Fragment shader writing the Rec. 601 luma of the sampled view to the red channel, for the
+     * analysis passes that only need brightness.
+     */
+    static String lumaFragmentShader(boolean external) {
+        return "#version 100\n" +
+                (external
+                        ? "#extension GL_OES_EGL_image_external : require\nuniform samplerExternalOES sTexture;\n"
+                        : "uniform sampler2D sTexture;\n") +
+                "precision mediump float;\n" +
+                "varying vec2 vTexCoord;\n" +
+                "void main() {\n" +
+                "    vec3 color = texture2D(sTexture, vTexCoord).rgb;\n" +
+                "    gl_FragColor = vec4(dot(color, vec3(0.299, 0.587, 0.114)), 0.0, 0.0, 1.0);\n" +
+                "}\n";
+    }
+
+    static String fragmentShader(int key, boolean gles3) {
+        StringBuilder sb = new StringBuilder(3072);
+        if (gles3) {
+            sb.append("#version 300 es\n");
+            if (!still(key)) sb.append("#extension GL_OES_EGL_image_external_essl3 : require\n");
+            sb.append("#define GLES3 1\n" +
+                    "#define TEXTURE texture\n" +
+                    "#define VARYING in\n");
+        } else {
+            sb.append("#version 100\n");
+            if (!still(key)) sb.append("#extension GL_OES_EGL_image_external : require\n");
+            sb.append("#define TEXTURE texture2D\n" +
+                    "#define VARYING varying\n" +
+                    "#define FRAG_COLOR gl_FragColor\n");
+        }
+        if (still(key)) sb.append("#define STILL 1\n");
+        if (dynamic(key)) {
+            sb.append("#define DYNAMIC 1\n");
+        } else {
+            sb.append("#define FILTER_MODE ").append(filterMode(key)).append('\n');
+            if (sharpen(key)) sb.append("#define SHARPEN 1\n");
+        }
+        // Separate switch because GLSL ES rejects FILTER_MODE in #if where it is undefined.
+        if (dynamic(key) || filterMode(key) == FILTER_LOCAL_CONTRAST) {
+            sb.append("#define LOCAL_CONTRAST 1\n");
+        }
+        if (dynamic(key) || ReadingPass.isReadingMode(filterMode(key))) {
+            sb.append("#define READING 1\n");
+        }
+        sb.append("precision highp float;\n" +
+                "#ifdef STILL\n" +
+                "uniform sampler2D sTexture;\n" +
+                "#else\n" +
+                "uniform samplerExternalOES sTexture;\n" +
+                "#endif\n" +
+                "#ifdef GLES3\n" +
+                "out vec4 fragColor;\n" +
+                "#define FRAG_COLOR fragColor\n" +
+                "layout(std140) uniform " + PARAMS_BLOCK + " {\n" +
+                "    float uBrightness;\n" +
+                "    float uContrast;\n" +
+                "    float uSharpness;\n" +
+                "    int uFilterMode;\n" +
+                "    vec3 uInk;\n" +
+                "    vec3 uPaper;\n" +
+                "};\n" +
+                "#else\n" +
+                "uniform float uBrightness;\n" +
+                "uniform float uContrast;\n" +
+                "uniform float uSharpness;\n" +
+                "uniform int uFilterMode;\n" +
+                "uniform vec3 uInk;\n" +
+                "uniform vec3 uPaper;\n" +
+                "#endif\n" +
+                "VARYING vec2 vTexCoord;\n" +
+                "VARYING vec2 vScreenCoord;\n" +
+                "#if defined(DYNAMIC) || defined(SHARPEN)\n" +
+                "uniform sampler2D sBlur;\n" +
+                "vec3 sharpen(vec3 color) {\n" +
+                "    vec3 blurred = TEXTURE(sBlur, vScreenCoord).rgb;\n" +
+                "    return clamp(color + (color - blurred) * uSharpness, 0.0, 1.0);\n" +
+                "}\n" +
+                "#endif\n" +
+                "#ifdef LOCAL_CONTRAST\n" +
+                "uniform sampler2D sLut;\n" +
+                "uniform vec2 uLutTiles;\n" +
+                "float lutAt(vec2 tile, float u) {\n" +
+                "    float row = tile.y * uLutTiles.x + tile.x;\n" +
+                "    return TEXTURE(sLut, vec2(u, (row + 0.5) / (uLutTiles.x * uLutTiles.y))).r;\n" +
+                "}\n" +
+                "// Blends the equalization curves of the four tiles around the pixel.\n" +
+                "vec4 localContrast(vec4 color) {\n" +
+                "    float luma = dot(color.rgb, vec3(0.299, 0.587, 0.114));\n" +
+                "    float u = (luma * 255.0 + 0.5) / 256.0;\n" +
+                "    vec2 t = clamp(vScreenCoord * uLutTiles - 0.5, vec2(0.0), uLutTiles - 1.0);\n" +
+                "    vec2 t0 = floor(t);\n" +
+                "    vec2 t1 = min(t0 + 1.0, uLutTiles - 1.0);\n" +
+                "    vec2 f = t - t0;\n" +
+                "    float mapped = mix(mix(lutAt(t0, u), lutAt(vec2(t1.x, t0.y), u), f.x),\n" +
+                "                       mix(lutAt(vec2(t0.x, t1.y), u), lutAt(t1, u), f.x), f.y);\n" +
+                "    return vec4(clamp(color.rgb + (mapped - luma), 0.0, 1.0), 1.0);\n" +
+                "}\n" +
+                "#endif\n" +
+                "#ifdef READING\n" +
+                "uniform sampler2D sMean;\n" +
+                "uniform sampler2D sVariance;\n" +
+                "// Sauvola threshold against the local mean and deviation; a narrow ramp antialiases edges.\n" +
+                "vec4 reading(vec4 color) {\n" +
+                "    float luma = dot(color.rgb, vec3(0.299, 0.587, 0.114));\n" +
+                "    float mean = TEXTURE(sMean, vScreenCoord).r;\n" +
+                "    float deviation = sqrt(TEXTURE(sVariance, vScreenCoord).r / " + ReadingPass.VARIANCE_SCALE + ");\n" +
+                "    float threshold = mean * (1.0 + " + ReadingPass.K + " * (deviation / " + ReadingPass.R + " - 1.0));\n" +
+                "    float ink = 1.0 - smoothstep(threshold - 0.015, threshold + 0.015, luma);\n" +
+                "    return vec4(mix(uPaper, uInk, ink), 1.0);\n" +
+                "}\n" +
+                "#endif\n" +
+                "vec4 amber(vec4 color) {\n" +
+                "    return vec4(color.r, color.g * 0.7, 0.0, 1.0);\n" +
+                "}\n" +
+                "vec4 grayscale(vec4 color) {\n" +
+                "    float gray = color.r * 0.299 + color.g * 0.587 + color.b * 0.114;\n" +
+                "    return vec4(gray, gray, gray, 1.0);\n" +
+                "}\n" +
+                "void main() {\n" +
+                "    vec4 color = TEXTURE(sTexture, vTexCoord);\n" +
+                "#ifdef DYNAMIC\n" +
+                "    if (uSharpness > 0.0) color.rgb = sharpen(color.rgb);\n" +
+                "    if (uFilterMode == 1) {\n" +
+                "        color = amber(color);\n" +
+                "    } else if (uFilterMode == 2) {\n" +
+                "        color = grayscale(color);\n" +
+                "    } else if (uFilterMode == 3) {\n" +
+                "        color = localContrast(color);\n" +
+                "    } else if (uFilterMode >= 4) {\n" +
+                "        color = reading(color);\n" +
+                "    }\n" +
+                "#else\n" +
+                "#ifdef SHARPEN\n" +
+                "    color.rgb = sharpen(color.rgb);\n" +
+                "#endif\n" +
+                "#if FILTER_MODE == 1\n" +
+                "    color = amber(color);\n" +
+                "#elif FILTER_MODE == 2\n" +
+                "    color = grayscale(color);\n" +
+                "#elif FILTER_MODE == 3\n" +
+                "    color = localContrast(color);\n" +
+                "#elif defined(READING)\n" +
+                "    color = reading(color);\n" +
+                "#endif\n" +
+                "#endif\n" +
+                "    color.rgb = (color.rgb - 0.5) * uContrast + 0.5;\n" +
+                "    color.rgb += uBrightness;\n" +
+                "    color.rgb = clamp(color.rgb, 0.0, 1.0);\n" +
+                "    FRAG_COLOR = color;\n" +
+                "}\n");
+        return sb.toString();
+    }
+}
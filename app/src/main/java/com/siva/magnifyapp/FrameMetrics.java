@@ -0,0 +1,254 @@
+package com.siva.magnifyapp;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Per-frame timing of the camera → display path.
+ *
+ * <p>The render thread records the sensor timestamp of the latched camera buffer, the draw start
+ * and end and the present time of every frame into a preallocated ring. Recording never
+ * allocates; aggregation into a {@link Snapshot} happens on the reader's thread.
+ */
+final class FrameMetrics {
+    static final int CAPACITY = 256;
+
+    private final long[] sensorNs = new long[CAPACITY];
+    private final long[] drawStartNs = new long[CAPACITY];
+    private final long[] drawEndNs = new long[CAPACITY];
+    private final long[] presentNs = new long[CAPACITY];
+    /** Time spent in frame analysis passes (local contrast histograms); 0 on frames without. */
+    private final long[] analysisNs = new long[CAPACITY];
+    /** Time spent starting motion probes (see {@link MotionProbe}); 0 on frames without. */
+    private final long[] probeNs = new long[CAPACITY];
+    private int head;
+    private int size;
+
+    // Render thread scratch for the frame in flight
+    private long pendingSensorNs, pendingDrawStartNs, pendingDrawEndNs, pendingAnalysisNs, pendingProbeNs;
+    private long lastSensorNs;
+
+    // Counters, guarded by this; frames-available is bumped from the camera callback thread.
+    private long framesAvailable;
+    private long framesConsumed;
+    private long framesDrawn;
+    private long framesDropped;
+    private long framesDuplicated;
+    private long framesSkipped;
+
+    private volatile boolean realtimeTimestamps;
+
+    // Cold start, on CLOCK_BOOTTIME regardless of the camera clock
+    private volatile long launchNs;
+    private long firstFrameNs;
+    // Warm resume, same clock; cleared once the first new frame is presented
+    private volatile long resumeNs;
+    private long resumeImageNs;
+
+    // Reader scratch, reused between snapshots
+    private final long[] scratch = new long[CAPACITY];
+
+    /**
+     * Camera timestamps use either CLOCK_MONOTONIC or, when the sensor reports
+     * {@code SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME}, CLOCK_BOOTTIME. All other times are taken
+     * from the same base so latencies can be subtracted directly.
+     */
+    void setRealtimeTimestamps(boolean realtime) {
+        realtimeTimestamps = realtime;
+    }
+
+    /** Marks process start for time-to-first-frame; pass {@code SystemClock.elapsedRealtimeNanos()}. */
+    void markLaunch(long elapsedRealtimeNs) {
+        launchNs = elapsedRealtimeNs;
+    }
+
+    /** Marks an activity resume; the next new camera frame presented ends time-to-image. */
+    void markResume(long elapsedRealtimeNs) {
+        resumeNs = elapsedRealtimeNs;
+    }
+
+    long now() {
+        return realtimeTimestamps ? SystemClock.elapsedRealtimeNanos() : System.nanoTime();
+    }
+
+    /** Any thread; called once per {@code onFrameAvailable}. */
+    void onFrameAvailable() {
+        synchronized (this) {
+            framesAvailable++;
+        }
+    }
+
+    /** Render thread; a latched frame was judged identical to the one on screen and not drawn. */
+    void onFrameSkipped() {
+        synchronized (this) {
+            framesSkipped++;
+            framesConsumed = framesAvailable;
+        }
+    }
+
+    void onDrawStart() {
+        pendingDrawStartNs = now();
+    }
+
+    /** Render thread, after {@code updateTexImage} with the latched buffer's timestamp. */
+    void onFrameLatched(long sensorTimestampNs) {
+        pendingSensorNs = sensorTimestampNs;
+    }
+
+    /** Render thread; adds time spent analysing the frame in flight, readback included. */
+    void onAnalysis(long durationNs) {
+        pendingAnalysisNs += durationNs;
+    }
+
+    /** Render thread; adds time spent probing the frame in flight for motion. */
+    void onProbe(long durationNs) {
+        pendingProbeNs += durationNs;
+    }
+
+    void onDrawEnd() {
+        pendingDrawEndNs = now();
+    }
+
+    /** Render thread; commits the frame in flight. */
+    void onPresent() {
+        long present = now();
+        synchronized (this) {
+            if (firstFrameNs == 0 && pendingSensorNs != 0 && launchNs != 0) {
+                firstFrameNs = SystemClock.elapsedRealtimeNanos();
+            }
+            long resumed = resumeNs;
+            if (resumed != 0 && pendingSensorNs != 0 && pendingSensorNs != lastSensorNs) {
+                resumeImageNs = SystemClock.elapsedRealtimeNanos() - resumed;
+                resumeNs = 0;
+            }
+            framesDrawn++;
+            if (pendingSensorNs == lastSensorNs) {
+                framesDuplicated++;
+            } else {
+                // updateTexImage skips straight to the newest buffer; everything in between is lost.
+                long pending = framesAvailable - framesConsumed;
+                if (pending > 1) framesDropped += pending - 1;
+                framesConsumed = framesAvailable;
+                lastSensorNs = pendingSensorNs;
+            }
+            sensorNs[head] = pendingSensorNs;
+            drawStartNs[head] = pendingDrawStartNs;
+            drawEndNs[head] = pendingDrawEndNs;
+            presentNs[head] = present;
+            analysisNs[head] = pendingAnalysisNs;
+            probeNs[head] = pendingProbeNs;
+            head = (head + 1) % CAPACITY;
+            if (size < CAPACITY) size++;
+        }
+        pendingAnalysisNs = 0;
+        pendingProbeNs = 0;
+    }
+
+    /** Aggregates the current window into {@code out}. Not for the render thread. */
+    synchronized void snapshot(Snapshot out) {
+        out.frames = size;
+        out.framesDrawn = framesDrawn;
+        out.framesDropped = framesDropped;
+        out.framesDuplicated = framesDuplicated;
+        out.framesSkipped = framesSkipped;
+        out.timeToFirstFrameMs = firstFrameNs != 0 ? (firstFrameNs - launchNs) / 1e6f : 0f;
+        out.timeToResumeImageMs = resumeImageNs / 1e6f;
+        if (size == 0) {
+            out.latencyP50Ms = out.latencyP95Ms = out.latencyP99Ms = 0f;
+            out.drawMeanMs = out.jitterMs = out.fps = 0f;
+            out.analysisMeanMs = out.analysisMaxMs = 0f;
+            out.probeMeanMs = out.probeMaxMs = 0f;
+            return;
+        }
+        int first = (head - size + CAPACITY) % CAPACITY;
+
+        int n = 0;
+        long drawSum = 0;
+        int analysed = 0;
+        long analysisSum = 0, analysisMax = 0;
+        int probed = 0;
+        long probeSum = 0, probeMax = 0;
+        for (int i = 0; i < size; i++) {
+            int idx = (first + i) % CAPACITY;
+            drawSum += drawEndNs[idx] - drawStartNs[idx];
+            if (analysisNs[idx] > 0) {
+                analysed++;
+                analysisSum += analysisNs[idx];
+                analysisMax = Math.max(analysisMax, analysisNs[idx]);
+            }
+            if (probeNs[idx] > 0) {
+                probed++;
+                probeSum += probeNs[idx];
+                probeMax = Math.max(probeMax, probeNs[idx]);
+            }
+            if (sensorNs[idx] > 0) scratch[n++] = presentNs[idx] - sensorNs[idx];
+        }
+        Arrays.sort(scratch, 0, n);
+        out.latencyP50Ms = percentileMs(n, 0.50f);
+        out.latencyP95Ms = percentileMs(n, 0.95f);
+        out.latencyP99Ms = percentileMs(n, 0.99f);
+        out.drawMeanMs = drawSum / (float) size / 1e6f;
+        out.analysisMeanMs = analysed > 0 ? analysisSum / (float) analysed / 1e6f : 0f;
+        out.analysisMaxMs = analysisMax / 1e6f;
+        out.probeMeanMs = probed > 0 ? probeSum / (float) probed / 1e6f : 0f;
+        out.probeMaxMs = probeMax / 1e6f;
+
+        if (size > 1) {
+            double mean = (presentNs[(first + size - 1) % CAPACITY] - presentNs[first]) / (double) (size - 1);
+            double var = 0;
+            for (int i = 1; i < size; i++) {
+                long interval = presentNs[(first + i) % CAPACITY] - presentNs[(first + i - 1) % CAPACITY];
+                double d = interval - mean;
+                var += d * d;
+            }
+            out.jitterMs = (float) (Math.sqrt(var / (size - 1)) / 1e6);
+            out.fps = mean > 0 ? (float) (1e9 / mean) : 0f;
+        } else {
+            out.jitterMs = out.fps = 0f;
+        }
+    }
+
+    private float percentileMs(int n, float p) {
+        if (n == 0) return 0f;
+        int idx = Math.min(n - 1, (int) Math.ceil(p * n) - 1);
+        return scratch[Math.max(0, idx)] / 1e6f;
+    }
+
+    /** Aggregated view of the most recent {@link #CAPACITY} frames. */
+    static final class Snapshot {
+        int frames;
+        long framesDrawn, framesDropped, framesDuplicated;
+        /** Frames the motion governor left undrawn because the view had not changed. */
+        long framesSkipped;
+        float latencyP50Ms, latencyP95Ms, latencyP99Ms;
+        float drawMeanMs, jitterMs, fps;
+        /** Launch to first camera frame on screen; 0 until that frame is presented. */
+        float timeToFirstFrameMs;
+        /** Last resume to the first new camera frame on screen; 0 before any resume completes. */
+        float timeToResumeImageMs;
+        /** Mean and worst analysis time over the frames that ran an analysis pass. */
+        float analysisMeanMs, analysisMaxMs;
+        /** Mean and worst motion probe time over the frames that started one. */
+        float probeMeanMs, probeMaxMs;
+
+        String format() {
+            String text = String.format(Locale.US,
+                    "%.1f fps  latency p50 %.1f / p95 %.1f / p99 %.1f ms\n" +
+                            "draw %.2f ms  jitter %.2f ms  dropped %d  dup %d  skipped %d  ttff %.0f ms",
+                    fps, latencyP50Ms, latencyP95Ms, latencyP99Ms,
+                    drawMeanMs, jitterMs, framesDropped, framesDuplicated, framesSkipped, timeToFirstFrameMs);
+            if (timeToResumeImageMs > 0f) {
+                text += String.format(Locale.US, "  resume %.0f ms", timeToResumeImageMs);
+            }
+            if (analysisMaxMs > 0f) {
+                text += String.format(Locale.US, "\nanalysis %.2f ms  max %.2f ms", analysisMeanMs, analysisMaxMs);
+            }
+            if (probeMaxMs > 0f) {
+                text += String.format(Locale.US, "\nprobe %.2f ms  max %.2f ms", probeMeanMs, probeMaxMs);
+            }
+            return text;
+        }
+    }
+}
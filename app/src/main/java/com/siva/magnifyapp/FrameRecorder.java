@@ -0,0 +1,145 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.util.Log;
+
+import com.siva.magnifyapp.pipeline.FrameRecording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Records latched camera frames and gyro samples into a {@link FrameRecording}. Each frame is
+ * copied untransformed out of the camera's external texture into an RGBA target of the stream's
+ * size and read back; the buffer transform is stored alongside, so replay goes through the same
+ * matrices as the live frame did. Frames are not scaled down: replay's passes then sample as many
+ * texels as the live ones, and its stage timings hold for the live path.
+ *
+ * <p>The readback stalls the render thread for a frame's worth of GPU work, so frame timing
+ * while recording is not representative. That is what replay is for.
+ */
+final class FrameRecorder {
+    /** About four seconds of a 1920x1080 stream at 30 fps; a 1280x720 one fits nine. */
+    static final int CAPACITY_BYTES = 1 << 30;
+
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "uniform samplerExternalOES sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+    private final float[] identity = new float[16];
+
+    private int program;
+    private int positionHandle, texCoordHandle, texMatrixHandle, zoomHandle;
+    private final int[] target = new int[2];
+    private int width, height;
+    private ByteBuffer readback;
+    private volatile FrameRecording.Writer writer;
+
+    FrameRecorder(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+        Matrix.setIdentityM(identity, 0);
+    }
+
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(CompositeShaders.vertexShader(), FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        // Context was (re)created; the target died with it.
+        target[0] = target[1] = 0;
+        width = height = 0;
+    }
+
+    boolean isRecording() {
+        return writer != null;
+    }
+
+    /**
+     * GL thread. Starts a new recording of a {@code sourceWidth x sourceHeight} stream into
+     * {@code file}, replacing any earlier one.
+     *
+     * @param clockOffsetNs added to frame timestamps to bring them onto the gyro clock
+     */
+    void start(File file, int sourceWidth, int sourceHeight, long clockOffsetNs, int sensorOrientation,
+               float tanHalfFov) throws IOException {
+        stop();
+        int w = Math.max(1, sourceWidth);
+        int h = Math.max(1, sourceHeight);
+        if (w != width || h != height) {
+            GlUtil.deleteColorTarget(target[0], target[1]);
+            GlUtil.createColorTarget(w, h, target);
+            width = w;
+            height = h;
+            readback = ByteBuffer.allocateDirect(w * h * 4).order(ByteOrder.nativeOrder());
+        }
+        writer = new FrameRecording.Writer(file, w, h, clockOffsetNs, sensorOrientation, tanHalfFov, CAPACITY_BYTES);
+    }
+
+    /**
+     * GL thread. Appends the latched frame. Leaves framebuffer 0 bound; the caller restores its
+     * viewport.
+     *
+     * @param ispZoom zoom of the camera's crop the frame was captured with
+     * @return false once the recording is full, after which it has been stopped
+     */
+    boolean capture(int cameraTextureId, float[] texMatrix, long timestampNs, float ispZoom) {
+        FrameRecording.Writer w = writer;
+        if (w == null) return false;
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target[0]);
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, identity, 0);
+        GLES20.glUniform1f(zoomHandle, 1f);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+
+        readback.position(0);
+        GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, readback);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        readback.position(0);
+        if (w.addFrame(timestampNs, ispZoom, texMatrix, readback)) return true;
+        stop();
+        return false;
+    }
+
+    /** Sensor thread. Rates about the device axes in rad/s. */
+    void onGyro(long timestampNs, float x, float y, float z) {
+        FrameRecording.Writer w = writer;
+        if (w != null) w.addGyro(timestampNs, x, y, z);
+    }
+
+    /** Finishes the recording and returns how many frames it holds; 0 if none was running. */
+    int stop() {
+        FrameRecording.Writer w = writer;
+        if (w == null) return 0;
+        writer = null;
+        try {
+            w.close();
+        } catch (IOException e) {
+            Log.w("FrameRecorder", "Failed to finish recording", e);
+        }
+        return w.frameCount();
+    }
+}
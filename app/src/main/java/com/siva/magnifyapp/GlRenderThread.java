@@ -0,0 +1,416 @@
+package com.siva.magnifyapp;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * GL thread for a SurfaceView, in place of GLSurfaceView. Owning the EGL setup lets every swap be
+ * stamped with the vsync it is meant for (see {@link PresentClock}), and allows a front-buffer
+ * mode on devices with EGL_ANDROID_front_buffer_auto_refresh, where the display scans out the
+ * buffer as it is drawn and there is no queue at all.
+ *
+ * <p>A frame is drawn as soon as {@link #requestRender()} is called, not at the next vsync;
+ * Choreographer supplies the vsync phase, and drives the frames of running animations through
+ * {@link #requestAnimationFrame()}. Requests made while a draw is pending join it.
+ *
+ * <p>The lifecycle follows GLSurfaceView: a context is created once the thread is resumed and the
+ * surface exists, {@link Renderer#onSurfaceCreated()} runs for every new context and
+ * {@link #onPause()} destroys it, after {@link Renderer#onContextDestroyed()}. Events queued with {@link #queueEvent(Runnable)} run on this
+ * thread with the context current, before the next draw.
+ *
+ * <p>A frame can also be drawn into other windows with the same context, such as a video
+ * encoder's input surface; see {@link #createOutputSurface(Surface)}.
+ */
+final class GlRenderThread implements SurfaceHolder.Callback, Choreographer.FrameCallback {
+    private static final String TAG = "GlRenderThread";
+    private static final int EGL_FRONT_BUFFER_AUTO_REFRESH_ANDROID = 0x314C;
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    interface Renderer {
+        void onSurfaceCreated();
+
+        void onSurfaceChanged(int width, int height);
+
+        void onDrawFrame();
+
+        /** The frame drawn by the last {@link #onDrawFrame()} was handed to the display. */
+        void onFrameSwapped();
+
+        /**
+         * The context is about to be destroyed, on pause, release or context loss. Anything still
+         * sharing its objects, such as another context in its share group, must let go now.
+         */
+        void onContextDestroyed();
+    }
+
+    private final Renderer renderer;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicBoolean drawPending = new AtomicBoolean();
+    private final List<Runnable> events = new ArrayList<>(); // guarded by itself
+    private final Runnable drawFrame = this::drawFrame;
+    private final Runnable runEvents = () -> {
+        if (ensureSurface()) runEvents();
+    };
+
+    // Render thread state
+    private final PresentClock presentClock = new PresentClock();
+    private Choreographer choreographer;
+    private boolean vsyncCallbackPosted;
+    private boolean animationFrameRequested;
+    private boolean resumed;
+    private SurfaceHolder holder; // set between surfaceCreated and surfaceDestroyed
+    private int width, height;
+    private boolean sizeChanged;
+    private boolean lowLatency;
+    private boolean frontBuffer; // lowLatency took effect on the current surface
+    private boolean contextCreated;
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLConfig config;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface surface = EGL14.EGL_NO_SURFACE;
+    private final List<EGLSurface> outputs = new ArrayList<>();
+
+    GlRenderThread(SurfaceHolder holder, Renderer renderer) {
+        this.renderer = renderer;
+        thread = new HandlerThread("GLThread");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        // Choreographer instances are per Looper; this one calls back on the render thread.
+        handler.post(() -> choreographer = Choreographer.getInstance());
+        holder.addCallback(this);
+    }
+
+    /** Any thread. Draws a frame as soon as the render thread is free. */
+    void requestRender() {
+        if (drawPending.compareAndSet(false, true)) handler.post(drawFrame);
+    }
+
+    /** Render thread. Draws again at the next vsync, e.g. while an animation runs. */
+    void requestAnimationFrame() {
+        animationFrameRequested = true;
+        postVsyncCallback();
+    }
+
+    /** Any thread. Runs {@code event} on the render thread once a context is current. */
+    void queueEvent(Runnable event) {
+        synchronized (events) {
+            events.add(event);
+        }
+        handler.post(runEvents);
+    }
+
+    /** Display refresh rate, for predicting the vsync each frame is stamped with. */
+    void setRefreshRate(float hz) {
+        long periodNs = hz > 0f ? Math.round(1e9 / hz) : 0L;
+        handler.post(() -> presentClock.setPeriod(periodNs));
+    }
+
+    /**
+     * Draws straight into the buffer being scanned out where the device supports it. Saves the
+     * swap queue's frame or more of latency at the risk of tearing; elsewhere nothing changes.
+     */
+    void setLowLatency(boolean enabled) {
+        handler.post(() -> {
+            if (lowLatency == enabled) return;
+            lowLatency = enabled;
+            // The buffer mode is chosen per surface; rebuild it on the next draw.
+            destroySurface();
+        });
+        requestRender();
+    }
+
+    void onResume() {
+        handler.post(() -> resumed = true);
+        requestRender();
+    }
+
+    /** Blocks until the context is gone, like GLSurfaceView. */
+    void onPause() {
+        runAndWait(() -> {
+            resumed = false;
+            releaseEgl();
+        });
+    }
+
+    void release() {
+        runAndWait(this::releaseEgl);
+        thread.quitSafely();
+    }
+
+    /**
+     * Render thread. Wraps {@code window}, typically a {@code MediaCodec} input surface, so frames
+     * can be drawn into it with this context. Output surfaces are destroyed with the context; make
+     * them again from {@link Renderer#onSurfaceCreated()}.
+     *
+     * @return {@code EGL_NO_SURFACE} if the window cannot be drawn to
+     */
+    EGLSurface createOutputSurface(Surface window) {
+        int[] attribs = {EGL14.EGL_NONE};
+        EGLSurface output = EGL14.eglCreateWindowSurface(display, config, window, attribs, 0);
+        if (output == null || output == EGL14.EGL_NO_SURFACE) {
+            Log.w(TAG, "eglCreateWindowSurface for output failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+            return EGL14.EGL_NO_SURFACE;
+        }
+        outputs.add(output);
+        return output;
+    }
+
+    /** Render thread. */
+    void releaseOutputSurface(EGLSurface output) {
+        if (outputs.remove(output)) EGL14.eglDestroySurface(display, output);
+    }
+
+    /**
+     * Render thread, from {@link Renderer#onDrawFrame()}. Directs drawing to {@code output} until
+     * {@link #swapOutput}; the viewport is the caller's to set.
+     */
+    boolean makeOutputCurrent(EGLSurface output) {
+        if (EGL14.eglMakeCurrent(display, output, output, context)) return true;
+        Log.w(TAG, "eglMakeCurrent for output failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        EGL14.eglMakeCurrent(display, surface, surface, context);
+        return false;
+    }
+
+    /**
+     * Render thread. Queues what was drawn into {@code output}, stamped with {@code timestampNs},
+     * and makes the view's surface current again. A consumer that has not taken the previous
+     * buffers makes the next {@link #makeOutputCurrent} wait for one, so pace the output.
+     */
+    boolean swapOutput(EGLSurface output, long timestampNs) {
+        EGLExt.eglPresentationTimeANDROID(display, output, timestampNs);
+        boolean swapped = EGL14.eglSwapBuffers(display, output);
+        if (!swapped) Log.w(TAG, "eglSwapBuffers for output failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        EGL14.eglMakeCurrent(display, surface, surface, context);
+        return swapped;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        handler.post(() -> this.holder = holder);
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        handler.post(() -> {
+            this.width = width;
+            this.height = height;
+            sizeChanged = true;
+        });
+        requestRender();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // The window must not be drawn to once this returns.
+        runAndWait(() -> {
+            destroySurface();
+            this.holder = null;
+        });
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        vsyncCallbackPosted = false;
+        presentClock.onVsync(frameTimeNanos);
+        if (animationFrameRequested) {
+            animationFrameRequested = false;
+            drawFrame();
+        }
+    }
+
+    private void drawFrame() {
+        drawPending.set(false);
+        if (!ensureSurface()) return;
+        runEvents();
+        renderer.onDrawFrame();
+        if (!frontBuffer) {
+            long presentNs = presentClock.presentationTimeFor(System.nanoTime());
+            if (presentNs != 0L) EGLExt.eglPresentationTimeANDROID(display, surface, presentNs);
+        }
+        if (!EGL14.eglSwapBuffers(display, surface)) {
+            int error = EGL14.eglGetError();
+            Log.w(TAG, "eglSwapBuffers failed: 0x" + Integer.toHexString(error));
+            if (error == EGL14.EGL_CONTEXT_LOST) {
+                releaseEgl();
+            } else {
+                destroySurface();
+            }
+            return;
+        }
+        renderer.onFrameSwapped();
+        // Refreshes the vsync phase; only while drawing, so an idle view stays idle.
+        postVsyncCallback();
+    }
+
+    private void postVsyncCallback() {
+        if (!vsyncCallbackPosted && choreographer != null) {
+            vsyncCallbackPosted = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    private void runEvents() {
+        while (true) {
+            Runnable event;
+            synchronized (events) {
+                if (events.isEmpty()) return;
+                event = events.remove(0);
+            }
+            event.run();
+        }
+    }
+
+    /** Makes a context and window surface current, creating them as needed. */
+    private boolean ensureSurface() {
+        if (!resumed || holder == null || width == 0 || height == 0) return false;
+        if (context == EGL14.EGL_NO_CONTEXT && !createContext()) return false;
+        if (surface == EGL14.EGL_NO_SURFACE) {
+            int[] attribs = {EGL14.EGL_NONE};
+            surface = EGL14.eglCreateWindowSurface(display, config, holder.getSurface(), attribs, 0);
+            if (surface == null || surface == EGL14.EGL_NO_SURFACE) {
+                Log.w(TAG, "eglCreateWindowSurface failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+                surface = EGL14.EGL_NO_SURFACE;
+                return false;
+            }
+            if (!EGL14.eglMakeCurrent(display, surface, surface, context)) {
+                Log.w(TAG, "eglMakeCurrent failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+                destroySurface();
+                return false;
+            }
+            frontBuffer = lowLatency && enableFrontBuffer();
+            if (contextCreated) {
+                contextCreated = false;
+                renderer.onSurfaceCreated();
+            }
+            sizeChanged = true;
+        }
+        if (sizeChanged) {
+            sizeChanged = false;
+            renderer.onSurfaceChanged(width, height);
+        }
+        return true;
+    }
+
+    private boolean createContext() {
+        display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(display, version, 0, version, 1)) {
+            Log.e(TAG, "eglInitialize failed");
+            display = EGL14.EGL_NO_DISPLAY;
+            return false;
+        }
+        // GLES 3.0 where available, for the renderer's static buffers and uniform block; a
+        // recordable config where available, so video encoder surfaces accept what it draws.
+        if (!createContext(EGLExt.EGL_OPENGL_ES3_BIT_KHR, 3, true)
+                && !createContext(EGLExt.EGL_OPENGL_ES3_BIT_KHR, 3, false)
+                && !createContext(EGL14.EGL_OPENGL_ES2_BIT, 2, true)
+                && !createContext(EGL14.EGL_OPENGL_ES2_BIT, 2, false)) {
+            return false;
+        }
+        contextCreated = true;
+        return true;
+    }
+
+    private boolean createContext(int renderableType, int clientVersion, boolean recordable) {
+        int[] configAttribs = {
+                EGL14.EGL_RENDERABLE_TYPE, renderableType,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                recordable ? EGL_RECORDABLE_ANDROID : EGL14.EGL_NONE, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttribs, 0, configs, 0, 1, numConfigs, 0)
+                || numConfigs[0] == 0) {
+            Log.w(TAG, "No " + (recordable ? "recordable " : "") + "EGL config for GLES " + clientVersion);
+            return false;
+        }
+        int[] contextAttribs = {EGL14.EGL_CONTEXT_CLIENT_VERSION, clientVersion, EGL14.EGL_NONE};
+        EGLContext created = EGL14.eglCreateContext(display, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        if (created == null || created == EGL14.EGL_NO_CONTEXT) {
+            Log.w(TAG, "eglCreateContext for GLES " + clientVersion + " failed: 0x"
+                    + Integer.toHexString(EGL14.eglGetError()));
+            return false;
+        }
+        config = configs[0];
+        context = created;
+        return true;
+    }
+
+    /** Switches the current surface to shared single-buffer mode; false where unsupported. */
+    private boolean enableFrontBuffer() {
+        String extensions = EGL14.eglQueryString(display, EGL14.EGL_EXTENSIONS);
+        if (extensions == null || !extensions.contains("EGL_ANDROID_front_buffer_auto_refresh")) {
+            Log.i(TAG, "Front buffer rendering unsupported; staying double buffered");
+            return false;
+        }
+        if (!EGL14.eglSurfaceAttrib(display, surface, EGL14.EGL_RENDER_BUFFER, EGL14.EGL_SINGLE_BUFFER)) {
+            return false;
+        }
+        if (!EGL14.eglSurfaceAttrib(display, surface, EGL_FRONT_BUFFER_AUTO_REFRESH_ANDROID, EGL14.EGL_TRUE)) {
+            EGL14.eglSurfaceAttrib(display, surface, EGL14.EGL_RENDER_BUFFER, EGL14.EGL_BACK_BUFFER);
+            return false;
+        }
+        return true;
+    }
+
+    private void destroySurface() {
+        if (surface == EGL14.EGL_NO_SURFACE) return;
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        EGL14.eglDestroySurface(display, surface);
+        surface = EGL14.EGL_NO_SURFACE;
+        frontBuffer = false;
+    }
+
+    private void releaseEgl() {
+        destroySurface();
+        for (EGLSurface output : outputs) EGL14.eglDestroySurface(display, output);
+        outputs.clear();
+        if (context != EGL14.EGL_NO_CONTEXT) {
+            renderer.onContextDestroyed();
+            EGL14.eglDestroyContext(display, context);
+            context = EGL14.EGL_NO_CONTEXT;
+        }
+        contextCreated = false;
+        // The display stays initialized; the shader compiler shares it.
+    }
+
+    private void runAndWait(Runnable task) {
+        CountDownLatch done = new CountDownLatch(1);
+        if (!handler.post(() -> {
+            task.run();
+            done.countDown();
+        })) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
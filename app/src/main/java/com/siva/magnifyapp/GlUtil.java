@@ -0,0 +1,105 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES20;
+import android.util.Log;
+
+/**
+ * Small GLES helpers shared by the renderer and its passes.
+ */
+final class GlUtil {
+    private static final String TAG = "GlUtil";
+
+    private GlUtil() {
+    }
+
+    /**
+     * Whether the current context can run the GLSL ES 3.00 composite: a GLES 3 context that can
+     * also sample camera images from 3.00 shaders.
+     */
+    static boolean supportsGles3Composite() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        String extensions = GLES20.glGetString(GLES20.GL_EXTENSIONS);
+        return version != null && version.startsWith("OpenGL ES 3")
+                && extensions != null && extensions.contains("GL_OES_EGL_image_external_essl3");
+    }
+
+    /** Whether the current context is GLES 3.0 or later, e.g. for pixel pack buffers and fences. */
+    static boolean isGles3() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        return version != null && version.startsWith("OpenGL ES 3");
+    }
+
+    static int loadShader(int type, String code) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, code);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Shader compile error: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    /** Compiles and links a program, returning 0 on failure. The shader objects are released. */
+    static int createProgram(String vertexSource, String fragmentSource) {
+        int vs = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
+        int fs = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
+        if (vs == 0 || fs == 0) {
+            if (vs != 0) GLES20.glDeleteShader(vs);
+            if (fs != 0) GLES20.glDeleteShader(fs);
+            return 0;
+        }
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vs);
+        GLES20.glAttachShader(program, fs);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vs);
+        GLES20.glDeleteShader(fs);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Log.e(TAG, "Program link error: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * Allocates an RGBA8 color texture of the given size and a framebuffer rendering into it.
+     * {@code out[0]} receives the framebuffer name and {@code out[1]} the texture name.
+     */
+    static void createColorTarget(int width, int height, int[] out) {
+        int[] names = new int[1];
+        GLES20.glGenTextures(1, names, 0);
+        int texture = names[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        GLES20.glGenFramebuffers(1, names, 0);
+        int framebuffer = names[0];
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, texture, 0);
+        int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            Log.e(TAG, "Framebuffer incomplete: 0x" + Integer.toHexString(status));
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        out[0] = framebuffer;
+        out[1] = texture;
+    }
+
+    static void deleteColorTarget(int framebuffer, int texture) {
+        if (framebuffer != 0) GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+        if (texture != 0) GLES20.glDeleteTextures(1, new int[]{texture}, 0);
+    }
+}
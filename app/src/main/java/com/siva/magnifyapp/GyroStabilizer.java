@@ -0,0 +1,176 @@
+package com.siva.magnifyapp;
+
+/**
+ * Gyro-based electronic image stabilization.
+ *
+ * <p>Gyroscope rates are integrated into a camera orientation history. For each frame the
+ * orientation at its sensor timestamp is looked up, a {@link OneEuroFilter} extracts the intended
+ * head motion from it, and the difference, i.e. the shake, is converted into a texture-space
+ * offset that moves the sampled window against it. The offset is clamped to the margin left
+ * around the window by GPU zoom.
+ *
+ * <p>Pure Java so recorded sensor traces can be replayed in unit tests. Samples arrive on the
+ * sensor thread, offsets are computed on the render thread.
+ */
+final class GyroStabilizer {
+    static final int HISTORY = 1024;
+    /** Beyond this, the newest rate is not trusted to predict a frame's orientation. */
+    static final long MAX_EXTRAPOLATION_NS = 20_000_000L;
+    /** Gaps longer than this (sensor paused, app in background) are not integrated across. */
+    static final long MAX_SAMPLE_GAP_NS = 50_000_000L;
+    /** Frames further apart than this restart the smoothing instead of easing across the gap. */
+    static final long MAX_FRAME_GAP_NS = 200_000_000L;
+
+    static final float DEFAULT_MIN_CUTOFF_HZ = 0.6f;
+    /** In Hz per rad/s: a 0.5 rad/s head turn lifts the cutoff to 3 Hz. */
+    static final float DEFAULT_BETA = 5f;
+    static final float DEFAULT_DERIVATIVE_CUTOFF_HZ = 1.0f;
+
+    // Orientation history, written on the sensor thread; radians, yaw right and pitch up.
+    private final long[] sampleNs = new long[HISTORY];
+    private final float[] yaw = new float[HISTORY];
+    private final float[] pitch = new float[HISTORY];
+    private int head;
+    private int count;
+    private float lastYawRate, lastPitchRate;
+
+    private volatile int sensorOrientation;
+    private volatile long timeOffsetNs;
+
+    // Render thread
+    private final OneEuroFilter yawFilter =
+            new OneEuroFilter(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ);
+    private final OneEuroFilter pitchFilter =
+            new OneEuroFilter(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ);
+    private final float[] angle = new float[2];
+    private long lastFrameNs;
+
+    /**
+     * Clockwise rotation, in degrees, from the camera image to the device's natural orientation
+     * ({@code SENSOR_ORIENTATION}); used to map device gyro axes onto image axes.
+     */
+    void setSensorOrientation(int degrees) {
+        sensorOrientation = ((degrees % 360) + 360) % 360;
+    }
+
+    /** Added to frame timestamps to bring them onto the gyro clock. */
+    void setTimeOffsetNs(long offsetNs) {
+        timeOffsetNs = offsetNs;
+    }
+
+    /** Render thread. */
+    void setSmoothing(float minCutoffHz, float beta, float derivativeCutoffHz) {
+        yawFilter.setParameters(minCutoffHz, beta, derivativeCutoffHz);
+        pitchFilter.setParameters(minCutoffHz, beta, derivativeCutoffHz);
+    }
+
+    /**
+     * Sensor thread. {@code rateX/rateY} are {@code TYPE_GYROSCOPE} values about the device x and
+     * y axes in rad/s; rotation about z only rolls the image and is not compensated.
+     */
+    synchronized void addSample(long timestampNs, float rateX, float rateY) {
+        float upRate, rightRate;
+        switch (sensorOrientation) {
+            case 90:  rightRate = -rateY; upRate = rateX;  break;
+            case 180: rightRate = -rateX; upRate = -rateY; break;
+            case 270: rightRate = rateY;  upRate = -rateX; break;
+            default:  rightRate = rateX;  upRate = rateY;  break;
+        }
+        // Positive rotation about the image's up axis swings the view left, about its right axis
+        // up. Yaw is kept positive to the right so both angles follow texture coordinates.
+        float yawRate = -upRate;
+        float pitchRate = rightRate;
+
+        if (count > 0) {
+            int prev = (head - 1 + HISTORY) % HISTORY;
+            long dt = timestampNs - sampleNs[prev];
+            if (dt <= 0) return;
+            float seconds = dt > MAX_SAMPLE_GAP_NS ? 0f : dt / 1e9f;
+            yaw[head] = yaw[prev] + (lastYawRate + yawRate) * 0.5f * seconds;
+            pitch[head] = pitch[prev] + (lastPitchRate + pitchRate) * 0.5f * seconds;
+        } else {
+            yaw[head] = 0f;
+            pitch[head] = 0f;
+        }
+        sampleNs[head] = timestampNs;
+        lastYawRate = yawRate;
+        lastPitchRate = pitchRate;
+        head = (head + 1) % HISTORY;
+        if (count < HISTORY) count++;
+    }
+
+    /**
+     * Orientation (yaw, pitch) at {@code timestampNs} on the gyro clock, interpolated between
+     * samples. Returns false when the history does not cover that time.
+     */
+    synchronized boolean orientationAt(long timestampNs, float[] out) {
+        if (count == 0) return false;
+        int newest = (head - 1 + HISTORY) % HISTORY;
+        long newestNs = sampleNs[newest];
+        if (timestampNs >= newestNs) {
+            long ahead = timestampNs - newestNs;
+            if (ahead > MAX_EXTRAPOLATION_NS) return false;
+            float seconds = ahead / 1e9f;
+            out[0] = yaw[newest] + lastYawRate * seconds;
+            out[1] = pitch[newest] + lastPitchRate * seconds;
+            return true;
+        }
+        // Frames are recent, so walk back from the newest sample.
+        int later = newest;
+        for (int i = 1; i < count; i++) {
+            int earlier = (newest - i + HISTORY) % HISTORY;
+            if (sampleNs[earlier] <= timestampNs) {
+                float t = (timestampNs - sampleNs[earlier]) / (float) (sampleNs[later] - sampleNs[earlier]);
+                out[0] = yaw[earlier] + (yaw[later] - yaw[earlier]) * t;
+                out[1] = pitch[earlier] + (pitch[later] - pitch[earlier]) * t;
+                return true;
+            }
+            later = earlier;
+        }
+        return false;
+    }
+
+    /**
+     * Render thread. Writes the texture-space offset for the frame captured at
+     * {@code frameTimestampNs} to {@code out[0..1]}; zero when there is no gyro data for it.
+     *
+     * @param gpuZoom     magnification done on the GPU; determines the available margin
+     * @param tanHalfFovX tangent of half the horizontal field of view of the stream
+     * @param tanHalfFovY tangent of half the vertical field of view of the stream
+     * @return whether an offset was applied
+     */
+    boolean offsetFor(long frameTimestampNs, float gpuZoom, float tanHalfFovX, float tanHalfFovY, float[] out) {
+        out[0] = 0f;
+        out[1] = 0f;
+        long t = frameTimestampNs + timeOffsetNs;
+        if (!orientationAt(t, angle)) return false;
+        if (lastFrameNs == 0 || t - lastFrameNs > MAX_FRAME_GAP_NS) {
+            yawFilter.reset();
+            pitchFilter.reset();
+        }
+        lastFrameNs = t;
+        float shakeYaw = angle[0] - yawFilter.filter(angle[0], t);
+        float shakePitch = angle[1] - pitchFilter.filter(angle[1], t);
+
+        float margin = margin(gpuZoom);
+        if (margin <= 0f) return false;
+        // Turning the camera right moves the scene left in the image; follow the scene.
+        out[0] = clamp((float) -Math.tan(shakeYaw) / (2f * tanHalfFovX), margin);
+        out[1] = clamp((float) -Math.tan(shakePitch) / (2f * tanHalfFovY), margin);
+        return true;
+    }
+
+    /** Render thread; restarts smoothing, e.g. after the camera restarts. */
+    void reset() {
+        lastFrameNs = 0;
+    }
+
+    /** Fraction of the stream, per side, outside the window shown at {@code gpuZoom}. */
+    static float margin(float gpuZoom) {
+        return gpuZoom > 1f ? (1f - 1f / gpuZoom) * 0.5f : 0f;
+    }
+
+    private static float clamp(float v, float limit) {
+        return Math.max(-limit, Math.min(limit, v));
+    }
+}
@@ -0,0 +1,168 @@
+package com.siva.magnifyapp;
+
+/**
+ * Turns a {@link HudState} into one batch of textured quads for {@link HudRenderer}: panel
+ * backgrounds, the progress bar and every glyph, all sampled from the same atlas so the whole
+ * HUD is a single draw call. Rectangles sample a solid cell of the atlas.
+ *
+ * <p>The atlas is a grid of {@link #COLUMNS} by {@link #ROWS} equal cells holding printable
+ * ASCII from {@link #FIRST_CHAR}, with the solid cell in place of DEL. Other characters are
+ * drawn as '?'. Geometry mirrors the View layout: a 200dp menu in the top right corner, 300dp
+ * popups in the center and toasts near the bottom.
+ */
+final class HudLayout {
+    static final int FIRST_CHAR = 32;
+    static final int COLUMNS = 16;
+    static final int ROWS = 6;
+    static final char SOLID = 127;
+    /** Per vertex: x, y in clip space, u, v, then r, g, b, a. */
+    static final int FLOATS_PER_VERTEX = 8;
+    static final int FLOATS_PER_QUAD = 4 * FLOATS_PER_VERTEX;
+    static final int MAX_QUADS = 256;
+
+    private static final int TEXT_COLOR = 0xFFFFFFFF;
+    private static final int TRACK_COLOR = 0x44FFFFFF;
+    private static final int TOAST_COLOR = 0xCC000000;
+
+    private final float[] advances;
+    private final float cellWidth, cellHeight;
+    private final float atlasPxPerDp;
+
+    // Per build
+    private float[] out;
+    private int quads;
+    private int width, height;
+    private float glyphScale;
+
+    /**
+     * @param advances     horizontal advance of each character from {@link #FIRST_CHAR}, in atlas
+     *                     pixels
+     * @param cellWidth    atlas cell size in pixels
+     * @param atlasPxPerDp the scale the atlas was rendered at
+     */
+    HudLayout(float[] advances, float cellWidth, float cellHeight, float atlasPxPerDp) {
+        this.advances = advances;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.atlasPxPerDp = atlasPxPerDp;
+    }
+
+    /**
+     * Writes the quads for {@code state} on a {@code width} x {@code height} target into
+     * {@code out}, which holds {@link #MAX_QUADS} quads, and returns how many were written.
+     * Anything past the limit is dropped.
+     */
+    int build(HudState state, int width, int height, float[] out) {
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        quads = 0;
+        float dp = state.pxPerDp;
+        glyphScale = dp / atlasPxPerDp;
+        float lineHeight = cellHeight * glyphScale;
+
+        if (state.title != null) {
+            float panelWidth = (state.popup ? 300f : 200f) * dp;
+            float padding = (state.popup ? 24f : 16f) * dp;
+            float gap = 12f * dp;
+            float barHeight = 8f * dp;
+            int lines = 1 + (state.item != null ? 1 : 0) + (state.progressText != null ? 1 : 0)
+                    + (state.hint != null ? 1 : 0);
+            boolean bar = state.progress >= 0;
+            float panelHeight = 2f * padding + lines * lineHeight + (lines - 1) * gap
+                    + (bar ? barHeight + gap : 0f);
+            float left = state.popup ? (width - panelWidth) / 2f : width - panelWidth - 16f * dp;
+            float top = state.popup ? (height - panelHeight) / 2f : 16f * dp;
+            rect(left, top, left + panelWidth, top + panelHeight, state.panelColor);
+
+            float x = left + padding;
+            float right = left + panelWidth - padding;
+            float y = top + padding;
+            text(state.title, x, y, right, state.popup);
+            y += lineHeight + gap;
+            if (state.item != null) {
+                text(state.item, x, y, right, false);
+                y += lineHeight + gap;
+            }
+            if (state.progressText != null) {
+                text(state.progressText, x, y, right, true);
+                y += lineHeight + gap;
+            }
+            if (bar) {
+                float fill = x + (right - x) * Math.min(state.progress, 100) / 100f;
+                rect(x, y, right, y + barHeight, TRACK_COLOR);
+                rect(x, y, fill, y + barHeight, state.accentColor);
+                y += barHeight + gap;
+            }
+            if (state.hint != null) text(state.hint, x, y, right, true);
+        }
+
+        if (state.toast != null) {
+            float padding = 12f * dp;
+            float textWidth = Math.min(measure(state.toast), width - 4f * padding);
+            float left = (width - textWidth) / 2f - padding;
+            float bottom = height - 48f * dp;
+            float top = bottom - lineHeight - 2f * padding;
+            rect(left, top, left + textWidth + 2f * padding, bottom, TOAST_COLOR);
+            text(state.toast, left + padding, top + padding, left + padding + textWidth, false);
+        }
+        this.out = null;
+        return quads;
+    }
+
+    /** Width of {@code text} in target pixels at the current glyph scale. */
+    private float measure(String text) {
+        float w = 0f;
+        for (int i = 0; i < text.length(); i++) w += advances[cell(text.charAt(i))] * glyphScale;
+        return w;
+    }
+
+    /** Lays out one line from {@code x}, clipped at {@code right}; centered if {@code center}. */
+    private void text(String text, float x, float y, float right, boolean center) {
+        if (center) x = Math.max(x, (x + right - measure(text)) / 2f);
+        float w = cellWidth * glyphScale, h = cellHeight * glyphScale;
+        for (int i = 0; i < text.length(); i++) {
+            int cell = cell(text.charAt(i));
+            float advance = advances[cell] * glyphScale;
+            if (x + advance > right) return;
+            if (text.charAt(i) != ' ') {
+                float u0 = (cell % COLUMNS) / (float) COLUMNS, v0 = (cell / COLUMNS) / (float) ROWS;
+                quad(x, y, x + w, y + h, u0, v0, u0 + 1f / COLUMNS, v0 + 1f / ROWS, TEXT_COLOR);
+            }
+            x += advance;
+        }
+    }
+
+    private void rect(float x0, float y0, float x1, float y1, int color) {
+        if (x1 <= x0 || y1 <= y0) return;
+        int cell = SOLID - FIRST_CHAR;
+        // The cell's center, away from filtering into its neighbours.
+        float u = (cell % COLUMNS + 0.5f) / COLUMNS, v = (cell / COLUMNS + 0.5f) / ROWS;
+        quad(x0, y0, x1, y1, u, v, u, v, color);
+    }
+
+    private void quad(float x0, float y0, float x1, float y1, float u0, float v0, float u1, float v1, int color) {
+        if (quads == MAX_QUADS) return;
+        int i = quads++ * FLOATS_PER_QUAD;
+        i = vertex(i, x0, y0, u0, v0, color);
+        i = vertex(i, x1, y0, u1, v0, color);
+        i = vertex(i, x0, y1, u0, v1, color);
+        vertex(i, x1, y1, u1, v1, color);
+    }
+
+    private int vertex(int i, float x, float y, float u, float v, int color) {
+        out[i++] = x / width * 2f - 1f;
+        out[i++] = 1f - y / height * 2f;
+        out[i++] = u;
+        out[i++] = v;
+        out[i++] = ((color >> 16) & 0xFF) / 255f;
+        out[i++] = ((color >> 8) & 0xFF) / 255f;
+        out[i++] = (color & 0xFF) / 255f;
+        out[i++] = (color >>> 24) / 255f;
+        return i;
+    }
+
+    private static int cell(char c) {
+        return (c >= FIRST_CHAR && c < SOLID ? c : '?') - FIRST_CHAR;
+    }
+}
@@ -0,0 +1,183 @@
+package com.siva.magnifyapp;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Draws the menus, progress popups and toasts with GL on top of the composited frame, so they
+ * reach the display in the camera's own buffer instead of a View layer composed over it.
+ *
+ * <p>Glyphs are rasterized once per context into an alpha atlas (see {@link HudLayout} for its
+ * grid). The quads are rebuilt into a vertex buffer only when the {@link HudState} or the
+ * target size changes, and drawn with one indexed call over a static index buffer.
+ */
+final class HudRenderer {
+    /** Atlas text size; the layout scales glyphs from here to the target's density. */
+    private static final float TEXT_DP = 18f;
+
+    private static final String VERTEX_SHADER =
+            "#version 100\n" +
+                    "attribute vec4 aPosition;\n" +
+                    "attribute vec2 aTexCoord;\n" +
+                    "attribute vec4 aColor;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "varying vec4 vColor;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = aPosition;\n" +
+                    "    vTexCoord = aTexCoord;\n" +
+                    "    vColor = aColor;\n" +
+                    "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sAtlas;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "varying vec4 vColor;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = vec4(vColor.rgb, vColor.a * texture2D(sAtlas, vTexCoord).a);\n" +
+                    "}\n";
+
+    private final float density;
+    private final float[] vertices = new float[HudLayout.MAX_QUADS * HudLayout.FLOATS_PER_QUAD];
+    private final FloatBuffer vertexData = ByteBuffer.allocateDirect(vertices.length * 4)
+            .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    private HudLayout layout;
+    private int program;
+    private int positionHandle, texCoordHandle, colorHandle, atlasSamplerHandle;
+    private int atlasTexture, vertexBuffer, indexBuffer;
+    private HudState builtState;
+    private int builtWidth, builtHeight;
+    private int quadCount;
+
+    /** @param density display pixels per dp */
+    HudRenderer(float density) {
+        this.density = density;
+    }
+
+    /** GL thread, with the (new) context current. */
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        colorHandle = GLES20.glGetAttribLocation(program, "aColor");
+        atlasSamplerHandle = GLES20.glGetUniformLocation(program, "sAtlas");
+        createAtlas();
+
+        int[] names = new int[2];
+        GLES20.glGenBuffers(2, names, 0);
+        vertexBuffer = names[0];
+        indexBuffer = names[1];
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, vertices.length * 4, null, GLES20.GL_DYNAMIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+
+        ShortBuffer indices = ByteBuffer.allocateDirect(HudLayout.MAX_QUADS * 6 * 2)
+                .order(ByteOrder.nativeOrder()).asShortBuffer();
+        for (int q = 0; q < HudLayout.MAX_QUADS; q++) {
+            short v = (short) (q * 4);
+            indices.put(v).put((short) (v + 1)).put((short) (v + 2))
+                    .put((short) (v + 2)).put((short) (v + 1)).put((short) (v + 3));
+        }
+        indices.position(0);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indices.capacity() * 2, indices, GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        builtState = null;
+    }
+
+    /** Draws {@code state} over whatever is in the current {@code width} x {@code height} target. */
+    void draw(HudState state, int width, int height) {
+        if (program == 0 || state.isEmpty()) return;
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vertexBuffer);
+        if (!state.equals(builtState) || width != builtWidth || height != builtHeight) {
+            quadCount = layout.build(state, width, height, vertices);
+            vertexData.clear();
+            vertexData.put(vertices, 0, quadCount * HudLayout.FLOATS_PER_QUAD).position(0);
+            GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, quadCount * HudLayout.FLOATS_PER_QUAD * 4, vertexData);
+            builtState = state;
+            builtWidth = width;
+            builtHeight = height;
+        }
+        if (quadCount == 0) {
+            GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+            return;
+        }
+        GLES20.glUseProgram(program);
+        GLES20.glEnable(GLES20.GL_BLEND);
+        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, atlasTexture);
+        GLES20.glUniform1i(atlasSamplerHandle, 0);
+        int stride = HudLayout.FLOATS_PER_VERTEX * 4;
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, stride, 0);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, stride, 8);
+        GLES20.glEnableVertexAttribArray(colorHandle);
+        GLES20.glVertexAttribPointer(colorHandle, 4, GLES20.GL_FLOAT, false, stride, 16);
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, quadCount * 6, GLES20.GL_UNSIGNED_SHORT, 0);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        GLES20.glDisableVertexAttribArray(colorHandle);
+        // The other passes use client-side arrays, which need these unbound.
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glDisable(GLES20.GL_BLEND);
+    }
+
+    /** Rasterizes printable ASCII and the solid cell into the atlas texture. */
+    private void createAtlas() {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(TEXT_DP * density);
+        paint.setTypeface(Typeface.DEFAULT_BOLD);
+        paint.setColor(0xFFFFFFFF);
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        int cells = HudLayout.COLUMNS * HudLayout.ROWS;
+        float[] advances = new float[cells];
+        float widest = 0f;
+        char[] glyph = new char[1];
+        for (int i = 0; i < cells; i++) {
+            glyph[0] = (char) (HudLayout.FIRST_CHAR + i);
+            advances[i] = paint.measureText(glyph, 0, 1);
+            widest = Math.max(widest, advances[i]);
+        }
+        // A pixel of padding keeps bilinear filtering inside each cell.
+        int cellWidth = (int) Math.ceil(widest) + 2;
+        int cellHeight = (int) Math.ceil(metrics.descent - metrics.ascent) + 2;
+        Bitmap atlas = Bitmap.createBitmap(cellWidth * HudLayout.COLUMNS, cellHeight * HudLayout.ROWS,
+                Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(atlas);
+        for (int i = 0; i < cells; i++) {
+            float x = (i % HudLayout.COLUMNS) * cellWidth;
+            float y = (i / HudLayout.COLUMNS) * cellHeight;
+            if (i == HudLayout.SOLID - HudLayout.FIRST_CHAR) {
+                canvas.drawRect(x, y, x + cellWidth, y + cellHeight, paint);
+            } else {
+                glyph[0] = (char) (HudLayout.FIRST_CHAR + i);
+                canvas.drawText(glyph, 0, 1, x + 1f, y + 1f - metrics.ascent, paint);
+            }
+        }
+        int[] names = new int[1];
+        GLES20.glGenTextures(1, names, 0);
+        atlasTexture = names[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, atlasTexture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, atlas, 0);
+        atlas.recycle();
+        layout = new HudLayout(advances, cellWidth, cellHeight, density);
+    }
+}
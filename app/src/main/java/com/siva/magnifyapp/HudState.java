@@ -0,0 +1,65 @@
+package com.siva.magnifyapp;
+
+import java.util.Objects;
+
+/**
+ * What the GL HUD shows, published by the main thread as one immutable value and laid out by
+ * {@link HudLayout} on the render thread. Null text fields are not drawn.
+ */
+final class HudState {
+    static final HudState NONE = new HudState(null, false, null, null, -1, null, null, 0, 0, 1f);
+
+    /** Panel heading, or null when no panel is open. */
+    final String title;
+    /** Centered popup rather than the corner menu. */
+    final boolean popup;
+    /** The entry currently selected in a menu. */
+    final String item;
+    final String progressText;
+    /** 0..100, or -1 without a progress bar. */
+    final int progress;
+    final String hint;
+    final String toast;
+    /** ARGB of the panel background, tinted for the active filter. */
+    final int panelColor;
+    /** ARGB of the progress bar fill. */
+    final int accentColor;
+    /** Render target pixels per dp, which shrinks with the thermal render scale. */
+    final float pxPerDp;
+
+    HudState(String title, boolean popup, String item, String progressText, int progress, String hint,
+             String toast, int panelColor, int accentColor, float pxPerDp) {
+        this.title = title;
+        this.popup = popup;
+        this.item = item;
+        this.progressText = progressText;
+        this.progress = progress;
+        this.hint = hint;
+        this.toast = toast;
+        this.panelColor = panelColor;
+        this.accentColor = accentColor;
+        this.pxPerDp = pxPerDp;
+    }
+
+    boolean isEmpty() {
+        return title == null && toast == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HudState)) return false;
+        HudState s = (HudState) o;
+        return popup == s.popup && progress == s.progress && panelColor == s.panelColor
+                && accentColor == s.accentColor && pxPerDp == s.pxPerDp
+                && Objects.equals(title, s.title) && Objects.equals(item, s.item)
+                && Objects.equals(progressText, s.progressText) && Objects.equals(hint, s.hint)
+                && Objects.equals(toast, s.toast);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(title, popup, item, progressText, progress, hint, toast, panelColor, accentColor,
+                pxPerDp);
+    }
+}
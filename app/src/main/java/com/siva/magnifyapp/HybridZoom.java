@@ -0,0 +1,137 @@
+package com.siva.magnifyapp;
+
+import android.graphics.Rect;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.os.Build;
+import android.util.Range;
+
+/**
+ * Splits the requested magnification between the camera ISP and the GPU.
+ *
+ * <p>As much of the zoom as the camera supports is cropped on the sensor side, either with
+ * {@code CONTROL_ZOOM_RATIO} (API 30+) or {@code SCALER_CROP_REGION}, so the preview stream
+ * carries full resolution for the visible region. The GPU only magnifies the remainder.
+ *
+ * <p>The ISP applies a new crop a few frames after it is requested. To avoid a visible jump the
+ * ISP zoom of every capture is recorded by sensor timestamp, and the renderer divides the total
+ * zoom by the ISP zoom of the exact frame it is drawing.
+ */
+final class HybridZoom {
+    private static final int HISTORY = 32;
+
+    private final boolean useZoomRatio;
+    private final float maxIspZoom;
+    private final Rect activeArray;
+    private volatile float gpuHeadroom = 1f;
+
+    // Ring of (sensor timestamp → ISP zoom in effect), written on the camera thread.
+    private final long[] timestamps = new long[HISTORY];
+    private final float[] ispZooms = new float[HISTORY];
+    private int head;
+
+    HybridZoom(boolean useZoomRatio, float maxIspZoom, Rect activeArray) {
+        this.useZoomRatio = useZoomRatio;
+        this.maxIspZoom = Math.max(1f, maxIspZoom);
+        this.activeArray = activeArray;
+        for (int i = 0; i < HISTORY; i++) ispZooms[i] = 1f;
+    }
+
+    static HybridZoom from(CameraCharacteristics characteristics) {
+        Rect activeArray = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            Range<Float> range = characteristics.get(CameraCharacteristics.CONTROL_ZOOM_RATIO_RANGE);
+            if (range != null) return new HybridZoom(true, range.getUpper(), activeArray);
+        }
+        Float digital = characteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+        float max = digital != null && activeArray != null ? digital : 1f;
+        return new HybridZoom(false, max, activeArray);
+    }
+
+    boolean usesZoomRatio() {
+        return useZoomRatio;
+    }
+
+    float maxIspZoom() {
+        return maxIspZoom;
+    }
+
+    /**
+     * Minimum share of the zoom left to the GPU. Above 1 the stream keeps a border around the
+     * visible window, which stabilization shifts the window into.
+     */
+    void setGpuHeadroom(float headroom) {
+        gpuHeadroom = Math.max(1f, headroom);
+    }
+
+    /** Portion of {@code totalZoom} the ISP can take over. */
+    float ispZoomFor(float totalZoom) {
+        return Math.max(1f, Math.min(totalZoom / gpuHeadroom, maxIspZoom));
+    }
+
+    void applyTo(CaptureRequest.Builder builder, float ispZoom) {
+        if (useZoomRatio) {
+            builder.set(CaptureRequest.CONTROL_ZOOM_RATIO, ispZoom);
+        } else if (activeArray != null) {
+            int w = Math.round(activeArray.width() / ispZoom);
+            int h = Math.round(activeArray.height() / ispZoom);
+            int left = activeArray.left + (activeArray.width() - w) / 2;
+            int top = activeArray.top + (activeArray.height() - h) / 2;
+            builder.set(CaptureRequest.SCALER_CROP_REGION, new Rect(left, top, left + w, top + h));
+        }
+    }
+
+    /**
+     * Camera thread, from {@code onCaptureStarted}. The request's own settings are what the
+     * frame will be captured with, and they are known before the buffer reaches the GPU.
+     */
+    void onCaptureStarted(CaptureRequest request, long timestampNs) {
+        record(timestampNs, zoomOf(request.get(CaptureRequest.CONTROL_ZOOM_RATIO),
+                request.get(CaptureRequest.SCALER_CROP_REGION)));
+    }
+
+    /** Camera thread; replaces the requested value with what the HAL actually applied. */
+    void onCaptureCompleted(CaptureResult result) {
+        Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+        if (timestamp == null) return;
+        record(timestamp, zoomOf(result.get(CaptureResult.CONTROL_ZOOM_RATIO),
+                result.get(CaptureResult.SCALER_CROP_REGION)));
+    }
+
+    /**
+     * ISP zoom in effect for the frame with the given sensor timestamp. Falls back to the newest
+     * capture that started no later than the frame.
+     */
+    synchronized float ispZoomForFrame(long timestampNs) {
+        float best = 1f;
+        long bestTs = Long.MIN_VALUE;
+        for (int i = 0; i < HISTORY; i++) {
+            long ts = timestamps[i];
+            if (ts == timestampNs) return ispZooms[i];
+            if (ts <= timestampNs && ts > bestTs) {
+                bestTs = ts;
+                best = ispZooms[i];
+            }
+        }
+        return best;
+    }
+
+    private float zoomOf(Float ratio, Rect crop) {
+        if (useZoomRatio) return ratio != null ? ratio : 1f;
+        if (crop == null || activeArray == null || crop.width() == 0) return 1f;
+        return activeArray.width() / (float) crop.width();
+    }
+
+    private synchronized void record(long timestampNs, float ispZoom) {
+        for (int i = 0; i < HISTORY; i++) {
+            if (timestamps[i] == timestampNs) {
+                ispZooms[i] = ispZoom;
+                return;
+            }
+        }
+        timestamps[head] = timestampNs;
+        ispZooms[head] = ispZoom;
+        head = (head + 1) % HISTORY;
+    }
+}
@@ -0,0 +1,78 @@
+package com.siva.magnifyapp;
+
+import java.util.Arrays;
+
+/**
+ * Collects step input from keys and voice between frames and hands it on once per vsync, so a
+ * held key costs one menu or render update per frame however fast it repeats. Steps are summed
+ * per channel; a key held down steps further per repeat the longer it is held.
+ *
+ * <p>{@link #add(int, int)} may be called from any thread; the sink runs on the thread that
+ * calls {@link #onFrame()}.
+ */
+final class InputCoalescer {
+    /** Up/down through a menu or an adjustment; positive is up. */
+    static final int SCROLL = 0;
+    /** Panning over a still; positive is right and up. */
+    static final int PAN_X = 1;
+    static final int PAN_Y = 2;
+    /** Zoom steps; positive zooms in. */
+    static final int ZOOM = 3;
+    private static final int CHANNELS = 4;
+
+    /** Key repeats before a held key takes double steps, and before it takes quadruple ones. */
+    static final int ACCELERATE_AFTER = 5;
+    static final int ACCELERATE_MORE_AFTER = 15;
+
+    interface Sink {
+        /**
+         * The steps gathered since the previous frame, indexed by channel. The array is reused;
+         * read it before returning.
+         */
+        void onInput(int[] steps);
+    }
+
+    /** Arranges one call to {@link #onFrame()} at the next vsync. */
+    interface FrameScheduler {
+        void requestFrame();
+    }
+
+    private final Sink sink;
+    private final FrameScheduler scheduler;
+    private final int[] pending = new int[CHANNELS]; // guarded by this
+    private final int[] delivering = new int[CHANNELS];
+    private boolean framePending; // guarded by this
+
+    InputCoalescer(Sink sink, FrameScheduler scheduler) {
+        this.sink = sink;
+        this.scheduler = scheduler;
+    }
+
+    /** Step size for a key event with {@code KeyEvent.getRepeatCount()} {@code repeatCount}. */
+    static int stepsForRepeat(int repeatCount) {
+        if (repeatCount < ACCELERATE_AFTER) return 1;
+        if (repeatCount < ACCELERATE_MORE_AFTER) return 2;
+        return 4;
+    }
+
+    void add(int channel, int steps) {
+        boolean request;
+        synchronized (this) {
+            pending[channel] += steps;
+            request = !framePending;
+            framePending = true;
+        }
+        if (request) scheduler.requestFrame();
+    }
+
+    /** Delivers everything added since the last frame in one call to the sink. */
+    void onFrame() {
+        synchronized (this) {
+            if (!framePending) return;
+            framePending = false;
+            System.arraycopy(pending, 0, delivering, 0, CHANNELS);
+            Arrays.fill(pending, 0);
+        }
+        sink.onInput(delivering);
+    }
+}
@@ -2,21 +2,38 @@ package com.siva.magnifyapp;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
 import android.graphics.SurfaceTexture;
 import android.graphics.drawable.GradientDrawable;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
 import android.hardware.camera2.*;
-import android.hardware.camera2.params.StreamConfigurationMap;
+import android.hardware.camera2.params.OutputConfiguration;
+import android.hardware.camera2.params.SessionConfiguration;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.MediaFormat;
 import android.opengl.GLES20;
 import android.opengl.GLES11Ext;
-import android.opengl.GLSurfaceView;
+import android.opengl.Matrix;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.Range;
 import android.util.Size;
+import android.view.Choreographer;
 import android.view.KeyEvent;
 import android.view.Surface;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.WindowManager;
 import android.widget.Button;
@@ -30,19 +47,29 @@ import android.view.animation.AnimationUtils;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import com.siva.magnifyapp.pipeline.FrameRecording;
+import com.siva.magnifyapp.pipeline.ReplayPacer;
+import com.siva.magnifyapp.pipeline.StageTimer;
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import javax.microedition.khronos.opengles.GL10;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 public class MainActivity extends BaseVoiceActivity {
 
     // Constants
     private static final int REQUEST_CAMERA_PERMISSION = 100;
     private static final String PREFS = "MagnifyPrefs";
-    private static final String KEY_FILTER = "currentFilter";
+    private static final String KEY_STABILIZATION = "stabilization";
+    private static final String KEY_LOW_LATENCY = "lowLatency";
+    private static final String KEY_GL_HUD = "glHud";
+    private static final long TOAST_MS = 2000L;
+    private static final int HUD_POPUP_COLOR = 0xDD000000;
 
     // Adjustment type constants
     private static final int TYPE_FILTER = 0;
@@ -53,18 +80,41 @@ public class MainActivity extends BaseVoiceActivity {
     private static final int TYPE_APP_BRIGHTNESS = 5;
 
     // Camera related
-    private GLSurfaceView glSurfaceView;
+    private SurfaceView surfaceView;
+    private GlRenderThread renderThread;
     private CameraManager cameraManager;
-    private CameraDevice cameraDevice;
-    private CameraCaptureSession captureSession;
-    private SurfaceTexture previewSurfaceTexture;
+    private volatile CameraDevice cameraDevice;
+    private volatile CameraCaptureSession captureSession;
+    // Camera and SurfaceTexture callbacks run here so they never queue behind UI work.
+    private HandlerThread cameraThread;
+    private Handler cameraHandler;
+    // Preview request and ISP zoom state, touched on the camera thread only.
+    private CaptureRequest.Builder previewRequestBuilder;
+    private float appliedIspZoom = 1.0f;
+    private volatile HybridZoom hybridZoom;
+    private PreviewSizePolicy previewSizePolicy;
+    private int previewSizeIndex = -1;
+    private int activeArrayLongEdge;
+    private int displayWidth, displayHeight;
+    private CameraStartupCache startupCache;
+    private CameraStartupCache.Entry cameraInfo;
+    private boolean cameraOpening, cameraWanted;
+    private volatile SurfaceTexture previewSurfaceTexture;
     private Surface previewSurface;
+    // Camera thread: the texture previewSurface was made from and the shared output holding it.
+    private SurfaceTexture boundTexture;
+    private OutputConfiguration previewOutput;
+    private boolean previewSharingUnsupported;
+    private boolean cameraParked;
+    private CameraSessionManager sessionManager;
     private String cameraId;
-    private boolean isCameraPermissionGranted = false;
-    private boolean isGLSurfaceCreated = false;
+    private volatile boolean isCameraPermissionGranted = false;
     private CameraGLRenderer renderer;
+    private SettingsStore settings;
+    private InputCoalescer input;
 
     // UI Components
+    private View menuLayer;
     private LinearLayout menuContainer;
     private ViewFlipper menuFlipper;
     private TextView menuTitle;
@@ -94,6 +144,55 @@ public class MainActivity extends BaseVoiceActivity {
     private Runnable menuHideRunnable;
     private static final int MENU_HIDE_DELAY = 5000; // 5 seconds
 
+    // Frame metrics
+    private final FrameMetrics frameMetrics = new FrameMetrics();
+    private final FrameMetrics.Snapshot metricsSnapshot = new FrameMetrics.Snapshot();
+    private TextView metricsOverlay;
+    private Runnable metricsRunnable;
+    private int metricsTicks = 0;
+    private volatile String replayReport; // stage timings of the last replay
+    private static final int METRICS_INTERVAL = 1000; // overlay refresh, ms
+    private static final int METRICS_LOG_EVERY = 10;  // log dump every N refreshes
+
+    // Stabilization
+    private final GyroStabilizer stabilizer = new GyroStabilizer();
+    private SensorManager sensorManager;
+    private Sensor gyroscope;
+    private boolean stabilizationEnabled = true;
+    private boolean gyroRegistered = false;
+    private static final float STABILIZATION_HEADROOM = 1.25f; // GPU zoom kept back as margin
+    private volatile long gyroTimeOffsetNs; // camera frame clock to gyro clock
+
+    // Power: idle frame rate and skipped redraws while the view is static
+    private final MotionGovernor motionGovernor = new MotionGovernor(this::onStaticChanged);
+    private Range<Integer> fullFpsRange; // camera thread; the preview template's default
+
+    // Thermal quality ladder, evaluated on the metrics tick
+    private QualityController qualityController;
+    private PowerManager powerManager;
+    private static final float FRAME_BUDGET_MS = 1000f / 30f;
+    private final PowerManager.OnThermalStatusChangedListener thermalListener =
+            status -> reportMetrics();
+
+    // Freeze frame
+    private ImageReader stillReader; // camera thread
+    private volatile boolean freezeRequested = false;
+    private float panX = 0f, panY = 0f;
+    private static final float PAN_STEP = 0.25f; // fraction of the visible window per key press
+    private final SensorEventListener gyroListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            float x = event.values[0], y = event.values[1], z = event.values[2];
+            renderer.recordGyro(event.timestamp, x, y, z);
+            stabilizer.addSample(event.timestamp, x, y);
+            motionGovernor.onGyro(System.nanoTime(), (float) Math.sqrt(x * x + y * y + z * z));
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
+
     // Adjustment values
     private float zoomLevel = 1.0f;
     private float brightness = 0.0f;
@@ -106,9 +205,20 @@ public class MainActivity extends BaseVoiceActivity {
     private static final float ZOOM_STEP = 0.25f;
     private static final float MAX_ZOOM = 10.0f;
     private static final float MIN_ZOOM = 1.0f;
+    private static final float CONTINUOUS_ZOOM_RATE = 0.5f; // log zoom per second, ~1.65x
+    private boolean continuousZoom = false;
 
     // Colors
-    private int colorNormal, colorRed, colorAmber, colorGray, colorBlue;
+    private int colorNormal, colorRed, colorAmber, colorGray, colorBlue, colorAccent;
+    // GL HUD: menus drawn in the render pass, the View overlay kept as a fallback.
+    private boolean glHud;
+    private int hudMenuColor = 0xCC000000;
+    private float hudRenderScale = 1f;
+    private String hudToast;
+    private final Runnable clearHudToast = () -> {
+        hudToast = null;
+        publishHud();
+    };
 
     // Menu Item Class
     private static class MenuItem {
@@ -123,11 +233,17 @@ public class MainActivity extends BaseVoiceActivity {
     // Lifecycle Methods
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        frameMetrics.markLaunch(SystemClock.elapsedRealtimeNanos());
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         initializeColors();
+        powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        qualityController = new QualityController(new PowerManagerThermalSource(powerManager),
+                this::onQualityLevelChanged);
+        startCameraThread();
         initializeCamera();
+        initializeStabilization();
         initializeGL();
         initializeUI();
         initializeAnimations();
@@ -135,24 +251,41 @@ public class MainActivity extends BaseVoiceActivity {
         initializeMenuAutoHide();
         requestCameraPermission();
 
-        int savedFilter = getSharedPreferences(PREFS, MODE_PRIVATE).getInt(KEY_FILTER, 0);
-        currentFilter = savedFilter;
-        renderer.setFilterMode(savedFilter);
-        updateUIColors();
+        initializeSettings();
+        initializeInput();
+        renderer.setStabilizationEnabled(stabilizationEnabled);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        glSurfaceView.onResume();
+        frameMetrics.markResume(SystemClock.elapsedRealtimeNanos());
+        resumeCamera();
+        registerGyro();
+        renderThread.onResume();
         onUserActivity();
+        menuHideHandler.postDelayed(metricsRunnable, METRICS_INTERVAL);
+        powerManager.addThermalStatusListener(getMainExecutor(), thermalListener);
     }
 
     @Override
     protected void onPause() {
-        closeCamera();
-        glSurfaceView.onPause();
+        if (freezeRequested) {
+            // The session and the GL context holding the still are both going away.
+            freezeRequested = false;
+            renderer.clearStill();
+        }
+        settings.flush();
+        pauseCamera();
+        unregisterGyro();
+        renderThread.onPause();
+        // Its GL context is gone; the camera thread swaps the session over to the next texture
+        // and releases this one then.
+        previewSurfaceTexture = null;
+        renderer.pauseRewind();
         menuHideHandler.removeCallbacks(menuHideRunnable);
+        menuHideHandler.removeCallbacks(metricsRunnable);
+        powerManager.removeThermalStatusListener(thermalListener);
         super.onPause();
     }
 
@@ -161,6 +294,11 @@ public class MainActivity extends BaseVoiceActivity {
         if (menuHideHandler != null) {
             menuHideHandler.removeCallbacks(menuHideRunnable);
         }
+        renderer.release();
+        renderThread.release();
+        Handler handler = cameraHandler;
+        if (handler != null) handler.post(sessionManager::close);
+        stopCameraThread();
         super.onDestroy();
     }
 
@@ -171,32 +309,103 @@ public class MainActivity extends BaseVoiceActivity {
         colorAmber = ContextCompat.getColor(this, R.color.filter_amber);
         colorGray = ContextCompat.getColor(this, R.color.filter_gray);
         colorBlue = ContextCompat.getColor(this, R.color.filter_blue);
+        colorAccent = ContextCompat.getColor(this, R.color.accent_color);
+    }
+
+    private void startCameraThread() {
+        cameraThread = new HandlerThread("CameraThread");
+        cameraThread.start();
+        cameraHandler = new Handler(cameraThread.getLooper());
+    }
+
+    private void stopCameraThread() {
+        if (cameraThread == null) return;
+        cameraThread.quitSafely();
+        cameraThread = null;
+        cameraHandler = null;
     }
 
     private void initializeCamera() {
         cameraManager = (CameraManager) getSystemService(CAMERA_SERVICE);
-        try {
-            for (String id : cameraManager.getCameraIdList()) {
-                CameraCharacteristics chars = cameraManager.getCameraCharacteristics(id);
-                if (chars.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_BACK) {
-                    cameraId = id;
-                    break;
-                }
+        startupCache = new CameraStartupCache(this);
+        Handler handler = cameraHandler;
+        sessionManager = new CameraSessionManager(new CameraSessionManager.Camera() {
+            @Override
+            public void open() {
+                cameraParked = false;
+                openCameraDevice();
             }
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
-        }
+
+            @Override
+            public void park() {
+                parkPreview();
+            }
+
+            @Override
+            public void unpark() {
+                unparkPreview();
+            }
+
+            @Override
+            public void close() {
+                closeCameraDevice();
+            }
+        }, new CameraSessionManager.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        }, CameraSessionManager.DEFAULT_GRACE_PERIOD_MS);
+    }
+
+    private void initializeStabilization() {
+        sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
+        gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        stabilizationEnabled = gyroscope != null
+                && getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(KEY_STABILIZATION, true);
     }
 
     private void initializeGL() {
-        glSurfaceView = findViewById(R.id.glSurfaceView);
+        surfaceView = findViewById(R.id.surfaceView);
         renderer = new CameraGLRenderer();
-        glSurfaceView.setEGLContextClientVersion(2);
-        glSurfaceView.setRenderer(renderer);
-        glSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        renderThread = new GlRenderThread(surfaceView.getHolder(), renderer);
+        renderThread.setRefreshRate(getWindowManager().getDefaultDisplay().getRefreshRate());
+        renderThread.setLowLatency(getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(KEY_LOW_LATENCY, false));
+    }
+
+    /** Restores the saved adjustments; the render thread has not drawn yet, so it starts with them. */
+    private void initializeSettings() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        settings = new SettingsStore(new PreferencesSettingsStorage(getSharedPreferences(PREFS, MODE_PRIVATE)),
+                new SettingsStore.Scheduler() {
+                    @Override
+                    public void postDelayed(Runnable task, long delayMs) {
+                        handler.postDelayed(task, delayMs);
+                    }
+
+                    @Override
+                    public void removeCallbacks(Runnable task) {
+                        handler.removeCallbacks(task);
+                    }
+                });
+        applyAdjustments(settings.restore());
+    }
+
+    /** Held keys and voice steps reach the menus and the renderer once per vsync; see {@link InputCoalescer}. */
+    private void initializeInput() {
+        // Choreographer is per thread; keep the main one so voice threads can schedule on it.
+        Choreographer choreographer = Choreographer.getInstance();
+        Choreographer.FrameCallback frame = frameTimeNanos -> input.onFrame();
+        input = new InputCoalescer(this::onCoalescedInput, () -> choreographer.postFrameCallback(frame));
     }
 
     private void initializeUI() {
+        menuLayer = findViewById(R.id.menuLayer);
         menuContainer = findViewById(R.id.menuContainer);
         menuFlipper = findViewById(R.id.menuFlipper);
         menuTitle = findViewById(R.id.menuTitle);
@@ -214,6 +423,10 @@ public class MainActivity extends BaseVoiceActivity {
 
         popupContainer.setVisibility(View.GONE);
         filterPopup.setVisibility(View.GONE);
+
+        metricsOverlay = findViewById(R.id.metricsOverlay);
+        metricsOverlay.setVisibility(View.GONE);
+        setGlHudEnabled(getSharedPreferences(PREFS, MODE_PRIVATE).getBoolean(KEY_GL_HUD, true));
     }
 
     private void initializeAnimations() {
@@ -226,9 +439,51 @@ public class MainActivity extends BaseVoiceActivity {
     private void initializeMenuAutoHide() {
         menuHideHandler = new Handler(Looper.getMainLooper());
         menuHideRunnable = () -> hideMenu();
+        metricsRunnable = this::reportMetrics;
         scheduleMenuHide();
     }
 
+    /** Main thread; also runs early on a thermal status change. */
+    private void reportMetrics() {
+        menuHideHandler.removeCallbacks(metricsRunnable);
+        frameMetrics.snapshot(metricsSnapshot);
+        qualityController.update(System.nanoTime(), metricsSnapshot.drawMeanMs, FRAME_BUDGET_MS);
+        if (metricsOverlay.getVisibility() == View.VISIBLE) {
+            metricsOverlay.setText(metricsText());
+        }
+        if (++metricsTicks % METRICS_LOG_EVERY == 0 && metricsSnapshot.frames > 0) {
+            Log.i("FrameMetrics", metricsText().replace('\n', ' '));
+        }
+        menuHideHandler.postDelayed(metricsRunnable, METRICS_INTERVAL);
+    }
+
+    private void setMetricsOverlayVisible(boolean visible) {
+        metricsOverlay.setVisibility(visible ? View.VISIBLE : View.GONE);
+        if (visible) {
+            frameMetrics.snapshot(metricsSnapshot);
+            metricsOverlay.setText(metricsText());
+        }
+    }
+
+    private String metricsText() {
+        String text = metricsSnapshot.format() + String.format(java.util.Locale.US, "  static %.0f%%  quality %d",
+                motionGovernor.staticFraction(System.nanoTime()) * 100f, qualityController.level());
+        String replay = replayReport;
+        return replay != null ? text + "\nreplay\n" + replay : text;
+    }
+
+    /** Where "start recording" writes and "replay" reads; pull it with adb for a host run. */
+    private File recordingFile() {
+        return new File(getExternalFilesDir(null), "replay.bmrf");
+    }
+
+    /** Latest aggregated frame timing; see {@link FrameMetrics}. */
+    FrameMetrics.Snapshot getFrameMetrics() {
+        FrameMetrics.Snapshot out = new FrameMetrics.Snapshot();
+        frameMetrics.snapshot(out);
+        return out;
+    }
+
     private void setupMainMenu() {
         mainMenuItems = new ArrayList<>();
         mainMenuItems.add(new MenuItem("Filters", TYPE_FILTER));
@@ -242,6 +497,10 @@ public class MainActivity extends BaseVoiceActivity {
         currentFilterItems.add(new MenuItem("Normal", 0));
         currentFilterItems.add(new MenuItem("Amber", 1));
         currentFilterItems.add(new MenuItem("Grayscale", 2));
+        currentFilterItems.add(new MenuItem("Local Contrast", CompositeShaders.FILTER_LOCAL_CONTRAST));
+        currentFilterItems.add(new MenuItem("White on Black", CompositeShaders.FILTER_READING_WHITE_ON_BLACK));
+        currentFilterItems.add(new MenuItem("Yellow on Black", CompositeShaders.FILTER_READING_YELLOW_ON_BLACK));
+        currentFilterItems.add(new MenuItem("Black on White", CompositeShaders.FILTER_READING_BLACK_ON_WHITE));
 
         ((TextView) menuFlipper.getChildAt(0)).setText(mainMenuItems.get(0).name);
         menuFlipper.setDisplayedChild(0);
@@ -259,6 +518,7 @@ public class MainActivity extends BaseVoiceActivity {
     private void showMenu() {
         if (menuContainer.getVisibility() != View.VISIBLE) {
             menuContainer.setVisibility(View.VISIBLE);
+            publishHud();
         }
         scheduleMenuHide();
     }
@@ -266,28 +526,118 @@ public class MainActivity extends BaseVoiceActivity {
     private void hideMenu() {
         if (isInMainMenu && !isInFilterMenu && !isInProgressMode) {
             menuContainer.setVisibility(View.GONE);
+            publishHud();
+        }
+    }
+
+    /**
+     * Draws the menus and toasts in the GL pass when enabled. The layer holding the View menus is
+     * then gone, so it is neither measured nor drawn; the menus inside keep their own visibility
+     * and state, so switching back needs nothing rebuilt.
+     */
+    private void setGlHudEnabled(boolean enabled) {
+        glHud = enabled;
+        menuLayer.setVisibility(enabled ? View.GONE : View.VISIBLE);
+        if (enabled) {
+            publishHud();
+        } else {
+            hudToast = null;
+            renderer.setHud(HudState.NONE);
         }
     }
 
+    private void setGlHudPreference(boolean enabled) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(KEY_GL_HUD, enabled).apply();
+        setGlHudEnabled(enabled);
+        showToast(enabled ? "GL menus on" : "GL menus off");
+    }
+
+    /** Main thread. Hands the renderer what the menus show now; unchanged states draw nothing new. */
+    private void publishHud() {
+        if (!glHud || mainMenuItems == null) return;
+        String title = null, item = null, value = null, hint = null;
+        boolean popup = false;
+        int progress = -1;
+        if (isInProgressMode) {
+            title = currentProgressType;
+            popup = true;
+            value = progressText.getText().toString();
+            progress = progressBar.getProgress();
+            hint = "Scroll to adjust, press to confirm";
+        } else if (isInFilterMenu) {
+            title = "Select Filter";
+            popup = true;
+            item = currentFilterItems.get(currentFilterIndex).name;
+            hint = "Scroll to select, press to apply";
+        } else if (menuContainer.getVisibility() == View.VISIBLE) {
+            title = menuTitle.getText().toString();
+            item = mainMenuItems.get(currentMenuIndex).name;
+        }
+        float pxPerDp = getResources().getDisplayMetrics().density * hudRenderScale;
+        renderer.setHud(new HudState(title, popup, item, value, progress, hint, hudToast,
+                popup ? HUD_POPUP_COLOR : hudMenuColor, colorAccent, pxPerDp));
+    }
+
+    /** A short message, drawn by the GL HUD when it is on. */
+    private void showToast(String text) {
+        if (!glHud) {
+            Toast.makeText(this, text, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        hudToast = text;
+        menuHideHandler.removeCallbacks(clearHudToast);
+        menuHideHandler.postDelayed(clearHudToast, TOAST_MS);
+        publishHud();
+    }
+
     private void onUserActivity() {
+        motionGovernor.onUserInput(System.nanoTime());
         showMenu();
     }
 
     // Key Events
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
-        onUserActivity();
+        // Steps are gathered and applied at the next vsync; the rest acts at once.
+        int steps = InputCoalescer.stepsForRepeat(event.getRepeatCount());
+        if (freezeRequested && !isInProgressMode && !isInFilterMenu) {
+            switch (keyCode) {
+                case KeyEvent.KEYCODE_DPAD_UP:
+                    input.add(InputCoalescer.PAN_Y, steps);
+                    return true;
+                case KeyEvent.KEYCODE_DPAD_DOWN:
+                    input.add(InputCoalescer.PAN_Y, -steps);
+                    return true;
+                case KeyEvent.KEYCODE_DPAD_LEFT:
+                    input.add(InputCoalescer.PAN_X, -steps);
+                    return true;
+                case KeyEvent.KEYCODE_DPAD_RIGHT:
+                    input.add(InputCoalescer.PAN_X, steps);
+                    return true;
+            }
+        }
         switch (keyCode) {
             case KeyEvent.KEYCODE_DPAD_UP:
             case KeyEvent.KEYCODE_DPAD_LEFT:
             case KeyEvent.KEYCODE_VOLUME_UP:
-                handleScrollUp();
+                input.add(InputCoalescer.SCROLL, steps);
                 return true;
             case KeyEvent.KEYCODE_DPAD_DOWN:
             case KeyEvent.KEYCODE_DPAD_RIGHT:
             case KeyEvent.KEYCODE_VOLUME_DOWN:
-                handleScrollDown();
+                input.add(InputCoalescer.SCROLL, -steps);
                 return true;
+        }
+        onUserActivity();
+        if (keyCode == KeyEvent.KEYCODE_CAMERA) {
+            toggleFreeze();
+            return true;
+        }
+        if (freezeRequested && !isInProgressMode && !isInFilterMenu && keyCode == KeyEvent.KEYCODE_BACK) {
+            goLive();
+            return true;
+        }
+        switch (keyCode) {
             case KeyEvent.KEYCODE_DPAD_CENTER:
             case KeyEvent.KEYCODE_ENTER:
                 handleSelectAction();
@@ -299,9 +649,32 @@ public class MainActivity extends BaseVoiceActivity {
         return super.onKeyDown(keyCode, event);
     }
 
+    /**
+     * Main thread, once per frame with input. Menus move one entry per frame; adjustments and
+     * panning take every step, including those a held key accelerated.
+     */
+    private void onCoalescedInput(int[] steps) {
+        onUserActivity();
+        int scroll = steps[InputCoalescer.SCROLL];
+        if (scroll != 0) {
+            if (isInProgressMode) {
+                adjustProgressValue(scroll);
+            } else if (scroll > 0) {
+                handleScrollUp();
+            } else {
+                handleScrollDown();
+            }
+        }
+        int panX = steps[InputCoalescer.PAN_X], panY = steps[InputCoalescer.PAN_Y];
+        if ((panX != 0 || panY != 0) && freezeRequested) panStill(panX, panY);
+        int zoomSteps = steps[InputCoalescer.ZOOM];
+        if (zoomSteps != 0) setZoom(Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoomLevel + zoomSteps * ZOOM_STEP)));
+        publishHud();
+    }
+
     private void handleScrollUp() {
         if ( isInProgressMode) {
-            adjustProgressValue(true);
+            adjustProgressValue(1);
         } else if (isInFilterMenu) {
             int currentChild = filterFlipper.getDisplayedChild();
             int prevChild = (currentChild - 1 + 2) % 2;
@@ -315,7 +688,7 @@ public class MainActivity extends BaseVoiceActivity {
             currentFilter = currentFilterIndex;
             applyFilterToRenderer(currentFilter);
             updateUIColors();
-            getSharedPreferences(PREFS, MODE_PRIVATE).edit().putInt(KEY_FILTER, currentFilter).apply();
+            saveAdjustments();
         } else if (isInMainMenu) {
             int currentChild = menuFlipper.getDisplayedChild();
             int prevChild = (currentChild - 1 + 2) % 2;
@@ -331,7 +704,7 @@ public class MainActivity extends BaseVoiceActivity {
 
     private void handleScrollDown() {
         if (isInProgressMode) {
-            adjustProgressValue(false);
+            adjustProgressValue(-1);
         } else if (isInFilterMenu) {
             int currentChild = filterFlipper.getDisplayedChild();
             int nextChild = (currentChild + 1) % 2;
@@ -345,7 +718,7 @@ public class MainActivity extends BaseVoiceActivity {
             currentFilter = currentFilterIndex;
             applyFilterToRenderer(currentFilter);
             updateUIColors();
-            getSharedPreferences(PREFS, MODE_PRIVATE).edit().putInt(KEY_FILTER, currentFilter).apply();
+            saveAdjustments();
         } else if (isInMainMenu) {
             int currentChild = menuFlipper.getDisplayedChild();
             int nextChild = (currentChild + 1) % 2;
@@ -367,6 +740,7 @@ public class MainActivity extends BaseVoiceActivity {
         } else if (isInMainMenu) {
             selectMainMenuItem();
         }
+        publishHud();
     }
 
     private void handleBackAction() {
@@ -375,6 +749,7 @@ public class MainActivity extends BaseVoiceActivity {
         } else if (isInFilterMenu) {
             closeFilterMenu();
         }
+        publishHud();
     }
 
     // Filter Menu
@@ -400,11 +775,11 @@ public class MainActivity extends BaseVoiceActivity {
 
     private void selectFilter() {
         currentFilter = currentFilterIndex;
-        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putInt(KEY_FILTER, currentFilter).apply();
         applyFilterToRenderer(currentFilter);
+        saveAdjustments();
         updateUIColors();
         closeFilterMenu();
-        Toast.makeText(this, "Filter applied: " + currentFilterItems.get(currentFilterIndex).name, Toast.LENGTH_SHORT).show();
+        showToast("Filter applied: " + currentFilterItems.get(currentFilterIndex).name);
     }
 
     private void applyFilterToRenderer(int filterMode) {
@@ -442,25 +817,29 @@ public class MainActivity extends BaseVoiceActivity {
         scheduleMenuHide();
     }
 
-    private void adjustProgressValue(boolean increase) {
+    /** Moves the adjustment by {@code steps} steps, positive to increase, as one update. */
+    private void adjustProgressValue(int steps) {
         int currentProgress = progressBar.getProgress();
         int type = getTypeFromTitle(currentProgressType);
-        int step;
+        boolean increase = steps > 0;
+
+        for (int i = Math.abs(steps); i > 0; i--) {
+            int step;
+            if (type == TYPE_APP_BRIGHTNESS) {
+                if (increase) {
+                    step = (currentProgress < 5) ? 1 : 5;
+                } else {
+                    step = (currentProgress > 5) ? 5 : 1;
+                }
+            } else {
+                step = 5; // Default step for other adjustments
+            }
 
-        if (type == TYPE_APP_BRIGHTNESS) {
             if (increase) {
-                step = (currentProgress < 5) ? 1 : 5;
+                currentProgress = Math.min(100, currentProgress + step);
             } else {
-                step = (currentProgress > 5) ? 5 : 1;
+                currentProgress = Math.max(0, currentProgress - step);
             }
-        } else {
-            step = 5; // Default step for other adjustments
-        }
-
-        if (increase) {
-            currentProgress = Math.min(100, currentProgress + step);
-        } else {
-            currentProgress = Math.max(0, currentProgress - step);
         }
 
         progressBar.setProgress(currentProgress);
@@ -473,7 +852,7 @@ public class MainActivity extends BaseVoiceActivity {
         int type = getTypeFromTitle(currentProgressType);
         applyProgressValue(progress, type);
         closeProgressMode();
-        Toast.makeText(this, currentProgressType + " set to " + progress + "%", Toast.LENGTH_SHORT).show();
+        showToast(currentProgressType + " set to " + progress + "%");
     }
 
     private int getCurrentProgress(int type) {
@@ -499,8 +878,7 @@ public class MainActivity extends BaseVoiceActivity {
     private void applyProgressValue(int progress, int type) {
         switch (type) {
             case TYPE_ZOOM:
-                zoomLevel = MIN_ZOOM + (MAX_ZOOM - MIN_ZOOM) * progress / 100f;
-                renderer.setZoomLevel(zoomLevel);
+                setZoom(MIN_ZOOM + (MAX_ZOOM - MIN_ZOOM) * progress / 100f);
                 break;
             case TYPE_BRIGHTNESS:
                 brightness = (progress / 50f) - 1.0f;
@@ -519,7 +897,161 @@ public class MainActivity extends BaseVoiceActivity {
                 setAppBrightness(appBrightness);
                 break;
         }
-        if (type != TYPE_APP_BRIGHTNESS) glSurfaceView.requestRender();
+        saveAdjustments();
+    }
+
+    /** Hands the current adjustments to the settings store, which writes them once they settle. */
+    private void saveAdjustments() {
+        settings.update(new Adjustments(zoomLevel, brightness, contrast, sharpness, appBrightness, currentFilter));
+    }
+
+    /** Makes {@code a} current in one render update, as on startup or for a preset. */
+    private void applyAdjustments(Adjustments a) {
+        boolean zoomingOut = a.zoom < zoomLevel;
+        zoomLevel = a.zoom;
+        continuousZoom = false;
+        brightness = a.brightness;
+        contrast = a.contrast;
+        sharpness = a.sharpness;
+        // The window follows the system brightness until one is chosen.
+        if (a.appBrightness != appBrightness) setAppBrightness(a.appBrightness);
+        appBrightness = a.appBrightness;
+        currentFilter = a.filter;
+        renderer.setAdjustments(a);
+        updateUIColors();
+        if (freezeRequested) panStill(0, 0);
+        if (zoomingOut) requestIspZoom(zoomLevel);
+    }
+
+    private void applyPreset(String name) {
+        Adjustments preset = settings.applyPreset(name);
+        if (preset == null) return;
+        applyAdjustments(preset);
+        showToast("Preset: " + name);
+    }
+
+    private void savePreset(String name) {
+        saveAdjustments();
+        settings.savePreset(name);
+        showToast("Saved preset: " + name);
+    }
+
+    private void setStabilizationEnabled(boolean enabled) {
+        if (gyroscope == null) {
+            showToast("No gyroscope for stabilization");
+            return;
+        }
+        stabilizationEnabled = enabled;
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(KEY_STABILIZATION, enabled).apply();
+        if (enabled) registerGyro(); else unregisterGyro();
+        HybridZoom zoomSplit = hybridZoom;
+        if (zoomSplit != null) zoomSplit.setGpuHeadroom(enabled ? STABILIZATION_HEADROOM : 1f);
+        renderer.setStabilizationEnabled(enabled);
+        requestIspZoom(zoomLevel);
+        showToast(enabled ? "Stabilization on" : "Stabilization off");
+    }
+
+    private void setLowLatencyEnabled(boolean enabled) {
+        getSharedPreferences(PREFS, MODE_PRIVATE).edit().putBoolean(KEY_LOW_LATENCY, enabled).apply();
+        renderThread.setLowLatency(enabled);
+        showToast(enabled ? "Low latency on" : "Low latency off");
+    }
+
+    /** Gyro samples are delivered on the camera thread, next to the frame callbacks. */
+    private void registerGyro() {
+        if (!stabilizationEnabled || gyroRegistered || gyroscope == null) return;
+        gyroRegistered = sensorManager.registerListener(gyroListener, gyroscope,
+                SensorManager.SENSOR_DELAY_FASTEST, cameraHandler);
+    }
+
+    private void unregisterGyro() {
+        if (!gyroRegistered) return;
+        sensorManager.unregisterListener(gyroListener);
+        gyroRegistered = false;
+    }
+
+    /**
+     * Sets the zoom target; the renderer eases toward it. The ISP crop must never run ahead of
+     * the zoom on screen, so zooming out moves it at once and zooming in waits for the animation
+     * to settle, magnifying on the GPU in between.
+     */
+    private void setZoom(float zoom) {
+        boolean zoomingOut = zoom < zoomLevel;
+        zoomLevel = zoom;
+        continuousZoom = false;
+        renderer.setZoomLevel(zoom);
+        if (freezeRequested) panStill(0, 0);
+        if (zoomingOut) requestIspZoom(zoom);
+        saveAdjustments();
+    }
+
+    /** Zooms at a steady rate until {@link #stopZooming()} or a limit; see {@link ParameterAnimator}. */
+    private void keepZooming(boolean in) {
+        continuousZoom = true;
+        renderer.setZoomRate(in ? CONTINUOUS_ZOOM_RATE : -CONTINUOUS_ZOOM_RATE);
+        if (!in) requestIspZoom(MIN_ZOOM);
+    }
+
+    private void stopZooming() {
+        renderer.setZoomRate(0f);
+    }
+
+    /** Main thread. The zoom animation came to rest; catch the ISP crop up with it. */
+    private void onZoomSettled(float zoom) {
+        if (continuousZoom) {
+            // The animator chose where to stop; adopt it as the target.
+            continuousZoom = false;
+            zoomLevel = zoom;
+            renderer.setZoomLevel(zoom);
+            if (freezeRequested) panStill(0, 0);
+            saveAdjustments();
+        }
+        requestIspZoom(Math.min(zoom, zoomLevel));
+    }
+
+    private void toggleFreeze() {
+        if (freezeRequested) goLive(); else freeze();
+    }
+
+    /**
+     * Captures a full-resolution still through the JPEG stream and shows it in place of the
+     * preview. Zoom on the still is done entirely on the GPU, so it shows sensor detail the
+     * preview stream never carried.
+     */
+    private void freeze() {
+        Handler handler = cameraHandler;
+        if (freezeRequested || handler == null) return;
+        renderer.stopRewind();
+        freezeRequested = true;
+        panX = panY = 0f;
+        renderer.setPan(0f, 0f);
+        handler.post(this::captureStill);
+    }
+
+    private void goLive() {
+        renderer.stopRewind();
+        if (!freezeRequested) return;
+        freezeRequested = false;
+        renderer.clearStill();
+        Handler handler = cameraHandler;
+        if (handler != null) handler.post(this::resumePreview);
+        requestIspZoom(zoomLevel);
+    }
+
+    /** Moves the window over the still by {@code dx, dy} steps, keeping it inside the image. */
+    private void panStill(int dx, int dy) {
+        float step = PAN_STEP / zoomLevel;
+        float limit = TileLayout.maxPan(zoomLevel);
+        panX = Math.max(-limit, Math.min(limit, panX + dx * step));
+        panY = Math.max(-limit, Math.min(limit, panY + dy * step));
+        renderer.setPan(panX, panY);
+    }
+
+    private void failFreeze(String message) {
+        runOnUiThread(() -> {
+            freezeRequested = false;
+            showToast(message);
+        });
     }
 
     private int getTypeFromTitle(String title) {
@@ -540,6 +1072,10 @@ public class MainActivity extends BaseVoiceActivity {
         switch (currentFilter) {
             case 1: uiColor = colorAmber; break;
             case 2: uiColor = colorGray; break;
+            case CompositeShaders.FILTER_LOCAL_CONTRAST: uiColor = colorBlue; break;
+            case CompositeShaders.FILTER_READING_YELLOW_ON_BLACK: uiColor = colorAmber; break;
+            case CompositeShaders.FILTER_READING_WHITE_ON_BLACK:
+            case CompositeShaders.FILTER_READING_BLACK_ON_WHITE: uiColor = colorGray; break;
             default: uiColor = colorNormal; break;
         }
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
@@ -552,9 +1088,12 @@ public class MainActivity extends BaseVoiceActivity {
             shape.setAlpha(200);
             shape.setCornerRadius(16);
             menuContainer.setBackground(shape);
+            hudMenuColor = (uiColor & 0xFFFFFF) | (200 << 24);
         } else {
             menuContainer.setBackgroundResource(R.drawable.menu_background);
+            hudMenuColor = 0xCC000000;
         }
+        publishHud();
     }
 
     private void setAppBrightness(float brightnessValue) {
@@ -567,14 +1106,9 @@ public class MainActivity extends BaseVoiceActivity {
     // Voice Commands
     @Override
     protected void setupVoiceCommands() {
-        registerVoiceCommand("scroll up", () -> runOnUiThread(() -> {
-            onUserActivity();
-            handleScrollUp();
-        }));
-        registerVoiceCommand("scroll down", () -> runOnUiThread(() -> {
-            onUserActivity();
-            handleScrollDown();
-        }));
+        // Steps join key input and are applied at the next frame, without a post of their own.
+        registerVoiceCommand("scroll up", () -> input.add(InputCoalescer.SCROLL, 1));
+        registerVoiceCommand("scroll down", () -> input.add(InputCoalescer.SCROLL, -1));
         registerVoiceCommand("select", () -> runOnUiThread(() -> {
             onUserActivity();
             handleSelectAction();
@@ -595,18 +1129,88 @@ public class MainActivity extends BaseVoiceActivity {
             onUserActivity();
             applyFilterDirectly(2);
         }));
-        registerVoiceCommand("zoom in", () -> runOnUiThread(() -> {
+        registerVoiceCommand("local contrast", () -> runOnUiThread(() -> {
+            onUserActivity();
+            applyFilterDirectly(CompositeShaders.FILTER_LOCAL_CONTRAST);
+        }));
+        registerVoiceCommand("reading mode", () -> runOnUiThread(() -> {
+            onUserActivity();
+            applyFilterDirectly(CompositeShaders.FILTER_READING_WHITE_ON_BLACK);
+        }));
+        registerVoiceCommand("white on black", () -> runOnUiThread(() -> {
             onUserActivity();
-            zoomLevel = Math.min(MAX_ZOOM, zoomLevel + ZOOM_STEP);
-            renderer.setZoomLevel(zoomLevel);
-            glSurfaceView.requestRender();
+            applyFilterDirectly(CompositeShaders.FILTER_READING_WHITE_ON_BLACK);
         }));
-        registerVoiceCommand("zoom out", () -> runOnUiThread(() -> {
+        registerVoiceCommand("yellow on black", () -> runOnUiThread(() -> {
             onUserActivity();
-            zoomLevel = Math.max(MIN_ZOOM, zoomLevel - ZOOM_STEP);
-            renderer.setZoomLevel(zoomLevel);
-            glSurfaceView.requestRender();
+            applyFilterDirectly(CompositeShaders.FILTER_READING_YELLOW_ON_BLACK);
         }));
+        registerVoiceCommand("black on white", () -> runOnUiThread(() -> {
+            onUserActivity();
+            applyFilterDirectly(CompositeShaders.FILTER_READING_BLACK_ON_WHITE);
+        }));
+        registerVoiceCommand("zoom in", () -> input.add(InputCoalescer.ZOOM, 1));
+        registerVoiceCommand("zoom out", () -> input.add(InputCoalescer.ZOOM, -1));
+        // One utterance sets a value outright: "zoom five", "contrast sixty", "filter two".
+        registerVoiceCommand("zoom", (int) MIN_ZOOM, (int) MAX_ZOOM, value -> runOnUiThread(() -> {
+            onUserActivity();
+            setZoom(value);
+        }));
+        registerVoiceCommand("brightness", 0, 100, value -> runOnUiThread(() -> setAdjustment(TYPE_BRIGHTNESS, value)));
+        registerVoiceCommand("contrast", 0, 100, value -> runOnUiThread(() -> setAdjustment(TYPE_CONTRAST, value)));
+        registerVoiceCommand("sharpness", 0, 100, value -> runOnUiThread(() -> setAdjustment(TYPE_SHARPNESS, value)));
+        registerVoiceCommand("app brightness", 0, 100,
+                value -> runOnUiThread(() -> setAdjustment(TYPE_APP_BRIGHTNESS, value)));
+        registerVoiceCommand("filter", 0, CompositeShaders.FILTER_READING_BLACK_ON_WHITE, value -> runOnUiThread(() -> {
+            onUserActivity();
+            applyFilterDirectly(value);
+        }));
+        registerVoiceCommand("keep zooming in", () -> runOnUiThread(() -> {
+            onUserActivity();
+            keepZooming(true);
+        }));
+        registerVoiceCommand("keep zooming out", () -> runOnUiThread(() -> {
+            onUserActivity();
+            keepZooming(false);
+        }));
+        registerVoiceCommand("stop zooming", () -> runOnUiThread(this::stopZooming));
+        registerVoiceCommand("reading preset", () -> runOnUiThread(() -> {
+            onUserActivity();
+            applyPreset(SettingsStore.PRESET_READING);
+        }));
+        registerVoiceCommand("distance preset", () -> runOnUiThread(() -> {
+            onUserActivity();
+            applyPreset(SettingsStore.PRESET_DISTANCE);
+        }));
+        registerVoiceCommand("save reading preset", () -> runOnUiThread(() -> savePreset(SettingsStore.PRESET_READING)));
+        registerVoiceCommand("save distance preset", () -> runOnUiThread(() -> savePreset(SettingsStore.PRESET_DISTANCE)));
+        registerVoiceCommand("freeze", () -> runOnUiThread(this::freeze));
+        registerVoiceCommand("live", () -> runOnUiThread(this::goLive));
+        registerVoiceCommand("rewind", () -> renderer.rewind());
+        registerVoiceCommand("stabilize on", () -> runOnUiThread(() -> setStabilizationEnabled(true)));
+        registerVoiceCommand("stabilize off", () -> runOnUiThread(() -> setStabilizationEnabled(false)));
+        registerVoiceCommand("low latency on", () -> runOnUiThread(() -> setLowLatencyEnabled(true)));
+        registerVoiceCommand("low latency off", () -> runOnUiThread(() -> setLowLatencyEnabled(false)));
+        registerVoiceCommand("gl menus on", () -> runOnUiThread(() -> setGlHudPreference(true)));
+        registerVoiceCommand("gl menus off", () -> runOnUiThread(() -> setGlHudPreference(false)));
+        registerVoiceCommand("show stats", () -> runOnUiThread(() -> setMetricsOverlayVisible(true)));
+        registerVoiceCommand("hide stats", () -> runOnUiThread(() -> setMetricsOverlayVisible(false)));
+        registerVoiceCommand("start recording", () -> renderer.startRecording(recordingFile()));
+        registerVoiceCommand("stop recording", () -> renderer.stopRecording());
+        registerVoiceCommand("replay", () -> renderer.startReplay(recordingFile(), false));
+        registerVoiceCommand("replay paced", () -> renderer.startReplay(recordingFile(), true));
+        registerVoiceCommand("stop replay", () -> renderer.stopReplay());
+    }
+
+    /** Sets adjustment {@code type} to {@code percent} on the menu's scale, keeping an open popup in step. */
+    private void setAdjustment(int type, int percent) {
+        onUserActivity();
+        applyProgressValue(percent, type);
+        if (isInProgressMode && getTypeFromTitle(currentProgressType) == type) {
+            progressBar.setProgress(percent);
+            updateProgressText(percent, type);
+            publishHud();
+        }
     }
 
     private void applyFilterDirectly(int filterIndex) {
@@ -614,7 +1218,8 @@ public class MainActivity extends BaseVoiceActivity {
         currentFilter = filterIndex;
         applyFilterToRenderer(currentFilter);
         updateUIColors();
-        Toast.makeText(this, "Filter applied: " + currentFilterItems.get(filterIndex).name, Toast.LENGTH_SHORT).show();
+        saveAdjustments();
+        showToast("Filter applied: " + currentFilterItems.get(filterIndex).name);
     }
 
     // Permissions
@@ -632,7 +1237,7 @@ public class MainActivity extends BaseVoiceActivity {
         if (requestCode == REQUEST_CAMERA_PERMISSION) {
             if (results.length > 0 && results[0] == PackageManager.PERMISSION_GRANTED) {
                 isCameraPermissionGranted = true;
-                if (isGLSurfaceCreated) openCamera();
+                openCamera();
             } else {
                 Toast.makeText(this, "Camera permission is required to use the magnifier", Toast.LENGTH_LONG).show();
                 finish();
@@ -641,98 +1246,505 @@ public class MainActivity extends BaseVoiceActivity {
     }
 
     // Camera Handling
+    /**
+     * Restarts a parked session, or starts opening the camera, on the camera thread. This runs in
+     * parallel with GL context creation; the capture session is created or moved to the new
+     * surface texture once both sides are ready.
+     */
+    private void resumeCamera() {
+        Handler handler = cameraHandler;
+        if (handler != null) handler.post(sessionManager::onResume);
+    }
+
+    /** Parks the camera for {@link CameraSessionManager#DEFAULT_GRACE_PERIOD_MS} before closing it. */
+    private void pauseCamera() {
+        Handler handler = cameraHandler;
+        if (handler != null) handler.post(sessionManager::onPause);
+    }
+
+    /** Opens the device directly, once permission arrives after {@link #resumeCamera()} already ran. */
     private void openCamera() {
-        if (!isCameraPermissionGranted || cameraId == null) return;
-        if (previewSurfaceTexture == null) {
-            Log.w("MainActivity", "SurfaceTexture not ready for camera");
+        Handler handler = cameraHandler;
+        if (!isCameraPermissionGranted || handler == null) return;
+        handler.post(this::openCameraDevice);
+    }
+
+    /** Camera thread. */
+    private void openCameraDevice() {
+        cameraWanted = true;
+        if (cameraDevice != null || cameraOpening) return;
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
             return;
         }
         try {
-            CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(cameraId);
-            StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-            Size[] previewSizes = map.getOutputSizes(SurfaceTexture.class);
-            Size optimalSize = getBestPreviewSize(previewSizes, glSurfaceView.getWidth(), glSurfaceView.getHeight());
-            previewSurfaceTexture.setDefaultBufferSize(optimalSize.getWidth(), optimalSize.getHeight());
-            previewSurface = new Surface(previewSurfaceTexture);
-
-            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            if (cameraInfo == null) cameraInfo = loadCameraInfo(false);
+            if (cameraInfo == null) {
+                Log.e("MainActivity", "No back camera found");
                 return;
             }
-            cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
-                @Override
-                public void onOpened(CameraDevice device) {
-                    cameraDevice = device;
-                    try {
-                        CaptureRequest.Builder reqBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-                        reqBuilder.addTarget(previewSurface);
-                        reqBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
-                        reqBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                        reqBuilder.set(CaptureRequest.CONTROL_AWB_MODE, CaptureRequest.CONTROL_AWB_MODE_AUTO);
-                        cameraDevice.createCaptureSession(
-                                java.util.Collections.singletonList(previewSurface),
-                                new CameraCaptureSession.StateCallback() {
-                                    @Override
-                                    public void onConfigured(CameraCaptureSession session) {
-                                        captureSession = session;
-                                        try {
-                                            captureSession.setRepeatingRequest(reqBuilder.build(), null, null);
-                                        } catch (CameraAccessException e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-
-                                    @Override
-                                    public void onConfigureFailed(CameraCaptureSession session) {
-                                        Toast.makeText(MainActivity.this, "Failed to start camera preview!", Toast.LENGTH_SHORT).show();
-                                    }
-                                }, null
-                        );
-                    } catch (CameraAccessException e) {
-                        e.printStackTrace();
-                    }
+            cameraOpening = true;
+            try {
+                configureForCamera(cameraInfo);
+                cameraManager.openCamera(cameraId, cameraStateCallback, cameraHandler);
+            } catch (IllegalArgumentException e) {
+                // Cached id no longer valid; rescan once.
+                cameraInfo = loadCameraInfo(true);
+                if (cameraInfo == null) {
+                    cameraOpening = false;
+                    return;
                 }
+                configureForCamera(cameraInfo);
+                cameraManager.openCamera(cameraId, cameraStateCallback, cameraHandler);
+            }
+        } catch (CameraAccessException | SecurityException e) {
+            cameraOpening = false;
+            e.printStackTrace();
+        }
+    }
 
-                @Override
-                public void onDisconnected(CameraDevice device) {
-                    device.close();
-                    cameraDevice = null;
-                }
+    private CameraStartupCache.Entry loadCameraInfo(boolean forceQuery) throws CameraAccessException {
+        CameraStartupCache.Entry entry = forceQuery ? null : startupCache.load();
+        if (entry != null) return entry;
+        entry = CameraStartupCache.query(cameraManager);
+        if (entry != null) startupCache.store(entry);
+        return entry;
+    }
 
-                @Override
-                public void onError(CameraDevice device, int error) {
-                    Toast.makeText(MainActivity.this, "Camera error: " + error, Toast.LENGTH_SHORT).show();
-                    device.close();
-                    cameraDevice = null;
-                }
-            }, null);
+    private void configureForCamera(CameraStartupCache.Entry info) {
+        cameraId = info.cameraId;
+        frameMetrics.setRealtimeTimestamps(info.realtimeTimestamps);
+        previewSizePolicy = new PreviewSizePolicy(info.widths, info.heights);
+        previewSizePolicy.setMaxPixels(QualityController.maxStreamPixels(qualityController.level()));
+        activeArrayLongEdge = info.activeArray != null
+                ? Math.max(info.activeArray.width(), info.activeArray.height()) : 0;
+        HybridZoom zoomSplit = new HybridZoom(info.useZoomRatio, info.maxIspZoom, info.activeArray);
+        zoomSplit.setGpuHeadroom(stabilizationEnabled ? STABILIZATION_HEADROOM : 1f);
+        hybridZoom = zoomSplit;
+        stabilizer.setSensorOrientation(info.sensorOrientation);
+        // Gyro events are stamped on CLOCK_BOOTTIME; camera frames may be on CLOCK_MONOTONIC.
+        gyroTimeOffsetNs = info.realtimeTimestamps ? 0L : SystemClock.elapsedRealtimeNanos() - System.nanoTime();
+        stabilizer.setTimeOffsetNs(gyroTimeOffsetNs);
+        renderer.setFieldOfView(info.tanHalfFov);
+    }
+
+    private final CameraDevice.StateCallback cameraStateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(CameraDevice device) {
+            cameraOpening = false;
+            if (!cameraWanted) {
+                device.close();
+                return;
+            }
+            cameraDevice = device;
+            startPreviewIfReady();
+        }
+
+        @Override
+        public void onDisconnected(CameraDevice device) {
+            cameraOpening = false;
+            sessionManager.onDeviceLost();
+            closeCameraDevice();
+            device.close();
+        }
+
+        @Override
+        public void onError(CameraDevice device, int error) {
+            cameraOpening = false;
+            runOnUiThread(() -> showToast("Camera error: " + error));
+            sessionManager.onDeviceLost();
+            closeCameraDevice();
+            device.close();
+        }
+    };
+
+    /**
+     * Camera thread. Starts streaming once both the device and the GL surface texture exist, or
+     * moves a running session over to a texture recreated with the GL context.
+     */
+    private void startPreviewIfReady() {
+        CameraDevice device = cameraDevice;
+        SurfaceTexture texture = previewSurfaceTexture;
+        if (device == null || texture == null || displayWidth == 0 || cameraParked) return;
+        if (previewSurface != null) {
+            if (texture != boundTexture) rebindPreviewSurface(texture);
+            return;
+        }
+
+        HybridZoom zoomSplit = hybridZoom;
+        float totalZoom = zoomLevel;
+        float initialIspZoom = zoomSplit.ispZoomFor(totalZoom);
+        int cachedIndex = findSize(cameraInfo.streamWidth, cameraInfo.streamHeight);
+        previewSizeIndex = previewSizePolicy.update(cachedIndex, displayWidth, displayHeight,
+                totalZoom / initialIspZoom, cropLongEdge(initialIspZoom));
+        applyPreviewSize(previewSizeIndex);
+        if (stillReader == null && cameraInfo.stillWidth > 0) {
+            stillReader = ImageReader.newInstance(cameraInfo.stillWidth, cameraInfo.stillHeight, ImageFormat.JPEG, 1);
+            stillReader.setOnImageAvailableListener(this::onStillAvailable, cameraHandler);
+        }
+        previewSurface = new Surface(texture);
+        boundTexture = texture;
+        try {
+            CaptureRequest.Builder reqBuilder = device.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            reqBuilder.addTarget(previewSurface);
+            reqBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+            reqBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
+            reqBuilder.set(CaptureRequest.CONTROL_AWB_MODE, CaptureRequest.CONTROL_AWB_MODE_AUTO);
+            zoomSplit.applyTo(reqBuilder, initialIspZoom);
+            fullFpsRange = reqBuilder.get(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE);
+            setFpsRange(reqBuilder);
+            previewRequestBuilder = reqBuilder;
+            appliedIspZoom = initialIspZoom;
+            createPreviewSession();
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
     }
 
-    private Size getBestPreviewSize(Size[] sizes, int targetWidth, int targetHeight) {
-        float targetRatio = (float) targetWidth / targetHeight;
-        Size bestSize = null;
-        for (Size size : sizes) {
-            float ratio = (float) size.getWidth() / size.getHeight();
-            if (Math.abs(ratio - targetRatio) < 0.1f) {
-                if (bestSize == null || size.getWidth() > bestSize.getWidth()) {
-                    bestSize = size;
-                }
+    private int findSize(int width, int height) {
+        for (int i = 0; i < cameraInfo.widths.length; i++) {
+            if (cameraInfo.widths[i] == width && cameraInfo.heights[i] == height) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Camera thread. (Re)configures the session around the current preview surface and request.
+     * The preview output is declared by size and class with surface sharing on, so a later
+     * SurfaceTexture can be swapped into it without tearing the session down.
+     */
+    private void createPreviewSession() throws CameraAccessException {
+        CameraDevice device = cameraDevice;
+        Handler handler = cameraHandler;
+        if (device == null || handler == null) return;
+        OutputConfiguration preview;
+        if (previewSharingUnsupported) {
+            preview = new OutputConfiguration(previewSurface);
+        } else {
+            preview = new OutputConfiguration(new Size(previewSizePolicy.width(previewSizeIndex),
+                    previewSizePolicy.height(previewSizeIndex)), SurfaceTexture.class);
+            preview.enableSurfaceSharing();
+            preview.addSurface(previewSurface);
+        }
+        previewOutput = preview;
+        List<OutputConfiguration> outputs = new ArrayList<>(2);
+        outputs.add(preview);
+        if (stillReader != null) outputs.add(new OutputConfiguration(stillReader.getSurface()));
+        device.createCaptureSession(new SessionConfiguration(SessionConfiguration.SESSION_REGULAR, outputs,
+                handler::post, new CameraCaptureSession.StateCallback() {
+                    @Override
+                    public void onConfigured(CameraCaptureSession session) {
+                        captureSession = session;
+                        // A session finishing while paused stays idle until unparked.
+                        if (cameraParked) return;
+                        try {
+                            captureSession.setRepeatingRequest(previewRequestBuilder.build(), previewCaptureCallback, cameraHandler);
+                        } catch (CameraAccessException e) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                    @Override
+                    public void onConfigureFailed(CameraCaptureSession session) {
+                        if (!previewSharingUnsupported && previewOutput != null) {
+                            // Some HALs refuse a shared stream; fall back to a plain one.
+                            Log.w("MainActivity", "Shared preview output refused, retrying without sharing");
+                            previewSharingUnsupported = true;
+                            try {
+                                createPreviewSession();
+                                return;
+                            } catch (CameraAccessException | IllegalStateException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                        runOnUiThread(() -> showToast("Failed to start camera preview!"));
+                    }
+                }));
+    }
+
+    /**
+     * Camera thread. Points the running session at {@code texture}, the SurfaceTexture of a
+     * recreated GL context. With a shared output the new surface is added and the old one removed
+     * in place, keeping the session and its 3A state; otherwise the session is rebuilt.
+     */
+    private void rebindPreviewSurface(SurfaceTexture texture) {
+        texture.setDefaultBufferSize(previewSizePolicy.width(previewSizeIndex),
+                previewSizePolicy.height(previewSizeIndex));
+        Surface oldSurface = previewSurface;
+        SurfaceTexture oldTexture = boundTexture;
+        Surface surface = new Surface(texture);
+        previewRequestBuilder.removeTarget(oldSurface);
+        previewRequestBuilder.addTarget(surface);
+        previewSurface = surface;
+        boundTexture = texture;
+        CameraCaptureSession session = captureSession;
+        OutputConfiguration output = previewOutput;
+        try {
+            if (session == null || output == null || previewSharingUnsupported) {
+                createPreviewSession();
+            } else {
+                output.addSurface(surface);
+                output.removeSurface(oldSurface);
+                session.updateOutputConfiguration(output);
+                session.setRepeatingRequest(previewRequestBuilder.build(), previewCaptureCallback, cameraHandler);
+            }
+        } catch (CameraAccessException | IllegalArgumentException | IllegalStateException e) {
+            Log.w("MainActivity", "Preview surface swap failed, rebuilding the session", e);
+            try {
+                createPreviewSession();
+            } catch (CameraAccessException | IllegalStateException e2) {
+                e2.printStackTrace();
             }
         }
-        if (bestSize == null) {
-            bestSize = sizes[0];
-            for (Size s : sizes) {
-                if (s.getWidth() > bestSize.getWidth()) {
-                    bestSize = s;
+        oldSurface.release();
+        if (oldTexture != null) oldTexture.release();
+    }
+
+    private void applyPreviewSize(int index) {
+        int width = previewSizePolicy.width(index);
+        int height = previewSizePolicy.height(index);
+        SurfaceTexture texture = previewSurfaceTexture;
+        if (texture != null) texture.setDefaultBufferSize(width, height);
+        renderer.setSourceSize(width, height);
+        if (width != cameraInfo.streamWidth || height != cameraInfo.streamHeight) {
+            cameraInfo.streamWidth = width;
+            cameraInfo.streamHeight = height;
+            startupCache.storeStreamSize(width, height);
+        }
+        Log.i("MainActivity", "Preview stream " + width + "x" + height);
+    }
+
+    /** Long edge of the sensor region the ISP reads at {@code ispZoom}, or 0 if unknown. */
+    private int cropLongEdge(float ispZoom) {
+        return activeArrayLongEdge > 0 ? Math.round(activeArrayLongEdge / ispZoom) : 0;
+    }
+
+    private final CameraCaptureSession.CaptureCallback previewCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureStarted(CameraCaptureSession session, CaptureRequest request, long timestamp, long frameNumber) {
+            HybridZoom zoomSplit = hybridZoom;
+            if (zoomSplit != null) zoomSplit.onCaptureStarted(request, timestamp);
+        }
+
+        @Override
+        public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request, TotalCaptureResult result) {
+            HybridZoom zoomSplit = hybridZoom;
+            if (zoomSplit != null) zoomSplit.onCaptureCompleted(result);
+        }
+    };
+
+    /**
+     * Moves the ISP share of {@code totalZoom} into the repeating request. The renderer keeps
+     * magnifying on the GPU until frames captured with the new crop arrive, so there is no jump.
+     * When the remaining GPU zoom or the sensor crop crosses a stream size threshold the session
+     * is rebuilt around the new size; the camera device itself stays open.
+     */
+    private void requestIspZoom(float totalZoom) {
+        Handler handler = cameraHandler;
+        if (handler == null) return;
+        handler.post(() -> {
+            HybridZoom zoomSplit = hybridZoom;
+            CameraCaptureSession session = captureSession;
+            // A still is zoomed on the GPU only; the camera idles until the view goes live.
+            if (freezeRequested || cameraParked) return;
+            if (zoomSplit == null || session == null || previewRequestBuilder == null) return;
+            float ispZoom = zoomSplit.ispZoomFor(totalZoom);
+            int sizeIndex = previewSizePolicy.update(previewSizeIndex, displayWidth, displayHeight,
+                    totalZoom / ispZoom, cropLongEdge(ispZoom));
+            if (ispZoom == appliedIspZoom && sizeIndex == previewSizeIndex) return;
+            zoomSplit.applyTo(previewRequestBuilder, ispZoom);
+            try {
+                if (sizeIndex != previewSizeIndex) {
+                    previewSizeIndex = sizeIndex;
+                    applyPreviewSize(sizeIndex);
+                    createPreviewSession();
+                } else {
+                    session.setRepeatingRequest(previewRequestBuilder.build(), previewCaptureCallback, cameraHandler);
                 }
+                appliedIspZoom = ispZoom;
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.w("MainActivity", "Failed to update ISP zoom", e);
             }
+        });
+    }
+
+    /** Camera thread. */
+    private void captureStill() {
+        CameraDevice device = cameraDevice;
+        CameraCaptureSession session = captureSession;
+        HybridZoom zoomSplit = hybridZoom;
+        if (device == null || session == null || stillReader == null || zoomSplit == null) {
+            failFreeze("Camera not ready");
+            return;
+        }
+        try {
+            CaptureRequest.Builder builder = device.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+            builder.addTarget(stillReader.getSurface());
+            // Full field of view; the still is magnified on the GPU.
+            zoomSplit.applyTo(builder, 1f);
+            builder.set(CaptureRequest.JPEG_QUALITY, (byte) 95);
+            session.capture(builder.build(), null, cameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("MainActivity", "Still capture failed", e);
+            failFreeze("Could not capture still");
+        }
+    }
+
+    /** Camera thread. Decodes the still, drops the session to idle and hands the image to GL. */
+    private void onStillAvailable(ImageReader reader) {
+        Image image = reader.acquireLatestImage();
+        if (image == null) return;
+        byte[] jpeg;
+        try {
+            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+            jpeg = new byte[buffer.remaining()];
+            buffer.get(jpeg);
+        } finally {
+            image.close();
         }
-        return bestSize;
+        if (!freezeRequested) return;
+        enterIdle();
+        Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, jpeg.length);
+        if (bitmap == null) {
+            failFreeze("Could not decode still");
+            resumePreview();
+            return;
+        }
+        renderer.showStill(bitmap);
     }
 
-    private void closeCamera() {
+    /**
+     * Camera thread. While a still is shown the preview keeps running at the slowest frame rate
+     * the camera supports, so 3A stays converged for going live without streaming at full rate.
+     */
+    private void enterIdle() {
+        CameraDevice device = cameraDevice;
+        CameraCaptureSession session = captureSession;
+        if (device == null || session == null || previewSurface == null) return;
+        try {
+            CaptureRequest.Builder idle = device.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            idle.addTarget(previewSurface);
+            idle.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+            idle.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
+            idle.set(CaptureRequest.CONTROL_AWB_MODE, CaptureRequest.CONTROL_AWB_MODE_AUTO);
+            setIdleFpsRange(idle);
+            hybridZoom.applyTo(idle, appliedIspZoom);
+            session.setRepeatingRequest(idle.build(), previewCaptureCallback, cameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("MainActivity", "Failed to enter idle", e);
+        }
+    }
+
+    private void setIdleFpsRange(CaptureRequest.Builder builder) {
+        if (cameraInfo.idleFpsMax > 0) {
+            builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
+                    new Range<>(cameraInfo.idleFpsMin, cameraInfo.idleFpsMax));
+        }
+    }
+
+    /**
+     * Any thread. While nothing in view moves the camera streams at its idle rate, which also
+     * slows AE/AF; the first sign of motion or input restores the full rate and redraws.
+     */
+    private void onStaticChanged(boolean isStatic) {
+        Handler handler = cameraHandler;
+        if (handler != null) handler.post(this::applyFrameRate);
+        if (!isStatic) renderThread.requestRender();
+    }
+
+    /** Camera thread. Idle while static, else full rate unless the thermal ladder caps it. */
+    private void setFpsRange(CaptureRequest.Builder builder) {
+        if (motionGovernor.isStatic()) {
+            setIdleFpsRange(builder);
+        } else if (QualityController.capFrameRate(qualityController.level()) && cameraInfo.throttledFpsMax > 0) {
+            builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
+                    new Range<>(cameraInfo.throttledFpsMin, cameraInfo.throttledFpsMax));
+        } else {
+            builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, fullFpsRange);
+        }
+    }
+
+    /** Camera thread. Reads the governor again, as a later change may already be queued behind. */
+    private void applyFrameRate() {
+        CameraCaptureSession session = captureSession;
+        if (session == null || previewRequestBuilder == null || freezeRequested) return;
+        setFpsRange(previewRequestBuilder);
+        try {
+            session.setRepeatingRequest(previewRequestBuilder.build(), previewCaptureCallback, cameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("MainActivity", "Failed to change frame rate", e);
+        }
+    }
+
+    /**
+     * Main thread. Applies a thermal quality level: the render resolution here, the blur
+     * resolution on the GL thread, and the stream size cap and frame rate on the camera thread.
+     */
+    private void onQualityLevelChanged(int level) {
+        float scale = QualityController.renderScale(level);
+        if (scale < 1f && surfaceView.getWidth() > 0) {
+            surfaceView.getHolder().setFixedSize(Math.round(surfaceView.getWidth() * scale),
+                    Math.round(surfaceView.getHeight() * scale));
+        } else if (scale == 1f) {
+            surfaceView.getHolder().setSizeFromLayout();
+        }
+        hudRenderScale = scale;
+        publishHud();
+        renderer.setSharpenDownsample(QualityController.sharpenDownsample(level));
+        Handler handler = cameraHandler;
+        if (handler == null) return;
+        handler.post(() -> {
+            if (previewSizePolicy == null) return;
+            previewSizePolicy.setMaxPixels(QualityController.maxStreamPixels(level));
+            applyFrameRate();
+        });
+        // Re-selects the stream size under the new cap; rebuilds the session only if it changed.
+        requestIspZoom(zoomLevel);
+    }
+
+    /** Camera thread. */
+    private void resumePreview() {
+        CameraCaptureSession session = captureSession;
+        if (session == null || previewRequestBuilder == null) return;
+        try {
+            session.setRepeatingRequest(previewRequestBuilder.build(), previewCaptureCallback, cameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("MainActivity", "Failed to resume preview", e);
+        }
+    }
+
+    /**
+     * Camera thread. Stops the repeating request for a pause but keeps the device and session:
+     * the HAL holds on to its converged exposure, focus and white balance, which Camera2 offers
+     * no way to seed into a freshly opened device.
+     */
+    private void parkPreview() {
+        cameraParked = true;
+        CameraCaptureSession session = captureSession;
+        if (session == null) return;
+        try {
+            session.stopRepeating();
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w("MainActivity", "Failed to park preview", e);
+        }
+    }
+
+    /** Camera thread. Streams again, after moving to the new texture if GL came back first. */
+    private void unparkPreview() {
+        cameraParked = false;
+        if (previewSurfaceTexture != boundTexture) {
+            startPreviewIfReady();
+        } else {
+            resumePreview();
+        }
+    }
+
+    /** Camera thread. */
+    private void closeCameraDevice() {
+        cameraWanted = false;
+        cameraParked = false;
+        previewOutput = null;
+        if (boundTexture != null && boundTexture != previewSurfaceTexture) boundTexture.release();
+        boundTexture = null;
         if (captureSession != null) {
             captureSession.close();
             captureSession = null;
@@ -741,78 +1753,121 @@ public class MainActivity extends BaseVoiceActivity {
             cameraDevice.close();
             cameraDevice = null;
         }
+        if (previewSurface != null) {
+            previewSurface.release();
+            previewSurface = null;
+        }
+        if (stillReader != null) {
+            stillReader.close();
+            stillReader = null;
+        }
     }
 
     // GL Renderer
-    private class CameraGLRenderer implements GLSurfaceView.Renderer, SurfaceTexture.OnFrameAvailableListener {
-        private float zoom = 1.0f;
-        private float brightness = 0.0f;
-        private float contrast = 1.0f;
-        private float sharpness = 0.0f;
-        public volatile int currentFilter = 0;
-
-        private final String VERTEX_SHADER =
-                "#version 100\n" +
-                        "attribute vec4 aPosition;\n" +
-                        "attribute vec2 aTexCoord;\n" +
-                        "uniform mat4 uTexMatrix;\n" +
-                        "uniform float uZoom;\n" +
-                        "varying vec2 vTexCoord;\n" +
-                        "void main() {\n" +
-                        "    gl_Position = aPosition;\n" +
-                        "    vec2 zoomedCoord = (aTexCoord - 0.5) / uZoom + 0.5;\n" +
-                        "    vTexCoord = (uTexMatrix * vec4(zoomedCoord, 0.0, 1.0)).xy;\n" +
-                        "}\n";
-
-        private final String FRAGMENT_SHADER =
-                "#version 100\n" +
-                        "#extension GL_OES_EGL_image_external : require\n" +
-                        "precision highp float;\n" +
-                        "uniform samplerExternalOES sTexture;\n" +
-                        "uniform int uFilterMode;\n" +
-                        "uniform float uBrightness;\n" +
-                        "uniform float uContrast;\n" +
-                        "uniform float uSharpness;\n" +
-                        "varying vec2 vTexCoord;\n" +
-                        "void main() {\n" +
-                        "    vec4 color = texture2D(sTexture, vTexCoord);\n" +
-                        "    if (uFilterMode == 1) {\n" +
-                        "        color = vec4(color.r, color.g * 0.7, 0.0, 1.0);\n" +
-                        "    } else if (uFilterMode == 2) {\n" +
-                        "        float gray = color.r * 0.299 + color.g * 0.587 + color.b * 0.114;\n" +
-                        "        color = vec4(gray, gray, gray, 1.0);\n" +
-                        "    }\n" +
-                        "    color.rgb = (color.rgb - 0.5) * uContrast + 0.5;\n" +
-                        "    color.rgb += uBrightness;\n" +
-                        "    color.rgb = clamp(color.rgb, 0.0, 1.0);\n" +
-                        "    if (uSharpness > 0.0) {\n" +
-                        "        vec4 blurred = texture2D(sTexture, vTexCoord + vec2(0.01, 0.0)) * 0.25 +\n" +
-                        "                       texture2D(sTexture, vTexCoord + vec2(-0.01, 0.0)) * 0.25 +\n" +
-                        "                       texture2D(sTexture, vTexCoord + vec2(0.0, 0.01)) * 0.25 +\n" +
-                        "                       texture2D(sTexture, vTexCoord + vec2(0.0, -0.01)) * 0.25;\n" +
-                        "        color.rgb += (color.rgb - blurred.rgb) * uSharpness;\n" +
-                        "    }\n" +
-                        "    gl_FragColor = color;\n" +
-                        "}\n";
+    private class CameraGLRenderer implements GlRenderThread.Renderer, SurfaceTexture.OnFrameAvailableListener {
+        private final AtomicReference<RenderState> state = new AtomicReference<>(RenderState.DEFAULT);
+        private final AtomicReference<HudState> hud = new AtomicReference<>(HudState.NONE);
+        private final HudRenderer hudRenderer = new HudRenderer(getResources().getDisplayMetrics().density);
+        private final ParameterAnimator animator = new ParameterAnimator(MIN_ZOOM, MAX_ZOOM,
+                zoom -> runOnUiThread(() -> onZoomSettled(zoom)));
+        /** State version the still's analysis passes last ran for; -1 when they must run again. */
+        private long stillAnalysedVersion = -1;
 
         private final float[] QUAD_COORDS = { -1.0f, -1.0f, 1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f };
         private final float[] TEX_COORDS = { 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 1.0f };
         private FloatBuffer vertexBuffer, texBuffer;
-        private int program;
-        private int positionHandle, texCoordHandle, texMatrixHandle, filterModeHandle, zoomHandle;
-        private int brightnessHandle, contrastHandle, sharpnessHandle;
+        // Composite on GLES 3.0: a static quad and the render parameters in one uniform buffer.
+        private boolean gles3;
+        private final QuadVertexArray quad = new QuadVertexArray();
+        private final RenderParamsBuffer paramsBuffer = new RenderParamsBuffer();
+        private final ProgramCache programCache = new ProgramCache(key -> renderThread.requestRender());
         private int cameraTextureId;
         private final float[] texMatrix = new float[16];
+        private final float[] stabilizedMatrix = new float[16];
+        private final float[] stabilizationOffset = new float[2];
+        private volatile float tanHalfFov = 0.7f;
+        private final SharpenPass sharpenPass;
+        private final StillTexture still;
+        private final ClahePass clahePass;
+        private final ReadingPass readingPass;
+        private final MotionProbe motionProbe;
+        /** Live frames between motion probes while the view is moving; static views probe every frame. */
+        private static final int PROBE_INTERVAL = 4;
+        private int framesSinceProbe;
+        private boolean drewLiveFrame;
+        private volatile boolean showStill;
+        // Recorded frames in place of the camera, each stage timed to completion; render thread.
+        private final FrameRecorder recorder;
+        private ReplaySource replay;
+        private GyroStabilizer replayStabilizer;
+        private StageTimer replayTimer;
+        private final ReplayPacer.GyroSink replayGyro =
+                (timestampNs, x, y, z) -> replayStabilizer.addSample(timestampNs, x, y);
+        private static final int STAGE_UPLOAD = 0;
+        private static final int STAGE_ANALYSIS = 1;
+        private static final int STAGE_SHARPEN = 2;
+        private static final int STAGE_COMPOSITE = 3;
+        // The last seconds of the live view, encoded as they are drawn, and their playback.
+        private static final long REWIND_STEP_US = 5_000_000L;
+        private final RewindBuffer rewindBuffer;
+        private final RewindEncoder rewindEncoder;
+        private final RewindPlayer rewindPlayer;
+        private volatile boolean rewinding;
+        private final float[] identityMatrix = new float[16];
+        // Frames keep arriving at the idle rate while a still is shown; consume them undrawn.
+        private final Runnable latchFrame = () -> {
+            if (previewSurfaceTexture != null) previewSurfaceTexture.updateTexImage();
+        };
+        // While the view is static each frame is probed first and only drawn if it changed. The
+        // probe's pixels arrive asynchronously; the decision waits for them, a vsync at a time.
+        private final Runnable probeFrame = () -> {
+            SurfaceTexture texture = previewSurfaceTexture;
+            if (texture == null || showStill) return;
+            texture.updateTexImage();
+            texture.getTransformMatrix(texMatrix);
+            startProbe(texture.getTimestamp(), state.get().zoom);
+            decideFrame();
+        };
+        private final Runnable decideFrame = this::decideFrame;
+        private final Choreographer.FrameCallback decideAtVsync = frameTimeNanos -> {
+            decidePosted = false;
+            renderThread.queueEvent(decideFrame);
+        };
+        private boolean decidePosted;
+        private int viewWidth, viewHeight;
+        private volatile int sourceWidth = 1, sourceHeight = 1;
 
         CameraGLRenderer() {
             vertexBuffer = ByteBuffer.allocateDirect(QUAD_COORDS.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
             vertexBuffer.put(QUAD_COORDS).position(0);
             texBuffer = ByteBuffer.allocateDirect(TEX_COORDS.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
             texBuffer.put(TEX_COORDS).position(0);
+            sharpenPass = new SharpenPass(vertexBuffer, texBuffer);
+            still = new StillTexture(vertexBuffer, texBuffer);
+            clahePass = new ClahePass(vertexBuffer, texBuffer);
+            readingPass = new ReadingPass(vertexBuffer, texBuffer);
+            motionProbe = new MotionProbe(vertexBuffer, texBuffer);
+            recorder = new FrameRecorder(vertexBuffer, texBuffer);
+            rewindBuffer = createRewindBuffer();
+            rewindEncoder = new RewindEncoder(rewindBuffer, vertexBuffer, texBuffer);
+            rewindPlayer = new RewindPlayer(rewindBuffer, vertexBuffer, texBuffer,
+                    () -> renderThread.requestRender(), this::onRewindEnd);
+            Matrix.setIdentityM(identityMatrix, 0);
+        }
+
+        private RewindBuffer createRewindBuffer() {
+            ByteBuffer storage;
+            try {
+                storage = RewindBuffer.map(new File(getCacheDir(), "rewind.bin"), RewindEncoder.CAPACITY_BYTES);
+            } catch (IOException e) {
+                Log.w("Rewind", "Cannot map the rewind file; keeping it in memory", e);
+                storage = ByteBuffer.allocateDirect(RewindEncoder.CAPACITY_BYTES);
+            }
+            return new RewindBuffer(storage, RewindEncoder.RETENTION_US, RewindEncoder.MAX_SAMPLES);
         }
 
         @Override
-        public void onSurfaceCreated(GL10 gl, javax.microedition.khronos.egl.EGLConfig config) {
+        public void onSurfaceCreated() {
             int[] tex = new int[1];
             GLES20.glGenTextures(1, tex, 0);
             cameraTextureId = tex[0];
@@ -823,99 +1878,593 @@ public class MainActivity extends BaseVoiceActivity {
             GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
 
             previewSurfaceTexture = new SurfaceTexture(cameraTextureId);
-            previewSurfaceTexture.setOnFrameAvailableListener(this, new Handler(Looper.getMainLooper()));
-
-            int vs = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
-            int fs = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
-            program = GLES20.glCreateProgram();
-            GLES20.glAttachShader(program, vs);
-            GLES20.glAttachShader(program, fs);
-            GLES20.glLinkProgram(program);
-
-            positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
-            texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
-            texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
-            filterModeHandle = GLES20.glGetUniformLocation(program, "uFilterMode");
-            zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
-            brightnessHandle = GLES20.glGetUniformLocation(program, "uBrightness");
-            contrastHandle = GLES20.glGetUniformLocation(program, "uContrast");
-            sharpnessHandle = GLES20.glGetUniformLocation(program, "uSharpness");
-
-            isGLSurfaceCreated = true;
-            runOnUiThread(() -> { if (isCameraPermissionGranted) openCamera(); });
+            // requestRender() is thread-safe and posts straight to the render thread's queue,
+            // so the signal goes camera thread → GL thread without touching the main queue.
+            previewSurfaceTexture.setOnFrameAvailableListener(this, cameraHandler);
+
+            gles3 = GlUtil.supportsGles3Composite();
+            if (gles3) {
+                quad.onSurfaceCreated();
+                paramsBuffer.onSurfaceCreated();
+            }
+            programCache.onSurfaceCreated(gles3);
+            sharpenPass.onSurfaceCreated();
+            still.onSurfaceCreated();
+            clahePass.onSurfaceCreated();
+            readingPass.onSurfaceCreated();
+            motionProbe.onSurfaceCreated();
+            hudRenderer.onSurfaceCreated();
+            // Recording and replay do not outlive the context they draw with.
+            recorder.stop();
+            recorder.onSurfaceCreated();
+            replay = null;
+            rewindEncoder.onSurfaceCreated();
+            rewindPlayer.onSurfaceCreated();
+            rewinding = false;
+            showStill = false;
         }
 
         @Override
-        public void onSurfaceChanged(GL10 gl, int width, int height) {
+        public void onSurfaceChanged(int width, int height) {
             GLES20.glViewport(0, 0, width, height);
+            viewWidth = width;
+            viewHeight = height;
+            sharpenPass.onSurfaceChanged(width, height);
+            still.onSurfaceChanged(width, height);
+            clahePass.onSurfaceChanged(width, height);
+            readingPass.onSurfaceChanged(width, height);
+            stillAnalysedVersion = -1;
+            rewindEncoder.start(width, height);
+            displayWidth = width;
+            displayHeight = height;
+            Handler handler = cameraHandler;
+            if (handler != null) handler.post(MainActivity.this::startPreviewIfReady);
         }
 
         @Override
-        public void onDrawFrame(GL10 gl) {
+        public void onDrawFrame() {
+            // One snapshot per frame; later changes wait for the next one.
+            RenderState state = animator.apply(this.state.get(), System.nanoTime());
+            if (animator.isAnimating()) renderThread.requestAnimationFrame();
+            if (replay != null && drawReplay(state)) {
+                drewLiveFrame = false;
+                hudRenderer.draw(hud.get(), viewWidth, viewHeight);
+                return;
+            }
+            // Until the first rewound frame is decoded the live view stays up.
+            if (rewinding && rewindPlayer.draw()) {
+                drewLiveFrame = false;
+                hudRenderer.draw(hud.get(), viewWidth, viewHeight);
+                return;
+            }
+            drewLiveFrame = !showStill;
+            if (!drewLiveFrame) {
+                drawStill(state);
+                hudRenderer.draw(hud.get(), viewWidth, viewHeight);
+                return;
+            }
+            frameMetrics.onDrawStart();
+            long frameTimestamp = 0L;
             if (previewSurfaceTexture != null) {
                 previewSurfaceTexture.updateTexImage();
                 previewSurfaceTexture.getTransformMatrix(texMatrix);
+                frameTimestamp = previewSurfaceTexture.getTimestamp();
+                frameMetrics.onFrameLatched(frameTimestamp);
+                if (recorder.isRecording() && frameTimestamp != 0L) {
+                    if (!recorder.capture(cameraTextureId, texMatrix, frameTimestamp, ispZoom(frameTimestamp))) {
+                        runOnUiThread(() -> showToast("Recording full"));
+                    }
+                    GLES20.glViewport(0, 0, viewWidth, viewHeight);
+                }
+            }
+            // Whatever an earlier probe saw is at most this old by now.
+            if (collectProbe() != MotionProbe.NO_RESULT) motionProbe.markDisplayed();
+            if (frameTimestamp != 0L && !motionGovernor.isStatic() && !motionProbe.isPending()
+                    && ++framesSinceProbe >= PROBE_INTERVAL) {
+                framesSinceProbe = 0;
+                long start = System.nanoTime();
+                startProbe(frameTimestamp, state.zoom);
+                frameMetrics.onProbe(System.nanoTime() - start);
+            }
+            float sharpness = state.sharpness;
+            float ispZoom = ispZoom(frameTimestamp);
+            float gpuZoom = Math.max(1f, state.zoom / ispZoom);
+            float tanX = tanHalfFov / ispZoom;
+            float[] frameMatrix = state.stabilize
+                    ? stabilize(stabilizer, texMatrix, frameTimestamp, gpuZoom, tanX, tanX * sourceHeight / sourceWidth)
+                    : texMatrix;
+            int filter = state.filter;
+            if (filter == CompositeShaders.FILTER_LOCAL_CONTRAST) {
+                long start = System.nanoTime();
+                if (clahePass.update(true, cameraTextureId, frameMatrix, gpuZoom, false)) {
+                    frameMetrics.onAnalysis(System.nanoTime() - start);
+                    GLES20.glViewport(0, 0, viewWidth, viewHeight);
+                }
+            } else if (ReadingPass.isReadingMode(filter)) {
+                readingPass.render(true, cameraTextureId, frameMatrix, gpuZoom);
+                GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            }
+            int blurTexture = 0;
+            if (sharpness > 0f) {
+                blurTexture = sharpenPass.render(true, cameraTextureId, frameMatrix, gpuZoom,
+                        sourceWidth, sourceHeight, viewWidth, viewHeight);
+                GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            }
+            // While rewinding the buffer is being played from; nothing new goes into it.
+            boolean encode = !rewinding && rewindEncoder.beginFrame(renderThread, System.nanoTime(),
+                    viewWidth, viewHeight);
+            drawComposite(state, false, GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId, frameMatrix, gpuZoom,
+                    blurTexture);
+            if (encode) rewindEncoder.endFrame();
+            hudRenderer.draw(hud.get(), viewWidth, viewHeight);
+            frameMetrics.onDrawEnd();
+        }
+
+        @Override
+        public void onFrameSwapped() {
+            if (drewLiveFrame) frameMetrics.onPresent();
+            // The view is on its way; the rewind encoder gets its copy of the frame second.
+            rewindEncoder.encode(renderThread);
+            GLES20.glViewport(0, 0, viewWidth, viewHeight);
+        }
+
+        @Override
+        public void onContextDestroyed() {
+            // The compiler's pbuffer context would keep the share group, and with it every
+            // texture and buffer of the dead context, alive while the app is in the background.
+            programCache.release();
+        }
+
+        /**
+         * Draws the frozen still. Its visible window is first resampled to a view-sized texture,
+         * which then goes through the same sharpen and composite passes as a camera frame.
+         */
+        private void drawStill(RenderState state) {
+            float sharpness = state.sharpness;
+            float zoom = state.zoom;
+            // Match the live preview's framing: the still is usually 4:3, the stream often wider.
+            float previewAspect = sourceWidth / (float) sourceHeight;
+            float stillAspect = still.width() / (float) still.height();
+            float cropX = previewAspect < stillAspect ? previewAspect / stillAspect : 1f;
+            float cropY = previewAspect > stillAspect ? stillAspect / previewAspect : 1f;
+            int viewTexture = still.render(zoom, state.panX, state.panY, cropX, cropY);
+            int filter = state.filter;
+            // The view of a still only changes with the render state and while it animates;
+            // other redraws reuse the analysis.
+            boolean animating = animator.isAnimating();
+            if (animating || state.version != stillAnalysedVersion) {
+                stillAnalysedVersion = animating ? -1 : state.version;
+                if (filter == CompositeShaders.FILTER_LOCAL_CONTRAST) {
+                    clahePass.update(false, viewTexture, identityMatrix, 1f, true);
+                } else if (ReadingPass.isReadingMode(filter)) {
+                    readingPass.render(false, viewTexture, identityMatrix, 1f);
+                }
+            }
+            int blurTexture = 0;
+            if (sharpness > 0f) {
+                blurTexture = sharpenPass.renderView(viewTexture, zoom * viewWidth / (still.width() * cropX));
+            }
+            GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            drawComposite(state, true, GLES20.GL_TEXTURE_2D, viewTexture, identityMatrix, 1f, blurTexture);
+        }
+
+        /**
+         * Draws the next frame of a replay through the same passes as a live frame, sampling the
+         * replayed buffer as a 2D texture. On frames with a new upload every stage is run to
+         * completion with {@code glFinish} and timed, which serializes the GPU but attributes the
+         * frame's cost to the stage that caused it. Returns false once the replay has played
+         * through, after reporting the timings.
+         */
+        private boolean drawReplay(RenderState state) {
+            ReplaySource source = replay;
+            long start = System.nanoTime();
+            boolean timed = source.advance(start, replayGyro);
+            if (source.isFinished()) {
+                finishReplay(true);
+                return false;
+            }
+            long t = endStage(STAGE_UPLOAD, start, timed);
+            // Recorded frames carry the ISP crop they were captured with; the GPU does the rest, as live.
+            float zoom = Math.max(1f, state.zoom / source.ispZoom());
+            int texture = source.texture();
+            float tanX = source.tanHalfFov();
+            float[] frameMatrix = state.stabilize
+                    ? stabilize(replayStabilizer, source.texMatrix(), source.timestampNs(), zoom, tanX,
+                    tanX * source.height() / source.width())
+                    : source.texMatrix();
+            int filter = state.filter;
+            if (filter == CompositeShaders.FILTER_LOCAL_CONTRAST) {
+                clahePass.update(false, texture, frameMatrix, zoom, false);
+            } else if (ReadingPass.isReadingMode(filter)) {
+                readingPass.render(false, texture, frameMatrix, zoom);
+            }
+            GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            t = endStage(STAGE_ANALYSIS, t, timed);
+            int blurTexture = 0;
+            if (state.sharpness > 0f) {
+                blurTexture = sharpenPass.render(false, texture, frameMatrix, zoom,
+                        source.width(), source.height(), viewWidth, viewHeight);
+                GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            }
+            t = endStage(STAGE_SHARPEN, t, timed);
+            drawComposite(state, true, GLES20.GL_TEXTURE_2D, texture, frameMatrix, zoom, blurTexture);
+            endStage(STAGE_COMPOSITE, t, timed);
+            if (source.paced()) {
+                renderThread.requestAnimationFrame();
+            } else {
+                renderThread.requestRender();
             }
+            return true;
+        }
+
+        /** Waits for the GPU and charges the time since {@code start} to {@code stage}, if timing. */
+        private long endStage(int stage, long start, boolean timed) {
+            if (!timed) return start;
+            GLES20.glFinish();
+            long now = System.nanoTime();
+            replayTimer.add(stage, now - start);
+            return now;
+        }
+
+        /** Render thread. Back to the camera; with {@code report}, logs and shows the stage timings. */
+        private void finishReplay(boolean report) {
+            if (replay == null) return;
+            replay.release();
+            replay = null;
+            // Tables built from the recording do not fit the live view.
+            clahePass.invalidate();
+            if (!report) return;
+            String text = replayTimer.format();
+            Log.i("Replay", "Stage cost\n" + text);
+            runOnUiThread(() -> {
+                showToast("Replay done");
+                replayReport = text;
+                setMetricsOverlayVisible(true);
+            });
+        }
+
+        private void drawComposite(RenderState state, boolean fromStill, int target, int texture, float[] matrix,
+                                   float zoom, int blurTexture) {
+            int filter = state.filter;
+            CompositeProgram p = programCache.get(CompositeShaders.key(filter, state.sharpness > 0f, fromStill));
             GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-            GLES20.glUseProgram(program);
+            GLES20.glUseProgram(p.program);
+            GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, blurTexture);
+            GLES20.glUniform1i(p.blurSamplerHandle, 1);
+            if (p.gles3) paramsBuffer.update(state);
+            if (filter == CompositeShaders.FILTER_LOCAL_CONTRAST) {
+                GLES20.glActiveTexture(GLES20.GL_TEXTURE2);
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, clahePass.lutTexture());
+                GLES20.glUniform1i(p.lutSamplerHandle, 2);
+                GLES20.glUniform2f(p.lutTilesHandle, clahePass.tilesX(), clahePass.tilesY());
+            } else if (ReadingPass.isReadingMode(filter)) {
+                GLES20.glActiveTexture(GLES20.GL_TEXTURE2);
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, readingPass.meanTexture());
+                GLES20.glUniform1i(p.meanSamplerHandle, 2);
+                GLES20.glActiveTexture(GLES20.GL_TEXTURE3);
+                GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, readingPass.varianceTexture());
+                GLES20.glUniform1i(p.varianceSamplerHandle, 3);
+                if (!p.gles3) {
+                    GLES20.glUniform3fv(p.inkHandle, 1, ReadingPass.ink(filter), 0);
+                    GLES20.glUniform3fv(p.paperHandle, 1, ReadingPass.paper(filter), 0);
+                }
+            }
             GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
-            GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
-            GLES20.glUniform1i(filterModeHandle, currentFilter);
-            GLES20.glUniform1f(zoomHandle, zoom);
-            GLES20.glUniform1f(brightnessHandle, brightness);
-            GLES20.glUniform1f(contrastHandle, contrast);
-            GLES20.glUniform1f(sharpnessHandle, sharpness);
-            GLES20.glEnableVertexAttribArray(positionHandle);
-            GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
-            GLES20.glEnableVertexAttribArray(texCoordHandle);
-            GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+            GLES20.glBindTexture(target, texture);
+            GLES20.glUniformMatrix4fv(p.texMatrixHandle, 1, false, matrix, 0);
+            GLES20.glUniform1f(p.zoomHandle, zoom);
+            if (p.gles3) {
+                quad.draw();
+                return;
+            }
+            GLES20.glUniform1i(p.filterModeHandle, filter);
+            GLES20.glUniform1f(p.brightnessHandle, state.brightness);
+            GLES20.glUniform1f(p.contrastHandle, state.contrast);
+            GLES20.glUniform1f(p.sharpnessHandle, state.sharpness);
+            GLES20.glEnableVertexAttribArray(p.positionHandle);
+            GLES20.glVertexAttribPointer(p.positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+            GLES20.glEnableVertexAttribArray(p.texCoordHandle);
+            GLES20.glVertexAttribPointer(p.texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
             GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-            GLES20.glDisableVertexAttribArray(positionHandle);
-            GLES20.glDisableVertexAttribArray(texCoordHandle);
+            GLES20.glDisableVertexAttribArray(p.positionHandle);
+            GLES20.glDisableVertexAttribArray(p.texCoordHandle);
+        }
+
+        /** Starts probing the latched frame, unless the previous probe has not come back yet. */
+        private void startProbe(long frameTimestamp, float zoom) {
+            float gpuZoom = Math.max(1f, zoom / ispZoom(frameTimestamp));
+            if (motionProbe.start(cameraTextureId, texMatrix, gpuZoom)) {
+                GLES20.glViewport(0, 0, viewWidth, viewHeight);
+            }
+        }
+
+        /**
+         * Feeds the governor from a probe that has come back and returns its change against the
+         * frame on screen; {@link MotionProbe#NO_RESULT} if none has.
+         */
+        private float collectProbe() {
+            float delta = motionProbe.poll();
+            if (delta != MotionProbe.NO_RESULT) motionGovernor.onFrameMotion(System.nanoTime(), delta);
+            return delta;
+        }
+
+        /** Static view: draws the probed frame if it changed, else skips it. */
+        private void decideFrame() {
+            float delta = collectProbe();
+            if (delta == MotionProbe.NO_RESULT) {
+                if (motionProbe.isPending() && !decidePosted) {
+                    decidePosted = true;
+                    Choreographer.getInstance().postFrameCallback(decideAtVsync);
+                }
+                return;
+            }
+            if (motionGovernor.canSkip(delta)) {
+                frameMetrics.onFrameSkipped();
+            } else {
+                motionProbe.markDisplayed();
+                renderThread.requestRender();
+            }
+        }
+
+        /**
+         * ISP crop the latched frame was captured with. The GPU magnifies by the total divided by
+         * this, never below 1x, so a pending zoom-out holds the old view for the couple of frames
+         * until the wider crop arrives.
+         */
+        private float ispZoom(long frameTimestamp) {
+            HybridZoom zoomSplit = hybridZoom;
+            if (zoomSplit == null || frameTimestamp == 0L) return 1f;
+            return zoomSplit.ispZoomForFrame(frameTimestamp);
+        }
+
+        /**
+         * Texture matrix for the frame, shifted against hand and head shake. The shift is applied
+         * before the buffer transform, i.e. in image space after zoom, where the GPU zoom margin is.
+         *
+         * @param tanX tangent of half the stream's horizontal field of view at the frame's ISP zoom
+         * @param tanY the same, vertically
+         */
+        private float[] stabilize(GyroStabilizer source, float[] matrix, long frameTimestamp, float gpuZoom,
+                                  float tanX, float tanY) {
+            if (frameTimestamp == 0L) return matrix;
+            if (!source.offsetFor(frameTimestamp, gpuZoom, tanX, tanY, stabilizationOffset)) {
+                return matrix;
+            }
+            Matrix.translateM(stabilizedMatrix, 0, matrix, 0,
+                    stabilizationOffset[0], stabilizationOffset[1], 0f);
+            return stabilizedMatrix;
         }
 
         @Override
         public void onFrameAvailable(SurfaceTexture surfaceTexture) {
-            glSurfaceView.requestRender();
+            if (showStill || rewinding) {
+                renderThread.queueEvent(latchFrame);
+                return;
+            }
+            frameMetrics.onFrameAvailable();
+            if (motionGovernor.isStatic()) {
+                renderThread.queueEvent(probeFrame);
+            } else {
+                renderThread.requestRender();
+            }
         }
 
-        public void setFilterMode(int mode) {
-            if (currentFilter != mode) {
-                currentFilter = mode;
-                glSurfaceView.requestRender();
-                new Handler(Looper.getMainLooper()).postDelayed(() -> glSurfaceView.requestRender(), 100);
+        /** Any thread. Uploads the still on the GL thread and shows it in place of the preview. */
+        public void showStill(Bitmap bitmap) {
+            renderThread.queueEvent(() -> {
+                if (freezeRequested) {
+                    still.upload(bitmap);
+                    stillAnalysedVersion = -1;
+                    showStill = true;
+                }
+                bitmap.recycle();
+                renderThread.requestRender();
+            });
+        }
+
+        public void clearStill() {
+            showStill = false;
+            renderThread.queueEvent(() -> {
+                still.release();
+                // The tables were built from the still; start the live view with fresh ones.
+                clahePass.invalidate();
+            });
+            renderThread.requestRender();
+        }
+
+        /**
+         * Any thread. Publishes {@code change} applied to the current state and asks for one
+         * redraw; a change that leaves the state as it was draws nothing.
+         */
+        private void updateState(UnaryOperator<RenderState> change) {
+            while (true) {
+                RenderState current = state.get();
+                RenderState next = change.apply(current);
+                if (next == current) return;
+                if (state.compareAndSet(current, next)) break;
             }
+            renderThread.requestRender();
+        }
+
+        /** Offset of the window over the still, in view coordinates. */
+        public void setPan(float x, float y) {
+            updateState(s -> s.withPan(x, y));
+        }
+
+        /** Any thread. Records camera frames and gyro into {@code file} until stopped or full. */
+        public void startRecording(File file) {
+            CameraStartupCache.Entry info = cameraInfo;
+            if (info == null) return;
+            long clockOffsetNs = gyroTimeOffsetNs;
+            float fov = tanHalfFov;
+            renderThread.queueEvent(() -> {
+                try {
+                    recorder.start(file, sourceWidth, sourceHeight, clockOffsetNs, info.sensorOrientation, fov);
+                    runOnUiThread(() -> showToast("Recording"));
+                } catch (IOException e) {
+                    Log.w("Replay", "Failed to start recording", e);
+                    runOnUiThread(() -> showToast("Recording failed"));
+                }
+            });
+        }
+
+        public void stopRecording() {
+            renderThread.queueEvent(() -> {
+                int frames = recorder.stop();
+                runOnUiThread(() -> showToast("Recorded " + frames + " frames"));
+            });
+        }
+
+        /** Sensor thread. */
+        void recordGyro(long timestampNs, float x, float y, float z) {
+            recorder.onGyro(timestampNs, x, y, z);
+        }
+
+        /**
+         * Any thread. Replays {@code file} in place of the camera, as fast as frames can be drawn
+         * or paced to their recorded timestamps, and reports the per-stage cost at the end.
+         */
+        public void startReplay(File file, boolean paced) {
+            renderThread.queueEvent(() -> {
+                FrameRecording.Reader recording;
+                try {
+                    recording = new FrameRecording.Reader(file);
+                } catch (IOException e) {
+                    Log.w("Replay", "Cannot open recording", e);
+                    runOnUiThread(() -> showToast("No recording to replay"));
+                    return;
+                }
+                recorder.stop();
+                finishReplay(false);
+                ReplaySource source = new ReplaySource(recording, paced);
+                source.onSurfaceCreated();
+                replayStabilizer = new GyroStabilizer();
+                replayStabilizer.setSensorOrientation(recording.sensorOrientation());
+                replayStabilizer.setTimeOffsetNs(recording.clockOffsetNs());
+                replayTimer = new StageTimer("upload", "analysis", "sharpen", "composite");
+                clahePass.invalidate();
+                replay = source;
+                renderThread.requestRender();
+            });
+        }
+
+        public void stopReplay() {
+            renderThread.queueEvent(() -> finishReplay(true));
+            renderThread.requestRender();
+        }
+
+        /**
+         * Any thread. Shows the view as it was a few seconds ago and plays on from there back to
+         * live; while already rewinding, steps back again from the frame on show.
+         */
+        public void rewind() {
+            renderThread.queueEvent(() -> {
+                if (showStill || replay != null) return;
+                MediaFormat format = rewindEncoder.outputFormat();
+                if (format == null || rewindBuffer.isEmpty()) {
+                    runOnUiThread(() -> showToast("Nothing to rewind"));
+                    return;
+                }
+                long newestUs = rewindBuffer.newestUs();
+                long fromUs = Math.max(rewindBuffer.oldestUs(),
+                        (rewinding ? rewindPlayer.positionUs() : newestUs) - REWIND_STEP_US);
+                if (rewinding) {
+                    rewindPlayer.seek(fromUs);
+                } else {
+                    rewindPlayer.start(format, fromUs);
+                    rewinding = true;
+                }
+                long secondsBack = Math.round((newestUs - fromUs) / 1e6);
+                runOnUiThread(() -> showToast("Rewind " + secondsBack + " s"));
+            });
+        }
+
+        /** Any thread. Back to the live view. */
+        public void stopRewind() {
+            renderThread.queueEvent(() -> {
+                if (!rewinding) return;
+                rewinding = false;
+                rewindPlayer.stop();
+            });
+            renderThread.requestRender();
+        }
+
+        /** Decoder thread. Playback caught up with the newest frame. */
+        private void onRewindEnd() {
+            stopRewind();
+            runOnUiThread(() -> showToast("Live"));
+        }
+
+        /** Main thread, once the context is gone. Frees the codecs; the encoder starts afresh on resume. */
+        void pauseRewind() {
+            rewindPlayer.stop();
+            rewindEncoder.stop();
+        }
+
+        /** Any thread. What the GL HUD draws over the next frames. */
+        public void setHud(HudState next) {
+            if (!next.equals(hud.getAndSet(next))) renderThread.requestRender();
+        }
+
+        public void setFilterMode(int mode) {
+            updateState(s -> s.withFilter(mode));
         }
 
         public void setZoomLevel(float zoomLevel) {
-            this.zoom = zoomLevel;
+            animator.setZoomRate(0f);
+            updateState(s -> s.withZoom(zoomLevel));
+        }
+
+        /** Continuous zoom in log zoom per second; 0 eases to a stop. */
+        public void setZoomRate(float rate) {
+            animator.setZoomRate(rate);
+            renderThread.requestRender();
+        }
+
+        /** All image adjustments in one state change, so they reach the screen together. */
+        public void setAdjustments(Adjustments a) {
+            animator.setZoomRate(0f);
+            updateState(s -> s.withZoom(a.zoom).withBrightness(a.brightness).withContrast(a.contrast)
+                    .withSharpness(a.sharpness).withFilter(a.filter));
         }
 
         public void setBrightness(float brightness) {
-            this.brightness = brightness;
+            updateState(s -> s.withBrightness(brightness));
         }
 
         public void setContrast(float contrast) {
-            this.contrast = contrast;
+            updateState(s -> s.withContrast(contrast));
         }
 
         public void setSharpness(float sharpness) {
-            this.sharpness = sharpness;
+            updateState(s -> s.withSharpness(sharpness));
         }
 
-        private int loadShader(int type, String code) {
-            int shader = GLES20.glCreateShader(type);
-            GLES20.glShaderSource(shader, code);
-            GLES20.glCompileShader(shader);
-            int[] status = new int[1];
-            GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
-            if (status[0] == 0) {
-                Log.e("CameraGLRenderer", "Shader compile error: " + GLES20.glGetShaderInfoLog(shader));
-                GLES20.glDeleteShader(shader);
-                return 0;
-            }
-            return shader;
+        public void setStabilizationEnabled(boolean enabled) {
+            updateState(s -> s.withStabilize(enabled));
+        }
+
+        /** Resolution divisor of the unsharp-mask blur; see {@link QualityController}. */
+        public void setSharpenDownsample(int downsample) {
+            renderThread.queueEvent(() -> sharpenPass.setDownsample(downsample));
+            renderThread.requestRender();
+        }
+
+        /** Tangent of half the sensor's field of view across the long edge, at 1x ISP zoom. */
+        public void setFieldOfView(float tanHalfFov) {
+            this.tanHalfFov = tanHalfFov;
+        }
+
+        /** Size of the camera buffer backing the SurfaceTexture, used to scale the blur kernel. */
+        public void setSourceSize(int width, int height) {
+            sourceWidth = width;
+            sourceHeight = height;
+        }
+
+        void release() {
+            rewindEncoder.release();
+            rewindPlayer.release();
         }
     }
 }
\ No newline at end of file
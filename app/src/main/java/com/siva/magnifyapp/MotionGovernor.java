@@ -0,0 +1,94 @@
+package com.siva.magnifyapp;
+
+/**
+ * Decides when the view is static enough to drop the camera to its idle frame rate and skip
+ * redraws. Evidence comes from three places: the frame-to-frame change of a tiny luma probe,
+ * gyro rates while the gyroscope is registered, and user input. Staying static needs
+ * {@link #STATIC_HOLD_NS} of quiet frames; any single sign of motion or input wakes it at once.
+ *
+ * <p>Callers pass a common clock, e.g. {@code System.nanoTime()}. Safe to use from the GL,
+ * camera and main threads; the listener runs on whichever thread caused the change.
+ */
+final class MotionGovernor {
+    interface Listener {
+        void onStaticChanged(boolean isStatic);
+    }
+
+    /** Quiet time before the view counts as static. */
+    static final long STATIC_HOLD_NS = 1_500_000_000L;
+    /** Mean absolute luma change between probes above which the scene is moving. */
+    static final float MOTION_THRESHOLD = 0.02f;
+    /** Mean absolute luma change below which a frame is redrawn as nothing but sensor noise. */
+    static final float IDENTICAL_THRESHOLD = 0.004f;
+    /** Head rotation rate that wakes the view, rad/s; well above tremor. */
+    static final float GYRO_THRESHOLD = 0.15f;
+
+    private final Listener listener;
+
+    private volatile boolean isStatic;
+    private long quietSinceNs = -1;
+    private long staticSinceNs;
+    private long staticTotalNs;
+    private long windowStartNs = -1;
+
+    MotionGovernor(Listener listener) {
+        this.listener = listener;
+    }
+
+    boolean isStatic() {
+        return isStatic;
+    }
+
+    /** Whether a frame that changed by {@code delta} may be skipped instead of redrawn. */
+    boolean canSkip(float delta) {
+        return isStatic && delta <= IDENTICAL_THRESHOLD;
+    }
+
+    /** Mean absolute luma change in [0, 1] between the latest two probes. */
+    void onFrameMotion(long nowNs, float delta) {
+        if (delta > MOTION_THRESHOLD) {
+            wake(nowNs);
+            return;
+        }
+        boolean changed;
+        synchronized (this) {
+            if (windowStartNs < 0) windowStartNs = nowNs;
+            if (quietSinceNs < 0) quietSinceNs = nowNs;
+            changed = !isStatic && nowNs - quietSinceNs >= STATIC_HOLD_NS;
+            if (changed) {
+                isStatic = true;
+                staticSinceNs = nowNs;
+            }
+        }
+        if (changed) listener.onStaticChanged(true);
+    }
+
+    /** Angular rate magnitude in rad/s. Quiet gyro readings alone never make the view static. */
+    void onGyro(long nowNs, float rate) {
+        if (rate > GYRO_THRESHOLD) wake(nowNs);
+    }
+
+    void onUserInput(long nowNs) {
+        wake(nowNs);
+    }
+
+    /** Fraction of time spent static since the first frame, for the stats overlay. */
+    synchronized float staticFraction(long nowNs) {
+        if (windowStartNs < 0 || nowNs <= windowStartNs) return 0f;
+        long total = staticTotalNs + (isStatic ? nowNs - staticSinceNs : 0L);
+        return total / (float) (nowNs - windowStartNs);
+    }
+
+    private void wake(long nowNs) {
+        boolean changed;
+        synchronized (this) {
+            quietSinceNs = nowNs;
+            changed = isStatic;
+            if (changed) {
+                isStatic = false;
+                staticTotalNs += nowNs - staticSinceNs;
+            }
+        }
+        if (changed) listener.onStaticChanged(false);
+    }
+}
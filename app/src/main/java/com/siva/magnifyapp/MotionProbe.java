@@ -0,0 +1,145 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Cheap scene motion estimate for {@link MotionGovernor}: the zoomed camera view is reduced to a
+ * 32x18 luma thumbnail and compared with the thumbnail of the frame last shown. Each thumbnail
+ * texel averages a 4x4 grid of bilinear taps spread over its footprint, which keeps sensor noise
+ * well below the motion threshold; a single tap per texel would not.
+ *
+ * <p>The thumbnail is read back with {@link AsyncReadback}, so a probe is started with
+ * {@link #start} and its result collected later with {@link #poll}. Only frames the caller
+ * reports as shown through {@link #markDisplayed()} become the reference: a run of skipped frames
+ * is compared against what is on screen, so a slow drift still adds up to a redraw.
+ */
+final class MotionProbe {
+    static final int WIDTH = 32;
+    static final int HEIGHT = 18;
+    /** Taps per side of the grid averaged into each thumbnail texel. */
+    private static final int TAPS = 4;
+    /** {@link #poll} result while the probe's pixels have not arrived. */
+    static final float NO_RESULT = -1f;
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "uniform samplerExternalOES sTexture;\n" +
+                    "uniform vec2 uStepX;\n" +
+                    "uniform vec2 uStepY;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    vec3 sum = vec3(0.0);\n" +
+                    "    for (int y = 0; y < " + TAPS + "; y++) {\n" +
+                    "        for (int x = 0; x < " + TAPS + "; x++) {\n" +
+                    "            vec2 offset = (float(x) - " + (TAPS - 1) / 2f + ") * uStepX\n" +
+                    "                    + (float(y) - " + (TAPS - 1) / 2f + ") * uStepY;\n" +
+                    "            sum += texture2D(sTexture, vTexCoord + offset).rgb;\n" +
+                    "        }\n" +
+                    "    }\n" +
+                    "    vec3 color = sum / " + (float) (TAPS * TAPS) + ";\n" +
+                    "    gl_FragColor = vec4(dot(color, vec3(0.299, 0.587, 0.114)), 0.0, 0.0, 1.0);\n" +
+                    "}\n";
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    private int program;
+    private int positionHandle, texCoordHandle, texMatrixHandle, zoomHandle, stepXHandle, stepYHandle;
+    private final int[] target = new int[2];
+    private AsyncReadback readback;
+    private final byte[] latest = new byte[WIDTH * HEIGHT * 4];
+    private final byte[] displayed = new byte[WIDTH * HEIGHT * 4];
+    private boolean hasLatest;
+    private boolean hasDisplayed;
+
+    MotionProbe(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+    }
+
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(CompositeShaders.vertexShader(), FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        stepXHandle = GLES20.glGetUniformLocation(program, "uStepX");
+        stepYHandle = GLES20.glGetUniformLocation(program, "uStepY");
+        // Context was (re)created; the target and buffer died with it.
+        GlUtil.createColorTarget(WIDTH, HEIGHT, target);
+        readback = new AsyncReadback(WIDTH, HEIGHT);
+        hasLatest = false;
+        hasDisplayed = false;
+    }
+
+    /** Whether a probe has been started and its result not yet collected. */
+    boolean isPending() {
+        return readback.isPending();
+    }
+
+    /**
+     * Renders the thumbnail of the latched camera frame and starts reading it back, unless the
+     * previous probe is still pending. Leaves framebuffer 0 bound; the caller restores its viewport.
+     *
+     * @return whether a probe was started
+     */
+    boolean start(int cameraTextureId, float[] texMatrix, float zoom) {
+        if (readback.isPending()) return false;
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target[0]);
+        GLES20.glViewport(0, 0, WIDTH, HEIGHT);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTextureId);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+        GLES20.glUniform1f(zoomHandle, zoom);
+        // One thumbnail texel, in texture space: the matrix's first two columns scaled by the view.
+        float scaleX = 1f / (WIDTH * zoom * TAPS);
+        float scaleY = 1f / (HEIGHT * zoom * TAPS);
+        GLES20.glUniform2f(stepXHandle, texMatrix[0] * scaleX, texMatrix[1] * scaleX);
+        GLES20.glUniform2f(stepYHandle, texMatrix[4] * scaleY, texMatrix[5] * scaleY);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        readback.start();
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        return true;
+    }
+
+    /**
+     * Collects the last started probe if its pixels have arrived; never waits.
+     *
+     * @return its mean absolute luma change against the frame last shown, in [0, 1], 1 if nothing
+     * has been shown yet; {@link #NO_RESULT} if there is no result yet
+     */
+    float poll() {
+        if (!readback.poll(latest)) return NO_RESULT;
+        hasLatest = true;
+        return hasDisplayed ? meanAbsDifference(latest, displayed) : 1f;
+    }
+
+    /**
+     * The frame of the last collected probe, or a newer one, is going on screen; later probes are
+     * compared against it.
+     */
+    void markDisplayed() {
+        if (!hasLatest) return;
+        System.arraycopy(latest, 0, displayed, 0, latest.length);
+        hasDisplayed = true;
+    }
+
+    private static float meanAbsDifference(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i += 4) {
+            sum += Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+        }
+        return sum / (255f * WIDTH * HEIGHT);
+    }
+}
@@ -0,0 +1,69 @@
+package com.siva.magnifyapp;
+
+/**
+ * One-euro filter (Casiez, Roussel, Vogel, CHI 2012): a first-order low-pass whose cutoff rises
+ * with the speed of the signal. Slow drift is smoothed hard, fast deliberate motion passes with
+ * little lag.
+ *
+ * <p>Not thread-safe; each instance belongs to one thread.
+ */
+final class OneEuroFilter {
+    private float minCutoffHz;
+    private float beta;
+    private float derivativeCutoffHz;
+
+    private boolean initialized;
+    private double value;
+    private double derivative;
+    private long lastNs;
+
+    /**
+     * @param minCutoffHz        cutoff at rest; lower removes more jitter but adds lag
+     * @param beta               how quickly the cutoff grows with speed
+     * @param derivativeCutoffHz cutoff used when estimating the speed itself
+     */
+    OneEuroFilter(float minCutoffHz, float beta, float derivativeCutoffHz) {
+        setParameters(minCutoffHz, beta, derivativeCutoffHz);
+    }
+
+    void setParameters(float minCutoffHz, float beta, float derivativeCutoffHz) {
+        if (minCutoffHz <= 0f || derivativeCutoffHz <= 0f || beta < 0f) {
+            throw new IllegalArgumentException("Cutoffs must be positive and beta non-negative");
+        }
+        this.minCutoffHz = minCutoffHz;
+        this.beta = beta;
+        this.derivativeCutoffHz = derivativeCutoffHz;
+    }
+
+    /** Filters {@code x} sampled at {@code timestampNs}; timestamps must not go backwards. */
+    float filter(float x, long timestampNs) {
+        if (!initialized || timestampNs <= lastNs) {
+            if (!initialized) {
+                value = x;
+                derivative = 0;
+                initialized = true;
+            }
+            lastNs = Math.max(lastNs, timestampNs);
+            return (float) value;
+        }
+        double dt = (timestampNs - lastNs) / 1e9;
+        lastNs = timestampNs;
+
+        double rawDerivative = (x - value) / dt;
+        derivative += alpha(derivativeCutoffHz, dt) * (rawDerivative - derivative);
+        double cutoff = minCutoffHz + beta * Math.abs(derivative);
+        value += alpha(cutoff, dt) * (x - value);
+        return (float) value;
+    }
+
+    /** Forgets the history; the next sample is passed through unchanged. */
+    void reset() {
+        initialized = false;
+        lastNs = 0;
+    }
+
+    private static double alpha(double cutoffHz, double dt) {
+        double tau = 1.0 / (2 * Math.PI * cutoffHz);
+        return 1.0 / (1.0 + tau / dt);
+    }
+}
@@ -0,0 +1,101 @@
+package com.siva.magnifyapp;
+
+/**
+ * Eases zoom, brightness, contrast and sharpness toward the values in the published
+ * {@link RenderState}, one step per drawn frame. Handlers only move targets; the render thread
+ * keeps drawing at vsync rate until every spring has settled.
+ *
+ * <p>Zoom springs in log space, so 1x to 2x feels like 4x to 8x. It can also be driven at a
+ * constant rate for "keep zooming" until stopped, the target limit is reached, or a new zoom is
+ * published. A published value only retargets its spring when it differs from the previous
+ * publication, so the animator's own continuous target is not pulled back to a stale one.
+ *
+ * <p>Render thread only, apart from {@link #setZoomRate(float)}.
+ */
+final class ParameterAnimator {
+    interface Listener {
+        /** Render thread; zoom came to rest at {@code zoom}. */
+        void onZoomSettled(float zoom);
+    }
+
+    /** Springs settle to within 1% in about a third of a second. */
+    static final float OMEGA = 20f;
+    /** Longest step; a stalled frame resumes the motion rather than jumping to its end. */
+    static final long MAX_STEP_NS = 50_000_000L;
+
+    private final float minLogZoom, maxLogZoom;
+    private final Listener listener;
+    private final Spring logZoom = new Spring(OMEGA, 5e-4f);
+    private final Spring brightness = new Spring(OMEGA, 1e-3f);
+    private final Spring contrast = new Spring(OMEGA, 1e-3f);
+    private final Spring sharpness = new Spring(OMEGA, 1e-3f);
+
+    private volatile float zoomRate;
+    private RenderState published;
+    private long lastStepNs;
+    private boolean animating;
+    private boolean wasZoomMoving;
+    /** The published zoom the spring is heading for, drawn exactly once at rest; NaN after ramping. */
+    private float exactZoom = Float.NaN;
+
+    ParameterAnimator(float minZoom, float maxZoom, Listener listener) {
+        this.minLogZoom = (float) Math.log(minZoom);
+        this.maxLogZoom = (float) Math.log(maxZoom);
+        this.listener = listener;
+    }
+
+    /**
+     * Any thread. Zooms continuously at {@code rate} in log zoom per second, negative to zoom
+     * out; 0 stops, easing to rest just past the current value.
+     */
+    void setZoomRate(float rate) {
+        zoomRate = rate;
+    }
+
+    boolean isAnimating() {
+        return animating;
+    }
+
+    /**
+     * Steps the springs to {@code nowNs} and returns {@code target} carrying the values to draw
+     * this frame. The first call jumps straight to the target.
+     */
+    RenderState apply(RenderState target, long nowNs) {
+        if (published == null) {
+            logZoom.snapTo((float) Math.log(target.zoom));
+            exactZoom = target.zoom;
+            brightness.snapTo(target.brightness);
+            contrast.snapTo(target.contrast);
+            sharpness.snapTo(target.sharpness);
+            published = target;
+            return target;
+        }
+        if (target.zoom != published.zoom) {
+            logZoom.setTarget((float) Math.log(target.zoom));
+            exactZoom = target.zoom;
+        }
+        if (target.brightness != published.brightness) brightness.setTarget(target.brightness);
+        if (target.contrast != published.contrast) contrast.setTarget(target.contrast);
+        if (target.sharpness != published.sharpness) sharpness.setTarget(target.sharpness);
+        published = target;
+
+        float dt = animating ? Math.min(nowNs - lastStepNs, MAX_STEP_NS) / 1e9f : 0f;
+        lastStepNs = nowNs;
+
+        float rate = zoomRate;
+        boolean ramping = false;
+        if (rate != 0f) {
+            float next = Math.max(minLogZoom, Math.min(maxLogZoom, logZoom.target() + rate * dt));
+            logZoom.setTarget(next);
+            exactZoom = Float.NaN;
+            ramping = rate > 0f ? next < maxLogZoom : next > minLogZoom;
+        }
+        boolean zoomMoving = logZoom.step(dt) | ramping;
+        boolean moving = brightness.step(dt) | contrast.step(dt) | sharpness.step(dt);
+        float zoom = zoomMoving || Float.isNaN(exactZoom) ? (float) Math.exp(logZoom.value()) : exactZoom;
+        if (wasZoomMoving && !zoomMoving) listener.onZoomSettled(zoom);
+        wasZoomMoving = zoomMoving;
+        animating = zoomMoving || moving;
+        return target.withAnimatedValues(zoom, brightness.value(), contrast.value(), sharpness.value());
+    }
+}
@@ -0,0 +1,28 @@
+package com.siva.magnifyapp;
+
+import android.os.Build;
+import android.os.PowerManager;
+
+/** {@link ThermalSource} backed by the platform thermal service. */
+final class PowerManagerThermalSource implements ThermalSource {
+    /** Headroom forecast horizon; about how long a quality step takes to show in temperature. */
+    private static final int FORECAST_SECONDS = 10;
+
+    private final PowerManager powerManager;
+
+    PowerManagerThermalSource(PowerManager powerManager) {
+        this.powerManager = powerManager;
+    }
+
+    @Override
+    public int thermalStatus() {
+        return powerManager.getCurrentThermalStatus();
+    }
+
+    @Override
+    public float thermalHeadroom() {
+        // Returns NaN itself when polled more than about once per second.
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) return Float.NaN;
+        return powerManager.getThermalHeadroom(FORECAST_SECONDS);
+    }
+}
@@ -0,0 +1,49 @@
+package com.siva.magnifyapp;
+
+import android.content.SharedPreferences;
+
+/**
+ * {@link SettingsStore.Storage} in shared preferences, one key per field under
+ * {@code <name>.<field>}. Writes use {@code apply()}, so the disk write itself happens off the
+ * calling thread.
+ */
+final class PreferencesSettingsStorage implements SettingsStore.Storage {
+    /** Filter saved before the other adjustments were persisted; read when nothing newer exists. */
+    private static final String LEGACY_KEY_FILTER = "currentFilter";
+
+    private final SharedPreferences prefs;
+
+    PreferencesSettingsStorage(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    @Override
+    public Adjustments load(String name) {
+        if (!prefs.contains(name + ".zoom")) {
+            return prefs.contains(LEGACY_KEY_FILTER) && name.equals(SettingsStore.CURRENT)
+                    ? Adjustments.DEFAULT.withFilter(prefs.getInt(LEGACY_KEY_FILTER, 0))
+                    : null;
+        }
+        Adjustments d = Adjustments.DEFAULT;
+        return new Adjustments(
+                prefs.getFloat(name + ".zoom", d.zoom),
+                prefs.getFloat(name + ".brightness", d.brightness),
+                prefs.getFloat(name + ".contrast", d.contrast),
+                prefs.getFloat(name + ".sharpness", d.sharpness),
+                prefs.getFloat(name + ".appBrightness", d.appBrightness),
+                prefs.getInt(name + ".filter", d.filter));
+    }
+
+    @Override
+    public void save(String name, Adjustments a) {
+        prefs.edit()
+                .putFloat(name + ".zoom", a.zoom)
+                .putFloat(name + ".brightness", a.brightness)
+                .putFloat(name + ".contrast", a.contrast)
+                .putFloat(name + ".sharpness", a.sharpness)
+                .putFloat(name + ".appBrightness", a.appBrightness)
+                .putInt(name + ".filter", a.filter)
+                .remove(LEGACY_KEY_FILTER)
+                .apply();
+    }
+}
@@ -0,0 +1,38 @@
+package com.siva.magnifyapp;
+
+/**
+ * Predicts display vsyncs from the timestamps Choreographer reports, for stamping each swapped
+ * buffer with the vsync it is meant for. SurfaceFlinger then latches the newest buffer that is
+ * due and drops older ones still in the queue instead of showing them one per refresh, which is
+ * where a backed-up queue costs latency.
+ *
+ * <p>All times are {@code System.nanoTime()}, the clock of both Choreographer and
+ * {@code eglPresentationTimeANDROID}. Render thread only.
+ */
+final class PresentClock {
+    /** Work SurfaceFlinger does between latching a buffer and the vsync that shows it. */
+    static final long LATCH_MARGIN_NS = 2_000_000L;
+
+    private long periodNs;
+    private long lastVsyncNs;
+
+    /** Refresh period of the display; 0 until known. */
+    void setPeriod(long periodNs) {
+        this.periodNs = periodNs;
+    }
+
+    void onVsync(long frameTimeNs) {
+        lastVsyncNs = frameTimeNs;
+    }
+
+    /**
+     * The first vsync whose latch point is still ahead of {@code nowNs}, or 0 while the vsync
+     * phase is unknown, in which case the buffer should go out unstamped.
+     */
+    long presentationTimeFor(long nowNs) {
+        if (periodNs <= 0 || lastVsyncNs == 0) return 0L;
+        long since = nowNs + LATCH_MARGIN_NS - lastVsyncNs;
+        long periods = since < 0 ? 0 : since / periodNs + 1;
+        return lastVsyncNs + periods * periodNs;
+    }
+}
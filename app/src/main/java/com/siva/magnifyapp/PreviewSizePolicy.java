@@ -0,0 +1,119 @@
+package com.siva.magnifyapp;
+
+/**
+ * Chooses the preview stream size from the sizes a camera offers.
+ *
+ * <p>The stream only has to carry as many pixels as end up on the display: the display size
+ * multiplied by whatever magnification is still done on the GPU, and never more than the sensor
+ * crop can resolve. Streaming anything larger costs ISP, memory bandwidth and GPU time without
+ * adding detail, which on the glasses translates directly into power and heat.
+ *
+ * <p>Pure Java so the size tables of real devices can be exercised in unit tests.
+ */
+final class PreviewSizePolicy {
+    static final float ASPECT_TOLERANCE = 0.1f;
+    /**
+     * A smaller stream is only adopted once it covers the requirement with this much headroom,
+     * so hovering around a threshold does not reconfigure the camera back and forth.
+     */
+    static final float DOWNSIZE_HYSTERESIS = 1.25f;
+
+    private final int[] widths;
+    private final int[] heights;
+    private int maxPixels = Integer.MAX_VALUE;
+
+    /** {@code widths[i] x heights[i]} are the stream sizes, in the camera's native landscape orientation. */
+    PreviewSizePolicy(int[] widths, int[] heights) {
+        if (widths.length != heights.length || widths.length == 0) {
+            throw new IllegalArgumentException("Need at least one size and matching arrays");
+        }
+        this.widths = widths.clone();
+        this.heights = heights.clone();
+    }
+
+    int width(int index) {
+        return widths[index];
+    }
+
+    int height(int index) {
+        return heights[index];
+    }
+
+    /** Upper bound on stream area, e.g. from thermal throttling. Sizes above it are never chosen. */
+    void setMaxPixels(int maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Index of the smallest size matching the display aspect ratio that covers
+     * {@code display * gpuZoom} pixels on both axes.
+     *
+     * @param cropLongEdge long edge, in sensor pixels, of the region the ISP is cropping; the
+     *                     requirement is capped there since larger streams would only upsample.
+     *                     Pass 0 when unknown.
+     */
+    int select(int displayWidth, int displayHeight, float gpuZoom, int cropLongEdge) {
+        int displayLong = Math.max(displayWidth, displayHeight);
+        int displayShort = Math.max(1, Math.min(displayWidth, displayHeight));
+        float targetRatio = displayLong / (float) displayShort;
+
+        float needLong = requiredLongEdge(displayLong, gpuZoom, cropLongEdge);
+        float needShort = needLong / targetRatio;
+
+        int best = pick(targetRatio, needLong, needShort, true);
+        if (best < 0) best = pick(targetRatio, needLong, needShort, false);
+        if (best < 0) best = smallest();
+        return best;
+    }
+
+    /**
+     * Returns the size to stream next given the current one, applying hysteresis on the way
+     * down. Returns {@code current} when no reconfiguration is warranted.
+     */
+    int update(int current, int displayWidth, int displayHeight, float gpuZoom, int cropLongEdge) {
+        int wanted = select(displayWidth, displayHeight, gpuZoom, cropLongEdge);
+        if (current < 0 || area(current) > maxPixels || area(wanted) > area(current)) return wanted;
+        int displayLong = Math.max(displayWidth, displayHeight);
+        // Nothing left to relax once the display itself is the requirement.
+        boolean atFloor = gpuZoom <= 1f && (cropLongEdge <= 0 || cropLongEdge >= displayLong);
+        if (atFloor) return wanted;
+        float needLong = requiredLongEdge(displayLong, gpuZoom, cropLongEdge);
+        int wantedLong = Math.max(widths[wanted], heights[wanted]);
+        return wantedLong >= needLong * DOWNSIZE_HYSTERESIS ? wanted : current;
+    }
+
+    private static float requiredLongEdge(int displayLong, float gpuZoom, int cropLongEdge) {
+        float needLong = displayLong * Math.max(1f, gpuZoom);
+        return cropLongEdge > 0 ? Math.min(needLong, cropLongEdge) : needLong;
+    }
+
+    private int pick(float targetRatio, float needLong, float needShort, boolean matchAspect) {
+        int smallestCovering = -1;
+        int largest = -1;
+        for (int i = 0; i < widths.length; i++) {
+            int area = area(i);
+            if (area > maxPixels) continue;
+            int longEdge = Math.max(widths[i], heights[i]);
+            int shortEdge = Math.min(widths[i], heights[i]);
+            if (matchAspect && Math.abs(longEdge / (float) shortEdge - targetRatio) >= ASPECT_TOLERANCE) continue;
+            if (largest < 0 || area > area(largest)) largest = i;
+            boolean covers = matchAspect
+                    ? longEdge >= needLong && shortEdge >= needShort
+                    : longEdge >= needLong;
+            if (covers && (smallestCovering < 0 || area < area(smallestCovering))) smallestCovering = i;
+        }
+        return smallestCovering >= 0 ? smallestCovering : largest;
+    }
+
+    private int smallest() {
+        int best = 0;
+        for (int i = 1; i < widths.length; i++) {
+            if (area(i) < area(best)) best = i;
+        }
+        return best;
+    }
+
+    private int area(int index) {
+        return widths[index] * heights[index];
+    }
+}
@@ -0,0 +1,182 @@
+package com.siva.magnifyapp;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lazily built set of specialized composite programs.
+ *
+ * <p>Variants are compiled on a background thread owning a pbuffer context in the render
+ * context's share group, so program objects linked there can be used directly by the renderer.
+ * Until a variant is ready {@link #get(int)} hands out the generic dynamic program, which means
+ * a configuration change never waits on the shader compiler. The dynamic program for stills is
+ * only linked the first time a still is shown.
+ *
+ * <p>On a GLES 3.0 context all programs are built from GLSL ES 3.00; if the dynamic program fails
+ * to build that way the cache drops to GLSL ES 1.00 for the life of the context.
+ */
+final class ProgramCache {
+    private static final String TAG = "ProgramCache";
+
+    interface Listener {
+        /** Called on the compiler thread after a variant became available. */
+        void onVariantReady(int key);
+    }
+
+    private final Listener listener;
+
+    // Render thread state
+    private AtomicReferenceArray<CompositeProgram> variants;
+    private boolean[] requested;
+    private CompositeProgram dynamicProgram;
+    private CompositeProgram dynamicStillProgram;
+    private volatile boolean gles3;
+
+    private HandlerThread compilerThread;
+    private Handler compilerHandler;
+
+    // Compiler thread state
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface surface = EGL14.EGL_NO_SURFACE;
+
+    ProgramCache(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Must be called on the render thread with the (new) render context current.
+     *
+     * @param gles3 whether the context runs GLSL ES 3.00 with external textures
+     */
+    void onSurfaceCreated(boolean gles3) {
+        release();
+        variants = new AtomicReferenceArray<>(CompositeShaders.KEY_COUNT);
+        requested = new boolean[CompositeShaders.KEY_COUNT];
+        dynamicProgram = gles3 ? CompositeProgram.build(CompositeShaders.KEY_DYNAMIC, true) : null;
+        if (dynamicProgram == null) {
+            if (gles3) Log.w(TAG, "GLSL ES 3.00 composite failed to build; using GLSL ES 1.00");
+            gles3 = false;
+            dynamicProgram = CompositeProgram.build(CompositeShaders.KEY_DYNAMIC, false);
+        }
+        this.gles3 = gles3;
+        dynamicStillProgram = null;
+
+        EGLDisplay sharedDisplay = EGL14.eglGetCurrentDisplay();
+        EGLContext sharedContext = EGL14.eglGetCurrentContext();
+        if (sharedContext == EGL14.EGL_NO_CONTEXT) {
+            Log.w(TAG, "No current context; specialized programs disabled");
+            return;
+        }
+        compilerThread = new HandlerThread("ShaderCompiler");
+        compilerThread.start();
+        compilerHandler = new Handler(compilerThread.getLooper());
+        compilerHandler.post(() -> {
+            if (!makeSharedContext(sharedDisplay, sharedContext)) {
+                Log.w(TAG, "Shared context unavailable; specialized programs disabled");
+            }
+        });
+    }
+
+    /**
+     * Returns the specialized program for {@code key} if it has been linked, otherwise schedules
+     * it and returns the dynamic fallback. Render thread only.
+     */
+    CompositeProgram get(int key) {
+        CompositeProgram program = variants.get(key);
+        if (program != null) return program;
+        if (!requested[key] && compilerHandler != null) {
+            requested[key] = true;
+            AtomicReferenceArray<CompositeProgram> target = variants;
+            compilerHandler.post(() -> compile(key, target));
+        }
+        if (!CompositeShaders.still(key)) return dynamicProgram;
+        if (dynamicStillProgram == null) {
+            dynamicStillProgram = CompositeProgram.build(CompositeShaders.KEY_DYNAMIC_STILL, gles3);
+        }
+        return dynamicStillProgram;
+    }
+
+    /**
+     * Stops the compiler thread and destroys its shared context. Render thread, before the render
+     * context is destroyed: while the shared context lives, so does everything in the share group.
+     * Programs are owned by the render context and die with it.
+     */
+    void release() {
+        if (compilerThread == null) return;
+        compilerHandler.post(this::destroySharedContext);
+        compilerThread.quitSafely();
+        compilerThread = null;
+        compilerHandler = null;
+    }
+
+    private void compile(int key, AtomicReferenceArray<CompositeProgram> target) {
+        if (context == EGL14.EGL_NO_CONTEXT) return;
+        long start = System.nanoTime();
+        CompositeProgram program = CompositeProgram.build(key, gles3);
+        // Link results must be complete before another context in the share group uses them.
+        GLES20.glFinish();
+        if (program == null) {
+            Log.e(TAG, "Variant " + key + " failed to build; staying on dynamic program");
+            return;
+        }
+        target.set(key, program);
+        Log.d(TAG, "Variant " + key + " ready in " + (System.nanoTime() - start) / 1000000 + " ms");
+        listener.onVariantReady(key);
+    }
+
+    private boolean makeSharedContext(EGLDisplay sharedDisplay, EGLContext sharedContext) {
+        display = sharedDisplay;
+        int[] clientVersion = new int[1];
+        EGL14.eglQueryContext(display, sharedContext, EGL14.EGL_CONTEXT_CLIENT_VERSION, clientVersion, 0);
+        // Share groups only form between contexts of the same client version.
+        boolean es3 = clientVersion[0] >= 3;
+        int[] configAttribs = {
+                EGL14.EGL_RENDERABLE_TYPE, es3 ? EGLExt.EGL_OPENGL_ES3_BIT_KHR : EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(display, configAttribs, 0, configs, 0, 1, numConfigs, 0)
+                || numConfigs[0] == 0) {
+            return false;
+        }
+        int[] contextAttribs = {EGL14.EGL_CONTEXT_CLIENT_VERSION, es3 ? 3 : 2, EGL14.EGL_NONE};
+        context = EGL14.eglCreateContext(display, configs[0], sharedContext, contextAttribs, 0);
+        if (context == null || context == EGL14.EGL_NO_CONTEXT) {
+            context = EGL14.EGL_NO_CONTEXT;
+            return false;
+        }
+        int[] surfaceAttribs = {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE};
+        surface = EGL14.eglCreatePbufferSurface(display, configs[0], surfaceAttribs, 0);
+        if (!EGL14.eglMakeCurrent(display, surface, surface, context)) {
+            destroySharedContext();
+            return false;
+        }
+        return true;
+    }
+
+    private void destroySharedContext() {
+        if (display == EGL14.EGL_NO_DISPLAY) return;
+        EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        if (surface != EGL14.EGL_NO_SURFACE) EGL14.eglDestroySurface(display, surface);
+        if (context != EGL14.EGL_NO_CONTEXT) EGL14.eglDestroyContext(display, context);
+        surface = EGL14.EGL_NO_SURFACE;
+        context = EGL14.EGL_NO_CONTEXT;
+        display = EGL14.EGL_NO_DISPLAY;
+    }
+}
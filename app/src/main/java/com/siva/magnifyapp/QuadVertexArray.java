@@ -0,0 +1,56 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * The full-screen quad in a static vertex buffer, captured in a vertex array object at the
+ * attribute locations of the GLSL ES 3.00 composite shaders. Drawing it is one bind and one draw
+ * call, with no vertex data crossing the driver per frame.
+ *
+ * <p>Client-side arrays only work with vertex array 0, so {@link #draw()} unbinds it again for
+ * the GLES 2.0 passes that still use them.
+ */
+final class QuadVertexArray {
+    // Interleaved x, y, s, t as a triangle strip.
+    private static final float[] VERTICES = {
+            -1f, -1f, 0f, 0f,
+            1f, -1f, 1f, 0f,
+            -1f, 1f, 0f, 1f,
+            1f, 1f, 1f, 1f,
+    };
+    private static final int STRIDE = 4 * 4;
+
+    private int vertexArray;
+
+    /** GL thread, with the (new) context current. */
+    void onSurfaceCreated() {
+        int[] names = new int[1];
+        GLES30.glGenBuffers(1, names, 0);
+        int buffer = names[0];
+        FloatBuffer vertices = ByteBuffer.allocateDirect(VERTICES.length * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+        vertices.put(VERTICES).position(0);
+        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, buffer);
+        GLES30.glBufferData(GLES30.GL_ARRAY_BUFFER, VERTICES.length * 4, vertices, GLES30.GL_STATIC_DRAW);
+
+        GLES30.glGenVertexArrays(1, names, 0);
+        vertexArray = names[0];
+        GLES30.glBindVertexArray(vertexArray);
+        GLES30.glEnableVertexAttribArray(CompositeShaders.POSITION_LOCATION);
+        GLES30.glVertexAttribPointer(CompositeShaders.POSITION_LOCATION, 2, GLES30.GL_FLOAT, false, STRIDE, 0);
+        GLES30.glEnableVertexAttribArray(CompositeShaders.TEX_COORD_LOCATION);
+        GLES30.glVertexAttribPointer(CompositeShaders.TEX_COORD_LOCATION, 2, GLES30.GL_FLOAT, false, STRIDE, 8);
+        GLES30.glBindVertexArray(0);
+        GLES30.glBindBuffer(GLES30.GL_ARRAY_BUFFER, 0);
+    }
+
+    void draw() {
+        GLES30.glBindVertexArray(vertexArray);
+        GLES30.glDrawArrays(GLES30.GL_TRIANGLE_STRIP, 0, 4);
+        GLES30.glBindVertexArray(0);
+    }
+}
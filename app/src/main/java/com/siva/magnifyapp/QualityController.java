@@ -0,0 +1,123 @@
+package com.siva.magnifyapp;
+
+/**
+ * Thermal quality ladder. Each level keeps the reductions of the levels below it:
+ * <ol>
+ *     <li>{@link #LEVEL_RENDER_SCALE}: render at 3/4 resolution and let the display scaler
+ *     upsample,</li>
+ *     <li>{@link #LEVEL_SHARPEN}: blur for the unsharp mask at a quarter instead of half
+ *     resolution,</li>
+ *     <li>{@link #LEVEL_STREAM}: cap the camera stream at 720p,</li>
+ *     <li>{@link #LEVEL_FRAME_RATE}: cap the camera frame rate.</li>
+ * </ol>
+ * The controller steps down one level at a time while the device is hot or frames run over
+ * budget, and back up only after a long stretch of clearly cool readings, so it settles instead
+ * of oscillating around a threshold.
+ *
+ * <p>Pure Java; fed by {@link #update} from a periodic tick.
+ */
+final class QualityController {
+    interface Listener {
+        void onQualityLevelChanged(int level);
+    }
+
+    static final int LEVEL_FULL = 0;
+    static final int LEVEL_RENDER_SCALE = 1;
+    static final int LEVEL_SHARPEN = 2;
+    static final int LEVEL_STREAM = 3;
+    static final int LEVEL_FRAME_RATE = 4;
+    static final int MAX_LEVEL = LEVEL_FRAME_RATE;
+
+    /** Stream area cap from {@link #LEVEL_STREAM} on. */
+    static final int MAX_STREAM_PIXELS = 1280 * 720;
+
+    // PowerManager.THERMAL_STATUS_* values, repeated so the policy has no Android dependency.
+    static final int THERMAL_STATUS_NONE = 0;
+    static final int THERMAL_STATUS_MODERATE = 2;
+    static final int THERMAL_STATUS_SEVERE = 3;
+
+    /** Headroom at which to start stepping down, and below which stepping up is allowed. */
+    static final float HEADROOM_HOT = 0.9f;
+    static final float HEADROOM_COOL = 0.7f;
+    /** Frame time as a fraction of the budget, with the same roles. */
+    static final float FRAME_TIME_HOT = 0.9f;
+    static final float FRAME_TIME_COOL = 0.6f;
+
+    static final long STEP_DOWN_DWELL_NS = 5_000_000_000L;
+    static final long URGENT_STEP_DOWN_DWELL_NS = 2_000_000_000L;
+    static final long STEP_UP_DWELL_NS = 30_000_000_000L;
+
+    private final ThermalSource thermalSource;
+    private final Listener listener;
+
+    private volatile int level = LEVEL_FULL;
+    private long lastChangeNs = Long.MIN_VALUE / 2;
+    private long coolSinceNs = -1;
+
+    QualityController(ThermalSource thermalSource, Listener listener) {
+        this.thermalSource = thermalSource;
+        this.listener = listener;
+    }
+
+    int level() {
+        return level;
+    }
+
+    static float renderScale(int level) {
+        return level >= LEVEL_RENDER_SCALE ? 0.75f : 1f;
+    }
+
+    static int sharpenDownsample(int level) {
+        return level >= LEVEL_SHARPEN ? 4 : 2;
+    }
+
+    static int maxStreamPixels(int level) {
+        return level >= LEVEL_STREAM ? MAX_STREAM_PIXELS : Integer.MAX_VALUE;
+    }
+
+    static boolean capFrameRate(int level) {
+        return level >= LEVEL_FRAME_RATE;
+    }
+
+    /**
+     * Re-evaluates the level. Not thread safe; call from one thread.
+     *
+     * @param frameTimeMs   recent mean render time per frame
+     * @param frameBudgetMs time available per frame at the camera's full rate
+     */
+    void update(long nowNs, float frameTimeMs, float frameBudgetMs) {
+        int status = thermalSource.thermalStatus();
+        float headroom = thermalSource.thermalHeadroom();
+        boolean knownHeadroom = !Float.isNaN(headroom);
+
+        boolean hot = status >= THERMAL_STATUS_MODERATE
+                || (knownHeadroom && headroom >= HEADROOM_HOT)
+                || frameTimeMs > frameBudgetMs * FRAME_TIME_HOT;
+        boolean cool = status == THERMAL_STATUS_NONE
+                && (!knownHeadroom || headroom < HEADROOM_COOL)
+                && frameTimeMs < frameBudgetMs * FRAME_TIME_COOL;
+
+        if (hot) {
+            coolSinceNs = -1;
+            long dwell = status >= THERMAL_STATUS_SEVERE ? URGENT_STEP_DOWN_DWELL_NS : STEP_DOWN_DWELL_NS;
+            if (level < MAX_LEVEL && nowNs - lastChangeNs >= dwell) setLevel(level + 1, nowNs);
+        } else if (cool) {
+            if (coolSinceNs < 0) coolSinceNs = nowNs;
+            if (level > LEVEL_FULL && nowNs - coolSinceNs >= STEP_UP_DWELL_NS
+                    && nowNs - lastChangeNs >= STEP_UP_DWELL_NS) {
+                setLevel(level - 1, nowNs);
+                // Each further step needs its own cool stretch.
+                coolSinceNs = nowNs;
+            }
+        } else {
+            // In between: hold the current level.
+            coolSinceNs = -1;
+        }
+    }
+
+    private void setLevel(int newLevel, long nowNs) {
+        level = newLevel;
+        lastChangeNs = nowNs;
+        listener.onQualityLevelChanged(newLevel);
+    }
+}
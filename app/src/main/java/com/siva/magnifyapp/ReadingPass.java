@@ -0,0 +1,228 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Local statistics for the reading modes. The zoomed view is reduced to luma at a quarter of the
+ * view resolution and box filtered into a local mean; the squared deviation from that mean is
+ * box filtered again into a local variance. The composite pass samples both, upscaled by the
+ * texture unit, and thresholds every output pixel Sauvola style:
+ * {@code T = mean * (1 + K * (stddev / R - 1))}.
+ *
+ * <p>All passes are separable and run on a sixteenth of the view's pixels, so the whole stage
+ * costs less than one full-resolution fetch per output pixel.
+ */
+final class ReadingPass {
+    /** Resolution divisor of the statistics targets relative to the viewport. */
+    private static final int DOWNSAMPLE = 4;
+    /**
+     * Deviations are squared into an 8-bit channel; scaling by 16 spends its range on standard
+     * deviations up to 0.25, which covers print on paper.
+     */
+    static final float VARIANCE_SCALE = 16f;
+    /** Sauvola sensitivity; lower keeps more faint strokes, higher cleans up the background. */
+    static final float K = 0.34f;
+    /** Dynamic range of the standard deviation for luma in [0, 1]. */
+    static final float R = 0.5f;
+
+    private static final float[][] INK = {
+            {1f, 1f, 1f},
+            {1f, 1f, 0f},
+            {0f, 0f, 0f},
+    };
+    private static final float[][] PAPER = {
+            {0f, 0f, 0f},
+            {0f, 0f, 0f},
+            {1f, 1f, 1f},
+    };
+
+    private static final String QUAD_VERTEX_SHADER =
+            "#version 100\n" +
+                    "attribute vec4 aPosition;\n" +
+                    "attribute vec2 aTexCoord;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = aPosition;\n" +
+                    "    vTexCoord = aTexCoord;\n" +
+                    "}\n";
+
+    // 15-texel box with a doubled centre, as eight bilinear fetches between texel pairs.
+    private static final String BOX_FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "uniform vec2 uStep;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    float sum = 0.0;\n" +
+                    "    for (int i = 0; i < 4; i++) {\n" +
+                    "        vec2 offset = uStep * (float(i) * 2.0 + 0.5);\n" +
+                    "        sum += texture2D(sTexture, vTexCoord - offset).r;\n" +
+                    "        sum += texture2D(sTexture, vTexCoord + offset).r;\n" +
+                    "    }\n" +
+                    "    gl_FragColor = vec4(sum * 0.125, 0.0, 0.0, 1.0);\n" +
+                    "}\n";
+
+    private static final String DEVIATION_FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "uniform sampler2D sMean;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    float d = texture2D(sTexture, vTexCoord).r - texture2D(sMean, vTexCoord).r;\n" +
+                    "    gl_FragColor = vec4(min(1.0, d * d * " + VARIANCE_SCALE + "), 0.0, 0.0, 1.0);\n" +
+                    "}\n";
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    // program[]: name, aPosition, aTexCoord, uTexMatrix, uZoom
+    private final int[] externalLumaProgram = new int[5];
+    private final int[] stillLumaProgram = new int[5];
+    private int boxProgram;
+    private int boxPositionHandle, boxTexCoordHandle, boxStepHandle;
+    private int deviationProgram;
+    private int devPositionHandle, devTexCoordHandle, devMeanHandle;
+
+    private final int[] luma = new int[2];
+    private final int[] scratch = new int[2];
+    private final int[] mean = new int[2];
+    private final int[] variance = new int[2];
+    private int targetWidth, targetHeight;
+
+    ReadingPass(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+    }
+
+    static boolean isReadingMode(int filterMode) {
+        return filterMode >= CompositeShaders.FILTER_READING_WHITE_ON_BLACK
+                && filterMode <= CompositeShaders.FILTER_READING_BLACK_ON_WHITE;
+    }
+
+    /** Text colour of a reading mode. */
+    static float[] ink(int filterMode) {
+        return INK[filterMode - CompositeShaders.FILTER_READING_WHITE_ON_BLACK];
+    }
+
+    /** Background colour of a reading mode. */
+    static float[] paper(int filterMode) {
+        return PAPER[filterMode - CompositeShaders.FILTER_READING_WHITE_ON_BLACK];
+    }
+
+    void onSurfaceCreated() {
+        buildLumaProgram(externalLumaProgram, true);
+        buildLumaProgram(stillLumaProgram, false);
+
+        boxProgram = GlUtil.createProgram(QUAD_VERTEX_SHADER, BOX_FRAGMENT_SHADER);
+        boxPositionHandle = GLES20.glGetAttribLocation(boxProgram, "aPosition");
+        boxTexCoordHandle = GLES20.glGetAttribLocation(boxProgram, "aTexCoord");
+        boxStepHandle = GLES20.glGetUniformLocation(boxProgram, "uStep");
+
+        deviationProgram = GlUtil.createProgram(QUAD_VERTEX_SHADER, DEVIATION_FRAGMENT_SHADER);
+        devPositionHandle = GLES20.glGetAttribLocation(deviationProgram, "aPosition");
+        devTexCoordHandle = GLES20.glGetAttribLocation(deviationProgram, "aTexCoord");
+        devMeanHandle = GLES20.glGetUniformLocation(deviationProgram, "sMean");
+
+        // Context was (re)created; any previous targets died with it.
+        luma[0] = luma[1] = scratch[0] = scratch[1] = 0;
+        mean[0] = mean[1] = variance[0] = variance[1] = 0;
+        targetWidth = targetHeight = 0;
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        int w = Math.max(1, width / DOWNSAMPLE);
+        int h = Math.max(1, height / DOWNSAMPLE);
+        if (w == targetWidth && h == targetHeight) return;
+        for (int[] target : new int[][]{luma, scratch, mean, variance}) {
+            GlUtil.deleteColorTarget(target[0], target[1]);
+            GlUtil.createColorTarget(w, h, target);
+        }
+        targetWidth = w;
+        targetHeight = h;
+    }
+
+    /**
+     * Computes the local statistics of the view. Afterwards {@link #meanTexture()} and
+     * {@link #varianceTexture()} hold them, framebuffer 0 is bound and the caller restores its
+     * viewport.
+     *
+     * @param external whether {@code texture} is the camera's external image or a 2D texture
+     */
+    void render(boolean external, int texture, float[] texMatrix, float zoom) {
+        GLES20.glViewport(0, 0, targetWidth, targetHeight);
+
+        // Pass 1: zoomed view → luma.
+        int[] program = external ? externalLumaProgram : stillLumaProgram;
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, luma[0]);
+        GLES20.glUseProgram(program[0]);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(external ? GLES11Ext.GL_TEXTURE_EXTERNAL_OES : GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glUniformMatrix4fv(program[3], 1, false, texMatrix, 0);
+        GLES20.glUniform1f(program[4], zoom);
+        drawQuad(program[1], program[2]);
+
+        // Passes 2-3: luma → mean.
+        box(luma[1], mean);
+
+        // Pass 4: squared deviation from the mean → variance, then passes 5-6 box it in place.
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, variance[0]);
+        GLES20.glUseProgram(deviationProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE1);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, mean[1]);
+        GLES20.glUniform1i(devMeanHandle, 1);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, luma[1]);
+        drawQuad(devPositionHandle, devTexCoordHandle);
+        box(variance[1], variance);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    }
+
+    int meanTexture() {
+        return mean[1];
+    }
+
+    int varianceTexture() {
+        return variance[1];
+    }
+
+    /** Separable box filter of {@code source} into {@code target}, via the scratch target. */
+    private void box(int source, int[] target) {
+        GLES20.glUseProgram(boxProgram);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, scratch[0]);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, source);
+        GLES20.glUniform2f(boxStepHandle, 1f / targetWidth, 0f);
+        drawQuad(boxPositionHandle, boxTexCoordHandle);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target[0]);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, scratch[1]);
+        GLES20.glUniform2f(boxStepHandle, 0f, 1f / targetHeight);
+        drawQuad(boxPositionHandle, boxTexCoordHandle);
+    }
+
+    private void buildLumaProgram(int[] program, boolean external) {
+        int name = GlUtil.createProgram(CompositeShaders.vertexShader(), CompositeShaders.lumaFragmentShader(external));
+        program[0] = name;
+        program[1] = GLES20.glGetAttribLocation(name, "aPosition");
+        program[2] = GLES20.glGetAttribLocation(name, "aTexCoord");
+        program[3] = GLES20.glGetUniformLocation(name, "uTexMatrix");
+        program[4] = GLES20.glGetUniformLocation(name, "uZoom");
+    }
+
+    private void drawQuad(int positionHandle, int texCoordHandle) {
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+    }
+}
@@ -0,0 +1,56 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Uniform buffer behind the {@link CompositeShaders#PARAMS_BLOCK} block of the GLSL ES 3.00
+ * composite programs. All programs read it through one binding point, so it is written once per
+ * change of the {@link RenderState} rather than once per draw and per uniform.
+ */
+final class RenderParamsBuffer {
+    static final int BINDING = 0;
+
+    // std140 offsets: uBrightness, uContrast, uSharpness, uFilterMode, uInk (vec3), uPaper (vec3).
+    private static final int SIZE = 48;
+    private static final float[] NO_COLOR = {0f, 0f, 0f};
+
+    private final ByteBuffer data = ByteBuffer.allocateDirect(SIZE).order(ByteOrder.nativeOrder());
+    private int buffer;
+    private RenderState uploaded;
+
+    /** GL thread, with the (new) context current. */
+    void onSurfaceCreated() {
+        int[] names = new int[1];
+        GLES30.glGenBuffers(1, names, 0);
+        buffer = names[0];
+        GLES30.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, buffer);
+        GLES30.glBufferData(GLES30.GL_UNIFORM_BUFFER, SIZE, null, GLES30.GL_DYNAMIC_DRAW);
+        GLES30.glBindBufferBase(GLES30.GL_UNIFORM_BUFFER, BINDING, buffer);
+        uploaded = null;
+    }
+
+    /** Points {@code program}'s parameter block at this buffer; once, after linking. */
+    static void bind(int program) {
+        int index = GLES30.glGetUniformBlockIndex(program, CompositeShaders.PARAMS_BLOCK);
+        if (index != GLES30.GL_INVALID_INDEX) GLES30.glUniformBlockBinding(program, index, BINDING);
+    }
+
+    /** Uploads {@code state} unless it is the instance already in the buffer. */
+    void update(RenderState state) {
+        if (state == uploaded) return;
+        uploaded = state;
+        boolean reading = ReadingPass.isReadingMode(state.filter);
+        float[] ink = reading ? ReadingPass.ink(state.filter) : NO_COLOR;
+        float[] paper = reading ? ReadingPass.paper(state.filter) : NO_COLOR;
+        data.clear();
+        data.putFloat(state.brightness).putFloat(state.contrast).putFloat(state.sharpness).putInt(state.filter);
+        data.putFloat(ink[0]).putFloat(ink[1]).putFloat(ink[2]).putFloat(0f);
+        data.putFloat(paper[0]).putFloat(paper[1]).putFloat(paper[2]).putFloat(0f);
+        data.flip();
+        GLES30.glBindBuffer(GLES30.GL_UNIFORM_BUFFER, buffer);
+        GLES30.glBufferSubData(GLES30.GL_UNIFORM_BUFFER, 0, SIZE, data);
+    }
+}
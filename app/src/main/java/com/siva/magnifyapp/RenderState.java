@@ -0,0 +1,81 @@
+package com.siva.magnifyapp;
+
+/**
+ * The user-facing render parameters as one immutable value. The UI thread publishes a new
+ * instance for each change and the GL thread reads a single instance per frame, so a frame never
+ * mixes, say, the new zoom with the old pan.
+ *
+ * <p>Every change bumps {@link #version}. Setting a parameter to its current value returns the
+ * same instance, which lets callers skip the redraw. The in-between values of an animation
+ * (see {@link ParameterAnimator}) keep the version of the state they are heading for.
+ */
+final class RenderState {
+    static final RenderState DEFAULT = new RenderState(0L, 1f, 0f, 1f, 0f, 0, 0f, 0f, false);
+
+    final long version;
+    final float zoom;
+    final float brightness;
+    final float contrast;
+    final float sharpness;
+    final int filter;
+    /** Offset of the window over a still, in view coordinates. */
+    final float panX, panY;
+    final boolean stabilize;
+
+    private RenderState(long version, float zoom, float brightness, float contrast, float sharpness,
+                        int filter, float panX, float panY, boolean stabilize) {
+        this.version = version;
+        this.zoom = zoom;
+        this.brightness = brightness;
+        this.contrast = contrast;
+        this.sharpness = sharpness;
+        this.filter = filter;
+        this.panX = panX;
+        this.panY = panY;
+        this.stabilize = stabilize;
+    }
+
+    RenderState withZoom(float zoom) {
+        if (zoom == this.zoom) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withBrightness(float brightness) {
+        if (brightness == this.brightness) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withContrast(float contrast) {
+        if (contrast == this.contrast) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withSharpness(float sharpness) {
+        if (sharpness == this.sharpness) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withFilter(int filter) {
+        if (filter == this.filter) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withPan(float panX, float panY) {
+        if (panX == this.panX && panY == this.panY) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    RenderState withStabilize(boolean stabilize) {
+        if (stabilize == this.stabilize) return this;
+        return new RenderState(version + 1, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+
+    /** This state drawn part way through an animation toward it; the version is unchanged. */
+    RenderState withAnimatedValues(float zoom, float brightness, float contrast, float sharpness) {
+        if (zoom == this.zoom && brightness == this.brightness && contrast == this.contrast
+                && sharpness == this.sharpness) {
+            return this;
+        }
+        return new RenderState(version, zoom, brightness, contrast, sharpness, filter, panX, panY, stabilize);
+    }
+}
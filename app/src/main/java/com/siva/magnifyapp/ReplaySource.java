@@ -0,0 +1,109 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES20;
+
+import com.siva.magnifyapp.pipeline.FrameRecording;
+import com.siva.magnifyapp.pipeline.ReplayPacer;
+
+/**
+ * Stands in for the camera during a replay: the frames of a {@link FrameRecording} are uploaded
+ * straight from the mapped file into a 2D texture, one per draw, with their recorded timestamp
+ * and buffer transform. The texture holds the buffer exactly as the camera's external texture
+ * did, so the renderer's matrices, stabilization and passes run unchanged apart from sampling a
+ * 2D texture.
+ */
+final class ReplaySource {
+    private final FrameRecording.Reader recording;
+    private final ReplayPacer pacer;
+    private final boolean paced;
+    private final float[] texMatrix = new float[16];
+    private int texture;
+    private int frame = -1;
+
+    ReplaySource(FrameRecording.Reader recording, boolean paced) {
+        this.recording = recording;
+        this.pacer = new ReplayPacer(recording, paced);
+        this.paced = paced;
+    }
+
+    /** GL thread, with the context the replay draws in. */
+    void onSurfaceCreated() {
+        int[] names = new int[1];
+        GLES20.glGenTextures(1, names, 0);
+        texture = names[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, recording.width(), recording.height(), 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        frame = -1;
+    }
+
+    /**
+     * GL thread. Moves on to the frame due at {@code nowNs}, uploading it if it changed, and
+     * passes the gyro samples up to it to {@code gyro}.
+     *
+     * @return whether a new frame was uploaded; once the recording has played through, see
+     * {@link #isFinished()}
+     */
+    boolean advance(long nowNs, ReplayPacer.GyroSink gyro) {
+        int next = pacer.next(nowNs, gyro);
+        if (next < 0) {
+            frame = recording.frameCount();
+            return false;
+        }
+        if (next == frame) return false;
+        frame = next;
+        recording.frameMatrix(frame, texMatrix);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, recording.width(), recording.height(),
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, recording.framePixels(frame));
+        return true;
+    }
+
+    boolean isFinished() {
+        return frame >= recording.frameCount();
+    }
+
+    int texture() {
+        return texture;
+    }
+
+    long timestampNs() {
+        return recording.frameTimestampNs(frame);
+    }
+
+    float[] texMatrix() {
+        return texMatrix;
+    }
+
+    int width() {
+        return recording.width();
+    }
+
+    int height() {
+        return recording.height();
+    }
+
+    /** Of the current frame, at the ISP zoom it was captured with. */
+    float tanHalfFov() {
+        return recording.tanHalfFov() / ispZoom();
+    }
+
+    /** Zoom of the camera's crop when the current frame was captured. */
+    float ispZoom() {
+        return recording.frameIspZoom(frame);
+    }
+
+    boolean paced() {
+        return paced;
+    }
+
+    /** GL thread. */
+    void release() {
+        if (texture != 0) GLES20.glDeleteTextures(1, new int[]{texture}, 0);
+        texture = 0;
+    }
+}
@@ -0,0 +1,181 @@
+package com.siva.magnifyapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The last seconds of encoded video, as a ring of compressed samples in a fixed block of storage.
+ * A new sample goes after the previous one, or back at the start when it does not fit before the
+ * end, and pushes out the oldest samples it overlaps. Samples older than the retention window go
+ * too, and the oldest kept sample is always a key frame, so playback can start from any of them.
+ *
+ * <p>Samples are numbered in arrival order; a number stays valid until its sample is pushed out.
+ * One thread appends while another reads.
+ */
+final class RewindBuffer {
+    private final ByteBuffer storage;
+    private final long retentionUs;
+    private final int maxSamples;
+
+    // Index ring, by sample number modulo maxSamples
+    private final long[] timeUs;
+    private final int[] offset;
+    private final int[] size;
+    private final boolean[] keyFrame;
+    private long first, end; // samples [first, end) are held
+    private int writePosition;
+
+    /**
+     * @param storage     where the samples go, e.g. from {@link #map}; its whole capacity is used
+     * @param retentionUs how far back from the newest sample to keep
+     * @param maxSamples  most samples held at once, whatever their size
+     */
+    RewindBuffer(ByteBuffer storage, long retentionUs, int maxSamples) {
+        this.storage = storage.duplicate();
+        this.storage.clear();
+        this.retentionUs = retentionUs;
+        this.maxSamples = maxSamples;
+        timeUs = new long[maxSamples];
+        offset = new int[maxSamples];
+        size = new int[maxSamples];
+        keyFrame = new boolean[maxSamples];
+    }
+
+    /**
+     * Maps {@code capacityBytes} of {@code file} as storage. The samples live in the page cache
+     * rather than on the heap, and the file is scratch: nothing is read back from it on the next run.
+     */
+    static MappedByteBuffer map(File file, int capacityBytes) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(capacityBytes);
+            // The mapping stays valid after the channel is closed.
+            return out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+        }
+    }
+
+    /** Drops every sample, e.g. when a new encoder starts a stream the old samples do not belong to. */
+    synchronized void clear() {
+        first = end = 0;
+        writePosition = 0;
+    }
+
+    /**
+     * Appends the remaining bytes of {@code sample}, consuming them.
+     *
+     * @return false if the sample was dropped: larger than the storage, or not a key frame while
+     * there is nothing before it to decode from
+     */
+    synchronized boolean append(ByteBuffer sample, long presentationUs, boolean isKeyFrame) {
+        int length = sample.remaining();
+        int capacity = storage.capacity();
+        if (length > capacity) {
+            clear();
+            return false;
+        }
+        if (writePosition + length > capacity) {
+            // Everything still past the write position is older than what sits before it.
+            while (first < end && offset[slot(first)] >= writePosition) evictOldest();
+            writePosition = 0;
+        }
+        while (first < end && offset[slot(first)] >= writePosition
+                && offset[slot(first)] < writePosition + length) {
+            evictOldest();
+        }
+        if (end - first == maxSamples) evictOldest();
+        while (first < end && presentationUs - timeUs[slot(first)] > retentionUs) evictOldest();
+        dropToKeyFrame();
+        if (first == end && !isKeyFrame) {
+            sample.position(sample.limit());
+            return false;
+        }
+        ByteBuffer target = storage.duplicate();
+        target.position(writePosition);
+        target.put(sample);
+        int i = slot(end);
+        timeUs[i] = presentationUs;
+        offset[i] = writePosition;
+        size[i] = length;
+        keyFrame[i] = isKeyFrame;
+        end++;
+        writePosition += length;
+        return true;
+    }
+
+    synchronized boolean isEmpty() {
+        return first == end;
+    }
+
+    /** Number of the oldest sample held. */
+    synchronized long first() {
+        return first;
+    }
+
+    /** One past the number of the newest sample. */
+    synchronized long end() {
+        return end;
+    }
+
+    /** Presentation time of the newest sample; only meaningful while not {@link #isEmpty()}. */
+    synchronized long newestUs() {
+        return timeUs[slot(end - 1)];
+    }
+
+    /** Presentation time of the oldest sample; only meaningful while not {@link #isEmpty()}. */
+    synchronized long oldestUs() {
+        return timeUs[slot(first)];
+    }
+
+    /**
+     * The latest key frame at or before {@code presentationUs}, the one to start decoding from to
+     * show that moment; the oldest sample if the moment has already been pushed out, -1 if empty.
+     */
+    synchronized long keyFrameAtOrBefore(long presentationUs) {
+        if (first == end) return -1;
+        for (long n = end - 1; n > first; n--) {
+            int i = slot(n);
+            if (keyFrame[i] && timeUs[i] <= presentationUs) return n;
+        }
+        return first;
+    }
+
+    /** Presentation time of sample {@code n}, or -1 if it is no longer held. */
+    synchronized long timeUs(long n) {
+        return n >= first && n < end ? timeUs[slot(n)] : -1;
+    }
+
+    synchronized boolean isKeyFrame(long n) {
+        return n >= first && n < end && keyFrame[slot(n)];
+    }
+
+    /**
+     * Copies sample {@code n} into {@code out} at its position.
+     *
+     * @return the sample's length; -1 if it is no longer held or does not fit in {@code out}
+     */
+    synchronized int read(long n, ByteBuffer out) {
+        if (n < first || n >= end) return -1;
+        int i = slot(n);
+        if (size[i] > out.remaining()) return -1;
+        ByteBuffer source = storage.duplicate();
+        source.position(offset[i]).limit(offset[i] + size[i]);
+        out.put(source);
+        return size[i];
+    }
+
+    private void evictOldest() {
+        first++;
+        if (first == end) writePosition = 0;
+    }
+
+    private void dropToKeyFrame() {
+        while (first < end && !keyFrame[slot(first)]) evictOldest();
+    }
+
+    private int slot(long n) {
+        return (int) (n % maxSamples);
+    }
+}
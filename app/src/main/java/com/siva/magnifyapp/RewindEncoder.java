@@ -0,0 +1,306 @@
+package com.siva.magnifyapp;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.opengl.EGL14;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hardware H.264 encoder feeding a {@link RewindBuffer} with what the view shows. On a frame due
+ * for encoding the renderer draws its composite once, into a view-sized texture held here, which
+ * is copied to the view; after the view has been swapped the same texture is scaled into the
+ * encoder's input surface with the same context. Frames reach the encoder without leaving the
+ * GPU; only the compressed samples are copied, on the encoder's own thread.
+ *
+ * <p>The render thread never waits on the encoder: frames are capped at {@link #FRAME_RATE} and
+ * dropped while {@link #MAX_PENDING} earlier ones have not come out the other end. An encoder
+ * that stops returning frames altogether is restarted rather than drawn into.
+ */
+final class RewindEncoder {
+    private static final String TAG = "RewindEncoder";
+    private static final String MIME = MediaFormat.MIMETYPE_VIDEO_AVC;
+    static final int LONG_EDGE = 1280;
+    static final int FRAME_RATE = 30;
+    private static final int BIT_RATE = 2_000_000;
+    static final long RETENTION_US = 30_000_000L;
+    /** Thirty seconds at {@link #BIT_RATE} is 7.5 MB; the rest absorbs busy scenes. */
+    static final int CAPACITY_BYTES = 12 << 20;
+    static final int MAX_SAMPLES = (int) (RETENTION_US / 1_000_000L) * FRAME_RATE * 2;
+    /** One key frame a second: how far a rewind may have to decode before it shows anything. */
+    private static final int KEY_FRAME_INTERVAL_S = 1;
+    private static final long MIN_FRAME_INTERVAL_NS = 1_000_000_000L / FRAME_RATE - 2_000_000L;
+    private static final int MAX_PENDING = 3;
+    /** Encoders may drop frames without a word; after this long without output, start over. */
+    private static final long PENDING_TIMEOUT_NS = 500_000_000L;
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+    private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    /** An encoder's input surface and the size it was configured for. */
+    private static final class Input {
+        final Surface surface;
+        final int width, height;
+
+        Input(Surface surface, int width, int height) {
+            this.surface = surface;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final RewindBuffer buffer;
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // Encoder thread
+    private MediaCodec codec;
+    private int viewWidth, viewHeight;
+    private volatile Input input;
+    private volatile MediaFormat outputFormat;
+
+    // Render thread
+    private int program;
+    private int positionHandle, texCoordHandle, texMatrixHandle, zoomHandle;
+    private final int[] target = new int[2];
+    private int targetWidth, targetHeight;
+    private Input bound;
+    /** Input of an encoder that stopped returning frames; never drawn into again. */
+    private Input stalled;
+    private EGLSurface eglSurface = EGL14.EGL_NO_SURFACE;
+    private long lastFrameNs;
+    private long capturedNs;
+
+    private final MediaCodec.Callback callback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(MediaCodec mc, int index) {
+            // Input comes through the surface.
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec mc, int index, MediaCodec.BufferInfo info) {
+            if (mc != codec) return;
+            ByteBuffer data = mc.getOutputBuffer(index);
+            if (data != null && info.size > 0 && (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                data.position(info.offset).limit(info.offset + info.size);
+                buffer.append(data, info.presentationTimeUs, (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0);
+                pending.updateAndGet(n -> Math.max(0, n - 1));
+            }
+            mc.releaseOutputBuffer(index, false);
+        }
+
+        @Override
+        public void onError(MediaCodec mc, MediaCodec.CodecException e) {
+            if (mc != codec) return;
+            Log.w(TAG, "Encoder failed; rewind is off until the view is recreated", e);
+            releaseCodec();
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec mc, MediaFormat format) {
+            if (mc == codec) outputFormat = format;
+        }
+    };
+
+    RewindEncoder(RewindBuffer buffer, FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.buffer = buffer;
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+        thread = new HandlerThread("RewindEncoder");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Format of the samples in the buffer, with the codec config a decoder needs; null until known. */
+    MediaFormat outputFormat() {
+        return outputFormat;
+    }
+
+    /** Any thread. Starts encoding a view of this size, unless already doing so. */
+    void start(int width, int height) {
+        handler.post(() -> {
+            if (codec != null && width == viewWidth && height == viewHeight) return;
+            configure(width, height);
+        });
+    }
+
+    /** Any thread. Stops encoding; what is in the buffer stays there. */
+    void stop() {
+        handler.post(this::releaseCodec);
+    }
+
+    void release() {
+        handler.post(this::releaseCodec);
+        thread.quitSafely();
+    }
+
+    /** Render thread. The context was (re)created; the EGL surface and target died with the old one. */
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(CompositeShaders.vertexShader(), FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        target[0] = target[1] = 0;
+        targetWidth = targetHeight = 0;
+        bound = null;
+        stalled = null;
+        eglSurface = EGL14.EGL_NO_SURFACE;
+        capturedNs = 0L;
+    }
+
+    /**
+     * Render thread. Whether the encoder is due a frame at {@code frameTimeNs} and can take one
+     * without waiting. On true the view-sized target is bound: draw the composite into it and
+     * call {@link #endFrame}.
+     */
+    boolean beginFrame(GlRenderThread gl, long frameTimeNs, int viewWidth, int viewHeight) {
+        Input current = input;
+        if (current != bound) {
+            if (eglSurface != EGL14.EGL_NO_SURFACE) gl.releaseOutputSurface(eglSurface);
+            bound = current;
+            eglSurface = current != null && current != stalled
+                    ? gl.createOutputSurface(current.surface) : EGL14.EGL_NO_SURFACE;
+        }
+        if (eglSurface == EGL14.EGL_NO_SURFACE) return false;
+        long sinceLast = frameTimeNs - lastFrameNs;
+        if (sinceLast < MIN_FRAME_INTERVAL_NS) return false;
+        if (pending.get() >= MAX_PENDING) {
+            // Another buffer would block the render thread until the encoder lets one go.
+            if (sinceLast >= PENDING_TIMEOUT_NS) restart(gl);
+            return false;
+        }
+        if (viewWidth != targetWidth || viewHeight != targetHeight) {
+            GlUtil.deleteColorTarget(target[0], target[1]);
+            GlUtil.createColorTarget(viewWidth, viewHeight, target);
+            targetWidth = viewWidth;
+            targetHeight = viewHeight;
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target[0]);
+        capturedNs = frameTimeNs;
+        return true;
+    }
+
+    /**
+     * Render thread. Copies the frame drawn since {@link #beginFrame} to the view, leaving
+     * framebuffer 0 bound, and keeps it for {@link #encode} once the view has been swapped.
+     */
+    void endFrame() {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        copy(target[1]);
+    }
+
+    /**
+     * Render thread, after the view's swap. Hands the frame kept by {@link #endFrame} to the
+     * encoder; does nothing if there is none. The viewport is left at the encoder's size.
+     */
+    void encode(GlRenderThread gl) {
+        long frameTimeNs = capturedNs;
+        if (frameTimeNs == 0L) return;
+        capturedNs = 0L;
+        if (!gl.makeOutputCurrent(eglSurface)) return;
+        GLES20.glViewport(0, 0, bound.width, bound.height);
+        copy(target[1]);
+        if (gl.swapOutput(eglSurface, frameTimeNs)) {
+            lastFrameNs = frameTimeNs;
+            pending.incrementAndGet();
+        } else {
+            // Abandoned, e.g. the encoder stopped; wait for the next one.
+            gl.releaseOutputSurface(eglSurface);
+            eglSurface = EGL14.EGL_NO_SURFACE;
+        }
+    }
+
+    /** Render thread. Draws {@code texture} over the whole viewport. */
+    private void copy(int texture) {
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, IDENTITY, 0);
+        GLES20.glUniform1f(zoomHandle, 1f);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+    }
+
+    /** Render thread. Lets go of a stuck encoder's surface and has a fresh encoder made. */
+    private void restart(GlRenderThread gl) {
+        stalled = bound;
+        gl.releaseOutputSurface(eglSurface);
+        eglSurface = EGL14.EGL_NO_SURFACE;
+        Log.w(TAG, "Encoder stopped returning frames; restarting");
+        handler.post(() -> {
+            if (codec != null) configure(viewWidth, viewHeight);
+        });
+    }
+
+    // Encoder thread
+    private void configure(int width, int height) {
+        releaseCodec();
+        viewWidth = width;
+        viewHeight = height;
+        float scale = Math.min(1f, LONG_EDGE / (float) Math.max(width, height));
+        // Macroblock aligned; some encoders reject anything else.
+        int w = Math.max(16, Math.round(width * scale) & ~15);
+        int h = Math.max(16, Math.round(height * scale) & ~15);
+        outputFormat = null;
+        MediaFormat format = MediaFormat.createVideoFormat(MIME, w, h);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, KEY_FRAME_INTERVAL_S);
+        try {
+            codec = MediaCodec.createEncoderByType(MIME);
+            codec.setCallback(callback, handler);
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            Surface surface = codec.createInputSurface();
+            codec.start();
+            // Samples of an earlier stream cannot be decoded with this one's config.
+            buffer.clear();
+            pending.set(0);
+            input = new Input(surface, w, h);
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            Log.w(TAG, "No encoder for rewind", e);
+            releaseCodec();
+        }
+    }
+
+    private void releaseCodec() {
+        Input oldInput = input;
+        input = null;
+        if (codec == null) return;
+        MediaCodec old = codec;
+        codec = null;
+        try {
+            old.stop();
+        } catch (IllegalStateException e) {
+            // Already failed; release regardless.
+        }
+        old.release();
+        // The render thread's EGL surface keeps its own reference until it lets go.
+        if (oldInput != null) oldInput.surface.release();
+    }
+}
@@ -0,0 +1,297 @@
+package com.siva.magnifyapp;
+
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Plays a {@link RewindBuffer} back into the view. A decoder on its own thread starts from the
+ * key frame before the requested moment, decodes up to it without showing anything, then shows
+ * each frame at its recorded pace into a SurfaceTexture owned by the render thread. The frames
+ * were encoded from the finished view, so they are drawn as they are.
+ */
+final class RewindPlayer {
+    private static final String TAG = "RewindPlayer";
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "uniform samplerExternalOES sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+
+    private final RewindBuffer buffer;
+    private final Runnable onFrame;
+    private final Runnable onEnd;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    // Render thread
+    private int program;
+    private int positionHandle, texCoordHandle, texMatrixHandle, zoomHandle;
+    private int texture;
+    private SurfaceTexture surfaceTexture;
+    private Surface surface;
+    private final float[] texMatrix = new float[16];
+    private boolean hasFrame;
+    /** Timestamp of the frame the texture held when playback started, from an earlier rewind. */
+    private long staleTimestampNs;
+
+    // Decoder thread
+    private MediaCodec codec;
+    private long nextSample;
+    private boolean endQueued;
+    private long targetUs;
+    private long anchorUs, anchorNs;
+    /** Bumped on every seek; frames scheduled for showing before it are dropped. */
+    private int generation;
+
+    private volatile long positionUs;
+
+    private final MediaCodec.Callback callback = new MediaCodec.Callback() {
+        @Override
+        public void onInputBufferAvailable(MediaCodec mc, int index) {
+            if (mc != codec) return;
+            queueInput(index);
+        }
+
+        @Override
+        public void onOutputBufferAvailable(MediaCodec mc, int index, MediaCodec.BufferInfo info) {
+            if (mc != codec) return;
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                mc.releaseOutputBuffer(index, false);
+                finish(mc);
+                return;
+            }
+            long timeUs = info.presentationTimeUs;
+            if (timeUs < targetUs) {
+                // Decoded only to reach the requested moment.
+                mc.releaseOutputBuffer(index, false);
+                return;
+            }
+            long nowNs = System.nanoTime();
+            if (anchorNs == 0L) {
+                anchorNs = nowNs;
+                anchorUs = timeUs;
+            }
+            long delayMs = Math.max(0L, (anchorNs + (timeUs - anchorUs) * 1000L - nowNs) / 1_000_000L);
+            int scheduled = generation;
+            handler.postDelayed(() -> {
+                if (mc != codec || scheduled != generation) return;
+                mc.releaseOutputBuffer(index, true);
+                positionUs = timeUs;
+            }, delayMs);
+        }
+
+        @Override
+        public void onError(MediaCodec mc, MediaCodec.CodecException e) {
+            if (mc != codec) return;
+            Log.w(TAG, "Rewind playback failed", e);
+            finish(mc);
+        }
+
+        @Override
+        public void onOutputFormatChanged(MediaCodec mc, MediaFormat format) {
+        }
+    };
+
+    /**
+     * @param onFrame called on the decoder thread when a frame is ready to draw
+     * @param onEnd   called on the decoder thread when playback caught up with the newest sample
+     *                or failed
+     */
+    RewindPlayer(RewindBuffer buffer, FloatBuffer vertexBuffer, FloatBuffer texBuffer, Runnable onFrame,
+                 Runnable onEnd) {
+        this.buffer = buffer;
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+        this.onFrame = onFrame;
+        this.onEnd = onEnd;
+        thread = new HandlerThread("RewindPlayer");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Render thread. The old SurfaceTexture belonged to the previous context; stop and let go of it. */
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(CompositeShaders.vertexShader(), FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        SurfaceTexture oldTexture = surfaceTexture;
+        Surface oldSurface = surface;
+        surfaceTexture = null;
+        surface = null;
+        texture = 0;
+        hasFrame = false;
+        handler.post(() -> {
+            releaseCodec();
+            if (oldSurface != null) oldSurface.release();
+            if (oldTexture != null) oldTexture.release();
+        });
+    }
+
+    /**
+     * Render thread. Starts playing the samples in {@code format} from {@code fromUs}, or from the
+     * oldest one if that moment is gone.
+     */
+    void start(MediaFormat format, long fromUs) {
+        if (surfaceTexture == null) {
+            int[] names = new int[1];
+            GLES20.glGenTextures(1, names, 0);
+            texture = names[0];
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, texture);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+            surfaceTexture = new SurfaceTexture(texture);
+            surfaceTexture.setOnFrameAvailableListener(st -> onFrame.run(), handler);
+            surface = new Surface(surfaceTexture);
+        }
+        hasFrame = false;
+        staleTimestampNs = surfaceTexture.getTimestamp();
+        positionUs = fromUs;
+        Surface output = surface;
+        handler.post(() -> {
+            releaseCodec();
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            MediaFormat decoderFormat = MediaFormat.createVideoFormat(mime,
+                    format.getInteger(MediaFormat.KEY_WIDTH), format.getInteger(MediaFormat.KEY_HEIGHT));
+            for (String key : new String[]{"csd-0", "csd-1"}) {
+                if (format.containsKey(key)) decoderFormat.setByteBuffer(key, format.getByteBuffer(key));
+            }
+            try {
+                codec = MediaCodec.createDecoderByType(mime);
+                codec.setCallback(callback, handler);
+                codec.configure(decoderFormat, output, null, 0);
+                seekTo(fromUs);
+                codec.start();
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                Log.w(TAG, "No decoder for rewind", e);
+                releaseCodec();
+                onEnd.run();
+            }
+        });
+    }
+
+    /** Any thread. Jumps to {@code toUs} while playing. */
+    void seek(long toUs) {
+        positionUs = toUs;
+        handler.post(() -> {
+            if (codec == null) return;
+            codec.flush();
+            seekTo(toUs);
+            // Flushing stops an asynchronous codec's callbacks until it is started again.
+            codec.start();
+        });
+    }
+
+    /** Any thread. Time of the frame on show, or of the moment last asked for. */
+    long positionUs() {
+        return positionUs;
+    }
+
+    /** Any thread. Stops decoding; the texture is kept for the next rewind. */
+    void stop() {
+        handler.post(this::releaseCodec);
+    }
+
+    void release() {
+        handler.post(this::releaseCodec);
+        thread.quitSafely();
+    }
+
+    /**
+     * Render thread. Draws the latest decoded frame over the whole viewport; false, drawing
+     * nothing, until the first one has arrived.
+     */
+    boolean draw() {
+        if (surfaceTexture == null) return false;
+        // Frames arrive one at a time as they fall due; this latches the newest.
+        surfaceTexture.updateTexImage();
+        surfaceTexture.getTransformMatrix(texMatrix);
+        if (surfaceTexture.getTimestamp() != staleTimestampNs) hasFrame = true;
+        if (!hasFrame) return false;
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, texture);
+        GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, texMatrix, 0);
+        GLES20.glUniform1f(zoomHandle, 1f);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        return true;
+    }
+
+    // Decoder thread
+    private void seekTo(long toUs) {
+        generation++;
+        nextSample = buffer.keyFrameAtOrBefore(toUs);
+        targetUs = toUs;
+        anchorNs = 0L;
+        endQueued = false;
+    }
+
+    private void queueInput(int index) {
+        if (endQueued) return;
+        ByteBuffer in = codec.getInputBuffer(index);
+        int length = -1;
+        long timeUs = buffer.timeUs(nextSample);
+        if (in != null && nextSample >= 0) {
+            in.clear();
+            length = buffer.read(nextSample, in);
+        }
+        if (length < 0) {
+            // Played through to the newest sample, or the buffer moved on underneath.
+            codec.queueInputBuffer(index, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            endQueued = true;
+            return;
+        }
+        int flags = buffer.isKeyFrame(nextSample) ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+        codec.queueInputBuffer(index, 0, length, timeUs, flags);
+        nextSample++;
+    }
+
+    /** Ends playback outside the codec's callback, which must not stop its own codec. */
+    private void finish(MediaCodec mc) {
+        handler.post(() -> {
+            if (mc != codec) return;
+            releaseCodec();
+            onEnd.run();
+        });
+    }
+
+    private void releaseCodec() {
+        if (codec == null) return;
+        MediaCodec old = codec;
+        codec = null;
+        generation++;
+        try {
+            old.stop();
+        } catch (IllegalStateException e) {
+            // Already failed; release regardless.
+        }
+        old.release();
+    }
+}
@@ -0,0 +1,111 @@
+package com.siva.magnifyapp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the image adjustments in memory and writes them behind the user's back. Every change
+ * only replaces the in-memory value and pushes a pending write {@link #DEBOUNCE_MS} out, so a run
+ * of scroll steps costs one write once it stops; {@link #flush()} writes straight away for
+ * {@code onPause}.
+ *
+ * <p>Named presets hold a full set of adjustments, which the caller hands to the renderer as a
+ * single update. Built-in presets can be overwritten with the current values and are persisted
+ * alongside them. Presets leave the app brightness as it is, since that follows the room rather
+ * than the task.
+ *
+ * <p>Main thread only.
+ */
+final class SettingsStore {
+    static final String PRESET_READING = "reading";
+    static final String PRESET_DISTANCE = "distance";
+    /** Quiet time after the last change before it is written. */
+    static final long DEBOUNCE_MS = 1000L;
+    /** Name the live adjustments are stored under. */
+    static final String CURRENT = "current";
+
+    /** Where adjustments are persisted under a name; the production storage is preferences. */
+    interface Storage {
+        /** The adjustments saved under {@code name}, or null if there are none. */
+        Adjustments load(String name);
+
+        void save(String name, Adjustments adjustments);
+    }
+
+    /** Delayed execution on the owning thread; {@code android.os.Handler} has this shape. */
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void removeCallbacks(Runnable task);
+    }
+
+    private static final Map<String, Adjustments> BUILT_IN_PRESETS = new HashMap<>();
+
+    static {
+        BUILT_IN_PRESETS.put(PRESET_READING,
+                new Adjustments(2.5f, 0f, 1.2f, 0.4f, 1f, CompositeShaders.FILTER_READING_WHITE_ON_BLACK));
+        BUILT_IN_PRESETS.put(PRESET_DISTANCE, new Adjustments(4f, 0.1f, 1.3f, 0.6f, 1f, 0));
+    }
+
+    private final Storage storage;
+    private final Scheduler scheduler;
+    private final Runnable flush = this::flush;
+    private final Map<String, Adjustments> presets = new HashMap<>();
+    private Adjustments current = Adjustments.DEFAULT;
+    private Adjustments saved = Adjustments.DEFAULT;
+
+    SettingsStore(Storage storage, Scheduler scheduler) {
+        this.storage = storage;
+        this.scheduler = scheduler;
+    }
+
+    /** Reads the saved adjustments; call once, before anything is drawn. */
+    Adjustments restore() {
+        Adjustments loaded = storage.load(CURRENT);
+        current = saved = loaded != null ? loaded : Adjustments.DEFAULT;
+        return current;
+    }
+
+    Adjustments current() {
+        return current;
+    }
+
+    /** Replaces the adjustments in memory and schedules their write. */
+    void update(Adjustments adjustments) {
+        if (adjustments.equals(current)) return;
+        current = adjustments;
+        scheduler.removeCallbacks(flush);
+        scheduler.postDelayed(flush, DEBOUNCE_MS);
+    }
+
+    /** Writes pending changes now. */
+    void flush() {
+        scheduler.removeCallbacks(flush);
+        if (current.equals(saved)) return;
+        storage.save(CURRENT, current);
+        saved = current;
+    }
+
+    /**
+     * Makes preset {@code name} current and returns it, with the app brightness carried over;
+     * null if there is no such preset.
+     */
+    Adjustments applyPreset(String name) {
+        Adjustments preset = presets.get(name);
+        if (preset == null) {
+            preset = storage.load(name);
+            if (preset == null) preset = BUILT_IN_PRESETS.get(name);
+            if (preset == null) return null;
+            presets.put(name, preset);
+        }
+        Adjustments applied = preset.withAppBrightness(current.appBrightness);
+        update(applied);
+        return applied;
+    }
+
+    /** Stores the current adjustments as preset {@code name}. */
+    void savePreset(String name) {
+        presets.put(name, current);
+        storage.save(name, current);
+    }
+}
@@ -0,0 +1,235 @@
+package com.siva.magnifyapp;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Blur stage of the unsharp mask. The zoomed camera view is downsampled into a reduced
+ * resolution FBO and blurred with a separable binomial kernel; the composite pass then only
+ * needs one extra fetch per output pixel to subtract the blurred image.
+ *
+ * <p>The kernel radius is expressed in source texels, so the blur covers the same image
+ * detail at every zoom level instead of a fixed fraction of the screen.
+ */
+final class SharpenPass {
+    /** Default resolution divisor of the blur targets relative to the viewport. */
+    static final int DEFAULT_DOWNSAMPLE = 2;
+    /** Blur radius in camera buffer texels. */
+    private static final float RADIUS_SOURCE_TEXELS = 1.0f;
+    /** Upper bound on the tap spacing in blur-target texels before the kernel starts to alias. */
+    private static final float MAX_STEP = 4.0f;
+
+    private static final String DOWNSAMPLE_VERTEX_SHADER =
+            "#version 100\n" +
+                    "attribute vec4 aPosition;\n" +
+                    "attribute vec2 aTexCoord;\n" +
+                    "uniform mat4 uTexMatrix;\n" +
+                    "uniform float uZoom;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = aPosition;\n" +
+                    "    vec2 zoomedCoord = (aTexCoord - 0.5) / uZoom + 0.5;\n" +
+                    "    vTexCoord = (uTexMatrix * vec4(zoomedCoord, 0.0, 1.0)).xy;\n" +
+                    "}\n";
+
+    private static final String DOWNSAMPLE_FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "uniform samplerExternalOES sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+
+    // Same, for camera buffers replayed from a 2D texture.
+    private static final String DOWNSAMPLE_2D_FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+
+    // 5-tap binomial (1 4 6 4 1) folded into three bilinear fetches.
+    private static final String BLUR_VERTEX_SHADER =
+            "#version 100\n" +
+                    "attribute vec4 aPosition;\n" +
+                    "attribute vec2 aTexCoord;\n" +
+                    "uniform vec2 uStep;\n" +
+                    "varying vec2 vCenter;\n" +
+                    "varying vec2 vNeg;\n" +
+                    "varying vec2 vPos;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = aPosition;\n" +
+                    "    vCenter = aTexCoord;\n" +
+                    "    vNeg = aTexCoord - uStep * 1.2;\n" +
+                    "    vPos = aTexCoord + uStep * 1.2;\n" +
+                    "}\n";
+
+    private static final String BLUR_FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "varying vec2 vCenter;\n" +
+                    "varying vec2 vNeg;\n" +
+                    "varying vec2 vPos;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vCenter) * 0.375\n" +
+                    "                 + texture2D(sTexture, vNeg) * 0.3125\n" +
+                    "                 + texture2D(sTexture, vPos) * 0.3125;\n" +
+                    "}\n";
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    private int downsampleProgram;
+    private int dsPositionHandle, dsTexCoordHandle, dsTexMatrixHandle, dsZoomHandle;
+    private int downsample2dProgram;
+    private int ds2dPositionHandle, ds2dTexCoordHandle, ds2dTexMatrixHandle, ds2dZoomHandle;
+    private int blurProgram;
+    private int blurPositionHandle, blurTexCoordHandle, blurStepHandle;
+
+    private final int[] targetA = new int[2];
+    private final int[] targetB = new int[2];
+    private int targetWidth, targetHeight;
+    private int viewWidth, viewHeight;
+    private int downsample = DEFAULT_DOWNSAMPLE;
+
+    SharpenPass(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+    }
+
+    void onSurfaceCreated() {
+        downsampleProgram = GlUtil.createProgram(DOWNSAMPLE_VERTEX_SHADER, DOWNSAMPLE_FRAGMENT_SHADER);
+        dsPositionHandle = GLES20.glGetAttribLocation(downsampleProgram, "aPosition");
+        dsTexCoordHandle = GLES20.glGetAttribLocation(downsampleProgram, "aTexCoord");
+        dsTexMatrixHandle = GLES20.glGetUniformLocation(downsampleProgram, "uTexMatrix");
+        dsZoomHandle = GLES20.glGetUniformLocation(downsampleProgram, "uZoom");
+
+        downsample2dProgram = GlUtil.createProgram(DOWNSAMPLE_VERTEX_SHADER, DOWNSAMPLE_2D_FRAGMENT_SHADER);
+        ds2dPositionHandle = GLES20.glGetAttribLocation(downsample2dProgram, "aPosition");
+        ds2dTexCoordHandle = GLES20.glGetAttribLocation(downsample2dProgram, "aTexCoord");
+        ds2dTexMatrixHandle = GLES20.glGetUniformLocation(downsample2dProgram, "uTexMatrix");
+        ds2dZoomHandle = GLES20.glGetUniformLocation(downsample2dProgram, "uZoom");
+
+        blurProgram = GlUtil.createProgram(BLUR_VERTEX_SHADER, BLUR_FRAGMENT_SHADER);
+        blurPositionHandle = GLES20.glGetAttribLocation(blurProgram, "aPosition");
+        blurTexCoordHandle = GLES20.glGetAttribLocation(blurProgram, "aTexCoord");
+        blurStepHandle = GLES20.glGetUniformLocation(blurProgram, "uStep");
+
+        // Context was (re)created; any previous targets died with it.
+        targetA[0] = targetA[1] = targetB[0] = targetB[1] = 0;
+        targetWidth = targetHeight = 0;
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        viewWidth = width;
+        viewHeight = height;
+        resizeTargets();
+    }
+
+    /** Trades blur accuracy for bandwidth; larger divisors blur a coarser copy of the view. */
+    void setDownsample(int downsample) {
+        if (downsample == this.downsample) return;
+        this.downsample = downsample;
+        if (viewWidth > 0) resizeTargets();
+    }
+
+    private void resizeTargets() {
+        int w = Math.max(1, viewWidth / downsample);
+        int h = Math.max(1, viewHeight / downsample);
+        if (w == targetWidth && h == targetHeight) return;
+        GlUtil.deleteColorTarget(targetA[0], targetA[1]);
+        GlUtil.deleteColorTarget(targetB[0], targetB[1]);
+        GlUtil.createColorTarget(w, h, targetA);
+        GlUtil.createColorTarget(w, h, targetB);
+        targetWidth = w;
+        targetHeight = h;
+    }
+
+    /**
+     * Renders the blurred, zoomed camera view and returns the texture holding it. The caller is
+     * responsible for rebinding its own framebuffer and viewport afterwards.
+     *
+     * @param external     whether {@code cameraTexture} is the camera's external image or a
+     *                     replayed buffer in a 2D texture
+     * @param sourceWidth  width of the camera buffer in texels
+     * @param sourceHeight height of the camera buffer in texels
+     * @param viewWidth    width of the final viewport in pixels
+     * @param viewHeight   height of the final viewport in pixels
+     */
+    int render(boolean external, int cameraTexture, float[] texMatrix, float zoom,
+               int sourceWidth, int sourceHeight, int viewWidth, int viewHeight) {
+        GLES20.glViewport(0, 0, targetWidth, targetHeight);
+
+        // Pass 1: zoomed camera view → A at reduced resolution.
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, targetA[0]);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        if (external) {
+            GLES20.glUseProgram(downsampleProgram);
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, cameraTexture);
+            GLES20.glUniformMatrix4fv(dsTexMatrixHandle, 1, false, texMatrix, 0);
+            GLES20.glUniform1f(dsZoomHandle, zoom);
+            drawQuad(dsPositionHandle, dsTexCoordHandle);
+        } else {
+            GLES20.glUseProgram(downsample2dProgram);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, cameraTexture);
+            GLES20.glUniformMatrix4fv(ds2dTexMatrixHandle, 1, false, texMatrix, 0);
+            GLES20.glUniform1f(ds2dZoomHandle, zoom);
+            drawQuad(ds2dPositionHandle, ds2dTexCoordHandle);
+        }
+
+        // Output pixels covered by one source texel; orientation-agnostic since the camera
+        // buffer may be rotated relative to the view by the transform matrix.
+        float sourceSpan = zoom * (float) Math.max(viewWidth, viewHeight)
+                / Math.max(1, Math.max(sourceWidth, sourceHeight));
+        return blur(targetA[1], sourceSpan);
+    }
+
+    /**
+     * Blurs a screen-aligned, view-sized texture such as a resampled still. The horizontal pass
+     * reads it directly and downsamples on the way.
+     *
+     * @param sourceSpan output pixels covered by one texel of the original image
+     */
+    int renderView(int viewTexture, float sourceSpan) {
+        GLES20.glViewport(0, 0, targetWidth, targetHeight);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        return blur(viewTexture, sourceSpan);
+    }
+
+    private int blur(int sourceTexture, float sourceSpan) {
+        float step = Math.min(MAX_STEP, Math.max(0.5f, RADIUS_SOURCE_TEXELS * sourceSpan / downsample));
+
+        // Pass 2: horizontal blur source → B.
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, targetB[0]);
+        GLES20.glUseProgram(blurProgram);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, sourceTexture);
+        GLES20.glUniform2f(blurStepHandle, step / targetWidth, 0f);
+        drawQuad(blurPositionHandle, blurTexCoordHandle);
+
+        // Pass 3: vertical blur B → A.
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, targetA[0]);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, targetB[1]);
+        GLES20.glUniform2f(blurStepHandle, 0f, step / targetHeight);
+        drawQuad(blurPositionHandle, blurTexCoordHandle);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        return targetA[1];
+    }
+
+    private void drawQuad(int positionHandle, int texCoordHandle) {
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+    }
+}
@@ -0,0 +1,63 @@
+package com.siva.magnifyapp;
+
+/**
+ * Critically damped spring: moves a value to its target as fast as possible without overshoot,
+ * and keeps velocity when the target moves mid-flight, so retargeting never kinks the motion.
+ * Stepping uses the closed-form solution, which is exact for any time step.
+ */
+final class Spring {
+    private final float omega;
+    private final float epsilon;
+    private float value;
+    private float velocity;
+    private float target;
+
+    /**
+     * @param omega   natural frequency, 1/s; the value is within 1% of the target after about
+     *                {@code 6.6 / omega} seconds
+     * @param epsilon distance to the target below which the spring snaps to it and rests
+     */
+    Spring(float omega, float epsilon) {
+        this.omega = omega;
+        this.epsilon = epsilon;
+    }
+
+    float value() {
+        return value;
+    }
+
+    float target() {
+        return target;
+    }
+
+    void setTarget(float target) {
+        this.target = target;
+    }
+
+    /** Jumps to {@code value} and rests there. */
+    void snapTo(float value) {
+        this.value = value;
+        target = value;
+        velocity = 0f;
+    }
+
+    boolean isSettled() {
+        return value == target && velocity == 0f;
+    }
+
+    /** Advances by {@code dt} seconds; returns whether the spring is still moving. */
+    boolean step(float dt) {
+        if (isSettled()) return false;
+        float x = value - target;
+        float a = velocity + omega * x;
+        float decay = (float) Math.exp(-omega * dt);
+        x = (x + a * dt) * decay;
+        velocity = (velocity - omega * a * dt) * decay;
+        value = target + x;
+        if (Math.abs(x) < epsilon && Math.abs(velocity) < epsilon * omega) {
+            snapTo(target);
+            return false;
+        }
+        return true;
+    }
+}
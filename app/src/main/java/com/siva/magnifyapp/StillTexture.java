@@ -0,0 +1,152 @@
+package com.siva.magnifyapp;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A frozen full-resolution still, held as mipmapped {@link TileLayout} tiles.
+ *
+ * <p>{@link #render} resamples the zoomed and panned window of the still into a view-sized
+ * texture. That texture is screen aligned, so the sharpen and composite passes treat it like a
+ * camera frame at 1x with an identity matrix.
+ */
+final class StillTexture {
+    private static final String FRAGMENT_SHADER =
+            "#version 100\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D sTexture;\n" +
+                    "varying vec2 vTexCoord;\n" +
+                    "void main() {\n" +
+                    "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+                    "}\n";
+
+    private final FloatBuffer vertexBuffer;
+    private final FloatBuffer texBuffer;
+
+    private int program;
+    private int positionHandle, texCoordHandle, texMatrixHandle, zoomHandle;
+
+    private TileLayout layout;
+    private int[] tiles;
+    private final int[] viewTarget = new int[2];
+    private int targetWidth, targetHeight;
+    private int viewWidth, viewHeight;
+
+    private final float[] tileMatrix = new float[16];
+    private final int[] scissor = new int[4];
+
+    StillTexture(FloatBuffer vertexBuffer, FloatBuffer texBuffer) {
+        this.vertexBuffer = vertexBuffer;
+        this.texBuffer = texBuffer;
+    }
+
+    void onSurfaceCreated() {
+        program = GlUtil.createProgram(CompositeShaders.vertexShader(), FRAGMENT_SHADER);
+        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        texMatrixHandle = GLES20.glGetUniformLocation(program, "uTexMatrix");
+        zoomHandle = GLES20.glGetUniformLocation(program, "uZoom");
+        // Context was (re)created; textures died with it.
+        layout = null;
+        tiles = null;
+        viewTarget[0] = viewTarget[1] = 0;
+        targetWidth = targetHeight = 0;
+    }
+
+    void onSurfaceChanged(int width, int height) {
+        viewWidth = width;
+        viewHeight = height;
+    }
+
+    int width() {
+        return layout.imageWidth;
+    }
+
+    int height() {
+        return layout.imageHeight;
+    }
+
+    /** GL thread. Replaces the current still; the bitmap may be recycled afterwards. */
+    void upload(Bitmap bitmap) {
+        release();
+        TileLayout newLayout = new TileLayout(bitmap.getWidth(), bitmap.getHeight());
+        int[] names = new int[newLayout.tileCount()];
+        GLES20.glGenTextures(names.length, names, 0);
+        for (int i = 0; i < names.length; i++) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, names[i]);
+            GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, TileLayout.TILE_SIZE, TileLayout.TILE_SIZE,
+                    0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+            // Payload plus border, clipped to the image.
+            int x0 = Math.max(0, newLayout.tileX(i) - TileLayout.BORDER);
+            int y0 = Math.max(0, newLayout.tileY(i) - TileLayout.BORDER);
+            int x1 = Math.min(newLayout.imageWidth, newLayout.tileX(i) + newLayout.tileWidth(i) + TileLayout.BORDER);
+            int y1 = Math.min(newLayout.imageHeight, newLayout.tileY(i) + newLayout.tileHeight(i) + TileLayout.BORDER);
+            Bitmap region = Bitmap.createBitmap(bitmap, x0, y0, x1 - x0, y1 - y0);
+            GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0,
+                    x0 - (newLayout.tileX(i) - TileLayout.BORDER),
+                    y0 - (newLayout.tileY(i) - TileLayout.BORDER), region);
+            if (region != bitmap) region.recycle();
+            GLES20.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR_MIPMAP_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        }
+        layout = newLayout;
+        tiles = names;
+    }
+
+    /**
+     * Draws the visible window of the still into the view-sized target and returns its texture.
+     * Binds framebuffer 0 before returning.
+     *
+     * @param cropX fraction of the still's width matching the live preview's framing
+     * @param cropY fraction of the still's height matching the live preview's framing
+     */
+    int render(float zoom, float panX, float panY, float cropX, float cropY) {
+        // Only allocated while a still is shown.
+        if (targetWidth != viewWidth || targetHeight != viewHeight) {
+            GlUtil.deleteColorTarget(viewTarget[0], viewTarget[1]);
+            GlUtil.createColorTarget(viewWidth, viewHeight, viewTarget);
+            targetWidth = viewWidth;
+            targetHeight = viewHeight;
+        }
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, viewTarget[0]);
+        GLES20.glViewport(0, 0, viewWidth, viewHeight);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glUseProgram(program);
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glUniform1f(zoomHandle, zoom);
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
+        for (int i = 0; i < tiles.length; i++) {
+            if (!layout.scissor(i, zoom, panX, panY, cropX, cropY, viewWidth, viewHeight, scissor)) continue;
+            GLES20.glScissor(scissor[0], scissor[1], scissor[2], scissor[3]);
+            layout.tileMatrix(i, panX, panY, cropX, cropY, tileMatrix);
+            GLES20.glUniformMatrix4fv(texMatrixHandle, 1, false, tileMatrix, 0);
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, tiles[i]);
+            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        }
+        GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        return viewTarget[1];
+    }
+
+    /** GL thread. Frees the tiles and the view target. */
+    void release() {
+        if (tiles != null) GLES20.glDeleteTextures(tiles.length, tiles, 0);
+        tiles = null;
+        layout = null;
+        GlUtil.deleteColorTarget(viewTarget[0], viewTarget[1]);
+        viewTarget[0] = viewTarget[1] = 0;
+        targetWidth = targetHeight = 0;
+    }
+}
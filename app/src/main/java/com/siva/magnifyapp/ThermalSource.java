@@ -0,0 +1,16 @@
+package com.siva.magnifyapp;
+
+/**
+ * Device temperature as seen by {@link QualityController}. The production source wraps
+ * {@code PowerManager}; tests drive the controller with a fake.
+ */
+interface ThermalSource {
+    /** Current severity, one of the {@code PowerManager.THERMAL_STATUS_*} values. */
+    int thermalStatus();
+
+    /**
+     * Forecast thermal headroom, where 1.0 is the point at which the platform starts severe
+     * throttling; NaN when the device cannot tell.
+     */
+    float thermalHeadroom();
+}
@@ -0,0 +1,111 @@
+package com.siva.magnifyapp;
+
+/**
+ * Splits a still image into power-of-two textures that GLES 2 can mipmap, and maps the zoomed,
+ * panned view onto them.
+ *
+ * <p>Each tile holds {@link #STEP} image pixels plus a {@link #BORDER} of its neighbours' pixels
+ * on every side, so bilinear filtering at a tile edge samples real image content rather than
+ * clamped texels. Tiles are drawn with the scissor set to the part of the view their payload
+ * covers.
+ *
+ * <p>View coordinates are the composite pass's zoomed texture coordinates: {@code [0, 1]}
+ * spans the part of the still matching the live preview's framing, y up. Pure Java so the
+ * mapping can be checked in unit tests.
+ */
+final class TileLayout {
+    static final int TILE_SIZE = 1024;
+    static final int BORDER = 1;
+    static final int STEP = TILE_SIZE - 2 * BORDER;
+
+    final int imageWidth, imageHeight;
+    final int columns, rows;
+
+    TileLayout(int imageWidth, int imageHeight) {
+        if (imageWidth <= 0 || imageHeight <= 0) throw new IllegalArgumentException("Empty image");
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        columns = (imageWidth + STEP - 1) / STEP;
+        rows = (imageHeight + STEP - 1) / STEP;
+    }
+
+    int tileCount() {
+        return columns * rows;
+    }
+
+    /** Left edge of tile {@code i}'s payload in image pixels. */
+    int tileX(int i) {
+        return (i % columns) * STEP;
+    }
+
+    /** Top edge of tile {@code i}'s payload in image pixels, rows counted from the top. */
+    int tileY(int i) {
+        return (i / columns) * STEP;
+    }
+
+    int tileWidth(int i) {
+        return Math.min(STEP, imageWidth - tileX(i));
+    }
+
+    int tileHeight(int i) {
+        return Math.min(STEP, imageHeight - tileY(i));
+    }
+
+    /**
+     * Column-major texture matrix taking view coordinates to tile {@code i}'s texture
+     * coordinates. The tile texture's first row is the image's top row.
+     *
+     * @param cropX fraction of the still's width the view spans at 1x
+     * @param cropY fraction of the still's height the view spans at 1x
+     */
+    void tileMatrix(int i, float panX, float panY, float cropX, float cropY, float[] m) {
+        for (int k = 0; k < 16; k++) m[k] = 0f;
+        float sx = cropX * imageWidth / TILE_SIZE;
+        float sy = -cropY * imageHeight / TILE_SIZE;
+        m[0] = sx;
+        m[5] = sy;
+        m[10] = 1f;
+        m[15] = 1f;
+        m[12] = ((1f - cropX) * 0.5f * imageWidth - tileX(i) + BORDER) / TILE_SIZE + sx * panX;
+        m[13] = ((1f + cropY) * 0.5f * imageHeight - tileY(i) + BORDER) / TILE_SIZE + sy * panY;
+    }
+
+    /**
+     * Viewport pixels covered by tile {@code i}'s payload as {x, y, width, height} with a
+     * bottom-left origin, ready for {@code glScissor}. Adjacent tiles share their boundary
+     * exactly. Returns false when the tile is off screen.
+     */
+    boolean scissor(int i, float zoom, float panX, float panY, float cropX, float cropY,
+                    int viewWidth, int viewHeight, int[] out) {
+        int x0 = tileX(i);
+        int x1 = x0 + tileWidth(i);
+        // Image rows grow downwards, view y grows upwards.
+        int yTop = tileY(i);
+        int yBottom = yTop + tileHeight(i);
+        int left = toView(x0 / (float) imageWidth, cropX, panX, zoom, viewWidth);
+        int right = toView(x1 / (float) imageWidth, cropX, panX, zoom, viewWidth);
+        int bottom = toView(1f - yBottom / (float) imageHeight, cropY, panY, zoom, viewHeight);
+        int top = toView(1f - yTop / (float) imageHeight, cropY, panY, zoom, viewHeight);
+        left = Math.max(0, left);
+        bottom = Math.max(0, bottom);
+        right = Math.min(viewWidth, right);
+        top = Math.min(viewHeight, top);
+        if (right <= left || top <= bottom) return false;
+        out[0] = left;
+        out[1] = bottom;
+        out[2] = right - left;
+        out[3] = top - bottom;
+        return true;
+    }
+
+    /** Largest pan, in view coordinates, that keeps the window inside the image at {@code zoom}. */
+    static float maxPan(float zoom) {
+        return zoom > 1f ? (1f - 1f / zoom) * 0.5f : 0f;
+    }
+
+    private static int toView(float imageCoord, float crop, float pan, float zoom, int viewSize) {
+        float view = (imageCoord - (1f - crop) * 0.5f) / crop;
+        float screen = (view - pan - 0.5f) * zoom + 0.5f;
+        return Math.round(screen * viewSize);
+    }
+}
@@ -0,0 +1,101 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CameraSessionManagerTest {
+    private final List<String> calls = new ArrayList<>();
+    private Runnable pending;
+    private long pendingDelayMs;
+
+    private final CameraSessionManager.Camera camera = new CameraSessionManager.Camera() {
+        @Override
+        public void open() {
+            calls.add("open");
+        }
+
+        @Override
+        public void park() {
+            calls.add("park");
+        }
+
+        @Override
+        public void unpark() {
+            calls.add("unpark");
+        }
+
+        @Override
+        public void close() {
+            calls.add("close");
+        }
+    };
+
+    private final CameraSessionManager.Scheduler scheduler = new CameraSessionManager.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            pending = task;
+            pendingDelayMs = delayMs;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            if (pending == task) pending = null;
+        }
+    };
+
+    private final CameraSessionManager manager =
+            new CameraSessionManager(camera, scheduler, CameraSessionManager.DEFAULT_GRACE_PERIOD_MS);
+
+    @Test
+    public void shortPause_parksAndUnparks() {
+        manager.onResume();
+        manager.onPause();
+        assertEquals(CameraSessionManager.DEFAULT_GRACE_PERIOD_MS, pendingDelayMs);
+        manager.onResume();
+        assertNull(pending);
+        assertEquals(Arrays.asList("open", "park", "unpark"), calls);
+    }
+
+    @Test
+    public void gracePeriodExpiry_closes() {
+        manager.onResume();
+        manager.onPause();
+        pending.run();
+        manager.onResume();
+        assertEquals(Arrays.asList("open", "park", "close", "open"), calls);
+    }
+
+    @Test
+    public void zeroGracePeriod_closesOnPause() {
+        CameraSessionManager manager = new CameraSessionManager(camera, scheduler, 0L);
+        manager.onResume();
+        manager.onPause();
+        assertNull(pending);
+        assertEquals(Arrays.asList("open", "close"), calls);
+    }
+
+    @Test
+    public void deviceLost_reopensOnNextResume() {
+        manager.onResume();
+        manager.onPause();
+        manager.onDeviceLost();
+        assertNull(pending);
+        manager.onResume();
+        assertEquals(Arrays.asList("open", "park", "open"), calls);
+    }
+
+    @Test
+    public void close_isIdempotent() {
+        manager.onResume();
+        manager.onPause();
+        manager.close();
+        manager.close();
+        manager.onPause();
+        assertEquals(Arrays.asList("open", "park", "close"), calls);
+    }
+}
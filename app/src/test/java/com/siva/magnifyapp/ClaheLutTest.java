@@ -0,0 +1,76 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClaheLutTest {
+
+    @Test
+    public void mapping_isMonotonic() {
+        ClaheLut clahe = new ClaheLut(2, 2, 3f);
+        byte[] pixels = gradient(64, 64);
+        byte[] lut = new byte[clahe.lutSize()];
+        clahe.compute(pixels, 64, 64, 1, lut);
+        for (int tile = 0; tile < 4; tile++) {
+            for (int i = 1; i < ClaheLut.BINS; i++) {
+                assertTrue(value(lut, tile, i) >= value(lut, tile, i - 1));
+            }
+        }
+    }
+
+    @Test
+    public void clipLimitOne_isLinear() {
+        ClaheLut clahe = new ClaheLut(1, 1, 1f);
+        byte[] pixels = new byte[32 * 32];
+        java.util.Arrays.fill(pixels, (byte) 40);
+        byte[] lut = new byte[clahe.lutSize()];
+        clahe.compute(pixels, 32, 32, 1, lut);
+        for (int i = 0; i < ClaheLut.BINS; i++) {
+            assertEquals(i, value(lut, 0, i), 2);
+        }
+    }
+
+    @Test
+    public void dimLowContrastTile_isStretched() {
+        ClaheLut clahe = new ClaheLut(1, 1, 4f);
+        // Faded print: everything between 60 and 90.
+        byte[] pixels = new byte[64 * 64];
+        for (int i = 0; i < pixels.length; i++) pixels[i] = (byte) (60 + i % 31);
+        byte[] lut = new byte[clahe.lutSize()];
+        clahe.compute(pixels, 64, 64, 1, lut);
+        int spread = value(lut, 0, 90) - value(lut, 0, 60);
+        assertTrue("spread " + spread, spread > 60);
+    }
+
+    @Test
+    public void tiles_followImageLayout() {
+        ClaheLut clahe = new ClaheLut(2, 1, 4f);
+        // Left half dark, right half bright; RGBA stride with luma in the first channel.
+        int w = 32, h = 16;
+        byte[] rgba = new byte[w * h * 4];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int shade = (y * 16 + x % 16) % 64;
+                rgba[(y * w + x) * 4] = (byte) (x < w / 2 ? shade : 192 + shade);
+            }
+        }
+        byte[] lut = new byte[clahe.lutSize()];
+        clahe.compute(rgba, w, h, 4, lut);
+        // Each tile spends its output range on its own input range.
+        assertTrue(value(lut, 0, 64) > 250);
+        assertTrue(value(lut, 1, 191) < 5);
+    }
+
+    private static int value(byte[] lut, int tile, int bin) {
+        return lut[tile * ClaheLut.BINS + bin] & 0xFF;
+    }
+
+    private static byte[] gradient(int w, int h) {
+        byte[] pixels = new byte[w * h];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) pixels[y * w + x] = (byte) ((x * 3 + y) & 0xFF);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,122 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gyro traces here are synthesized: a slow pan plus physiological tremor, which is what makes
+ * text unreadable at high zoom.
+ */
+public class GyroStabilizerTest {
+    private static final long GYRO_PERIOD_NS = 5_000_000L;   // 200 Hz
+    private static final long FRAME_PERIOD_NS = 33_333_333L; // 30 fps
+    private static final float TAN_HALF_FOV = (float) Math.tan(Math.toRadians(35));
+
+    @Test
+    public void constantRate_integratesToAngle() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        // Turning right is negative rotation about the device y axis.
+        for (int i = 0; i <= 200; i++) stabilizer.addSample(i * GYRO_PERIOD_NS, 0f, -0.5f);
+        float[] out = new float[2];
+        assertTrue(stabilizer.orientationAt(200 * GYRO_PERIOD_NS, out));
+        assertEquals(0.5f, out[0], 1e-4f);
+        assertEquals(0f, out[1], 0f);
+    }
+
+    @Test
+    public void orientation_interpolatesBetweenSamples() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        stabilizer.addSample(0L, 1f, 0f);
+        stabilizer.addSample(10_000_000L, 1f, 0f);
+        float[] out = new float[2];
+        assertTrue(stabilizer.orientationAt(5_000_000L, out));
+        assertEquals(0.005f, out[1], 1e-6f);
+    }
+
+    @Test
+    public void orientation_refusesToExtrapolateFar() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        stabilizer.addSample(0L, 1f, 0f);
+        stabilizer.addSample(GYRO_PERIOD_NS, 1f, 0f);
+        float[] out = new float[2];
+        assertTrue(stabilizer.orientationAt(GYRO_PERIOD_NS + GyroStabilizer.MAX_EXTRAPOLATION_NS, out));
+        assertFalse(stabilizer.orientationAt(GYRO_PERIOD_NS + GyroStabilizer.MAX_EXTRAPOLATION_NS + 1, out));
+        assertFalse(stabilizer.orientationAt(-1L, out));
+    }
+
+    @Test
+    public void sensorOrientation_mapsDeviceAxesToImage() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        stabilizer.setSensorOrientation(90);
+        // With a 90 degree sensor the image's up axis is the device x axis.
+        stabilizer.addSample(0L, -1f, 0f);
+        stabilizer.addSample(100_000_000L / 2, -1f, 0f);
+        float[] out = new float[2];
+        assertTrue(stabilizer.orientationAt(50_000_000L, out));
+        assertEquals(0.05f, out[0], 1e-5f);
+        assertEquals(0f, out[1], 0f);
+    }
+
+    @Test
+    public void noGpuZoom_leavesNoMargin() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        feedTremor(stabilizer, 0L, 1_000_000_000L, 0f);
+        float[] out = new float[2];
+        assertFalse(stabilizer.offsetFor(500_000_000L, 1f, TAN_HALF_FOV, TAN_HALF_FOV, out));
+        assertEquals(0f, out[0], 0f);
+        assertEquals(0f, out[1], 0f);
+    }
+
+    @Test
+    public void offset_isClampedToMargin() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        stabilizer.setSmoothing(GyroStabilizer.DEFAULT_MIN_CUTOFF_HZ, 0f, GyroStabilizer.DEFAULT_DERIVATIVE_CUTOFF_HZ);
+        float[] out = new float[2];
+        for (int i = 0; i <= 20; i++) stabilizer.addSample(i * GYRO_PERIOD_NS, 0f, 0f);
+        stabilizer.offsetFor(20 * GYRO_PERIOD_NS, 2f, TAN_HALF_FOV, TAN_HALF_FOV, out);
+        // Sudden 35 degree jolt to the right within one frame.
+        for (int i = 21; i <= 27; i++) stabilizer.addSample(i * GYRO_PERIOD_NS, 0f, -20f);
+        assertTrue(stabilizer.offsetFor(27 * GYRO_PERIOD_NS, 2f, TAN_HALF_FOV, TAN_HALF_FOV, out));
+        assertEquals(-GyroStabilizer.margin(2f), out[0], 1e-6f);
+    }
+
+    @Test
+    public void tremor_isCancelledWhilePanIsFollowed() {
+        GyroStabilizer stabilizer = new GyroStabilizer();
+        long end = 4_000_000_000L;
+        feedTremor(stabilizer, 0L, end, 0.1f);
+
+        float gpuZoom = 4f;
+        float[] out = new float[2];
+        double rawSq = 0, residualSum = 0, residualSq = 0;
+        int n = 0;
+        for (long t = 1_000_000_000L; t < end; t += FRAME_PERIOD_NS) {
+            stabilizer.offsetFor(t, gpuZoom, TAN_HALF_FOV, TAN_HALF_FOV, out);
+            if (t < 2_000_000_000L) continue;
+            // Where tremor puts the scene in the stream, against where we sample.
+            float tremorShift = (float) -Math.tan(tremorYaw(t)) / (2f * TAN_HALF_FOV);
+            rawSq += tremorShift * tremorShift;
+            float residual = tremorShift - out[0];
+            residualSum += residual;
+            residualSq += residual * residual;
+            n++;
+            assertTrue(Math.abs(out[0]) <= GyroStabilizer.margin(gpuZoom));
+        }
+        // A constant lag behind the pan is invisible; only the frame-to-frame wobble matters.
+        double residualVar = residualSq / n - (residualSum / n) * (residualSum / n);
+        assertTrue("residual " + Math.sqrt(residualVar * n / rawSq), residualVar * n < rawSq * 0.1);
+    }
+
+    /** 8 Hz, 0.2 degree tremor in yaw on top of a constant pan. */
+    private static double tremorYaw(long t) {
+        return Math.toRadians(0.2) * Math.sin(2 * Math.PI * 8 * t / 1e9);
+    }
+
+    private static void feedTremor(GyroStabilizer stabilizer, long start, long end, float panRate) {
+        for (long t = start; t <= end; t += GYRO_PERIOD_NS) {
+            double tremorRate = Math.toRadians(0.2) * 2 * Math.PI * 8 * Math.cos(2 * Math.PI * 8 * t / 1e9);
+            stabilizer.addSample(t, 0f, (float) -(panRate + tremorRate));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class HudLayoutTest {
+    private static final int WIDTH = 1280, HEIGHT = 720;
+
+    private final float[] out = new float[HudLayout.MAX_QUADS * HudLayout.FLOATS_PER_QUAD];
+    private final HudLayout layout;
+
+    public HudLayoutTest() {
+        float[] advances = new float[HudLayout.COLUMNS * HudLayout.ROWS];
+        Arrays.fill(advances, 10f);
+        layout = new HudLayout(advances, 12f, 20f, 1f);
+    }
+
+    private static HudState menu(String title, String item) {
+        return new HudState(title, false, item, null, -1, null, null, 0xCC000000, 0xFF2196F3, 1f);
+    }
+
+    @Test
+    public void nothingToShow_buildsNothing() {
+        assertEquals(0, layout.build(HudState.NONE, WIDTH, HEIGHT, out));
+    }
+
+    @Test
+    public void menu_isOnePanelPlusOneQuadPerVisibleGlyph() {
+        int quads = layout.build(menu("Menu", "App Brightness"), WIDTH, HEIGHT, out);
+        // Panel, "Menu" and "App Brightness" without its space.
+        assertEquals(1 + 4 + 13, quads);
+        for (int q = 0; q < quads * 4; q++) {
+            float x = out[q * HudLayout.FLOATS_PER_VERTEX], y = out[q * HudLayout.FLOATS_PER_VERTEX + 1];
+            assertTrue("inside the top right quadrant", x >= 0f && x <= 1f && y >= 0f && y <= 1f);
+        }
+    }
+
+    @Test
+    public void progressPopup_addsTrackAndFill() {
+        HudState popup = new HudState("Zoom", true, null, "50%", 50, null, null, 0xDD000000, 0xFF2196F3, 1f);
+        int quads = layout.build(popup, WIDTH, HEIGHT, out);
+        assertEquals(1 + 4 + 3 + 2, quads);
+        // The fill ends halfway along the track.
+        int track = (quads - 2) * HudLayout.FLOATS_PER_QUAD, fill = (quads - 1) * HudLayout.FLOATS_PER_QUAD;
+        float trackLeft = out[track], trackRight = out[track + HudLayout.FLOATS_PER_VERTEX];
+        float fillRight = out[fill + HudLayout.FLOATS_PER_VERTEX];
+        assertEquals((trackLeft + trackRight) / 2f, fillRight, 1e-5f);
+        // Fill color is the accent, straight alpha.
+        assertEquals(0x21 / 255f, out[fill + 4], 1e-6f);
+        assertEquals(1f, out[fill + 7], 0f);
+    }
+
+    @Test
+    public void longText_isClippedToThePanel() {
+        String longItem = "x".repeat(100);
+        int quads = layout.build(menu("M", longItem), WIDTH, HEIGHT, out);
+        // 200dp panel less 2 x 16dp padding fits 16 glyphs 10px apart.
+        assertEquals(1 + 1 + 16, quads);
+    }
+
+    @Test
+    public void quadLimit_isNeverExceeded() {
+        String toast = "y".repeat(1000);
+        HudState state = new HudState(null, false, null, null, -1, null, toast, 0, 0, 1f);
+        assertTrue(layout.build(state, 100_000, HEIGHT, out) <= HudLayout.MAX_QUADS);
+    }
+}
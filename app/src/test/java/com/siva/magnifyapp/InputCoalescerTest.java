@@ -0,0 +1,57 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InputCoalescerTest {
+    private final List<int[]> delivered = new ArrayList<>();
+    private int frameRequests;
+    private final InputCoalescer input = new InputCoalescer(
+            steps -> delivered.add(steps.clone()), () -> frameRequests++);
+
+    @Test
+    public void burstBetweenFrames_isDeliveredOnce() {
+        for (int i = 0; i < 10; i++) input.add(InputCoalescer.SCROLL, 1);
+        input.add(InputCoalescer.PAN_X, -2);
+        assertEquals("one frame requested for the whole burst", 1, frameRequests);
+        assertTrue(delivered.isEmpty());
+
+        input.onFrame();
+        assertEquals(1, delivered.size());
+        assertEquals(10, delivered.get(0)[InputCoalescer.SCROLL]);
+        assertEquals(-2, delivered.get(0)[InputCoalescer.PAN_X]);
+        assertEquals(0, delivered.get(0)[InputCoalescer.ZOOM]);
+    }
+
+    @Test
+    public void frameWithoutInput_deliversNothing() {
+        input.onFrame();
+        input.add(InputCoalescer.ZOOM, 1);
+        input.onFrame();
+        input.onFrame();
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void inputAfterAFrame_startsFresh() {
+        input.add(InputCoalescer.ZOOM, 3);
+        input.onFrame();
+        input.add(InputCoalescer.ZOOM, -1);
+        input.onFrame();
+        assertEquals(2, frameRequests);
+        assertEquals(-1, delivered.get(1)[InputCoalescer.ZOOM]);
+    }
+
+    @Test
+    public void heldKeys_accelerate() {
+        assertEquals(1, InputCoalescer.stepsForRepeat(0));
+        assertEquals(1, InputCoalescer.stepsForRepeat(InputCoalescer.ACCELERATE_AFTER - 1));
+        assertEquals(2, InputCoalescer.stepsForRepeat(InputCoalescer.ACCELERATE_AFTER));
+        assertEquals(4, InputCoalescer.stepsForRepeat(InputCoalescer.ACCELERATE_MORE_AFTER));
+        assertEquals(4, InputCoalescer.stepsForRepeat(1000));
+    }
+}
@@ -0,0 +1,73 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MotionGovernorTest {
+    private static final long FRAME_NS = 33_333_333L;
+
+    private final List<Boolean> changes = new ArrayList<>();
+    private final MotionGovernor governor = new MotionGovernor(changes::add);
+
+    private long feedQuiet(long startNs, long durationNs) {
+        long t = startNs;
+        for (; t <= startNs + durationNs; t += FRAME_NS) governor.onFrameMotion(t, 0.001f);
+        return t;
+    }
+
+    @Test
+    public void quietFrames_becomeStaticAfterHold() {
+        feedQuiet(0L, MotionGovernor.STATIC_HOLD_NS - FRAME_NS);
+        assertFalse(governor.isStatic());
+        feedQuiet(MotionGovernor.STATIC_HOLD_NS, FRAME_NS);
+        assertTrue(governor.isStatic());
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0));
+    }
+
+    @Test
+    public void sceneMotion_wakesOnTheNextFrame() {
+        long t = feedQuiet(0L, 2 * MotionGovernor.STATIC_HOLD_NS);
+        assertTrue(governor.isStatic());
+        governor.onFrameMotion(t, 0.05f);
+        assertFalse(governor.isStatic());
+        assertEquals(Boolean.FALSE, changes.get(changes.size() - 1));
+    }
+
+    @Test
+    public void inputAndHeadTurns_wakeAndRestartTheHold() {
+        long t = feedQuiet(0L, 2 * MotionGovernor.STATIC_HOLD_NS);
+        governor.onUserInput(t);
+        assertFalse(governor.isStatic());
+        t = feedQuiet(t, MotionGovernor.STATIC_HOLD_NS + FRAME_NS);
+        assertTrue(governor.isStatic());
+
+        governor.onGyro(t, 0.05f); // tremor
+        assertTrue(governor.isStatic());
+        governor.onGyro(t, 0.5f);
+        assertFalse(governor.isStatic());
+    }
+
+    @Test
+    public void onlyNearIdenticalFramesAreSkipped() {
+        assertFalse("active views always redraw", governor.canSkip(0f));
+        feedQuiet(0L, 2 * MotionGovernor.STATIC_HOLD_NS);
+        assertTrue(governor.canSkip(0.002f));
+        assertFalse(governor.canSkip(0.01f));
+    }
+
+    @Test
+    public void staticFraction_accumulatesAcrossPeriods() {
+        long hold = MotionGovernor.STATIC_HOLD_NS;
+        governor.onFrameMotion(0L, 0f);
+        governor.onFrameMotion(hold, 0f);
+        governor.onUserInput(2 * hold);
+        governor.onFrameMotion(3 * hold, 0f);
+        // Static from hold to 2 * hold, then again from 3 * hold.
+        assertEquals(3f / 5f, governor.staticFraction(5 * hold), 1e-4f);
+    }
+}
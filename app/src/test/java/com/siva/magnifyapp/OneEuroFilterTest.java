@@ -0,0 +1,68 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OneEuroFilterTest {
+    private static final long FRAME_NS = 33_333_333L;
+
+    @Test
+    public void firstSample_passesThrough() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0f, 1f);
+        assertEquals(3.5f, filter.filter(3.5f, 1_000L), 0f);
+    }
+
+    @Test
+    public void constantInput_isUnchanged() {
+        OneEuroFilter filter = new OneEuroFilter(1f, 0.5f, 1f);
+        float out = 0f;
+        for (int i = 0; i < 100; i++) out = filter.filter(2f, (i + 1) * FRAME_NS);
+        assertEquals(2f, out, 1e-6f);
+    }
+
+    @Test
+    public void noiseAtRest_isAttenuated() {
+        OneEuroFilter filter = new OneEuroFilter(0.5f, 0f, 1f);
+        Random random = new Random(42);
+        double rawVar = 0, outVar = 0;
+        for (int i = 0; i < 600; i++) {
+            float x = (float) random.nextGaussian();
+            float y = filter.filter(x, (i + 1) * FRAME_NS);
+            if (i >= 100) {
+                rawVar += x * x;
+                outVar += y * y;
+            }
+        }
+        assertTrue("variance " + outVar / rawVar, outVar < rawVar * 0.1);
+    }
+
+    @Test
+    public void beta_reducesLagOnFastMotion() {
+        OneEuroFilter still = new OneEuroFilter(0.5f, 0f, 1f);
+        OneEuroFilter adaptive = new OneEuroFilter(0.5f, 5f, 1f);
+        float x = 0f, a = 0f, b = 0f;
+        for (int i = 0; i < 30; i++) {
+            x = i * 0.5f;
+            a = still.filter(x, (i + 1) * FRAME_NS);
+            b = adaptive.filter(x, (i + 1) * FRAME_NS);
+        }
+        assertTrue("adaptive " + b + " still " + a, x - b < (x - a) * 0.5f);
+    }
+
+    @Test
+    public void reset_restartsFromNextSample() {
+        OneEuroFilter filter = new OneEuroFilter(0.5f, 0f, 1f);
+        filter.filter(0f, FRAME_NS);
+        filter.filter(10f, 2 * FRAME_NS);
+        filter.reset();
+        assertEquals(7f, filter.filter(7f, 3 * FRAME_NS), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveCutoff_isRejected() {
+        new OneEuroFilter(0f, 0f, 1f);
+    }
+}
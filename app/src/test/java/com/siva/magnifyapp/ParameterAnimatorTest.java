@@ -0,0 +1,114 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParameterAnimatorTest {
+    private static final long FRAME_NS = 16_666_667L;
+
+    private final List<Float> settled = new ArrayList<>();
+    private final ParameterAnimator animator = new ParameterAnimator(1f, 10f, settled::add);
+
+    /** Draws frames until the animator rests or {@code maxFrames} pass; returns the last state. */
+    private RenderState run(RenderState target, long[] clock, int maxFrames) {
+        RenderState drawn = animator.apply(target, clock[0]);
+        for (int i = 0; i < maxFrames && animator.isAnimating(); i++) {
+            clock[0] += FRAME_NS;
+            drawn = animator.apply(target, clock[0]);
+        }
+        return drawn;
+    }
+
+    @Test
+    public void firstFrame_jumpsToTarget() {
+        RenderState target = RenderState.DEFAULT.withZoom(3f);
+        assertSame(target, animator.apply(target, 0L));
+        assertFalse(animator.isAnimating());
+    }
+
+    @Test
+    public void zoomEasesMonotonicallyAndSettlesExactly() {
+        long[] clock = {0L};
+        run(RenderState.DEFAULT, clock, 0);
+        RenderState target = RenderState.DEFAULT.withZoom(4f);
+        float previous = 1f;
+        RenderState drawn = animator.apply(target, clock[0]);
+        assertTrue(animator.isAnimating());
+        for (int i = 0; i < 120 && animator.isAnimating(); i++) {
+            clock[0] += FRAME_NS;
+            drawn = animator.apply(target, clock[0]);
+            assertTrue("no overshoot or reversal", drawn.zoom >= previous && drawn.zoom <= 4f);
+            assertEquals("animated frames keep the target's version", target.version, drawn.version);
+            previous = drawn.zoom;
+        }
+        assertFalse(animator.isAnimating());
+        assertEquals(4f, drawn.zoom, 0f);
+        assertTrue("settles within two thirds of a second", clock[0] <= 40 * FRAME_NS);
+        assertEquals(List.of(4f), settled);
+    }
+
+    @Test
+    public void retargetingMidFlight_keepsTheMotionContinuous() {
+        long[] clock = {0L};
+        run(RenderState.DEFAULT, clock, 0);
+        RenderState first = RenderState.DEFAULT.withBrightness(1f);
+        animator.apply(first, clock[0]);
+        for (int i = 0; i < 5; i++) {
+            clock[0] += FRAME_NS;
+            animator.apply(first, clock[0]);
+        }
+        clock[0] += FRAME_NS;
+        float before = animator.apply(first, clock[0]).brightness;
+        RenderState second = first.withBrightness(-1f);
+        clock[0] += FRAME_NS;
+        float after = animator.apply(second, clock[0]).brightness;
+        assertTrue("carries on briefly instead of jumping", Math.abs(after - before) < 0.1f);
+        assertEquals(-1f, run(second, clock, 200).brightness, 0f);
+    }
+
+    @Test
+    public void continuousZoom_rampsUntilStoppedThenRests() {
+        long[] clock = {0L};
+        RenderState target = RenderState.DEFAULT.withZoom(2f);
+        run(target, clock, 0);
+        animator.setZoomRate(1f);
+        animator.apply(target, clock[0]);
+        for (int i = 0; i < 30; i++) {
+            clock[0] += FRAME_NS;
+            animator.apply(target, clock[0]);
+        }
+        assertTrue(animator.isAnimating());
+        animator.setZoomRate(0f);
+        RenderState drawn = run(target, clock, 120);
+        assertFalse(animator.isAnimating());
+        // Half a second at one log unit per second, plus the spring's lag, from 2x.
+        assertTrue(drawn.zoom > 2f * 1.5f && drawn.zoom < 2f * 1.8f);
+        assertEquals(1, settled.size());
+        assertEquals(drawn.zoom, settled.get(0), 0f);
+    }
+
+    @Test
+    public void continuousZoom_stopsAtTheLimit() {
+        long[] clock = {0L};
+        run(RenderState.DEFAULT.withZoom(8f), clock, 0);
+        animator.setZoomRate(5f);
+        RenderState drawn = run(RenderState.DEFAULT.withZoom(8f), clock, 300);
+        assertFalse("does not keep drawing at the limit", animator.isAnimating());
+        assertEquals(10f, drawn.zoom, 1e-3f);
+    }
+
+    @Test
+    public void spring_closedFormMatchesSmallSteps() {
+        Spring coarse = new Spring(ParameterAnimator.OMEGA, 1e-6f);
+        Spring fine = new Spring(ParameterAnimator.OMEGA, 1e-6f);
+        coarse.setTarget(1f);
+        fine.setTarget(1f);
+        coarse.step(0.05f);
+        for (int i = 0; i < 50; i++) fine.step(0.001f);
+        assertEquals(fine.value(), coarse.value(), 1e-4f);
+    }
+}
@@ -0,0 +1,41 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PresentClockTest {
+    private static final long PERIOD = 16_666_667L;
+
+    private final PresentClock clock = new PresentClock();
+
+    @Test
+    public void unknownPhase_leavesBuffersUnstamped() {
+        assertEquals(0L, clock.presentationTimeFor(1_000_000_000L));
+        clock.setPeriod(PERIOD);
+        assertEquals(0L, clock.presentationTimeFor(1_000_000_000L));
+    }
+
+    @Test
+    public void targetsTheNextVsync() {
+        clock.setPeriod(PERIOD);
+        clock.onVsync(1_000_000_000L);
+        assertEquals(1_000_000_000L + PERIOD, clock.presentationTimeFor(1_000_000_000L + 5_000_000L));
+    }
+
+    @Test
+    public void tooCloseToTheLatch_targetsTheOneAfter() {
+        clock.setPeriod(PERIOD);
+        clock.onVsync(1_000_000_000L);
+        long now = 1_000_000_000L + PERIOD - PresentClock.LATCH_MARGIN_NS / 2;
+        assertEquals(1_000_000_000L + 2 * PERIOD, clock.presentationTimeFor(now));
+    }
+
+    @Test
+    public void extrapolatesAcrossMissedCallbacks() {
+        clock.setPeriod(PERIOD);
+        clock.onVsync(1_000_000_000L);
+        long now = 1_000_000_000L + 10 * PERIOD + 1_000_000L;
+        assertEquals(1_000_000_000L + 11 * PERIOD, clock.presentationTimeFor(now));
+    }
+}
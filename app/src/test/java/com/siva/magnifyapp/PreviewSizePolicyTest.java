@@ -0,0 +1,128 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Size tables below are modelled on {@code getOutputSizes(SurfaceTexture.class)} dumps of real devices.
+ */
+public class PreviewSizePolicyTest {
+
+    // Qualcomm XR1 class glasses, 13MP sensor
+    private static final int[][] XR1_SIZES = {
+            {4160, 3120}, {4160, 2340}, {4000, 3000}, {3840, 2160}, {3264, 2448}, {3200, 2400},
+            {2976, 2976}, {2688, 1512}, {2592, 1944}, {2048, 1536}, {1920, 1440}, {1920, 1080},
+            {1600, 1200}, {1440, 1080}, {1280, 960}, {1280, 768}, {1280, 720}, {1024, 768},
+            {800, 600}, {800, 480}, {720, 480}, {640, 480}, {640, 360}, {352, 288},
+            {320, 240}, {176, 144}
+    };
+
+    // Pixel 4a rear camera
+    private static final int[][] PIXEL_SIZES = {
+            {4032, 3024}, {4032, 2268}, {3024, 3024}, {2976, 2976}, {2688, 2016}, {2592, 1944},
+            {2592, 1458}, {2048, 1536}, {1920, 1440}, {1920, 1080}, {1600, 1200}, {1440, 1080},
+            {1280, 960}, {1280, 720}, {1024, 768}, {960, 720}, {800, 600}, {720, 480},
+            {640, 480}, {640, 360}, {352, 288}, {320, 240}, {176, 144}
+    };
+
+    private static PreviewSizePolicy policy(int[][] sizes) {
+        int[] w = new int[sizes.length];
+        int[] h = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            w[i] = sizes[i][0];
+            h[i] = sizes[i][1];
+        }
+        return new PreviewSizePolicy(w, h);
+    }
+
+    private static void assertSize(PreviewSizePolicy policy, int index, int width, int height) {
+        assertEquals(width + "x" + height, width, policy.width(index));
+        assertEquals(width + "x" + height, height, policy.height(index));
+    }
+
+    @Test
+    public void noGpuZoom_picksDisplaySizedStream() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        assertSize(policy, policy.select(1280, 720, 1f, 0), 1280, 720);
+    }
+
+    @Test
+    public void portraitDisplay_matchesLandscapeStream() {
+        PreviewSizePolicy policy = policy(PIXEL_SIZES);
+        assertSize(policy, policy.select(1080, 1920, 1f, 0), 1920, 1080);
+    }
+
+    @Test
+    public void gpuZoom_scalesRequirement() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        assertSize(policy, policy.select(1280, 720, 1.5f, 0), 1920, 1080);
+        assertSize(policy, policy.select(1280, 720, 2.5f, 0), 3840, 2160);
+    }
+
+    @Test
+    public void gpuZoomBeyondLargestStream_picksLargestMatchingAspect() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        assertSize(policy, policy.select(1280, 720, 10f, 0), 4160, 2340);
+    }
+
+    @Test
+    public void sensorCrop_capsRequirement() {
+        PreviewSizePolicy policy = policy(PIXEL_SIZES);
+        // 8x ISP crop of a 4032 wide array leaves 504 sensor pixels; more would only upsample.
+        assertSize(policy, policy.select(1920, 1080, 1f, 504), 640, 360);
+    }
+
+    @Test
+    public void unmatchedAspect_fallsBackToAnyCoveringSize() {
+        PreviewSizePolicy policy = new PreviewSizePolicy(new int[]{640, 1600, 2048}, new int[]{480, 1200, 1536});
+        assertSize(policy, policy.select(1280, 720, 1f, 0), 1600, 1200);
+    }
+
+    @Test
+    public void maxPixels_excludesLargerSizes() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        policy.setMaxPixels(1280 * 720);
+        assertSize(policy, policy.select(1280, 720, 3f, 0), 1280, 720);
+    }
+
+    @Test
+    public void update_growsImmediately() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        int current = policy.select(1280, 720, 1f, 0);
+        assertSize(policy, policy.update(current, 1280, 720, 1.2f, 0), 1920, 1080);
+    }
+
+    @Test
+    public void update_shrinksOnlyWithHeadroom() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        int current = policy.select(640, 360, 2.5f, 0);
+        assertSize(policy, current, 1920, 1080);
+        // 1280x720 would cover 1216 pixels, but with too little margin to switch down.
+        assertEquals(current, policy.update(current, 640, 360, 1.9f, 0));
+        assertSize(policy, policy.update(current, 640, 360, 1.5f, 0), 1280, 720);
+    }
+
+    @Test
+    public void update_shrinksToDisplaySizeWithoutGpuZoom() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        int current = policy.select(1280, 720, 1.5f, 0);
+        assertSize(policy, policy.update(current, 1280, 720, 1f, 0), 1280, 720);
+    }
+
+    @Test
+    public void update_followsShrinkingSensorCrop() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        int current = policy.select(1280, 720, 1f, 0);
+        assertEquals(current, policy.update(current, 1280, 720, 1f, 600));
+        assertSize(policy, policy.update(current, 1280, 720, 1f, 500), 640, 360);
+    }
+
+    @Test
+    public void update_dropsOversizedCurrentWhenCapped() {
+        PreviewSizePolicy policy = policy(XR1_SIZES);
+        int current = policy.select(1280, 720, 3f, 0);
+        policy.setMaxPixels(1920 * 1080);
+        assertSize(policy, policy.update(current, 1280, 720, 3f, 0), 1920, 1080);
+    }
+}
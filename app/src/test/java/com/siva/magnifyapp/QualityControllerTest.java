@@ -0,0 +1,117 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class QualityControllerTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final float BUDGET_MS = 33.3f;
+
+    private static final class FakeThermalSource implements ThermalSource {
+        int status = QualityController.THERMAL_STATUS_NONE;
+        float headroom = Float.NaN;
+
+        @Override
+        public int thermalStatus() {
+            return status;
+        }
+
+        @Override
+        public float thermalHeadroom() {
+            return headroom;
+        }
+    }
+
+    private final FakeThermalSource thermal = new FakeThermalSource();
+    private final List<Integer> levels = new ArrayList<>();
+    private final QualityController controller = new QualityController(thermal, levels::add);
+
+    /** Ticks once per second for {@code seconds}, returning the time after the last tick. */
+    private long run(long startNs, int seconds, float frameTimeMs) {
+        long t = startNs;
+        for (int i = 0; i < seconds; i++, t += SECOND) controller.update(t, frameTimeMs, BUDGET_MS);
+        return t;
+    }
+
+    @Test
+    public void coolDevice_staysAtFullQuality() {
+        thermal.headroom = 0.4f;
+        run(0L, 120, 5f);
+        assertEquals(QualityController.LEVEL_FULL, controller.level());
+        assertTrue(levels.isEmpty());
+    }
+
+    @Test
+    public void moderateStatus_stepsDownInOrderWithDwell() {
+        thermal.status = QualityController.THERMAL_STATUS_MODERATE;
+        run(0L, 1, 5f);
+        assertEquals(QualityController.LEVEL_RENDER_SCALE, controller.level());
+        run(SECOND, 4, 5f);
+        assertEquals("waits out the dwell", QualityController.LEVEL_RENDER_SCALE, controller.level());
+        run(5 * SECOND, 60, 5f);
+        assertEquals(QualityController.MAX_LEVEL, controller.level());
+        assertEquals(List.of(1, 2, 3, 4), levels);
+    }
+
+    @Test
+    public void severeStatus_stepsDownFaster() {
+        thermal.status = QualityController.THERMAL_STATUS_SEVERE;
+        run(0L, 7, 5f);
+        assertEquals(QualityController.LEVEL_FRAME_RATE, controller.level());
+    }
+
+    @Test
+    public void headroomAndFrameTime_aloneTriggerStepDown() {
+        thermal.headroom = 0.95f;
+        run(0L, 1, 5f);
+        assertEquals(1, controller.level());
+
+        QualityController slow = new QualityController(new FakeThermalSource(), level -> { });
+        slow.update(0L, 31f, BUDGET_MS);
+        assertEquals(1, slow.level());
+    }
+
+    @Test
+    public void recovery_needsLongCoolStretchPerStep() {
+        thermal.status = QualityController.THERMAL_STATUS_MODERATE;
+        long t = run(0L, 20, 5f);
+        assertEquals(QualityController.MAX_LEVEL, controller.level());
+
+        thermal.status = QualityController.THERMAL_STATUS_NONE;
+        thermal.headroom = 0.5f;
+        t = run(t, 29, 5f);
+        assertEquals(QualityController.MAX_LEVEL, controller.level());
+        t = run(t, 2, 5f);
+        assertEquals(QualityController.MAX_LEVEL - 1, controller.level());
+        t = run(t, 15, 5f);
+        assertEquals("one step per stretch", QualityController.MAX_LEVEL - 1, controller.level());
+        run(t, 20, 5f);
+        assertEquals(QualityController.MAX_LEVEL - 2, controller.level());
+    }
+
+    @Test
+    public void lukewarmReadings_holdTheLevel() {
+        thermal.status = QualityController.THERMAL_STATUS_MODERATE;
+        long t = run(0L, 1, 5f);
+        // Below the hot threshold but above the cool one: neither direction.
+        thermal.status = QualityController.THERMAL_STATUS_NONE;
+        thermal.headroom = 0.8f;
+        run(t, 120, 5f);
+        assertEquals(1, controller.level());
+    }
+
+    @Test
+    public void ladder_accumulatesReductions() {
+        assertEquals(1f, QualityController.renderScale(QualityController.LEVEL_FULL), 0f);
+        assertEquals(0.75f, QualityController.renderScale(QualityController.LEVEL_FRAME_RATE), 0f);
+        assertEquals(2, QualityController.sharpenDownsample(QualityController.LEVEL_RENDER_SCALE));
+        assertEquals(4, QualityController.sharpenDownsample(QualityController.LEVEL_STREAM));
+        assertEquals(Integer.MAX_VALUE, QualityController.maxStreamPixels(QualityController.LEVEL_SHARPEN));
+        assertFalse(QualityController.capFrameRate(QualityController.LEVEL_STREAM));
+        assertTrue(QualityController.capFrameRate(QualityController.LEVEL_FRAME_RATE));
+    }
+}
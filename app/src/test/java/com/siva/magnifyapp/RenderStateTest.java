@@ -0,0 +1,37 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderStateTest {
+    @Test
+    public void changes_bumpTheVersionAndLeaveTheOriginal() {
+        RenderState a = RenderState.DEFAULT;
+        RenderState b = a.withZoom(2f).withContrast(1.5f);
+        assertEquals(a.version + 2, b.version);
+        assertEquals(2f, b.zoom, 0f);
+        assertEquals(1.5f, b.contrast, 0f);
+        assertEquals(1f, a.zoom, 0f);
+        assertEquals(1f, a.contrast, 0f);
+    }
+
+    @Test
+    public void unchangedValues_returnTheSameInstance() {
+        RenderState a = RenderState.DEFAULT.withFilter(2).withPan(0.1f, -0.1f);
+        assertSame(a, a.withFilter(2));
+        assertSame(a, a.withPan(0.1f, -0.1f));
+        assertSame(a, a.withZoom(a.zoom).withBrightness(a.brightness).withSharpness(a.sharpness)
+                .withStabilize(a.stabilize));
+    }
+
+    @Test
+    public void eachParameterIsIndependent() {
+        RenderState s = RenderState.DEFAULT.withBrightness(0.2f).withSharpness(0.5f).withStabilize(true);
+        assertEquals(0.2f, s.brightness, 0f);
+        assertEquals(0.5f, s.sharpness, 0f);
+        assertTrue(s.stabilize);
+        assertEquals(RenderState.DEFAULT.zoom, s.zoom, 0f);
+        assertEquals(RenderState.DEFAULT.filter, s.filter);
+    }
+}
@@ -0,0 +1,105 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class RewindBufferTest {
+    private static final long FRAME_US = 33_333L;
+
+    private static ByteBuffer sample(int length, int value) {
+        ByteBuffer b = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; i++) b.put(i, (byte) (value + i));
+        return b;
+    }
+
+    private static RewindBuffer buffer(int capacity) {
+        return new RewindBuffer(ByteBuffer.allocate(capacity), 10_000_000L, 64);
+    }
+
+    @Test
+    public void samples_readBackAsWritten() {
+        RewindBuffer buffer = buffer(1000);
+        assertTrue(buffer.isEmpty());
+        assertEquals(-1, buffer.keyFrameAtOrBefore(0L));
+        for (int f = 0; f < 5; f++) assertTrue(buffer.append(sample(100, f), f * FRAME_US, f == 0));
+        assertEquals(0, buffer.first());
+        assertEquals(5, buffer.end());
+        assertEquals(4 * FRAME_US, buffer.newestUs());
+        ByteBuffer out = ByteBuffer.allocate(200);
+        for (int f = 0; f < 5; f++) {
+            out.clear();
+            assertEquals(100, buffer.read(f, out));
+            out.flip();
+            assertEquals(sample(100, f), out);
+            assertEquals(f * FRAME_US, buffer.timeUs(f));
+        }
+        assertEquals(-1, buffer.read(5, out));
+    }
+
+    @Test
+    public void leadingDeltaFrames_areDropped() {
+        RewindBuffer buffer = buffer(1000);
+        assertFalse(buffer.append(sample(10, 0), 0L, false));
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.append(sample(10, 0), FRAME_US, true));
+        assertEquals(FRAME_US, buffer.oldestUs());
+    }
+
+    @Test
+    public void wrapping_evictsWholeGroupsOfPictures() {
+        RewindBuffer buffer = buffer(1000);
+        // Key frame every fourth sample; ten samples of 150 bytes fill the storage one and a half times.
+        // The seventh wraps over the first, which takes the rest of its group with it.
+        for (int f = 0; f < 10; f++) assertTrue(buffer.append(sample(150, f), f * FRAME_US, f % 4 == 0));
+        assertTrue(buffer.isKeyFrame(buffer.first()));
+        assertEquals(4, buffer.first());
+        assertEquals(10, buffer.end());
+        assertEquals(-1, buffer.read(3, ByteBuffer.allocate(150)));
+        ByteBuffer out = ByteBuffer.allocate(150);
+        assertEquals(150, buffer.read(9, out));
+        out.flip();
+        assertEquals(sample(150, 9), out);
+    }
+
+    @Test
+    public void oldSamples_leaveTheRetentionWindow() {
+        RewindBuffer buffer = new RewindBuffer(ByteBuffer.allocate(1 << 16), 1_000_000L, 256);
+        for (int f = 0; f < 90; f++) buffer.append(sample(8, f), f * FRAME_US, f % 30 == 0);
+        assertTrue(buffer.newestUs() - buffer.oldestUs() <= 1_000_000L);
+        assertEquals(60 * FRAME_US, buffer.oldestUs());
+    }
+
+    @Test
+    public void keyFrameAtOrBefore_findsWhereToDecodeFrom() {
+        RewindBuffer buffer = buffer(10_000);
+        for (int f = 0; f < 20; f++) buffer.append(sample(10, f), f * FRAME_US, f % 5 == 0);
+        assertEquals(10, buffer.keyFrameAtOrBefore(12 * FRAME_US));
+        assertEquals(15, buffer.keyFrameAtOrBefore(15 * FRAME_US));
+        assertEquals(0, buffer.keyFrameAtOrBefore(-FRAME_US));
+    }
+
+    @Test
+    public void indexFull_evictsOldest() {
+        RewindBuffer buffer = new RewindBuffer(ByteBuffer.allocate(10_000), 10_000_000L, 8);
+        for (int f = 0; f < 12; f++) buffer.append(sample(10, f), f * FRAME_US, f % 2 == 0);
+        assertTrue(buffer.end() - buffer.first() <= 8);
+        assertTrue(buffer.isKeyFrame(buffer.first()));
+        assertEquals(11 * FRAME_US, buffer.newestUs());
+    }
+
+    @Test
+    public void mappedFile_holdsSamples() throws IOException {
+        File file = File.createTempFile("rewind", ".bin");
+        file.deleteOnExit();
+        RewindBuffer buffer = new RewindBuffer(RewindBuffer.map(file, 4096), 10_000_000L, 16);
+        assertTrue(buffer.append(sample(3000, 7), 0L, true));
+        assertTrue(buffer.append(sample(3000, 8), FRAME_US, true));
+        assertEquals(1, buffer.first());
+        assertEquals(4096, file.length());
+    }
+}
@@ -0,0 +1,125 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SettingsStoreTest {
+    private final Map<String, Adjustments> saved = new HashMap<>();
+    private final List<String> writes = new ArrayList<>();
+    private final List<Runnable> pending = new ArrayList<>();
+
+    private final SettingsStore store = new SettingsStore(new SettingsStore.Storage() {
+        @Override
+        public Adjustments load(String name) {
+            return saved.get(name);
+        }
+
+        @Override
+        public void save(String name, Adjustments adjustments) {
+            saved.put(name, adjustments);
+            writes.add(name);
+        }
+    }, new SettingsStore.Scheduler() {
+        @Override
+        public void postDelayed(Runnable task, long delayMs) {
+            assertEquals(SettingsStore.DEBOUNCE_MS, delayMs);
+            pending.add(task);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable task) {
+            pending.remove(task);
+        }
+    });
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        for (Runnable task : tasks) task.run();
+    }
+
+    @Test
+    public void restore_defaultsWhenNothingIsSaved() {
+        assertEquals(Adjustments.DEFAULT, store.restore());
+    }
+
+    @Test
+    public void burstOfChanges_writesOnceWhenQuiet() {
+        store.restore();
+        for (int filter = 1; filter <= 6; filter++) {
+            store.update(store.current().withFilter(filter));
+        }
+        assertTrue("nothing written during the burst", writes.isEmpty());
+        assertEquals("one pending write", 1, pending.size());
+        runPending();
+        assertEquals(List.of(SettingsStore.CURRENT), writes);
+        assertEquals(6, saved.get(SettingsStore.CURRENT).filter);
+    }
+
+    @Test
+    public void flush_writesPendingChangesOnlyOnce() {
+        store.restore();
+        store.update(store.current().withZoom(3f).withSharpness(0.5f));
+        store.flush();
+        store.flush();
+        assertTrue(pending.isEmpty());
+        assertEquals(1, writes.size());
+        assertEquals(new Adjustments(3f, 0f, 1f, 0.5f, 1f, 0), saved.get(SettingsStore.CURRENT));
+    }
+
+    @Test
+    public void unchangedValues_scheduleNothing() {
+        store.restore();
+        store.update(Adjustments.DEFAULT.withZoom(1f));
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    public void preset_replacesEverythingButAppBrightness() {
+        store.restore();
+        store.update(store.current().withAppBrightness(0.3f));
+        Adjustments reading = store.applyPreset(SettingsStore.PRESET_READING);
+        assertEquals(CompositeShaders.FILTER_READING_WHITE_ON_BLACK, reading.filter);
+        assertEquals(0.3f, reading.appBrightness, 0f);
+        assertSame(reading, store.current());
+        assertNull(store.applyPreset("no such preset"));
+    }
+
+    @Test
+    public void savedPreset_overridesTheBuiltInAcrossRestarts() {
+        store.restore();
+        store.update(store.current().withZoom(6f).withFilter(2));
+        store.savePreset(SettingsStore.PRESET_DISTANCE);
+        store.flush();
+
+        SettingsStore restarted = new SettingsStore(new SettingsStore.Storage() {
+            @Override
+            public Adjustments load(String name) {
+                return saved.get(name);
+            }
+
+            @Override
+            public void save(String name, Adjustments adjustments) {
+                saved.put(name, adjustments);
+            }
+        }, new SettingsStore.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+            }
+
+            @Override
+            public void removeCallbacks(Runnable task) {
+            }
+        });
+        assertEquals(6f, restarted.restore().zoom, 0f);
+        Adjustments distance = restarted.applyPreset(SettingsStore.PRESET_DISTANCE);
+        assertEquals(6f, distance.zoom, 0f);
+        assertEquals(2, distance.filter);
+    }
+}
@@ -0,0 +1,79 @@
+package com.siva.magnifyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TileLayoutTest {
+    private static final float EPS = 1e-4f;
+
+    @Test
+    public void grid_coversImageWithPartialEdgeTiles() {
+        TileLayout layout = new TileLayout(4160, 3120);
+        assertEquals(5, layout.columns);
+        assertEquals(4, layout.rows);
+        int last = layout.tileCount() - 1;
+        assertEquals(4160 - 4 * TileLayout.STEP, layout.tileWidth(last));
+        assertEquals(3120 - 3 * TileLayout.STEP, layout.tileHeight(last));
+    }
+
+    @Test
+    public void matrix_mapsViewCornersToImagePixels() {
+        TileLayout layout = new TileLayout(800, 600);
+        float[] m = new float[16];
+        layout.tileMatrix(0, 0f, 0f, 1f, 1f, m);
+        // View (0, 1) is the image's top-left pixel corner, just inside the border.
+        assertEquals(TileLayout.BORDER / (float) TileLayout.TILE_SIZE, u(m, 0f, 1f), EPS);
+        assertEquals(TileLayout.BORDER / (float) TileLayout.TILE_SIZE, v(m, 0f, 1f), EPS);
+        // View (1, 0) is the bottom-right corner.
+        assertEquals((800 + TileLayout.BORDER) / (float) TileLayout.TILE_SIZE, u(m, 1f, 0f), EPS);
+        assertEquals((600 + TileLayout.BORDER) / (float) TileLayout.TILE_SIZE, v(m, 1f, 0f), EPS);
+    }
+
+    @Test
+    public void matrix_appliesCropAndPan() {
+        TileLayout layout = new TileLayout(1000, 1000);
+        float[] m = new float[16];
+        // A 16:9 preview over a square still shows its middle 56.25 % vertically.
+        layout.tileMatrix(0, 0.1f, 0f, 1f, 0.5625f, m);
+        assertEquals((600 + TileLayout.BORDER) / (float) TileLayout.TILE_SIZE, u(m, 0.5f, 0.5f), EPS);
+        assertEquals((500 - 281.25f + TileLayout.BORDER) / TileLayout.TILE_SIZE, v(m, 0.5f, 1f), EPS);
+    }
+
+    @Test
+    public void scissors_partitionTheView() {
+        TileLayout layout = new TileLayout(4160, 3120);
+        int[] rect = new int[4];
+        long area = 0;
+        for (int i = 0; i < layout.tileCount(); i++) {
+            if (layout.scissor(i, 1f, 0f, 0f, 1f, 1f, 1280, 720, rect)) area += (long) rect[2] * rect[3];
+        }
+        assertEquals(1280L * 720L, area);
+    }
+
+    @Test
+    public void scissor_skipsTilesOutsideZoomedWindow() {
+        TileLayout layout = new TileLayout(4160, 3120);
+        int[] rect = new int[4];
+        int visible = 0;
+        for (int i = 0; i < layout.tileCount(); i++) {
+            if (layout.scissor(i, 8f, 0f, 0f, 1f, 1f, 1280, 720, rect)) visible++;
+        }
+        // The central eighth of the image touches at most a 2x2 block of tiles.
+        assertTrue("visible " + visible, visible <= 4);
+    }
+
+    @Test
+    public void maxPan_keepsWindowInsideImage() {
+        assertEquals(0f, TileLayout.maxPan(1f), 0f);
+        assertEquals(0.25f, TileLayout.maxPan(2f), EPS);
+    }
+
+    private static float u(float[] m, float x, float y) {
+        return m[0] * x + m[4] * y + m[12];
+    }
+
+    private static float v(float[] m, float x, float y) {
+        return m[1] * x + m[5] * y + m[13];
+    }
+}
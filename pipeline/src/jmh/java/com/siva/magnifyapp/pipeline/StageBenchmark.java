@@ -0,0 +1,102 @@
+package com.siva.magnifyapp.pipeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage cost of the reference pipeline on one frame. Absolute numbers say nothing about the
+ * GPU; the point is to catch changes to the per-pixel math that make a stage disproportionately
+ * more expensive. Run with {@code ./gradlew :pipeline:jmh}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StageBenchmark {
+    private static final float[] IDENTITY = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+
+    /** View size; the source is the matching 4:3 camera buffer. */
+    @Param({"1280x720", "1920x1080"})
+    public String view;
+
+    private Frame source;
+    private Frame target;
+    /** The zoomed view the in-place stages start from; never written after setup. */
+    private Frame zoomed;
+    private Frame scratch;
+    private SharpenStage sharpenStage;
+    private ReferencePipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        String[] size = view.split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        source = new Frame(height * 4 / 3, height);
+        Random random = new Random(42);
+        for (int i = 0; i < source.pixels.length; i++) source.pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        target = new Frame(width, height);
+        zoomed = new Frame(width, height);
+        ZoomStage.render(source, IDENTITY, 1f, zoomed);
+        scratch = new Frame(width, height);
+        sharpenStage = new SharpenStage(width, height);
+        pipeline = new ReferencePipeline(width, height);
+        pipeline.setZoom(2f);
+        pipeline.setFilterMode(FilterStage.AMBER);
+        pipeline.setContrast(1.3f);
+        pipeline.setSharpness(1f);
+    }
+
+    /**
+     * The filter and tone stages work in place; without a fresh copy each call would run on the
+     * previous call's output, e.g. amber of amber, and the numbers would drift with the content.
+     */
+    @Setup(Level.Invocation)
+    public void restoreScratch() {
+        System.arraycopy(zoomed.pixels, 0, scratch.pixels, 0, zoomed.pixels.length);
+    }
+
+    @Benchmark
+    public Frame zoomSampling() {
+        ZoomStage.render(source, IDENTITY, 2f, target);
+        return target;
+    }
+
+    @Benchmark
+    public Frame filterAmber() {
+        FilterStage.apply(FilterStage.AMBER, scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Frame filterGrayscale() {
+        FilterStage.apply(FilterStage.GRAYSCALE, scratch);
+        return scratch;
+    }
+
+    @Benchmark
+    public Frame brightnessContrast() {
+        ToneStage.apply(scratch, 0.05f, 1.3f);
+        return scratch;
+    }
+
+    @Benchmark
+    public Frame sharpenBlur() {
+        return sharpenStage.render(source, IDENTITY, 2f, target.width, target.height);
+    }
+
+    @Benchmark
+    public Frame fullPipeline() {
+        pipeline.render(source, target);
+        return target;
+    }
+}
@@ -0,0 +1,53 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * Colour filter modes of the composite shader. Only the per-pixel modes are mirrored; the local
+ * contrast and reading modes depend on GPU analysis passes that have no reference yet.
+ */
+public final class FilterStage {
+    public static final int NORMAL = 0;
+    public static final int AMBER = 1;
+    public static final int GRAYSCALE = 2;
+
+    private FilterStage() {
+    }
+
+    public static boolean supports(int mode) {
+        return mode >= NORMAL && mode <= GRAYSCALE;
+    }
+
+    /** Applies {@code mode} to linear RGB in place. */
+    public static void apply(int mode, float[] rgb) {
+        switch (mode) {
+            case NORMAL:
+                break;
+            case AMBER:
+                rgb[1] *= 0.7f;
+                rgb[2] = 0f;
+                break;
+            case GRAYSCALE:
+                float gray = rgb[0] * 0.299f + rgb[1] * 0.587f + rgb[2] * 0.114f;
+                rgb[0] = rgb[1] = rgb[2] = gray;
+                break;
+            default:
+                throw new IllegalArgumentException("Filter mode " + mode + " has no reference implementation");
+        }
+    }
+
+    /** Applies {@code mode} to every pixel of {@code frame} in place. */
+    public static void apply(int mode, Frame frame) {
+        float[] rgb = new float[3];
+        int[] px = frame.pixels;
+        for (int i = 0; i < frame.width * frame.height; i++) {
+            unpack(px[i], rgb);
+            apply(mode, rgb);
+            px[i] = Frame.pack(rgb[0], rgb[1], rgb[2]);
+        }
+    }
+
+    static void unpack(int argb, float[] rgb) {
+        rgb[0] = ((argb >> 16) & 0xFF) / 255f;
+        rgb[1] = ((argb >> 8) & 0xFF) / 255f;
+        rgb[2] = (argb & 0xFF) / 255f;
+    }
+}
@@ -0,0 +1,73 @@
+package com.siva.magnifyapp.pipeline;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An 8-bit RGB image as packed {@code 0xAARRGGBB} ints, the software stand-in for an RGBA8
+ * texture or framebuffer.
+ *
+ * <p>Rows are stored bottom-up like GL textures, so a buffer read back with {@code glReadPixels}
+ * maps onto a frame without flipping and texture coordinate (0, 0) is pixel (0, 0).
+ */
+public final class Frame {
+    public final int width;
+    public final int height;
+    public final int[] pixels;
+
+    public Frame(int width, int height) {
+        this(width, height, new int[width * height]);
+    }
+
+    public Frame(int width, int height, int[] pixels) {
+        if (width <= 0 || height <= 0) throw new IllegalArgumentException("Empty frame");
+        if (pixels.length < width * height) throw new IllegalArgumentException("Pixel array too small");
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public int get(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void set(int x, int y, int argb) {
+        pixels[y * width + x] = argb;
+    }
+
+    /** Packs unclamped channels in [0, 1] the way a fixed-point render target stores them. */
+    static int pack(float r, float g, float b) {
+        return 0xFF000000 | (quantize(r) << 16) | (quantize(g) << 8) | quantize(b);
+    }
+
+    static int quantize(float v) {
+        return Math.round(Math.max(0f, Math.min(1f, v)) * 255f);
+    }
+
+    /** Wraps tightly packed RGBA bytes as returned by {@code glReadPixels(GL_RGBA, GL_UNSIGNED_BYTE)}. */
+    public static Frame fromRgba(ByteBuffer rgba, int width, int height) {
+        Frame frame = new Frame(width, height);
+        int base = rgba.position();
+        for (int i = 0; i < width * height; i++) {
+            int o = base + i * 4;
+            int r = rgba.get(o) & 0xFF;
+            int g = rgba.get(o + 1) & 0xFF;
+            int b = rgba.get(o + 2) & 0xFF;
+            int a = rgba.get(o + 3) & 0xFF;
+            frame.pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        return frame;
+    }
+
+    /** Writes the frame as tightly packed RGBA bytes at the buffer's position. */
+    public void toRgba(ByteBuffer rgba) {
+        int base = rgba.position();
+        for (int i = 0; i < width * height; i++) {
+            int p = pixels[i];
+            int o = base + i * 4;
+            rgba.put(o, (byte) (p >> 16));
+            rgba.put(o + 1, (byte) (p >> 8));
+            rgba.put(o + 2, (byte) p);
+            rgba.put(o + 3, (byte) (p >>> 24));
+        }
+    }
+}
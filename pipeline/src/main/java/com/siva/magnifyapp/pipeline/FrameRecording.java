@@ -0,0 +1,232 @@
+package com.siva.magnifyapp.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped recording of preview frames and gyro samples, so a pipeline change can be
+ * benchmarked against exactly the same scene.
+ *
+ * <p>Layout, little endian: a {@link #HEADER_BYTES} header followed by records in arrival order.
+ * A frame record is its tag, the sensor timestamp, the ISP zoom the frame was captured with, the
+ * SurfaceTexture transform and the raw buffer as RGBA rows, bottom row first as
+ * {@code glReadPixels} returns them. A gyro record is its
+ * tag, the event timestamp and the rates about x, y and z. The header's end offset is only
+ * advanced once a record is complete, so a recording cut short by a crash still reads back.
+ */
+public final class FrameRecording {
+    public static final int HEADER_BYTES = 40;
+
+    private static final int MAGIC = 0x46524d42; // "BMRF"
+    private static final int VERSION = 2;
+    private static final int TAG_FRAME = 1;
+    private static final int TAG_GYRO = 2;
+    private static final int FRAME_HEADER_BYTES = 4 + 8 + 4 + 16 * 4;
+    private static final int GYRO_BYTES = 4 + 8 + 3 * 4;
+
+    // Header fields
+    private static final int OFFSET_END = 16;
+    private static final int OFFSET_SENSOR_ORIENTATION = 20;
+    private static final int OFFSET_TAN_HALF_FOV = 24;
+    private static final int OFFSET_CLOCK_OFFSET = 32;
+
+    private FrameRecording() {
+    }
+
+    /** Appends records to a file of fixed capacity. Frames and gyro samples may come from different threads. */
+    public static final class Writer {
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final int frameBytes;
+        private int frames;
+        private boolean closed;
+
+        /**
+         * @param clockOffsetNs     added to frame timestamps to bring them onto the gyro clock
+         * @param sensorOrientation {@code SENSOR_ORIENTATION} of the recorded camera
+         * @param tanHalfFov        tangent of half the field of view across the long edge, at 1x ISP zoom
+         * @param capacityBytes     file size reserved up front; recording stops when it is full
+         */
+        public Writer(File path, int width, int height, long clockOffsetNs, int sensorOrientation, float tanHalfFov,
+               int capacityBytes) throws IOException {
+            frameBytes = width * height * 4;
+            if (capacityBytes < HEADER_BYTES + FRAME_HEADER_BYTES + frameBytes) {
+                throw new IllegalArgumentException("Capacity below one frame");
+            }
+            file = new RandomAccessFile(path, "rw");
+            try {
+                file.setLength(capacityBytes);
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+                    .putInt(HEADER_BYTES).putInt(sensorOrientation).putFloat(tanHalfFov).putInt(0)
+                    .putLong(clockOffsetNs);
+        }
+
+        /**
+         * Appends a frame of {@code width * height} RGBA pixels read from {@code rgba}'s position.
+         *
+         * @param ispZoom zoom of the camera's crop for this frame; the rest was the GPU's
+         * @return false once the file is full or closed; the frame is not stored
+         */
+        public synchronized boolean addFrame(long timestampNs, float ispZoom, float[] texMatrix, ByteBuffer rgba) {
+            if (closed || buffer.remaining() < FRAME_HEADER_BYTES + frameBytes) return false;
+            buffer.putInt(TAG_FRAME).putLong(timestampNs).putFloat(ispZoom);
+            for (int i = 0; i < 16; i++) buffer.putFloat(texMatrix[i]);
+            ByteBuffer pixels = rgba.duplicate();
+            pixels.limit(pixels.position() + frameBytes);
+            buffer.put(pixels);
+            commit();
+            frames++;
+            return true;
+        }
+
+        /** @return false once the file is full or closed */
+        public synchronized boolean addGyro(long timestampNs, float x, float y, float z) {
+            if (closed || buffer.remaining() < GYRO_BYTES) return false;
+            buffer.putInt(TAG_GYRO).putLong(timestampNs).putFloat(x).putFloat(y).putFloat(z);
+            commit();
+            return true;
+        }
+
+        public synchronized int frameCount() {
+            return frames;
+        }
+
+        /** Cuts the file down to the records written. Further adds are ignored. */
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                file.setLength(buffer.position());
+            } finally {
+                file.close();
+            }
+        }
+
+        private void commit() {
+            buffer.putInt(OFFSET_END, buffer.position());
+        }
+    }
+
+    /** Read-only view of a recording. Frame pixels are handed out as slices of the mapping, uncopied. */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final int width, height;
+        private final int sensorOrientation;
+        private final float tanHalfFov;
+        private final long clockOffsetNs;
+        private final int[] frameOffsets;
+        private final int[] gyroOffsets;
+
+        public Reader(File path) throws IOException {
+            try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+                if (file.length() < HEADER_BYTES) throw new IOException("Not a frame recording: " + path);
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (buffer.getInt(0) != MAGIC) throw new IOException("Not a frame recording: " + path);
+            if (buffer.getInt(4) != VERSION) throw new IOException("Unsupported recording version " + buffer.getInt(4));
+            width = buffer.getInt(8);
+            height = buffer.getInt(12);
+            int end = Math.min(buffer.getInt(OFFSET_END), buffer.capacity());
+            sensorOrientation = buffer.getInt(OFFSET_SENSOR_ORIENTATION);
+            tanHalfFov = buffer.getFloat(OFFSET_TAN_HALF_FOV);
+            clockOffsetNs = buffer.getLong(OFFSET_CLOCK_OFFSET);
+
+            int frameBytes = width * height * 4;
+            int[] frames = new int[64];
+            int[] gyro = new int[256];
+            int frameCount = 0, gyroCount = 0;
+            int offset = HEADER_BYTES;
+            while (offset < end) {
+                int tag = buffer.getInt(offset);
+                if (tag == TAG_FRAME) {
+                    if (frameCount == frames.length) frames = Arrays.copyOf(frames, frameCount * 2);
+                    frames[frameCount++] = offset;
+                    offset += FRAME_HEADER_BYTES + frameBytes;
+                } else if (tag == TAG_GYRO) {
+                    if (gyroCount == gyro.length) gyro = Arrays.copyOf(gyro, gyroCount * 2);
+                    gyro[gyroCount++] = offset;
+                    offset += GYRO_BYTES;
+                } else {
+                    throw new IOException("Corrupt record at " + offset);
+                }
+            }
+            if (offset > end) throw new IOException("Truncated record at end of " + path);
+            frameOffsets = Arrays.copyOf(frames, frameCount);
+            gyroOffsets = Arrays.copyOf(gyro, gyroCount);
+        }
+
+        public int width() {
+            return width;
+        }
+
+        public int height() {
+            return height;
+        }
+
+        public int sensorOrientation() {
+            return sensorOrientation;
+        }
+
+        /** At 1x ISP zoom; divide by {@link #frameIspZoom} for a frame's own field of view. */
+        public float tanHalfFov() {
+            return tanHalfFov;
+        }
+
+        /** Added to frame timestamps to bring them onto the gyro clock. */
+        public long clockOffsetNs() {
+            return clockOffsetNs;
+        }
+
+        public int frameCount() {
+            return frameOffsets.length;
+        }
+
+        public long frameTimestampNs(int frame) {
+            return buffer.getLong(frameOffsets[frame] + 4);
+        }
+
+        /** Zoom of the camera's crop when the frame was captured; 1 for the full sensor. */
+        public float frameIspZoom(int frame) {
+            return buffer.getFloat(frameOffsets[frame] + 12);
+        }
+
+        public void frameMatrix(int frame, float[] out) {
+            int offset = frameOffsets[frame] + 16;
+            for (int i = 0; i < 16; i++) out[i] = buffer.getFloat(offset + i * 4);
+        }
+
+        /** The frame's RGBA rows, bottom row first; a read-only view into the mapped file. */
+        public ByteBuffer framePixels(int frame) {
+            ByteBuffer pixels = buffer.duplicate();
+            int start = frameOffsets[frame] + FRAME_HEADER_BYTES;
+            pixels.limit(start + width * height * 4).position(start);
+            return pixels.slice();
+        }
+
+        public int gyroCount() {
+            return gyroOffsets.length;
+        }
+
+        public long gyroTimestampNs(int sample) {
+            return buffer.getLong(gyroOffsets[sample] + 4);
+        }
+
+        /** Rate about device axis {@code axis} (0 = x, 1 = y, 2 = z) in rad/s. */
+        public float gyroRate(int sample, int axis) {
+            return buffer.getFloat(gyroOffsets[sample] + 12 + axis * 4);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * Software reference for one live frame of the app's renderer: zoom sampling, optional sharpen,
+ * colour filter, then contrast and brightness, with the same evaluation order and 8-bit
+ * intermediate storage as the GLES passes. Slow by design; it exists to pin down the math.
+ *
+ * <p>Settings mirror the renderer's setters. Not thread safe.
+ */
+public final class ReferencePipeline {
+    private static final float[] IDENTITY = {
+            1f, 0f, 0f, 0f,
+            0f, 1f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 0f, 0f, 1f
+    };
+
+    private final int viewWidth;
+    private final int viewHeight;
+    private final SharpenStage sharpenStage;
+
+    private final float[] texMatrix = IDENTITY.clone();
+    private float zoom = 1f;
+    private int filterMode = FilterStage.NORMAL;
+    private float brightness = 0f;
+    private float contrast = 1f;
+    private float sharpness = 0f;
+
+    public ReferencePipeline(int viewWidth, int viewHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        sharpenStage = new SharpenStage(viewWidth, viewHeight);
+    }
+
+    /** Camera buffer transform, column-major as returned by {@code SurfaceTexture.getTransformMatrix}. */
+    public void setTexMatrix(float[] matrix) {
+        System.arraycopy(matrix, 0, texMatrix, 0, 16);
+    }
+
+    /** Zoom applied on the GPU, i.e. the total zoom divided by the camera's crop. */
+    public void setZoom(float zoom) {
+        this.zoom = zoom;
+    }
+
+    public void setFilterMode(int mode) {
+        if (!FilterStage.supports(mode)) {
+            throw new IllegalArgumentException("Filter mode " + mode + " has no reference implementation");
+        }
+        filterMode = mode;
+    }
+
+    public void setBrightness(float brightness) {
+        this.brightness = brightness;
+    }
+
+    public void setContrast(float contrast) {
+        this.contrast = contrast;
+    }
+
+    public void setSharpness(float sharpness) {
+        this.sharpness = sharpness;
+    }
+
+    /** Renders {@code source}, a camera buffer, into {@code target}, which must be view sized. */
+    public void render(Frame source, Frame target) {
+        if (target.width != viewWidth || target.height != viewHeight) {
+            throw new IllegalArgumentException("Target is " + target.width + "x" + target.height
+                    + ", pipeline was built for " + viewWidth + "x" + viewHeight);
+        }
+        Frame blur = sharpness > 0f ? sharpenStage.render(source, texMatrix, zoom, viewWidth, viewHeight) : null;
+        float[] coord = new float[2];
+        float[] rgb = new float[3];
+        float[] blurred = new float[3];
+        for (int y = 0; y < viewHeight; y++) {
+            float sy = (y + 0.5f) / viewHeight;
+            for (int x = 0; x < viewWidth; x++) {
+                float sx = (x + 0.5f) / viewWidth;
+                ZoomStage.texCoord(texMatrix, zoom, sx, sy, coord);
+                Sampler.bilinear(source, coord[0], coord[1], rgb);
+                if (blur != null) {
+                    Sampler.bilinear(blur, sx, sy, blurred);
+                    SharpenStage.apply(rgb, blurred, sharpness);
+                }
+                FilterStage.apply(filterMode, rgb);
+                ToneStage.apply(rgb, brightness, contrast);
+                target.pixels[y * viewWidth + x] = Frame.pack(rgb[0], rgb[1], rgb[2]);
+            }
+        }
+    }
+}
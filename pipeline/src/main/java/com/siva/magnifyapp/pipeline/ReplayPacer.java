@@ -0,0 +1,62 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * Steps through a {@link FrameRecording} for replay: either one frame per call, as fast as the
+ * pipeline takes them, or paced to the recorded timestamps, skipping frames like the live camera
+ * does when the pipeline falls behind.
+ *
+ * <p>Gyro samples are handed out along with the frames, up to the capture time of the frame after
+ * the one returned. That is roughly what the live path has received by the time it draws a frame,
+ * and it does not depend on how fast the replay runs, so stabilization sees the same input on
+ * every run.
+ */
+public final class ReplayPacer {
+    public interface GyroSink {
+        /** {@code timestampNs} is on the gyro clock; rates about the device axes in rad/s. */
+        void onGyro(long timestampNs, float x, float y, float z);
+    }
+
+    private final FrameRecording.Reader recording;
+    private final boolean paced;
+    private int frame = -1;
+    private int gyro;
+    private long startNs;
+
+    public ReplayPacer(FrameRecording.Reader recording, boolean paced) {
+        this.recording = recording;
+        this.paced = paced;
+    }
+
+    /**
+     * The frame to show at {@code nowNs}, after passing the gyro samples up to it to {@code sink};
+     * -1 once the recording has played through. When paced, the same frame is returned again
+     * until the next one is due.
+     */
+    public int next(long nowNs, GyroSink sink) {
+        int last = recording.frameCount() - 1;
+        if (frame == last) return -1;
+        if (!paced || frame < 0) {
+            if (frame < 0) startNs = nowNs;
+            frame++;
+        } else {
+            long elapsed = nowNs - startNs;
+            long first = recording.frameTimestampNs(0);
+            while (frame < last && recording.frameTimestampNs(frame + 1) - first <= elapsed) frame++;
+        }
+        long gyroUntil = frame < last ? recording.frameTimestampNs(frame + 1) + recording.clockOffsetNs()
+                : Long.MAX_VALUE;
+        while (gyro < recording.gyroCount() && recording.gyroTimestampNs(gyro) <= gyroUntil) {
+            sink.onGyro(recording.gyroTimestampNs(gyro), recording.gyroRate(gyro, 0), recording.gyroRate(gyro, 1),
+                    recording.gyroRate(gyro, 2));
+            gyro++;
+        }
+        return frame;
+    }
+
+    /** Nanoseconds from {@code nowNs} until the next frame is due; 0 when not paced. */
+    public long delayNs(long nowNs) {
+        if (!paced || frame < 0 || frame >= recording.frameCount() - 1) return 0L;
+        long due = startNs + recording.frameTimestampNs(frame + 1) - recording.frameTimestampNs(0);
+        return Math.max(0L, due - nowNs);
+    }
+}
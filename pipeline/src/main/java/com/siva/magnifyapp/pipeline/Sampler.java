@@ -0,0 +1,45 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * {@code texture2D} on a {@link Frame} with {@code GL_LINEAR} filtering and
+ * {@code GL_CLAMP_TO_EDGE} wrapping.
+ */
+public final class Sampler {
+    private static final float INV_255 = 1f / 255f;
+
+    private Sampler() {
+    }
+
+    /** Samples at normalized texture coordinates; writes linear RGB in [0, 1] to {@code out}. */
+    public static void bilinear(Frame frame, float u, float v, float[] out) {
+        // Texel centres sit at (i + 0.5) / size.
+        float s = u * frame.width - 0.5f;
+        float t = v * frame.height - 0.5f;
+        int x0 = (int) Math.floor(s);
+        int y0 = (int) Math.floor(t);
+        float fx = s - x0;
+        float fy = t - y0;
+        int x1 = clamp(x0 + 1, frame.width);
+        int y1 = clamp(y0 + 1, frame.height);
+        x0 = clamp(x0, frame.width);
+        y0 = clamp(y0, frame.height);
+
+        int[] px = frame.pixels;
+        int row0 = y0 * frame.width;
+        int row1 = y1 * frame.width;
+        int p00 = px[row0 + x0], p10 = px[row0 + x1];
+        int p01 = px[row1 + x0], p11 = px[row1 + x1];
+        float w00 = (1f - fx) * (1f - fy), w10 = fx * (1f - fy);
+        float w01 = (1f - fx) * fy, w11 = fx * fy;
+        out[0] = (((p00 >> 16) & 0xFF) * w00 + ((p10 >> 16) & 0xFF) * w10
+                + ((p01 >> 16) & 0xFF) * w01 + ((p11 >> 16) & 0xFF) * w11) * INV_255;
+        out[1] = (((p00 >> 8) & 0xFF) * w00 + ((p10 >> 8) & 0xFF) * w10
+                + ((p01 >> 8) & 0xFF) * w01 + ((p11 >> 8) & 0xFF) * w11) * INV_255;
+        out[2] = ((p00 & 0xFF) * w00 + (p10 & 0xFF) * w10
+                + (p01 & 0xFF) * w01 + (p11 & 0xFF) * w11) * INV_255;
+    }
+
+    private static int clamp(int i, int size) {
+        return i < 0 ? 0 : (i >= size ? size - 1 : i);
+    }
+}
@@ -0,0 +1,65 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * Mirror of the app's {@code SharpenPass}: the zoomed view is rendered at half the view
+ * resolution and blurred with a separable binomial kernel folded into three bilinear fetches per
+ * direction. Intermediate targets are 8-bit like the RGBA8 framebuffers on the device.
+ */
+public final class SharpenStage {
+    private static final int DOWNSAMPLE = 2;
+    private static final float RADIUS_SOURCE_TEXELS = 1.0f;
+    private static final float MAX_STEP = 4.0f;
+
+    private final Frame targetA;
+    private final Frame targetB;
+    private final float[] center = new float[3];
+    private final float[] neg = new float[3];
+    private final float[] pos = new float[3];
+
+    public SharpenStage(int viewWidth, int viewHeight) {
+        int w = Math.max(1, viewWidth / DOWNSAMPLE);
+        int h = Math.max(1, viewHeight / DOWNSAMPLE);
+        targetA = new Frame(w, h);
+        targetB = new Frame(w, h);
+    }
+
+    /** Unsharp mask: pushes {@code rgb} away from its blurred value, in place. */
+    public static void apply(float[] rgb, float[] blurred, float amount) {
+        for (int c = 0; c < 3; c++) {
+            float v = rgb[c] + (rgb[c] - blurred[c]) * amount;
+            rgb[c] = Math.max(0f, Math.min(1f, v));
+        }
+    }
+
+    /**
+     * Renders the blurred, zoomed view of {@code source} and returns the frame holding it. The
+     * returned frame is owned by this stage and overwritten by the next call.
+     */
+    public Frame render(Frame source, float[] texMatrix, float zoom, int viewWidth, int viewHeight) {
+        ZoomStage.render(source, texMatrix, zoom, targetA);
+        float sourceSpan = zoom * (float) Math.max(viewWidth, viewHeight)
+                / Math.max(1, Math.max(source.width, source.height));
+        float step = Math.min(MAX_STEP, Math.max(0.5f, RADIUS_SOURCE_TEXELS * sourceSpan / DOWNSAMPLE));
+        blur(targetA, targetB, step / targetB.width, 0f);
+        blur(targetB, targetA, 0f, step / targetA.height);
+        return targetA;
+    }
+
+    private void blur(Frame source, Frame target, float stepU, float stepV) {
+        float du = stepU * 1.2f;
+        float dv = stepV * 1.2f;
+        for (int y = 0; y < target.height; y++) {
+            float v = (y + 0.5f) / target.height;
+            for (int x = 0; x < target.width; x++) {
+                float u = (x + 0.5f) / target.width;
+                Sampler.bilinear(source, u, v, center);
+                Sampler.bilinear(source, u - du, v - dv, neg);
+                Sampler.bilinear(source, u + du, v + dv, pos);
+                target.pixels[y * target.width + x] = Frame.pack(
+                        center[0] * 0.375f + neg[0] * 0.3125f + pos[0] * 0.3125f,
+                        center[1] * 0.375f + neg[1] * 0.3125f + pos[1] * 0.3125f,
+                        center[2] * 0.375f + neg[2] * 0.3125f + pos[2] * 0.3125f);
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.siva.magnifyapp.pipeline;
+
+import java.util.Locale;
+
+/**
+ * Per-stage cost over a replay: count, mean and worst time of each named pipeline stage.
+ * Single-threaded; recording does not allocate.
+ */
+public final class StageTimer {
+    private final String[] names;
+    private final long[] totalNs;
+    private final long[] maxNs;
+    private final int[] counts;
+
+    public StageTimer(String... names) {
+        this.names = names.clone();
+        totalNs = new long[names.length];
+        maxNs = new long[names.length];
+        counts = new int[names.length];
+    }
+
+    public void add(int stage, long durationNs) {
+        totalNs[stage] += durationNs;
+        maxNs[stage] = Math.max(maxNs[stage], durationNs);
+        counts[stage]++;
+    }
+
+    public int count(int stage) {
+        return counts[stage];
+    }
+
+    public float meanMs(int stage) {
+        return counts[stage] > 0 ? totalNs[stage] / (float) counts[stage] / 1e6f : 0f;
+    }
+
+    public float maxMs(int stage) {
+        return maxNs[stage] / 1e6f;
+    }
+
+    /**
+     * One line per stage that ran, then the total per frame. Stages that skip frames, such as an
+     * analysis pass every few frames, count towards that total at their real share.
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        long sumNs = 0;
+        int frames = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (counts[i] == 0) continue;
+            sumNs += totalNs[i];
+            frames = Math.max(frames, counts[i]);
+            sb.append(String.format(Locale.US, "%-10s %7.3f ms  max %7.3f ms  n %d\n",
+                    names[i], meanMs(i), maxMs(i), counts[i]));
+        }
+        float perFrameMs = frames > 0 ? sumNs / (float) frames / 1e6f : 0f;
+        return sb.append(String.format(Locale.US, "%-10s %7.3f ms  over %d frames", "per frame", perFrameMs, frames))
+                .toString();
+    }
+}
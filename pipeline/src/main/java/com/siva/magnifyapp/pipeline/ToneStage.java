@@ -0,0 +1,25 @@
+package com.siva.magnifyapp.pipeline;
+
+/** Contrast around mid-grey, then brightness offset, then clamp; the composite shader's last step. */
+public final class ToneStage {
+    private ToneStage() {
+    }
+
+    public static void apply(float[] rgb, float brightness, float contrast) {
+        for (int c = 0; c < 3; c++) {
+            float v = (rgb[c] - 0.5f) * contrast + 0.5f + brightness;
+            rgb[c] = Math.max(0f, Math.min(1f, v));
+        }
+    }
+
+    /** Applies the tone curve to every pixel of {@code frame} in place. */
+    public static void apply(Frame frame, float brightness, float contrast) {
+        float[] rgb = new float[3];
+        int[] px = frame.pixels;
+        for (int i = 0; i < frame.width * frame.height; i++) {
+            FilterStage.unpack(px[i], rgb);
+            apply(rgb, brightness, contrast);
+            px[i] = Frame.pack(rgb[0], rgb[1], rgb[2]);
+        }
+    }
+}
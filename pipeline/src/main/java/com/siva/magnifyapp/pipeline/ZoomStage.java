@@ -0,0 +1,37 @@
+package com.siva.magnifyapp.pipeline;
+
+/**
+ * Zoom sampling: the composite vertex shader's coordinate math followed by a bilinear fetch.
+ * The view shows the centre {@code 1 / zoom} of the source, then the texture matrix (the camera
+ * buffer transform, possibly shifted by stabilization) maps that window into the buffer.
+ */
+public final class ZoomStage {
+    private ZoomStage() {
+    }
+
+    /**
+     * Texture coordinate for view coordinate ({@code x}, {@code y}) in [0, 1], as computed per
+     * vertex and interpolated by the GPU. The mapping is affine, so evaluating it per pixel gives
+     * the same result as interpolation.
+     */
+    public static void texCoord(float[] texMatrix, float zoom, float x, float y, float[] out) {
+        float zx = (x - 0.5f) / zoom + 0.5f;
+        float zy = (y - 0.5f) / zoom + 0.5f;
+        out[0] = texMatrix[0] * zx + texMatrix[4] * zy + texMatrix[12];
+        out[1] = texMatrix[1] * zx + texMatrix[5] * zy + texMatrix[13];
+    }
+
+    /** Renders the zoomed view of {@code source} into {@code target}, like a plain textured quad. */
+    public static void render(Frame source, float[] texMatrix, float zoom, Frame target) {
+        float[] coord = new float[2];
+        float[] rgb = new float[3];
+        for (int y = 0; y < target.height; y++) {
+            float vy = (y + 0.5f) / target.height;
+            for (int x = 0; x < target.width; x++) {
+                texCoord(texMatrix, zoom, (x + 0.5f) / target.width, vy, coord);
+                Sampler.bilinear(source, coord[0], coord[1], rgb);
+                target.pixels[y * target.width + x] = Frame.pack(rgb[0], rgb[1], rgb[2]);
+            }
+        }
+    }
+}
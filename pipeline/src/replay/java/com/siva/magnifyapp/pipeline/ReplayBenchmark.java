@@ -0,0 +1,106 @@
+package com.siva.magnifyapp.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs every frame of a {@link FrameRecording} through the reference pipeline's stages, off
+ * device, and reports the cost of each with a {@link StageTimer}. The stages run one after the
+ * other over whole frames, as in the per-stage cases of {@code StageBenchmark}, so their times
+ * add up; the fused {@link ReferencePipeline#render} would not say where the time goes.
+ *
+ * <p>Each frame is sampled through its recorded buffer transform into a view the size of the
+ * recording. Absolute numbers say nothing about the GPU; the point is to compare runs over the
+ * same scene before and after a change to the math.
+ *
+ * <p>Run with {@code ./gradlew :pipeline:replayBenchmark -Precording=<file> [-Ppaced]}.
+ */
+final class ReplayBenchmark {
+    static final int STAGE_UPLOAD = 0;
+    static final int STAGE_ZOOM = 1;
+    static final int STAGE_SHARPEN = 2;
+    static final int STAGE_FILTER = 3;
+    static final int STAGE_TONE = 4;
+
+    /** Settings of a typical reading session; every stage has work to do. */
+    private static final float ZOOM = 2f; // total; the GPU does what the frame's ISP crop did not
+    private static final int FILTER = FilterStage.AMBER;
+    private static final float BRIGHTNESS = 0.05f;
+    private static final float CONTRAST = 1.3f;
+
+    private final FrameRecording.Reader recording;
+    private final boolean paced;
+    private final StageTimer timer = new StageTimer("upload", "zoom", "sharpen", "filter", "tone");
+    private final ReplayPacer.GyroSink ignoreGyro = (timestampNs, x, y, z) -> { };
+    private final float[] texMatrix = new float[16];
+    private final Frame view;
+    private final SharpenStage sharpenStage;
+
+    ReplayBenchmark(FrameRecording.Reader recording, boolean paced) {
+        this.recording = recording;
+        this.paced = paced;
+        view = new Frame(recording.width(), recording.height());
+        sharpenStage = new SharpenStage(view.width, view.height);
+    }
+
+    /** Replays the whole recording once and returns the per-stage cost. */
+    StageTimer run() throws InterruptedException {
+        ReplayPacer pacer = new ReplayPacer(recording, paced);
+        int lastFrame = -1;
+        while (true) {
+            int frame = pacer.next(System.nanoTime(), ignoreGyro);
+            if (frame < 0) break;
+            if (frame != lastFrame) {
+                lastFrame = frame;
+                render(frame);
+            }
+            sleep(pacer.delayNs(System.nanoTime()));
+        }
+        return timer;
+    }
+
+    private void render(int frame) {
+        long start = System.nanoTime();
+        Frame source = Frame.fromRgba(recording.framePixels(frame), recording.width(), recording.height());
+        recording.frameMatrix(frame, texMatrix);
+        float gpuZoom = Math.max(1f, ZOOM / recording.frameIspZoom(frame));
+        long now = System.nanoTime();
+        timer.add(STAGE_UPLOAD, now - start);
+
+        start = now;
+        ZoomStage.render(source, texMatrix, gpuZoom, view);
+        now = System.nanoTime();
+        timer.add(STAGE_ZOOM, now - start);
+
+        start = now;
+        sharpenStage.render(source, texMatrix, gpuZoom, view.width, view.height);
+        now = System.nanoTime();
+        timer.add(STAGE_SHARPEN, now - start);
+
+        start = now;
+        FilterStage.apply(FILTER, view);
+        now = System.nanoTime();
+        timer.add(STAGE_FILTER, now - start);
+
+        start = now;
+        ToneStage.apply(view, BRIGHTNESS, CONTRAST);
+        now = System.nanoTime();
+        timer.add(STAGE_TONE, now - start);
+    }
+
+    private static void sleep(long ns) throws InterruptedException {
+        if (ns > 0) Thread.sleep(ns / 1_000_000L, (int) (ns % 1_000_000L));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args[0].isEmpty()) {
+            System.err.println("usage: ReplayBenchmark <recording> [--paced]");
+            System.exit(2);
+        }
+        boolean paced = args.length > 1 && args[1].equals("--paced");
+        FrameRecording.Reader recording = new FrameRecording.Reader(new File(args[0]));
+        System.out.println(recording.frameCount() + " frames, " + recording.gyroCount() + " gyro samples, "
+                + recording.width() + "x" + recording.height());
+        System.out.println(new ReplayBenchmark(recording, paced).run().format());
+    }
+}
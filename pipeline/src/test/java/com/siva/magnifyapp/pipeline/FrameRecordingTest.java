@@ -0,0 +1,102 @@
+package com.siva.magnifyapp.pipeline;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FrameRecordingTest {
+    private static final int WIDTH = 8, HEIGHT = 4;
+    private static final long FRAME_PERIOD_NS = 33_333_333L;
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("recording", ".bmrf");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static ByteBuffer frame(int value) {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        for (int i = 0; i < pixels.capacity(); i++) pixels.put(i, (byte) (value + i));
+        return pixels;
+    }
+
+    private static float[] matrix(float value) {
+        float[] m = new float[16];
+        m[0] = m[5] = m[10] = m[15] = value;
+        return m;
+    }
+
+    @Test
+    public void roundTrip_keepsFramesAndGyroInOrder() throws IOException {
+        File file = tempFile();
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, WIDTH, HEIGHT, 1234L, 90, 0.7f, 1 << 16);
+        for (int f = 0; f < 3; f++) {
+            writer.addGyro(f * FRAME_PERIOD_NS - 5, f, -f, 0.5f);
+            assertTrue(writer.addFrame(f * FRAME_PERIOD_NS, 1f + f, matrix(f + 1), frame(f)));
+        }
+        writer.close();
+
+        FrameRecording.Reader reader = new FrameRecording.Reader(file);
+        assertEquals(WIDTH, reader.width());
+        assertEquals(HEIGHT, reader.height());
+        assertEquals(90, reader.sensorOrientation());
+        assertEquals(0.7f, reader.tanHalfFov(), 0f);
+        assertEquals(1234L, reader.clockOffsetNs());
+        assertEquals(3, reader.frameCount());
+        assertEquals(3, reader.gyroCount());
+        float[] m = new float[16];
+        for (int f = 0; f < 3; f++) {
+            assertEquals(f * FRAME_PERIOD_NS, reader.frameTimestampNs(f));
+            assertEquals(1f + f, reader.frameIspZoom(f), 0f);
+            reader.frameMatrix(f, m);
+            assertArrayEquals(matrix(f + 1), m, 0f);
+            assertEquals(frame(f), reader.framePixels(f));
+            assertEquals(f * FRAME_PERIOD_NS - 5, reader.gyroTimestampNs(f));
+            assertEquals(-f, reader.gyroRate(f, 1), 0f);
+        }
+        // Closing cuts the reserved space.
+        assertEquals(FrameRecording.HEADER_BYTES + 3 * (80 + WIDTH * HEIGHT * 4) + 3 * 24, file.length());
+    }
+
+    @Test
+    public void fullFile_refusesFurtherRecords() throws IOException {
+        File file = tempFile();
+        int frameRecord = 80 + WIDTH * HEIGHT * 4;
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, WIDTH, HEIGHT, 0L, 0, 0.7f,
+                FrameRecording.HEADER_BYTES + 2 * frameRecord);
+        assertTrue(writer.addFrame(0L, 1f, matrix(1), frame(0)));
+        assertTrue(writer.addFrame(1L, 1f, matrix(1), frame(1)));
+        assertFalse(writer.addFrame(2L, 1f, matrix(1), frame(2)));
+        assertFalse(writer.addGyro(2L, 0f, 0f, 0f));
+        assertEquals(2, writer.frameCount());
+        writer.close();
+        assertEquals(2, new FrameRecording.Reader(file).frameCount());
+    }
+
+    @Test
+    public void unclosedRecording_readsBackItsCompleteRecords() throws IOException {
+        File file = tempFile();
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, WIDTH, HEIGHT, 0L, 0, 0.7f, 1 << 16);
+        writer.addFrame(0L, 1f, matrix(1), frame(0));
+        writer.addGyro(1L, 0f, 0f, 0f);
+        // Never closed, as after a crash: the reserved tail is still there, zero filled.
+        FrameRecording.Reader reader = new FrameRecording.Reader(file);
+        assertEquals(1, reader.frameCount());
+        assertEquals(1, reader.gyroCount());
+        writer.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFile_isRejected() throws IOException {
+        File file = tempFile();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.write(new byte[FrameRecording.HEADER_BYTES]);
+        }
+        new FrameRecording.Reader(file);
+    }
+}
@@ -0,0 +1,81 @@
+package com.siva.magnifyapp.pipeline;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ReferencePipelineTest {
+
+    @Test
+    public void identity_reproducesSource() {
+        Frame source = new Frame(8, 4);
+        for (int i = 0; i < source.pixels.length; i++) source.pixels[i] = 0xFF000000 | (i * 0x070503);
+        Frame target = new Frame(8, 4);
+        new ReferencePipeline(8, 4).render(source, target);
+        assertArrayEquals(source.pixels, target.pixels);
+    }
+
+    @Test
+    public void zoom_magnifiesAboutCentre() {
+        float[] coord = new float[2];
+        float[] identity = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+        ZoomStage.texCoord(identity, 4f, 0f, 1f, coord);
+        assertEquals(0.375f, coord[0], 1e-6f);
+        assertEquals(0.625f, coord[1], 1e-6f);
+        ZoomStage.texCoord(identity, 4f, 0.5f, 0.5f, coord);
+        assertEquals(0.5f, coord[0], 1e-6f);
+    }
+
+    @Test
+    public void sampler_clampsToEdge() {
+        Frame frame = new Frame(2, 1, new int[]{0xFF000000, 0xFFFFFFFF});
+        float[] rgb = new float[3];
+        Sampler.bilinear(frame, -1f, 0.5f, rgb);
+        assertEquals(0f, rgb[0], 0f);
+        Sampler.bilinear(frame, 0.5f, 0.5f, rgb);
+        assertEquals(0.5f, rgb[0], 1e-6f);
+        Sampler.bilinear(frame, 2f, 0.5f, rgb);
+        assertEquals(1f, rgb[0], 0f);
+    }
+
+    @Test
+    public void amber_dropsBlueAndDimsGreen() {
+        float[] rgb = {1f, 1f, 1f};
+        FilterStage.apply(FilterStage.AMBER, rgb);
+        assertArrayEquals(new float[]{1f, 0.7f, 0f}, rgb, 1e-6f);
+    }
+
+    @Test
+    public void tone_contrastPivotsOnMidGrey() {
+        float[] rgb = {0.5f, 0.25f, 0.75f};
+        ToneStage.apply(rgb, 0f, 2f);
+        assertArrayEquals(new float[]{0.5f, 0f, 1f}, rgb, 1e-6f);
+    }
+
+    @Test
+    public void sharpen_leavesFlatAreasUntouched() {
+        Frame source = new Frame(32, 32);
+        java.util.Arrays.fill(source.pixels, 0xFF808080);
+        ReferencePipeline pipeline = new ReferencePipeline(32, 32);
+        pipeline.setSharpness(2f);
+        Frame target = new Frame(32, 32);
+        pipeline.render(source, target);
+        for (int p : target.pixels) assertEquals(0xFF808080, p);
+    }
+
+    @Test
+    public void rgba_roundTrips() {
+        Frame frame = new Frame(2, 1, new int[]{0x80112233, 0xFFAABBCC});
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        frame.toRgba(buffer);
+        assertEquals(0x11, buffer.get(0));
+        assertArrayEquals(frame.pixels, Frame.fromRgba(buffer, 2, 1).pixels);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void analysisModes_areRejected() {
+        new ReferencePipeline(4, 4).setFilterMode(3);
+    }
+}
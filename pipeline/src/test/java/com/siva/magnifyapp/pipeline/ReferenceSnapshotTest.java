@@ -0,0 +1,141 @@
+package com.siva.magnifyapp.pipeline;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Renders the test chart in {@code snapshots/input.png} with fixed settings and compares against
+ * the shaders' output for the same chart and settings, in {@code device/}. Those goldens are read
+ * back from the GPU by the app's {@code ShaderSnapshotTest}; recapture them on a device after a
+ * shader change. A case without its device golden is skipped, not passed.
+ *
+ * <p>The images in {@code snapshots/} were produced by this reference itself and only guard it
+ * against unintended changes between device captures. After an intended change to the math,
+ * rewrite them with {@code -Dsnapshot.update=true} and review the new images.
+ */
+public class ReferenceSnapshotTest {
+    private static final int VIEW_WIDTH = 160;
+    private static final int VIEW_HEIGHT = 90;
+    /** Largest per-channel difference tolerated; covers rounding differences across GPUs, JVMs and PNG codecs. */
+    private static final int MAX_DELTA = 3;
+    /** Mean per-channel difference tolerated; catches systematic shifts that stay under MAX_DELTA. */
+    private static final double MAX_MEAN_DELTA = 0.5;
+
+    private static final boolean UPDATE = Boolean.getBoolean("snapshot.update");
+    private static final File SNAPSHOT_DIR = new File("src/test/resources/snapshots");
+
+    // SurfaceTexture's usual transform: the buffer is stored top row first.
+    private static final float[] FLIP_Y = {
+            1f, 0f, 0f, 0f,
+            0f, -1f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 1f, 0f, 1f
+    };
+
+    @Test
+    public void normal_1x() throws IOException {
+        check("normal_1x", newPipeline());
+    }
+
+    @Test
+    public void amber_2x() throws IOException {
+        ReferencePipeline pipeline = newPipeline();
+        pipeline.setZoom(2f);
+        pipeline.setFilterMode(FilterStage.AMBER);
+        check("amber_2x", pipeline);
+    }
+
+    @Test
+    public void grayscale_brightnessContrast() throws IOException {
+        ReferencePipeline pipeline = newPipeline();
+        pipeline.setZoom(1.5f);
+        pipeline.setFilterMode(FilterStage.GRAYSCALE);
+        pipeline.setBrightness(0.1f);
+        pipeline.setContrast(1.4f);
+        check("grayscale_tone", pipeline);
+    }
+
+    @Test
+    public void sharpen_3x_flipped() throws IOException {
+        ReferencePipeline pipeline = newPipeline();
+        pipeline.setTexMatrix(FLIP_Y);
+        pipeline.setZoom(3f);
+        pipeline.setSharpness(1.5f);
+        check("sharpen_3x", pipeline);
+    }
+
+    private static ReferencePipeline newPipeline() {
+        return new ReferencePipeline(VIEW_WIDTH, VIEW_HEIGHT);
+    }
+
+    private static void check(String name, ReferencePipeline pipeline) throws IOException {
+        Frame source = read("/snapshots/input.png");
+        Frame actual = new Frame(VIEW_WIDTH, VIEW_HEIGHT);
+        pipeline.render(source, actual);
+        if (UPDATE) {
+            write(name, actual);
+        } else {
+            compare(name, read("/snapshots/" + name + ".png"), actual);
+        }
+        try (InputStream in = ReferenceSnapshotTest.class.getResourceAsStream("/device/" + name + ".png")) {
+            Assume.assumeTrue("No device golden device/" + name + ".png; capture it with ShaderSnapshotTest",
+                    in != null);
+            compare("device " + name, read(in), actual);
+        }
+    }
+
+    private static void compare(String name, Frame expected, Frame actual) {
+        assertEquals(name + " width", expected.width, actual.width);
+        assertEquals(name + " height", expected.height, actual.height);
+        int maxDelta = 0;
+        long sum = 0;
+        for (int i = 0; i < actual.pixels.length; i++) {
+            for (int shift = 0; shift <= 16; shift += 8) {
+                int d = Math.abs(((actual.pixels[i] >> shift) & 0xFF) - ((expected.pixels[i] >> shift) & 0xFF));
+                maxDelta = Math.max(maxDelta, d);
+                sum += d;
+            }
+        }
+        double mean = sum / (3.0 * actual.pixels.length);
+        assertTrue(name + ": max delta " + maxDelta, maxDelta <= MAX_DELTA);
+        assertTrue(name + ": mean delta " + mean, mean <= MAX_MEAN_DELTA);
+    }
+
+    private static Frame read(String resource) throws IOException {
+        try (InputStream in = ReferenceSnapshotTest.class.getResourceAsStream(resource)) {
+            assertNotNull("Missing " + resource, in);
+            return read(in);
+        }
+    }
+
+    /** Decodes a PNG, flipping it into the frame's bottom-up row order. */
+    private static Frame read(InputStream in) throws IOException {
+        BufferedImage image = ImageIO.read(in);
+        Frame frame = new Frame(image.getWidth(), image.getHeight());
+        for (int y = 0; y < frame.height; y++) {
+            for (int x = 0; x < frame.width; x++) {
+                frame.set(x, frame.height - 1 - y, image.getRGB(x, y) | 0xFF000000);
+            }
+        }
+        return frame;
+    }
+
+    private static void write(String name, Frame frame) throws IOException {
+        BufferedImage image = new BufferedImage(frame.width, frame.height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < frame.height; y++) {
+            for (int x = 0; x < frame.width; x++) {
+                image.setRGB(x, frame.height - 1 - y, frame.get(x, y));
+            }
+        }
+        ImageIO.write(image, "png", new File(SNAPSHOT_DIR, name + ".png"));
+    }
+}
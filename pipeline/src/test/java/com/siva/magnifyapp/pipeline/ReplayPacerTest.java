@@ -0,0 +1,87 @@
+package com.siva.magnifyapp.pipeline;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayPacerTest {
+    private static final int WIDTH = 64, HEIGHT = 36;
+    private static final long FRAME_PERIOD_NS = 33_333_333L;
+    private static final long GYRO_PERIOD_NS = 5_000_000L;
+    private static final int FRAMES = 10;
+
+    private final List<Long> gyro = new ArrayList<>();
+    private final ReplayPacer.GyroSink sink = (timestampNs, x, y, z) -> gyro.add(timestampNs);
+
+    /** A pan across a gradient at 30 fps with 200 Hz gyro, frame timestamps starting at 1 s. */
+    private static FrameRecording.Reader recording() throws IOException {
+        File file = File.createTempFile("replay", ".bmrf");
+        file.deleteOnExit();
+        FrameRecording.Writer writer = new FrameRecording.Writer(file, WIDTH, HEIGHT, 0L, 90, 0.7f, 1 << 20);
+        ByteBuffer pixels = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        float[] identity = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+        long gyroNs = 1_000_000_000L - FRAME_PERIOD_NS;
+        for (int f = 0; f < FRAMES; f++) {
+            long frameNs = 1_000_000_000L + f * FRAME_PERIOD_NS;
+            for (; gyroNs <= frameNs; gyroNs += GYRO_PERIOD_NS) writer.addGyro(gyroNs, 0f, 0.3f, 0f);
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                byte v = (byte) ((i % WIDTH) * 4 + f * 8);
+                pixels.put(i * 4, v).put(i * 4 + 1, v).put(i * 4 + 2, v).put(i * 4 + 3, (byte) 255);
+            }
+            writer.addFrame(frameNs, 1f, identity, pixels);
+        }
+        writer.close();
+        return new FrameRecording.Reader(file);
+    }
+
+    @Test
+    public void unpaced_stepsEveryFrameThenEnds() throws IOException {
+        ReplayPacer pacer = new ReplayPacer(recording(), false);
+        for (int f = 0; f < FRAMES; f++) assertEquals(f, pacer.next(0L, sink));
+        assertEquals(-1, pacer.next(0L, sink));
+        assertEquals(0L, pacer.delayNs(0L));
+    }
+
+    @Test
+    public void paced_followsRecordedTimestamps() throws IOException {
+        ReplayPacer pacer = new ReplayPacer(recording(), true);
+        long start = 500L;
+        assertEquals(0, pacer.next(start, sink));
+        assertEquals(FRAME_PERIOD_NS, pacer.delayNs(start));
+        // Not due yet: the same frame again.
+        assertEquals(0, pacer.next(start + FRAME_PERIOD_NS - 1, sink));
+        assertEquals(1, pacer.next(start + FRAME_PERIOD_NS, sink));
+        // Falling behind skips to the newest due frame.
+        assertEquals(4, pacer.next(start + 4 * FRAME_PERIOD_NS + 10, sink));
+        assertEquals(FRAMES - 1, pacer.next(start + 60 * FRAME_PERIOD_NS, sink));
+        assertEquals(-1, pacer.next(start + 61 * FRAME_PERIOD_NS, sink));
+    }
+
+    @Test
+    public void gyro_isDeliveredUpToTheNextFrame() throws IOException {
+        FrameRecording.Reader recording = recording();
+        ReplayPacer pacer = new ReplayPacer(recording, false);
+        pacer.next(0L, sink);
+        assertFalse(gyro.isEmpty());
+        assertTrue(gyro.get(gyro.size() - 1) <= recording.frameTimestampNs(1));
+        assertTrue(gyro.get(gyro.size() - 1) > recording.frameTimestampNs(1) - GYRO_PERIOD_NS);
+        while (pacer.next(0L, sink) >= 0) {
+        }
+        assertEquals(recording.gyroCount(), gyro.size());
+    }
+
+    @Test
+    public void benchmark_timesEveryStage() throws IOException, InterruptedException {
+        StageTimer timer = new ReplayBenchmark(recording(), false).run();
+        for (int stage = ReplayBenchmark.STAGE_UPLOAD; stage <= ReplayBenchmark.STAGE_TONE; stage++) {
+            assertEquals(FRAMES, timer.count(stage));
+        }
+        assertTrue(timer.format().contains("over " + FRAMES + " frames"));
+    }
+}